@@ -14,4 +14,26 @@ import java.util.List;
 public class AppConfigProperties {
     private String uploadDir;
     private List<String> allowedTypes;
+
+    /**
+     * near-duplicate detection over parsed resume text
+     */
+    private Similarity similarity = new Similarity();
+
+    @Getter
+    @Setter
+    public static class Similarity {
+
+        private boolean enabled = true;
+
+        /**
+         * estimated Jaccard similarity at or above which an earlier analysis is reused
+         */
+        private double threshold = 0.9;
+
+        /**
+         * max LSH candidates compared per upload
+         */
+        private int maxCandidates = 50;
+    }
 }
@@ -0,0 +1,95 @@
+package interview.guide.common.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * document parsing (Tika) config
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.parse")
+public class ParseConfigProperties {
+
+    /**
+     * number of parser threads, documents parsed at the same time
+     */
+    private int poolSize = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * parse requests waiting for a thread, rejected when full
+     */
+    private int queueCapacity = 32;
+
+    /**
+     * max time for one document
+     */
+    private Duration timeout = Duration.ofSeconds(60);
+
+    /**
+     * Retry-After sent with the 503 when the parse queue is full
+     */
+    private Duration busyRetryAfter = Duration.ofSeconds(5);
+
+    /**
+     * timed-out parses still running (Tika rarely stops on interrupt) that get a replacement
+     * thread; beyond this the pool shrinks until they end
+     */
+    private int maxAbandoned = 4;
+
+    /**
+     * parsed-text cache, keyed by file SHA-256
+     */
+    private Cache cache = new Cache();
+
+    /**
+     * page-parallel text extraction for large PDFs
+     */
+    private Pdf pdf = new Pdf();
+
+    @Data
+    public static class Cache {
+
+        private boolean enabled = true;
+
+        /**
+         * total chars kept in the local LRU tier
+         */
+        private long localMaxChars = 16 * 1024 * 1024;
+
+        /**
+         * ttl of the Redis index entry, refreshed on every hit
+         */
+        private Duration indexTtl = Duration.ofDays(30);
+    }
+
+    @Data
+    public static class Pdf {
+
+        private boolean parallelEnabled = true;
+
+        /**
+         * smaller files always go through the normal Tika path (no page count needed)
+         */
+        private DataSize minFileSize = DataSize.ofMegabytes(1);
+
+        /**
+         * documents with fewer pages are extracted by one worker, on the document already loaded for the page count
+         */
+        private int minPages = 64;
+
+        /**
+         * pages extracted by one fork-join task
+         */
+        private int pagesPerTask = 16;
+
+        /**
+         * fork-join pool size, shared by all documents parsed at the same time
+         */
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+    }
+}
@@ -1,17 +1,24 @@
 package interview.guide.common.config;
 
 import lombok.Data;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 
 import java.net.URI;
 
+/**
+ * S3 / RustFS clients, only when app.storage.type=s3 (the default)
+ */
 @Data
 @Configuration
+@ConditionalOnProperty(prefix = "app.storage", name = "type", havingValue = "s3", matchIfMissing = true)
 public class S3Config {
     private final StorageConfigProperties storageConfig;
 
@@ -29,5 +36,27 @@ public class S3Config {
                 .forcePathStyle(true)
                 .build();
     }
+
+    /**
+     * presigner for direct-to-storage uploads
+     * signs against presign-endpoint when set (the address clients can reach), otherwise endpoint
+     */
+    @Bean
+    public S3Presigner s3Presigner(){
+        AwsBasicCredentials credentials = AwsBasicCredentials.create(
+                storageConfig.getAccessKey(),
+                storageConfig.getSecretKey()
+        );
+        String endpoint = storageConfig.getPresignEndpoint() != null && !storageConfig.getPresignEndpoint().isBlank()
+                ? storageConfig.getPresignEndpoint()
+                : storageConfig.getEndpoint();
+
+        return S3Presigner.builder()
+                .endpointOverride(URI.create(endpoint))
+                .region(Region.of(storageConfig.getRegion()))
+                .credentialsProvider(StaticCredentialsProvider.create(credentials))
+                .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(true).build())
+                .build();
+    }
 }
 
@@ -3,18 +3,84 @@ package interview.guide.common.config;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
 
 /**
- * RustFS config
+ * storage config (RustFS / S3, or local disk)
  */
 @Data
 @Component
 @ConfigurationProperties(prefix = "app.storage")
 public class StorageConfigProperties {
 
+    /**
+     * storage backend: s3 (S3 / RustFS) or local (directory on local disk)
+     */
+    private String type = "s3";
+
     private String endpoint;
     private String accessKey;
     private String secretKey;
     private String bucket;
     private String region = "us-east-1";
+
+    /**
+     * endpoint put into presigned URLs, for when clients reach storage on another address
+     */
+    private String presignEndpoint;
+
+    /**
+     * presigned upload URL lifetime
+     */
+    private Duration presignExpiry = Duration.ofMinutes(15);
+
+    /**
+     * object metadata (size, content type, ETag) cache ttl
+     */
+    private Duration metadataCacheTtl = Duration.ofSeconds(60);
+
+    /**
+     * max cached object metadata entries
+     */
+    private int metadataCacheMaxEntries = 1024;
+
+    /**
+     * parallel transfer settings
+     */
+    private Transfer transfer = new Transfer();
+
+    /**
+     * local disk backend settings
+     */
+    private Local local = new Local();
+
+    @Data
+    public static class Transfer {
+
+        /**
+         * files at or above this size use multipart upload / ranged download
+         */
+        private DataSize multipartThreshold = DataSize.ofMegabytes(16);
+
+        /**
+         * part size, S3 requires at least 5MB (except the last part)
+         */
+        private DataSize partSize = DataSize.ofMegabytes(8);
+
+        /**
+         * parts transferred at the same time, peak memory of a download is about concurrency * partSize
+         */
+        private int concurrency = 4;
+    }
+
+    @Data
+    public static class Local {
+
+        /**
+         * root directory, object key = relative path under it
+         */
+        private String root = "data/storage";
+    }
 }
@@ -0,0 +1,244 @@
+package interview.guide.common.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Redis Stream worker config, one entry per stream (resume-analyze, kb-vectorize, upload-ingest, interview-evaluate)
+ * streams without an entry use {@link #defaults}
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.stream")
+public class StreamConfigProperties {
+
+    /**
+     * stable identity of this node, part of every consumer name so a restarted node finds its own
+     * pending messages again; defaults to the host name (pod name on k8s)
+     */
+    private String nodeId;
+
+    /**
+     * task queue backend: redis (Redis Streams, shared by all nodes) or journal
+     * (memory-mapped files in this JVM, single node only)
+     */
+    private String type = "redis";
+
+    /**
+     * journal backend settings
+     */
+    private Journal journal = new Journal();
+
+    /**
+     * allow DELETE /api/admin/streams/{name}/dead-letters without ids, i.e. dropping a whole
+     * dead-letter stream; the request must still name the stream key in confirm
+     */
+    private boolean deadLetterPurgeAllEnabled = false;
+
+    private Worker defaults = new Worker();
+
+    private Map<String, Worker> workers = new LinkedHashMap<>();
+
+    public String getNodeId() {
+        if (nodeId == null || nodeId.isBlank()) {
+            nodeId = hostname();
+        }
+        return nodeId;
+    }
+
+    /**
+     * settings of one stream worker
+     */
+    public Worker worker(String name) {
+        return workers.getOrDefault(name, defaults);
+    }
+
+    @Data
+    public static class Worker {
+
+        /**
+         * messages handled at the same time on one node (one virtual thread each),
+         * the initial limit when {@link #adaptive} is enabled
+         */
+        private int concurrency = 4;
+
+        private Adaptive adaptive = new Adaptive();
+
+        /**
+         * partitions of the bulk lane (imports / backfills), a user's bulk tasks always land in the
+         * same partition and partitions are served round-robin; 0 = no bulk lane, everything goes
+         * to the stream itself
+         */
+        private int bulkPartitions = 0;
+
+        /**
+         * interactive messages taken before the bulk lane gets a turn, so imports never starve
+         */
+        private int interactiveWeight = 8;
+
+        private Admission admission = new Admission();
+
+        /**
+         * max messages fetched by one XREADGROUP, never more than the free handler slots
+         */
+        private int batchSize = 10;
+
+        /**
+         * XREADGROUP block timeout
+         */
+        private Duration pollInterval = Duration.ofSeconds(1);
+
+        /**
+         * delayed retries before the task is dead-lettered and marked as failed
+         */
+        private int maxRetry = 3;
+
+        /**
+         * delay of the first retry, doubled for every further retry (with jitter)
+         */
+        private Duration retryBaseDelay = Duration.ofSeconds(5);
+
+        private Duration retryMaxDelay = Duration.ofMinutes(5);
+
+        /**
+         * approximate length of the dead-letter stream
+         */
+        private int deadLetterMaxLen = 10000;
+
+        /**
+         * handled messages are acked together (one XACK) and their status updates written
+         * together (one UPDATE per status) at this interval
+         */
+        private Duration ackFlushInterval = Duration.ofMillis(200);
+
+        /**
+         * approximate stream length, older messages are trimmed on XADD
+         */
+        private int maxLen = 1000;
+
+        /**
+         * pending messages of other consumers idle this long are claimed (XAUTOCLAIM),
+         * in-flight messages are renewed well before, so only crashed consumers lose them
+         */
+        private Duration claimIdle = Duration.ofSeconds(30);
+
+        /**
+         * how often the pending list is scanned for idle messages
+         */
+        private Duration recoveryInterval = Duration.ofSeconds(5);
+    }
+
+    /**
+     * AIMD in-flight limit driven by model call latency and rate-limit errors,
+     * see {@code AdaptiveConcurrencyLimit}
+     */
+    @Data
+    public static class Adaptive {
+
+        private boolean enabled = false;
+
+        private int minLimit = 1;
+
+        private int maxLimit = 16;
+
+        /**
+         * short-term latency above tolerance * long-term latency counts as overload
+         */
+        private double latencyTolerance = 2.0;
+
+        /**
+         * limit multiplier on overload
+         */
+        private double backoffRatio = 0.5;
+
+        /**
+         * min time between two decreases
+         */
+        private Duration cooldown = Duration.ofSeconds(10);
+    }
+
+    /**
+     * admission control of the uploads feeding a stream, see {@code QueueAdmissionService}
+     */
+    @Data
+    public static class Admission {
+
+        public enum Action {
+            /**
+             * 503 + Retry-After
+             */
+            REJECT,
+            /**
+             * accept on the bulk lane of the user, reject when that is full as well
+             */
+            DOWNGRADE
+        }
+
+        private boolean enabled = false;
+
+        /**
+         * SLO: projected queue wait of a new interactive task
+         */
+        private Duration maxWait = Duration.ofMinutes(5);
+
+        private Action action = Action.DOWNGRADE;
+
+        /**
+         * lower bound of the processing rate (tasks/s); the measured rate is only the arrival
+         * rate while the workers keep up, so it underestimates capacity on a short queue
+         */
+        private double minRate = 0.2;
+
+        /**
+         * a lane holding more than this share of maxLen takes no more tasks, XADD trimming
+         * would drop the oldest unprocessed ones
+         */
+        private double maxFill = 0.9;
+
+        /**
+         * how long a backlog / rate sample is reused
+         */
+        private Duration refreshInterval = Duration.ofSeconds(2);
+    }
+
+    @Data
+    public static class Journal {
+
+        /**
+         * one sub directory per queue: segment files and consumer group offsets
+         */
+        private String dir = "data/queue";
+
+        /**
+         * size of one memory-mapped segment file, a message must fit into one segment;
+         * a segment is deleted once every group has acked all of it
+         */
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+        /**
+         * force every append / offset change to disk (msync); without it a process crash loses
+         * nothing, an OS crash or power loss may lose the last writes
+         */
+        private boolean sync = false;
+    }
+
+    private static String hostname() {
+        String hostname = System.getenv("HOSTNAME");
+        if (hostname != null && !hostname.isBlank()) {
+            return hostname;
+        }
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "local";
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package interview.guide.common.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * upload pipeline config
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.upload")
+public class UploadConfigProperties {
+
+    /**
+     * ZIP / TAR bulk import of knowledge bases
+     */
+    private Archive archive = new Archive();
+
+    @Data
+    public static class Archive {
+
+        /**
+         * entries processed (type check, dedup, parse, store) at the same time
+         */
+        private int workers = 4;
+
+        /**
+         * archives imported at the same time
+         */
+        private int maxConcurrentImports = 2;
+
+        /**
+         * max files per archive, further entries are reported as failed
+         */
+        private int maxEntries = 1000;
+
+        /**
+         * max uncompressed size of one entry
+         */
+        private DataSize maxEntrySize = DataSize.ofMegabytes(50);
+
+        /**
+         * max uncompressed size of the whole archive (zip bomb guard)
+         */
+        private DataSize maxTotalSize = DataSize.ofGigabytes(1);
+
+        /**
+         * rows saved / vectorize tasks enqueued per batch
+         */
+        private int batchSize = 20;
+    }
+}
@@ -11,31 +11,67 @@ public final class AsyncTaskStreamConstants {
     public static final String FIELD_RETRY_COUNT = "retryCount";
 
     /**
-     * 文档内容字段
+     * 文档内容字段（旧消息内联全文，仅为兼容读取，新消息不再写入）
      */
     public static final String FIELD_CONTENT = "content";
 
-    // ========== 通用消费者配置 ==========
+    /**
+     * 内容引用：文件 SHA-256，全文只在解析缓存（Redis 索引 + 存储中的 gzip 文本）保存一份
+     */
+    public static final String FIELD_CONTENT_HASH = "contentHash";
+
+    /**
+     * 内容引用：原文件存储键，解析缓存未命中时从原文件重新解析
+     */
+    public static final String FIELD_STORAGE_KEY = "storageKey";
+
+    /**
+     * 原始文件名，仅用于重新解析时的日志；旧消息没有该字段，回退为存储键
+     */
+    public static final String FIELD_ORIGINAL_FILENAME = "originalFilename";
+
+    /**
+     * 延迟重试有序集合 Key 后缀（score 为到期时间），完整 Key 为 Stream Key + 后缀
+     */
+    public static final String RETRY_KEY_SUFFIX = ":retry";
+
+    /**
+     * 死信 Stream Key 后缀，重试耗尽的消息进入该 Stream
+     */
+    public static final String DEAD_LETTER_KEY_SUFFIX = ":dlq";
+
+    /**
+     * 批量（bulk / backfill）通道分区 Key 中缀，完整 Key 为 Stream Key + 中缀 + 分区号
+     * 交互通道仍使用 Stream Key 本身
+     */
+    public static final String BULK_LANE_KEY_INFIX = ":bulk:";
 
     /**
-     * 最大重试次数
+     * 提交用户字段，批量通道按用户哈希分区
      */
-    public static final int MAX_RETRY_COUNT = 3;
+    public static final String FIELD_USER_ID = "userId";
+
+    // ========== Stream Worker 名称（app.stream.workers.<name> 配置项） ==========
 
     /**
-     * 每次拉取的消息批次大小
+     * 简历分析 Worker
      */
-    public static final int BATCH_SIZE = 10;
+    public static final String RESUME_ANALYZE_WORKER = "resume-analyze";
 
     /**
-     * 消费者轮询间隔（毫秒）
+     * 知识库向量化 Worker
      */
-    public static final long POLL_INTERVAL_MS = 1000;
+    public static final String KB_VECTORIZE_WORKER = "kb-vectorize";
 
     /**
-     * Stream 最大长度（自动裁剪旧消息，防止无限增长）
+     * 面试评估 Worker
      */
-    public static final int STREAM_MAX_LEN = 1000;
+    public static final String INTERVIEW_EVALUATE_WORKER = "interview-evaluate";
+
+    /**
+     * 异步上传 Worker
+     */
+    public static final String UPLOAD_INGEST_WORKER = "upload-ingest";
 
     // ========== 知识库向量化 Stream 配置 ==========
 
@@ -102,4 +138,84 @@ public final class AsyncTaskStreamConstants {
      * 面试会话ID字段
      */
     public static final String FIELD_SESSION_ID = "sessionId";
+
+    // ========== 异步上传 Stream 配置 ==========
+
+    /**
+     * 异步上传 Stream Key 前缀，后接节点 ID
+     * spool 文件只在本节点磁盘上，所以每个节点消费自己的 Stream
+     */
+    public static final String UPLOAD_INGEST_STREAM_KEY_PREFIX = "upload:ingest:stream:";
+
+    /**
+     * 异步上传 Consumer Group 名称
+     */
+    public static final String UPLOAD_INGEST_GROUP_NAME = "ingest-group";
+
+    /**
+     * 异步上传 Consumer 名称前缀
+     */
+    public static final String UPLOAD_INGEST_CONSUMER_PREFIX = "ingest-consumer-";
+
+    /**
+     * 上传任务状态 Hash Key 前缀
+     */
+    public static final String UPLOAD_TASK_KEY_PREFIX = "upload:task:";
+
+    /**
+     * 已签发的预签名上传 Key 前缀（完成回调时校验）
+     */
+    public static final String UPLOAD_PRESIGNED_KEY_PREFIX = "upload:presigned:";
+
+    /**
+     * 上传任务状态保留时间（小时）
+     */
+    public static final long UPLOAD_TASK_TTL_HOURS = 24;
+
+    /**
+     * 压缩包批量导入进度 Hash Key 前缀
+     */
+    public static final String UPLOAD_ARCHIVE_KEY_PREFIX = "upload:archive:";
+
+    /**
+     * 同一文件（类型 + SHA-256）并发上传的分布式锁 Key 前缀
+     */
+    public static final String UPLOAD_FLIGHT_LOCK_PREFIX = "upload:flight:";
+
+    /**
+     * 等待同一文件的进行中上传完成的最长时间（秒），超时后不再等待
+     */
+    public static final long UPLOAD_FLIGHT_WAIT_SECONDS = 300;
+
+    /**
+     * 上传任务ID字段
+     */
+    public static final String FIELD_TASK_ID = "taskId";
+
+    /**
+     * 上传任务类型字段（resume / knowledgebase）
+     */
+    public static final String FIELD_TASK_TYPE = "type";
+
+    // ========== 任务状态事件（Pub/Sub + SSE） ==========
+
+    /**
+     * 任务状态事件频道，所有节点订阅，再推送给本节点的 SSE 客户端
+     */
+    public static final String TASK_EVENT_CHANNEL = "task:events";
+
+    /**
+     * 事件类型：知识库向量化
+     */
+    public static final String TASK_EVENT_KNOWLEDGE_BASE = "knowledgebase";
+
+    /**
+     * 事件类型：简历分析
+     */
+    public static final String TASK_EVENT_RESUME = "resume";
+
+    /**
+     * 事件类型：异步上传任务
+     */
+    public static final String TASK_EVENT_UPLOAD = "upload";
 }
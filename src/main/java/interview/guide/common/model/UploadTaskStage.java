@@ -0,0 +1,16 @@
+package interview.guide.common.model;
+
+/**
+ * stage of an async upload task
+ * (UPLOADED ->) SPOOLED -> PARSING -> STORING -> SAVING -> ENQUEUED, or FAILED
+ * UPLOADED: presigned upload finished, not read from storage yet
+ */
+public enum UploadTaskStage {
+        UPLOADED,
+        SPOOLED,
+        PARSING,
+        STORING,
+        SAVING,
+        ENQUEUED,
+        FAILED
+}
@@ -0,0 +1,47 @@
+package interview.guide.common.util;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * 当前请求的用户 ID
+ * TODO: 需要根据实际项目的认证框架进行实现，本项目未显示用户管理
+ */
+public final class CurrentUser {
+    private CurrentUser() {}
+
+    public static final String ANONYMOUS = "anonymous";
+
+    /**
+     * request attribute "userId", then the X-User-Id header; {@link #ANONYMOUS} outside a request
+     */
+    public static String id() {
+        ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return ANONYMOUS;
+        }
+
+        HttpServletRequest request = attributes.getRequest();
+
+        // 方式1: 从请求属性中获取（推荐）
+        Object userId = request.getAttribute("userId");
+        if (userId != null) {
+            return userId.toString();
+        }
+
+        // 方式2: 从请求头中获取
+        String header = request.getHeader("X-User-Id");
+        if (header != null && !header.isBlank()) {
+            return header;
+        }
+
+        // 方式3: 从 Session 中获取（如果使用 Session）
+        // userId = request.getSession().getAttribute("userId");
+
+        // 方式4: 从 JWT Token 中解析（如果使用 JWT）
+        // 需要集成具体的 JWT 工具类
+
+        return ANONYMOUS;
+    }
+}
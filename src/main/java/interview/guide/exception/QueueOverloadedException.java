@@ -0,0 +1,16 @@
+package interview.guide.exception;
+
+import lombok.Getter;
+
+/**
+ * the task queue can not take more work in time, answered with 503 + Retry-After
+ */
+@Getter
+public class QueueOverloadedException extends BusinessException {
+    private final long retryAfterSeconds;
+
+    public QueueOverloadedException(String message, long retryAfterSeconds) {
+        super(ErrorCode.QUEUE_OVERLOADED, message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
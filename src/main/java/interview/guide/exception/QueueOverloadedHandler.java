@@ -0,0 +1,22 @@
+package interview.guide.exception;
+
+import interview.guide.common.result.Result;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * load shedding: 503 with the computed Retry-After
+ */
+@RestControllerAdvice
+public class QueueOverloadedHandler {
+
+    @ExceptionHandler(QueueOverloadedException.class)
+    public ResponseEntity<Result<Void>> handle(QueueOverloadedException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(Result.error(e.getCode(), e.getMessage()));
+    }
+}
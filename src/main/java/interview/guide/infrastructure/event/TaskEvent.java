@@ -0,0 +1,56 @@
+package interview.guide.infrastructure.event;
+
+/**
+ * status transition / progress of a background task, published on
+ * {@code AsyncTaskStreamConstants.TASK_EVENT_CHANNEL} and pushed to SSE clients
+ *
+ * @param type      knowledgebase, resume or upload
+ * @param id        entity id or upload task id
+ * @param status    PENDING / PROCESSING / COMPLETED / FAILED
+ * @param stage     upload stage, null for other types
+ * @param error     failure reason
+ * @param done      progress: chunks vectorized so far, null for status events
+ * @param total     progress: chunks in total
+ * @param timestamp epoch millis
+ */
+public record TaskEvent(
+        String type,
+        String id,
+        String status,
+        String stage,
+        String error,
+        Integer done,
+        Integer total,
+        long timestamp
+) {
+
+    public static TaskEvent status(String type, Object id, Enum<?> status, String error) {
+        return new TaskEvent(type, String.valueOf(id), status.name(), null, error, null, null, System.currentTimeMillis());
+    }
+
+    public static TaskEvent stage(String type, Object id, Enum<?> status, Enum<?> stage, String error) {
+        return new TaskEvent(type, String.valueOf(id), status.name(), stage.name(), error, null, null, System.currentTimeMillis());
+    }
+
+    public static TaskEvent progress(String type, Object id, Enum<?> status, int done, int total) {
+        return new TaskEvent(type, String.valueOf(id), status.name(), null, null, done, total, System.currentTimeMillis());
+    }
+
+    /**
+     * progress events only carry counters, the status snapshot is not replaced by them
+     */
+    public boolean isProgress() {
+        return done != null;
+    }
+
+    /**
+     * subscription key, {@code type:id}
+     */
+    public String key() {
+        return key(type, id);
+    }
+
+    public static String key(String type, String id) {
+        return type + ":" + id;
+    }
+}
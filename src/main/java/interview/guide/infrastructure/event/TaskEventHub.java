@@ -0,0 +1,121 @@
+package interview.guide.infrastructure.event;
+
+import interview.guide.common.constant.AsyncTaskStreamConstants;
+import interview.guide.infrastructure.redis.RedisService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import tools.jackson.databind.ObjectMapper;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * fan-out of task events to the SSE clients of this node
+ *
+ * <p>every node subscribes once to the event channel; events go into one multicast sink and each
+ * client sees the events of the tasks it subscribed to. a client first gets the current status
+ * of its tasks ({@link TaskStatusSource}), then live events, plus a heartbeat comment so proxies
+ * keep the connection open. a slow client only drops its own events.</p>
+ */
+@Slf4j
+@Component
+public class TaskEventHub {
+
+    private static final Duration HEARTBEAT = Duration.ofSeconds(15);
+
+    private final RedisService redisService;
+    private final ObjectMapper objectMapper;
+    private final Map<String, TaskStatusSource> sources;
+    private final Sinks.Many<TaskEvent> sink = Sinks.many().multicast().directBestEffort();
+    private int listenerId = -1;
+
+    public TaskEventHub(RedisService redisService, ObjectMapper objectMapper, List<TaskStatusSource> sources) {
+        this.redisService = redisService;
+        this.objectMapper = objectMapper;
+        this.sources = sources.stream()
+                .collect(Collectors.toMap(TaskStatusSource::type, Function.identity()));
+    }
+
+    @PostConstruct
+    public void init() {
+        this.listenerId = redisService.subscribe(AsyncTaskStreamConstants.TASK_EVENT_CHANNEL, this::onMessage);
+        log.info("task event hub subscribed: channel={}, types={}", AsyncTaskStreamConstants.TASK_EVENT_CHANNEL, sources.keySet());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (listenerId >= 0) {
+            redisService.unsubscribe(AsyncTaskStreamConstants.TASK_EVENT_CHANNEL, listenerId);
+        }
+        sink.tryEmitComplete();
+    }
+
+    /**
+     * current status of the tasks, then their live events
+     *
+     * @param keys {@code type:id}, see {@link TaskEvent#key}
+     */
+    public Flux<ServerSentEvent<TaskEvent>> subscribe(Set<String> keys) {
+        // a live status event wins over a snapshot loaded before it, progress does not replace the status
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        Flux<TaskEvent> live = sink.asFlux()
+                .filter(event -> keys.contains(event.key()))
+                .doOnNext(event -> {
+                    if (!event.isProgress()) {
+                        seen.add(event.key());
+                    }
+                });
+        Flux<TaskEvent> snapshot = Flux.fromIterable(keys)
+                .flatMapIterable(key -> snapshot(key).stream().toList())
+                .filter(event -> !seen.contains(event.key()))
+                .subscribeOn(Schedulers.boundedElastic());
+        Flux<ServerSentEvent<TaskEvent>> heartbeat = Flux.interval(HEARTBEAT)
+                .map(tick -> ServerSentEvent.<TaskEvent>builder().comment("ping").build());
+
+        return Flux.merge(live, snapshot)
+                .map(event -> ServerSentEvent.builder(event)
+                        .event(event.isProgress() ? "progress" : "status")
+                        .build())
+                .mergeWith(heartbeat);
+    }
+
+    private Optional<TaskEvent> snapshot(String key) {
+        int separator = key.indexOf(':');
+        TaskStatusSource source = sources.get(key.substring(0, separator));
+        if (source == null) {
+            return Optional.empty();
+        }
+        try {
+            return source.current(key.substring(separator + 1));
+        } catch (Exception e) {
+            log.warn("load task status failed: {}, error={}", key, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Redisson event thread: parse and hand over, never block
+     */
+    private void onMessage(String message) {
+        TaskEvent event;
+        try {
+            event = objectMapper.readValue(message, TaskEvent.class);
+        } catch (Exception e) {
+            log.warn("invalid task event: {}", e.getMessage());
+            return;
+        }
+        // several event threads, the sink needs serialized emission
+        synchronized (sink) {
+            sink.tryEmitNext(event);
+        }
+    }
+}
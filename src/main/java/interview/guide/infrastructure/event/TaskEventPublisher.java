@@ -0,0 +1,29 @@
+package interview.guide.infrastructure.event;
+
+import interview.guide.common.constant.AsyncTaskStreamConstants;
+import interview.guide.infrastructure.redis.RedisService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.ObjectMapper;
+
+/**
+ * publish task events to every node (Redis pub/sub), best effort: a lost event only delays the
+ * client until its next reconnect snapshot, it never fails the task
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TaskEventPublisher {
+
+    private final RedisService redisService;
+    private final ObjectMapper objectMapper;
+
+    public void publish(TaskEvent event) {
+        try {
+            redisService.publish(AsyncTaskStreamConstants.TASK_EVENT_CHANNEL, objectMapper.writeValueAsString(event));
+        } catch (Exception e) {
+            log.warn("publish task event failed: {}, error={}", event.key(), e.getMessage());
+        }
+    }
+}
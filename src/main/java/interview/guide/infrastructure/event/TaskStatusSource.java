@@ -0,0 +1,17 @@
+package interview.guide.infrastructure.event;
+
+import java.util.Optional;
+
+/**
+ * current status of one task type, sent once when a client subscribes so it does not miss
+ * transitions that happened before the subscription
+ */
+public interface TaskStatusSource {
+
+    /**
+     * event type, e.g. knowledgebase
+     */
+    String type();
+
+    Optional<TaskEvent> current(String id);
+}
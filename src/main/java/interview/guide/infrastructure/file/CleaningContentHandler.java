@@ -0,0 +1,363 @@
+package interview.guide.infrastructure.file;
+
+import org.apache.tika.sax.ContentHandlerDecorator;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+
+/**
+ * streaming version of {@link TextCleaningService#cleanText(String)} as a SAX decorator
+ *
+ * <p>text events are cleaned segment by segment while Tika is still parsing, only cleaned text
+ * reaches the downstream handler. a segment is the blank and dropped lines before a line with
+ * content plus that line, memory held here is one segment buffer, the raw document text is never
+ * built as a whole.</p>
+ *
+ * <p>规则与 cleanText 相同，每个片段跑的就是 cleanText 的各层：</p>
+ * <ul>
+ *   <li>去除控制字符，\r\n / \r 统一为 \n</li>
+ *   <li>整行图片文件名、符号分隔线整行丢弃（连同它吸收的相邻空行）</li>
+ *   <li>行内图片链接、file: 路径去除</li>
+ *   <li>去除行尾空格，压缩连续空行，去除首尾空白</li>
+ * </ul>
+ *
+ * <p>a segment is only cut right before a line (after \r or \n) whose first part keeps content
+ * and is not a separator: no rule of cleanText reaches across such a point, so the output is the
+ * same as cleanText on the whole text. NEL, U+2028 and U+2029 end lines for the line
+ * rules like regex ^ and $ do, but are kept as they are and never start a segment.</p>
+ *
+ * <p>a segment that fills the buffer first drops the middle lines of its long blank runs, which
+ * changes nothing cleanText does (see {@link #compressBlankRuns()}), so any number of blank lines
+ * around dropped lines is handled exactly. only when that frees too little (more than
+ * {@link #MAX_LINE_LENGTH} chars of separator / image lines, or one line that long) the segment
+ * is flushed before the current line, or at its last whitespace, and the rules only match
+ * cleanText within that length.</p>
+ */
+public class CleaningContentHandler extends ContentHandlerDecorator {
+
+    static final int MAX_LINE_LENGTH = 8 * 1024;
+
+    /**
+     * a full segment is flushed when compressing its blank runs frees less than this
+     */
+    private static final int MIN_COMPRESSED = MAX_LINE_LENGTH / 8;
+
+    /**
+     * line ends kept at each end of a blank run, see {@link #compressBlankRuns()}
+     */
+    private static final int KEPT_LINE_ENDS = 2;
+
+    /**
+     * stands for the text around a flushed segment: not whitespace, not a line end, matches no rule
+     */
+    private static final char SENTINEL = 'x';
+
+    private final char[] segment = new char[MAX_LINE_LENGTH];
+    private int length;
+
+    /**
+     * start of the current line (after the last \r or \n) in the segment
+     */
+    private int lineStart;
+
+    /**
+     * the first part of the current line has been looked at, the segment may only be cut there once
+     */
+    private boolean lineChecked;
+    private boolean afterCr;
+
+    /**
+     * the segment starts in the middle of a line, part of it was flushed already
+     */
+    private boolean continued;
+
+    /**
+     * cleaned copy of the segment, with room for the sentinels
+     */
+    private final char[] work = new char[MAX_LINE_LENGTH + 2];
+
+    /**
+     * whitespace waiting for the next content, dropped at the end of the document
+     */
+    private final StringBuilder pendingWhitespace = new StringBuilder();
+    private boolean started;
+
+    /**
+     * @param downstream handler receiving the cleaned text, e.g. a WriteOutContentHandler with a write limit
+     */
+    public CleaningContentHandler(ContentHandler downstream) {
+        super(downstream);
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) throws SAXException {
+        for (int i = start, end = start + length; i < end; i++) {
+            char c = ch[i];
+            if (TextCleaningService.isControlChar(c)) {
+                continue;
+            }
+            if (afterCr) {
+                afterCr = false;
+                if (c == '\n') {
+                    // \r\n 是一个换行符
+                    append(c);
+                    startLine();
+                    continue;
+                }
+                startLine();
+            }
+            if (!lineChecked && TextCleaningService.isLineTerminator(c)) {
+                checkLine(c);
+            }
+            append(c);
+            if (c == '\r') {
+                afterCr = true;
+            } else if (c == '\n') {
+                startLine();
+            }
+        }
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+        characters(ch, start, length);
+    }
+
+    @Override
+    public void endDocument() throws SAXException {
+        int n = copyToWork(length);
+        n = TextCleaningService.removeImagesAndFileUrls(work, n);
+        n = TextCleaningService.removeSeparatorsAndFormat(work, n);
+        // 去除末尾空白：pendingWhitespace 不再输出
+        emit(continued ? 1 : 0, n);
+        length = 0;
+        super.endDocument();
+    }
+
+    private void startLine() {
+        lineStart = length;
+        lineChecked = false;
+    }
+
+    private void append(char c) throws SAXException {
+        if (length == segment.length) {
+            flushLongSegment();
+        }
+        segment[length++] = c;
+    }
+
+    /**
+     * the first part of the current line is complete: cut the segment before the line if it
+     * keeps content that stops every rule of the lines before
+     *
+     * @param terminator ends the first part, a file: link goes on over NEL, U+2028 and U+2029
+     */
+    private void checkLine(char terminator) throws SAXException {
+        lineChecked = true;
+        if (lineStart == 0) {
+            return;
+        }
+        int n = length - lineStart;
+        System.arraycopy(segment, lineStart, work, 0, n);
+        work[n++] = terminator;
+        n = TextCleaningService.removeImagesAndFileUrls(work, n);
+        if (n > 0 && work[n - 1] == terminator) {
+            n--;
+        }
+        if (n == 0 || TextCleaningService.separatorLineEnd(work, 0, n) == n) {
+            return;
+        }
+        for (int i = 0; i < n; i++) {
+            if (work[i] != ' ' && work[i] != '\t') {
+                flush(lineStart, true);
+                return;
+            }
+        }
+    }
+
+    /**
+     * segment buffer is full: flush the lines before the current one, or the current line up to
+     * its last whitespace so links are not cut in the middle
+     */
+    private void flushLongSegment() throws SAXException {
+        if (lineStart > 0) {
+            if (compressBlankRuns() < MIN_COMPRESSED) {
+                flush(lineStart, true);
+            }
+            return;
+        }
+        int split = length;
+        for (int i = length - 1; i > 0; i--) {
+            if (segment[i] == ' ' || segment[i] == '\t') {
+                split = i + 1;
+                break;
+            }
+        }
+        // no whitespace: cut the token, the sentinel could become part of a link
+        flush(split, split < length);
+        continued = true;
+        lineChecked = true;
+    }
+
+    /**
+     * drop the middle of every blank run (spaces, tabs, \r, \n) with more than 2 * KEPT_LINE_ENDS
+     * line ends, in place. cleanText sees no difference:
+     * <ul>
+     *   <li>a separator / image line ending in the run takes it up to its last line end, only the
+     *   last two line ends (and what is around them) decide what is left</li>
+     *   <li>a separator starting in the run takes it from the first line start on, decided by the
+     *   first line end</li>
+     *   <li>the format pass turns 3 or more line ends into one blank line, the indentation after
+     *   the last line end is kept</li>
+     * </ul>
+     * a run at the end of the segment may still grow, its last two line ends only move further on
+     *
+     * @return chars freed
+     */
+    private int compressBlankRuns() {
+        int o = 0;
+        int newLineStart = lineStart;
+        int i = 0;
+        while (i < length) {
+            int runEnd = i;
+            while (runEnd < length && isBlank(segment[runEnd])) {
+                runEnd++;
+            }
+            int headEnd = -1;
+            int tailStart = runEnd;
+            if (runEnd > i) {
+                int lineEnds = 0;
+                for (int k = i; k < runEnd; k++) {
+                    if (isLineEndStart(k)) {
+                        lineEnds++;
+                    }
+                }
+                if (lineEnds > 2 * KEPT_LINE_ENDS) {
+                    headEnd = afterLineEnds(i, KEPT_LINE_ENDS);
+                    tailStart = afterLineEnds(i, lineEnds - KEPT_LINE_ENDS);
+                    while (!isLineEndStart(tailStart)) {
+                        tailStart++;
+                    }
+                }
+            } else {
+                runEnd = i + 1;
+            }
+            for (int k = i; k < runEnd; k++) {
+                if (k == headEnd) {
+                    // \r + \n would become a single line end
+                    if (segment[k - 1] == '\r' && segment[tailStart] == '\n') {
+                        segment[o++] = ' ';
+                    }
+                    k = tailStart;
+                }
+                if (k == lineStart) {
+                    newLineStart = o;
+                }
+                segment[o++] = segment[k];
+            }
+            i = runEnd;
+        }
+        if (lineStart == length) {
+            newLineStart = o;
+        }
+        int freed = length - o;
+        length = o;
+        lineStart = newLineStart;
+        return freed;
+    }
+
+    private static boolean isBlank(char c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+    }
+
+    /**
+     * a line end starts here: \r, or \n not after \r
+     */
+    private boolean isLineEndStart(int index) {
+        char c = segment[index];
+        return c == '\r' || c == '\n' && (index == 0 || segment[index - 1] != '\r');
+    }
+
+    /**
+     * index right after the given number of line ends from start on (\r\n counts as one)
+     */
+    private int afterLineEnds(int start, int count) {
+        int i = start;
+        for (int seen = 0; seen < count; i++) {
+            if (isLineEndStart(i)) {
+                seen++;
+                if (segment[i] == '\r' && i + 1 < length && segment[i + 1] == '\n') {
+                    i++;
+                }
+            }
+        }
+        return i;
+    }
+
+    /**
+     * clean and emit segment[0, end), keep the rest as the start of the next segment
+     *
+     * @param followed end with the sentinel, the text goes on after end
+     */
+    private void flush(int end, boolean followed) throws SAXException {
+        int n = copyToWork(end);
+        if (followed) {
+            work[n++] = SENTINEL;
+        }
+        n = TextCleaningService.removeImagesAndFileUrls(work, n);
+        n = TextCleaningService.removeSeparatorsAndFormat(work, n);
+        emit(continued ? 1 : 0, followed ? n - 1 : n);
+
+        System.arraycopy(segment, end, segment, 0, length - end);
+        length -= end;
+        lineStart = Math.max(0, lineStart - end);
+        continued = false;
+    }
+
+    private int copyToWork(int end) {
+        int n = 0;
+        if (continued) {
+            work[n++] = SENTINEL;
+        }
+        System.arraycopy(segment, 0, work, n, end);
+        return n + end;
+    }
+
+    private void emit(int from, int to) throws SAXException {
+        int first = from;
+        while (first < to && Character.isWhitespace(work[first])) {
+            first++;
+        }
+        if (started) {
+            hold(from, first);
+        } else if (first < to) {
+            // 去除开头空白
+            started = true;
+        }
+        if (first == to) {
+            return;
+        }
+        int last = to;
+        while (Character.isWhitespace(work[last - 1])) {
+            last--;
+        }
+        if (!pendingWhitespace.isEmpty()) {
+            super.characters(pendingWhitespace.toString().toCharArray(), 0, pendingWhitespace.length());
+            pendingWhitespace.setLength(0);
+        }
+        super.characters(work, first, last - first);
+        hold(last, to);
+    }
+
+    private void hold(int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = work[i];
+            // 压缩连续空行：跨片段的空白也最多保留 2 个换行符（即一个空行）
+            int held = pendingWhitespace.length();
+            if (c == '\n' && held >= 2 && pendingWhitespace.charAt(held - 1) == '\n'
+                    && pendingWhitespace.charAt(held - 2) == '\n') {
+                continue;
+            }
+            pendingWhitespace.append(c);
+        }
+    }
+}
@@ -4,153 +4,160 @@ import interview.guide.exception.BusinessException;
 import interview.guide.exception.ErrorCode;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.tika.exception.TikaException;
-import org.apache.tika.extractor.EmbeddedDocumentExtractor;
+import org.apache.tika.io.TikaInputStream;
 import org.apache.tika.metadata.Metadata;
-import org.apache.tika.parser.AutoDetectParser;
-import org.apache.tika.parser.ParseContext;
-import org.apache.tika.parser.Parser;
-import org.apache.tika.parser.pdf.PDFParserConfig;
 import org.apache.tika.sax.BodyContentHandler;
+import org.apache.tika.sax.WriteOutContentHandler;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
 import org.xml.sax.SAXException;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 @Slf4j
 @Service
 public class DocumentParseService {
     private static final int MAX_TEXT_LENGTH = 5 * 1024 * 1024; // 5MB
-    private final TextCleaningService textCleaningService;
-
-    public DocumentParseService(TextCleaningService textCleaningService) {
-        this.textCleaningService = textCleaningService;
+    private final TikaParserEngine parserEngine;
+    private final ParsedTextCacheService parsedTextCache;
+    private final PdfPageParallelParser pdfParallelParser;
+
+    public DocumentParseService(TikaParserEngine parserEngine, ParsedTextCacheService parsedTextCache,
+                                PdfPageParallelParser pdfParallelParser) {
+        this.parserEngine = parserEngine;
+        this.parsedTextCache = parsedTextCache;
+        this.pdfParallelParser = pdfParallelParser;
     }
 
 
     /**
-     *  parse file, get text from file
+     *  parse ingested file, get text from file
+     *  the spool file is handed to Tika as a file-backed stream, no extra copy
+     *  known content (same fileHash) is served from {@link ParsedTextCacheService} without Tika
      *
-     * @param file uploaded file（PDF、DOCX、DOC、TXT、MD etc...）
+     * @param file ingested upload（PDF、DOCX、DOC、TXT、MD etc...）
      * @return text from parsing result
      */
-    public String parseContent(MultipartFile file) {
-        String fileName = file.getOriginalFilename();
+    public String parseContent(IngestedFile file) {
+        String fileName = file.originalFilename();
         log.info("start parsing file: {}", fileName);
 
         // file is empty
-        if (file.isEmpty() || file.getSize() == 0) {
+        if (file.isEmpty()) {
             log.warn("file is empty: {}", fileName);
             return "";
         }
 
-        try (InputStream inputStream = file.getInputStream()) {
-            String content = parseContent(inputStream);
-            String cleanedContent = textCleaningService.cleanText(content);
-            log.info("success，text length is: {} ", cleanedContent.length());
-            return cleanedContent;
-        } catch (IOException | TikaException | SAXException e) {
-            log.error("parsing failed: {}", e.getMessage(), e);
-            throw new BusinessException(ErrorCode.INTERNAL_ERROR, "parsing failed: " + e.getMessage());
-        }
+        return parsedTextCache.getOrParse(file.fileHash(), () -> {
+            try {
+                String cleanedContent = parseFile(file.path());
+                log.info("success，text length is: {} ", cleanedContent.length());
+                return cleanedContent;
+            } catch (IOException | TikaException | SAXException e) {
+                log.error("parsing failed: {}", e.getMessage(), e);
+                throw new BusinessException(ErrorCode.INTERNAL_ERROR, "parsing failed: " + e.getMessage());
+            }
+        });
     }
 
     /**
-     * parsing byte file
-     *
-     * @param fileBytes  file in bytes
-     * @param fileName origin file name
-     * @return text from parsing result
+     * parse a local file, PDFs from minFileSize by pages ({@link PdfPageParallelParser}), everything else with Tika
+     * both paths write through the same cleaning handler and length limit
      */
-    public String parseContent(byte[] fileBytes, String fileName) {
-        log.info("start parsing（from byte in file）: {}", fileName);
-
-        // file is empty
-        if (fileBytes == null || fileBytes.length == 0) {
-            log.warn("byte file is empty: {}", fileName);
-            return "";
+    private String parseFile(Path file) throws IOException, TikaException, SAXException {
+        WriteOutContentHandler sink = new WriteOutContentHandler(MAX_TEXT_LENGTH);
+        if (pdfParallelParser.parse(file, new CleaningContentHandler(sink))) {
+            return sink.toString();
         }
-
-        try (InputStream inputStream = new ByteArrayInputStream(fileBytes)) {
-            String content = parseContent(inputStream);
-            String cleanedContent = textCleaningService.cleanText(content);
-            log.info("success，text length is: {} word", cleanedContent.length());
-            return cleanedContent;
-        } catch (IOException | TikaException | SAXException e) {
-            log.error("parsing failed: {}", e.getMessage(), e);
-            throw new BusinessException(ErrorCode.INTERNAL_ERROR, "parsing failed: " + e.getMessage());
+        try (InputStream inputStream = TikaInputStream.get(file)) {
+            return parseContent(inputStream);
         }
     }
 
     /**
-     * parser：default Parser + Context setting
+     * parser：shared Parser + Context setting from {@link TikaParserEngine}
      *
      * custom setting：
      * 1. BodyContentHandler only handle the main part
      * 2. override EmbeddedDocumentExtractor，ignore image, add-on file
      * 3. PDFParserConfig does not parse image and comment
-     * 4. 显式指定 Parser 到 Context，增强健壮性
+     * 4. parse on the bounded parser pool with a per-document timeout
+     * 5. text is cleaned by {@link CleaningContentHandler} while parsing, only cleaned text is kept
      *
      * @param inputStream input stream
-     * @return parsed main part from input
+     * @return cleaned main part from input
      * @throws IOException     IO exception
      * @throws TikaException   Tika exception
      * @throws SAXException    SAX exception
      */
     private String parseContent(InputStream inputStream) throws IOException, TikaException, SAXException {
-        // 1. auto detect init
-        AutoDetectParser parser = new AutoDetectParser();
-
-        // 2. only handle text, max length is 5MB
-        BodyContentHandler handler = new BodyContentHandler(MAX_TEXT_LENGTH);
-
-        // 3. init meta data
-        Metadata metadata = new Metadata();
+        // 1. only handle text, cleaned text max length is 5MB
+        WriteOutContentHandler sink = new WriteOutContentHandler(MAX_TEXT_LENGTH);
+        BodyContentHandler handler = new BodyContentHandler(new CleaningContentHandler(sink));
 
-        // 4. parse conten
-        ParseContext context = new ParseContext();
+        // 2. parse with the pre-built parser and config
+        parserEngine.parse(inputStream, handler, new Metadata());
 
-        // 5. assign type to context
-        context.set(Parser.class, parser);
-
-        // 6. forbidden embedded doc (avoid image and temp doc path)
-        context.set(EmbeddedDocumentExtractor.class, new NoOpEmbeddedDocumentExtractor());
-
-        // 7. for PDF：ignore image，format content
-        PDFParserConfig pdfConfig = new PDFParserConfig();
-        pdfConfig.setExtractInlineImages(false);
-        pdfConfig.setSortByPosition(true); // sorted by x-axis/y-axis
-        context.set(PDFParserConfig.class, pdfConfig);
-
-        // 8. 执行解析
-        parser.parse(inputStream, handler, metadata, context);
-
-        // 9. 返回提取的文本内容
-        return handler.toString();
+        // 3. 返回清理后的文本内容
+        return sink.toString();
     }
 
     /**
      * parse file from download file from storage
+     * on a parsed-text cache hit neither the download nor Tika runs
      *
      * @param storageService  storageService
      * @param storageKey      storage key
      * @param originalFilename  origin name from the file
+     * @param fileHash        SHA-256 stored on the entity, null skips the cache
      * @return parsed text
      */
-    public String downloadAndParseContent(FileStorageService storageService, String storageKey, String originalFilename) {
-        try {
-            byte[] fileBytes = storageService.downloadFile(storageKey);
-            if (fileBytes == null || fileBytes.length == 0) {
-                throw new BusinessException(ErrorCode.INTERNAL_ERROR, "download failed");
+    public String downloadAndParseContent(FileStorageService storageService, String storageKey,
+                                          String originalFilename, String fileHash) {
+        return parsedTextCache.getOrParse(fileHash, () -> {
+            // local storage: Tika reads the stored file in place, no download
+            Path stored = storageService.localPath(storageKey).orElse(null);
+            if (stored != null) {
+                log.info("start parsing（from local storage）: {}", originalFilename);
+                try {
+                    return parseFile(stored);
+                } catch (Exception e) {
+                    log.error("parsing failed: storageKey={}, error={}", storageKey, e.getMessage(), e);
+                    throw new BusinessException(ErrorCode.INTERNAL_ERROR, "parsing failed" + e.getMessage());
+                }
             }
-            return parseContent(fileBytes, originalFilename);
-        } catch (BusinessException e) {
-            throw e;
-        } catch (Exception e) {
-            log.error("download and parsing failed: storageKey={}, error={}", storageKey, e.getMessage(), e);
-            throw new BusinessException(ErrorCode.INTERNAL_ERROR, "download and parsing failed" + e.getMessage());
+
+            Path downloaded = null;
+            try {
+                // parallel ranged download into a local file, Tika reads it as a file-backed stream
+                downloaded = Files.createTempFile("download-", ".tmp");
+                storageService.downloadToFile(storageKey, downloaded);
+                if (Files.size(downloaded) == 0) {
+                    throw new BusinessException(ErrorCode.INTERNAL_ERROR, "download failed");
+                }
+                log.info("start parsing（from storage）: {}", originalFilename);
+                return parseFile(downloaded);
+            } catch (BusinessException e) {
+                throw e;
+            } catch (Exception e) {
+                log.error("download and parsing failed: storageKey={}, error={}", storageKey, e.getMessage(), e);
+                throw new BusinessException(ErrorCode.INTERNAL_ERROR, "download and parsing failed" + e.getMessage());
+            } finally {
+                deleteQuietly(downloaded);
+            }
+        });
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("delete temp file failed: {} - {}", file, e.getMessage());
         }
     }
 }
@@ -0,0 +1,127 @@
+package interview.guide.infrastructure.file;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.InputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * streaming file download with Range and ETag support
+ *
+ * <ul>
+ *   <li>body is streamed from storage, the file is never held in heap</li>
+ *   <li>strong ETag = stored SHA-256, If-None-Match answers 304 without touching storage</li>
+ *   <li>single byte range (Range / If-Range) answers 206, unsatisfiable range 416,
+ *       multiple ranges fall back to the full file</li>
+ * </ul>
+ *
+ * size comes from the entity, so no HEAD is needed before streaming (only legacy rows without a size do one).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FileDownloadService {
+
+    private final FileStorageService storageService;
+
+    /**
+     * @param storageKey       storage key
+     * @param fileHash         SHA-256 of the file, used as ETag
+     * @param originalFilename file name for Content-Disposition
+     * @param contentType      stored content type (nullable)
+     * @param fileSize         file size in bytes from the entity, null falls back to stored metadata
+     * @param requestHeaders   request headers (Range, If-Range, If-None-Match)
+     */
+    public ResponseEntity<StreamingResponseBody> download(String storageKey, String fileHash, String originalFilename,
+                                                          String contentType, Long fileSize, HttpHeaders requestHeaders) {
+        String eTag = fileHash != null ? "\"" + fileHash + "\"" : null;
+
+        // 1. conditional request, answered without storage
+        if (eTag != null && matches(requestHeaders.getIfNoneMatch(), eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+
+        long size = fileSize != null ? fileSize : storageService.getFileSize(storageKey);
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        headers.setContentType(contentType != null ? MediaType.parseMediaType(contentType) : MediaType.APPLICATION_OCTET_STREAM);
+        headers.set(HttpHeaders.CONTENT_DISPOSITION, contentDisposition(originalFilename));
+        if (eTag != null) {
+            headers.setETag(eTag);
+        }
+
+        // 2. single range
+        List<HttpRange> ranges = rangesToServe(requestHeaders, eTag);
+        if (ranges.size() == 1) {
+            HttpRange range = ranges.getFirst();
+            long start;
+            long end;
+            try {
+                start = range.getRangeStart(size);
+                end = range.getRangeEnd(size);
+            } catch (IllegalArgumentException e) {
+                headers.set(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE).headers(headers).build();
+            }
+            if (start >= size) {
+                headers.set(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE).headers(headers).build();
+            }
+
+            headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+            headers.setContentLength(end - start + 1);
+            StreamingResponseBody body = out -> {
+                try (InputStream in = storageService.openRange(storageKey, start, end)) {
+                    in.transferTo(out);
+                }
+            };
+            return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT).headers(headers).body(body);
+        }
+
+        // 3. whole file, parallel ranged download straight into the response
+        headers.setContentLength(size);
+        StreamingResponseBody body = out -> storageService.download(storageKey, out);
+        return ResponseEntity.ok().headers(headers).body(body);
+    }
+
+    /**
+     * Range is ignored when If-Range does not match the current ETag, or when it is malformed
+     */
+    private static List<HttpRange> rangesToServe(HttpHeaders requestHeaders, String eTag) {
+        String ifRange = requestHeaders.getFirst(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.equals(eTag)) {
+            return List.of();
+        }
+        try {
+            return requestHeaders.getRange();
+        } catch (IllegalArgumentException e) {
+            log.debug("ignore malformed range: {}", requestHeaders.getFirst(HttpHeaders.RANGE));
+            return List.of();
+        }
+    }
+
+    private static boolean matches(List<String> ifNoneMatch, String eTag) {
+        for (String candidate : ifNoneMatch) {
+            if ("*".equals(candidate) || eTag.equals(candidate) || ("W/" + eTag).equals(candidate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String contentDisposition(String filename) {
+        String name = filename != null ? filename : "download";
+        String encodedFilename = URLEncoder.encode(name, StandardCharsets.UTF_8).replaceAll("\\+", "%20");
+        return "attachment; filename=\"" + encodedFilename + "\"; filename*=UTF-8''" + encodedFilename;
+    }
+}
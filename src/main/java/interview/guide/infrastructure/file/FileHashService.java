@@ -22,8 +22,8 @@ public class FileHashService {
      * @return
      */
     public String calculateHash(MultipartFile file){
-        try{
-            return calculateHash(file.getBytes());
+        try (InputStream inputStream = file.getInputStream()) {
+            return calculateHash(inputStream);
         } catch (IOException e) {
             log.error("reading file failed: {}", e.getMessage());
             throw new BusinessException(ErrorCode.INTERNAL_ERROR, "calculate hash failed");
@@ -70,6 +70,26 @@ public class FileHashService {
     }
 
 
+    /**
+     * new digest instance, for callers that hash while reading (single pass)
+     */
+    public MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            log.error("un-supported algo: {}", e.getMessage());
+            throw new BusinessException(ErrorCode.INTERNAL_ERROR, "calculate hash failed");
+        }
+    }
+
+    /**
+     * digest result to hex string
+     */
+    public String toHex(byte[] hashBytes) {
+        return bytesToHex(hashBytes);
+    }
+
+
     private String bytesToHex(byte[] bytes){
         StringBuilder result = new StringBuilder(bytes.length * 2);
         for(byte b: bytes){
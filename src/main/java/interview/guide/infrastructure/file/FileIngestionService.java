@@ -0,0 +1,103 @@
+package interview.guide.infrastructure.file;
+
+import interview.guide.exception.BusinessException;
+import interview.guide.exception.ErrorCode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+
+/**
+ * single pass upload ingestion
+ *
+ * <p>the upload stream is read exactly once, every buffer is fanned out to</p>
+ * <ul>
+ *   <li>SHA-256 digest (dedup key)</li>
+ *   <li>head buffer for Tika MIME sniffing</li>
+ *   <li>local spool file, later streamed to the Tika parser and the storage writer</li>
+ * </ul>
+ * <p>no byte[] copy of the whole file is kept on the heap</p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FileIngestionService {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * bytes kept for MIME sniffing, enough for Tika magic + zip container detection
+     */
+    private static final int SNIFF_HEAD_SIZE = 64 * 1024;
+
+    private static final String SPOOL_PREFIX = "ingest-";
+
+    private final FileHashService fileHashService;
+    private final ContentTypeDetectionService contentTypeDetectionService;
+
+    /**
+     * read the upload once: hash + sniff + spool
+     *
+     * @param file uploaded file
+     * @return ingested file, caller must close it to delete the spool file
+     */
+    public IngestedFile ingest(MultipartFile file) {
+        String fileName = file.getOriginalFilename();
+        try (InputStream inputStream = file.getInputStream()) {
+            return ingest(inputStream, fileName, file.getContentType());
+        } catch (IOException e) {
+            log.error("reading upload file failed: {} - {}", fileName, e.getMessage(), e);
+            throw new BusinessException(ErrorCode.INTERNAL_ERROR, "reading file is failed");
+        }
+    }
+
+    /**
+     * read a stream once: hash + sniff + spool
+     *
+     * @param inputStream source stream, not closed here
+     * @param fileName    origin file name
+     * @param contentType declared content type (nullable)
+     * @return ingested file, caller must close it to delete the spool file
+     */
+    public IngestedFile ingest(InputStream inputStream, String fileName, String contentType) throws IOException {
+        Path spoolFile = Files.createTempFile(SPOOL_PREFIX, ".upload");
+        try {
+            MessageDigest digest = fileHashService.newDigest();
+            byte[] head = new byte[SNIFF_HEAD_SIZE];
+            int headLength = 0;
+            long size = 0;
+
+            try (OutputStream out = Files.newOutputStream(spoolFile)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int bytesRead;
+                while ((bytesRead = inputStream.read(buffer)) != -1) {
+                    digest.update(buffer, 0, bytesRead);
+                    if (headLength < head.length) {
+                        int copy = Math.min(bytesRead, head.length - headLength);
+                        System.arraycopy(buffer, 0, head, headLength, copy);
+                        headLength += copy;
+                    }
+                    out.write(buffer, 0, bytesRead);
+                    size += bytesRead;
+                }
+            }
+
+            String detectedContentType = contentTypeDetectionService.detectContentType(
+                    new ByteArrayInputStream(head, 0, headLength), fileName);
+            String fileHash = fileHashService.toHex(digest.digest());
+
+            log.debug("file ingested: {}, size={}, type={}, hash={}", fileName, size, detectedContentType, fileHash);
+            return new IngestedFile(fileName, contentType, detectedContentType, size, fileHash, spoolFile);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(spoolFile);
+            throw e;
+        }
+    }
+}
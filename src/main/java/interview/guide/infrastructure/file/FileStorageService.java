@@ -1,34 +1,46 @@
 package interview.guide.infrastructure.file;
 
-import interview.guide.common.config.S3Config;
 import interview.guide.common.config.StorageConfigProperties;
 import interview.guide.exception.BusinessException;
 import interview.guide.exception.ErrorCode;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
-import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.*;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Optional;
 import java.util.UUID;
 
+/**
+ * file storage facade: key layout, metadata cache, metrics and error mapping
+ * the bytes live in the configured {@link StorageBackend} (S3 / RustFS or local disk)
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class FileStorageService {
-    private final S3Client s3Client;
+    private final StorageBackend backend;
     private final StorageConfigProperties storageConfig;
+    private final StorageMetrics metrics;
+
+    /**
+     * key -> metadata, LRU, only existing objects are cached
+     */
+    private final LinkedHashMap<String, CachedMetadata> metadataCache = new LinkedHashMap<>(64, 0.75f, true);
 
 
     /**
     * upload resume file
     */
-    public String uploadResume(MultipartFile file){
+    public String uploadResume(IngestedFile file){
         return uploadFile(file, "resume");
     }
 
@@ -37,21 +49,7 @@ public class FileStorageService {
      * download resume file
      */
     public byte[] downloadResume(String fileKey){
-        // check file exists
-        if (!fileExists(fileKey)) {
-            throw new BusinessException(ErrorCode.STORAGE_DOWNLOAD_FAILED, "文件不存在: " + fileKey);
-        }
-
-        try {
-            GetObjectRequest getRequest = GetObjectRequest.builder()
-                    .bucket(storageConfig.getBucket())
-                    .key(fileKey)
-                    .build();
-            return s3Client.getObjectAsBytes(getRequest).asByteArray();
-        } catch (S3Exception e) {
-            log.error("下载文件失败: {} - {}", fileKey, e.getMessage(), e);
-            throw new BusinessException(ErrorCode.STORAGE_DOWNLOAD_FAILED, "文件下载失败: " + e.getMessage());
-        }
+        return downloadBytes(fileKey);
     }
 
     /**
@@ -64,7 +62,7 @@ public class FileStorageService {
     /**
      * upload knowledge
      */
-    public String uploadKnowledgeBase(MultipartFile file){
+    public String uploadKnowledgeBase(IngestedFile file){
         return uploadFile(file, "knowledgebase");
     }
 
@@ -81,137 +79,243 @@ public class FileStorageService {
      * get file url
      */
     public String getFileUrl(String fileKey){
-        return String.format("%s/%s/%s", storageConfig.getEndpoint(), storageConfig.getBucket(), fileKey);
+        return backend.getUrl(fileKey);
     }
 
     /**
      * download file
      */
     public byte[] downloadFile(String fileKey){
-       if(!fileExists(fileKey)){
-           throw new BusinessException(ErrorCode.STORAGE_DOWNLOAD_FAILED, "file is not found" + fileKey);
-       }
-       try{
-           GetObjectRequest getRequest = GetObjectRequest.builder()
-                   .bucket(storageConfig.getBucket())
-                   .key(fileKey)
-                   .build();
-           return s3Client.getObjectAsBytes(getRequest).asByteArray();
-       } catch (S3Exception e){
-           log.error("download failed: {} - {}", fileKey, e.getMessage(), e);
-           throw new BusinessException(ErrorCode.STORAGE_DOWNLOAD_FAILED, "file is not found" + e.getMessage());
-       }
+       return downloadBytes(fileKey);
+    }
+
+    /**
+     * stream a stored file into the sink (parallel ranged GETs / transferTo), no byte[] of the whole file
+     */
+    public void download(String fileKey, OutputStream out){
+        try {
+            StoredObjectMetadata metadata = metrics.time("download", () -> backend.download(fileKey, out));
+            cacheMetadata(fileKey, metadata);
+        } catch (StoredObjectNotFoundException e) {
+            throw new BusinessException(ErrorCode.STORAGE_DOWNLOAD_FAILED, "file is not found" + fileKey);
+        } catch (IOException e) {
+            log.error("download failed: {} - {}", fileKey, e.getMessage(), e);
+            throw new BusinessException(ErrorCode.STORAGE_DOWNLOAD_FAILED, "file download failed");
+        }
     }
 
     /**
-     * upload file
+     * download a stored file to a local file
      */
-    public String uploadFile(MultipartFile file, String prefix){
-        String originFilename = file.getOriginalFilename();
+    public void downloadToFile(String fileKey, Path target){
+        try {
+            metrics.time("download", () -> {
+                backend.downloadToFile(fileKey, target);
+                return null;
+            });
+        } catch (StoredObjectNotFoundException e) {
+            throw new BusinessException(ErrorCode.STORAGE_DOWNLOAD_FAILED, "file is not found" + fileKey);
+        } catch (IOException e) {
+            log.error("write download failed: {} - {}", fileKey, e.getMessage(), e);
+            throw new BusinessException(ErrorCode.STORAGE_DOWNLOAD_FAILED, "file download failed");
+        }
+    }
+
+    /**
+     * the stored file itself when the backend keeps objects on local disk (read in place, no download)
+     */
+    public Optional<Path> localPath(String fileKey){
+        return backend.localPath(fileKey);
+    }
+
+    private byte[] downloadBytes(String fileKey){
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        download(fileKey, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * open a stream on a stored file, caller must close it
+     */
+    public InputStream openStream(String fileKey){
+        try{
+            return backend.openStream(fileKey);
+        } catch (StoredObjectNotFoundException e){
+            throw new BusinessException(ErrorCode.STORAGE_DOWNLOAD_FAILED, "file is not found" + fileKey);
+        } catch (IOException e){
+            log.error("open stream failed: {} - {}", fileKey, e.getMessage(), e);
+            throw new BusinessException(ErrorCode.STORAGE_DOWNLOAD_FAILED, "file download failed");
+        }
+    }
+
+    /**
+     * open a stream on bytes [start, end] (inclusive) of a stored file, one ranged read, caller must close it
+     */
+    public InputStream openRange(String fileKey, long start, long end){
+        try{
+            return backend.openRange(fileKey, start, end);
+        } catch (StoredObjectNotFoundException e){
+            throw new BusinessException(ErrorCode.STORAGE_DOWNLOAD_FAILED, "file is not found" + fileKey);
+        } catch (IOException e){
+            log.error("open range failed: {} [{}-{}] - {}", fileKey, start, end, e.getMessage(), e);
+            throw new BusinessException(ErrorCode.STORAGE_DOWNLOAD_FAILED, "file download failed");
+        }
+    }
+
+    /**
+     * presigned PUT, the client uploads straight to storage
+     */
+    public PresignedUpload presignUpload(String prefix, String originalFilename, String contentType, long size){
+        String fileKey = generateFileKey(originalFilename, prefix);
+        PresignedUpload presigned = backend.presignUpload(fileKey, contentType, size);
+        log.info("presigned upload issued: {} - {}", originalFilename, fileKey);
+        return presigned;
+    }
+
+    /**
+     * upload file, streamed from the ingestion spool file
+     * see {@link StorageTransferEngine} for multipart / part size / concurrency on S3
+     */
+    public String uploadFile(IngestedFile file, String prefix){
+        String originFilename = file.originalFilename();
         String fileKey = generateFileKey(originFilename, prefix);
 
         try{
-            PutObjectRequest putRequest = PutObjectRequest.builder()
-                    .bucket(storageConfig.getBucket())
-                    .key(fileKey)
-                    .contentType(file.getContentType())
-                    .contentLength(file.getSize())
-                    .build();
-            s3Client.putObject(putRequest, RequestBody.fromInputStream(file.getInputStream(), file.getSize()));
+            metrics.time("upload", () -> {
+                backend.upload(fileKey, file.path(), file.size(), file.contentType());
+                return null;
+            });
             log.info("file upload successfully: {} - {} ", originFilename, fileKey);
             return fileKey;
-        } catch (IOException e) {
-            log.error("reading upload file is failed: {}", e.getMessage(), e);
-            throw new BusinessException(ErrorCode.STORAGE_UPLOAD_FAILED, "reading file is failed");
-        } catch(S3Exception e){
-            log.error("upload to RustFS is failed", e.getMessage(), e);
+        } catch(IOException e){
+            log.error("upload to storage is failed: {}", e.getMessage(), e);
             throw new BusinessException(ErrorCode.STORAGE_UPLOAD_FAILED, "upload file is failed");
         }
     }
 
 
     /**
-     * fileExists
+     * upload bytes under a fixed key (derived data, e.g. parsed text)
+     */
+    public void uploadBytes(String fileKey, byte[] bytes, String contentType){
+        try{
+            backend.uploadBytes(fileKey, bytes, contentType);
+            evictMetadata(fileKey);
+        } catch(IOException e){
+            log.error("upload bytes failed: {} - {}", fileKey, e.getMessage(), e);
+            throw new BusinessException(ErrorCode.STORAGE_UPLOAD_FAILED, "upload file is failed");
+        }
+    }
+
+
+    /**
+     * fileExists, answered from the metadata cache when possible
      */
     public boolean fileExists(String fileKey){
         try{
-            HeadObjectRequest headRequest = HeadObjectRequest.builder()
-                    .bucket(storageConfig.getBucket())
-                    .key(fileKey)
-                    .build();
-            s3Client.headObject(headRequest);
+            getMetadata(fileKey);
             return true;
-        } catch (S3Exception e) {
+        } catch (StoredObjectNotFoundException e) {
+            return false;
+        } catch (IOException e) {
             log.warn("fileExist error {} - {}", fileKey, e.getMessage());
             return false;
         }
     }
 
     /**
-     * get file size
+     * get file size, answered from the metadata cache when possible
      */
     public long getFileSize(String fileKey){
         try{
-            HeadObjectRequest headRequest = HeadObjectRequest.builder()
-                    .bucket(storageConfig.getBucket())
-                    .key(fileKey)
-                    .build();
-            return s3Client.headObject(headRequest).contentLength();
-        } catch (S3Exception e) {
+            return getMetadata(fileKey).size();
+        } catch (IOException e) {
             log.error("get file size fail: {} - {}", fileKey, e.getMessage(), e);
             throw new BusinessException(ErrorCode.STORAGE_DOWNLOAD_FAILED, "get file size fail");
         }
     }
 
+    /**
+     * size / content type / ETag, backend stat (HEAD) only on a cache miss
+     *
+     * @throws StoredObjectNotFoundException when the object does not exist (not cached)
+     */
+    public StoredObjectMetadata getMetadata(String fileKey) throws IOException {
+        StoredObjectMetadata cached = getCachedMetadata(fileKey);
+        metrics.metadataCache(cached != null);
+        if (cached != null) {
+            return cached;
+        }
+
+        StoredObjectMetadata metadata = metrics.time("metadata", () -> backend.stat(fileKey));
+        cacheMetadata(fileKey, metadata);
+        return metadata;
+    }
+
     /**
      * delete file
+     * delete is idempotent (missing key is not an error), so no existence check first
      */
     public void deleteFile(String fileKey){
        if(fileKey == null || fileKey.isEmpty()){
            log.debug("file key is empty");
            return;
        }
-       if(!fileExists(fileKey)){
-           log.debug("file not exist, ignore");
-           return;
-       }
 
        try {
-           DeleteObjectRequest deleteRequest = DeleteObjectRequest.builder()
-                   .bucket(storageConfig.getBucket())
-                   .key(fileKey)
-                   .build();
-           s3Client.deleteObject(deleteRequest);
+           metrics.time("delete", () -> {
+               backend.delete(fileKey);
+               return null;
+           });
            log.info("delete success");
-       } catch (S3Exception e) {
+       } catch (IOException e) {
            log.error("delete file fail: {} - {}", fileKey, e.getMessage(), e);
            throw new BusinessException(ErrorCode.STORAGE_DELETE_FAILED, "get file size fail");
+       } finally {
+           evictMetadata(fileKey);
        }
     }
 
 
     /**
-     *  check if bucket exists
+     *  check if bucket (or local root) exists, create it otherwise
      */
     public void checkBucketExists(){
-        try{
-            HeadBucketRequest headRequest = HeadBucketRequest.builder()
-                    .bucket(storageConfig.getBucket())
-                    .build();
-            s3Client.headBucket(headRequest);
-            log.info("bucket exist: {}", storageConfig.getBucket());
-        } catch(NoSuchBucketException e){
-            log.info("存储桶不存在，正在创建: {}", storageConfig.getBucket());
-            CreateBucketRequest createRequest = CreateBucketRequest.builder()
-                    .bucket(storageConfig.getBucket())
-                    .build();
-            s3Client.createBucket(createRequest);
-            log.info("存储桶创建成功: {}", storageConfig.getBucket());
-        } catch(S3Exception e){
-            log.error("create bucket fail: {}", e.getMessage(),e);
+        backend.checkReady();
+    }
+
+    // ========== metadata cache ==========
+
+    private synchronized StoredObjectMetadata getCachedMetadata(String fileKey) {
+        CachedMetadata entry = metadataCache.get(fileKey);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt() < System.currentTimeMillis()) {
+            metadataCache.remove(fileKey);
+            return null;
+        }
+        return entry.metadata();
+    }
+
+    private synchronized void cacheMetadata(String fileKey, StoredObjectMetadata metadata) {
+        long expiresAt = System.currentTimeMillis() + storageConfig.getMetadataCacheTtl().toMillis();
+        metadataCache.put(fileKey, new CachedMetadata(metadata, expiresAt));
+        // evict least recently used
+        Iterator<String> it = metadataCache.keySet().iterator();
+        while (metadataCache.size() > storageConfig.getMetadataCacheMaxEntries() && it.hasNext()) {
+            it.next();
+            it.remove();
         }
     }
 
+    private synchronized void evictMetadata(String fileKey) {
+        metadataCache.remove(fileKey);
+    }
+
+    private record CachedMetadata(StoredObjectMetadata metadata, long expiresAt) {
+    }
+
     /**
      * generate file key
      */
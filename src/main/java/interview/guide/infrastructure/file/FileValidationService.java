@@ -14,12 +14,19 @@ import java.util.function.Predicate;
 public class FileValidationService {
 
     public void validateFile(MultipartFile file, long maxSizeBytes, String fileTypeName){
-        if(file.isEmpty()){
+        validateSize(file.getSize(), maxSizeBytes, fileTypeName);
+    }
+
+    /**
+     * size check without the bytes, e.g. declared size of a presigned upload
+     */
+    public void validateSize(long size, long maxSizeBytes, String fileTypeName){
+        if(size <= 0){
             throw new BusinessException(ErrorCode.BAD_REQUEST,
                     String.format("please select file %s", fileTypeName)
                     );
         }
-        if(file.getSize() > maxSizeBytes){
+        if(size > maxSizeBytes){
             throw new BusinessException(ErrorCode.BAD_REQUEST, "exceed max size");
         }
     }
@@ -0,0 +1,51 @@
+package interview.guide.infrastructure.file;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * upload that has been read once by {@link FileIngestionService}
+ * hash and MIME type are already known, bytes live in a local spool file
+ * that is deleted on close
+ *
+ * @param originalFilename    file name from the client
+ * @param contentType         Content-Type header from the client
+ * @param detectedContentType MIME type sniffed by Tika
+ * @param size                file size in bytes
+ * @param fileHash            SHA-256 hex string
+ * @param path                spool file
+ */
+@Slf4j
+public record IngestedFile(
+        String originalFilename,
+        String contentType,
+        String detectedContentType,
+        long size,
+        String fileHash,
+        Path path
+) implements AutoCloseable {
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * open a new stream on the spool file
+     */
+    public InputStream openStream() throws IOException {
+        return Files.newInputStream(path);
+    }
+
+    @Override
+    public void close() {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("delete spool file failed: {} - {}", path, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package interview.guide.infrastructure.file;
+
+import interview.guide.common.config.StorageConfigProperties;
+import interview.guide.exception.BusinessException;
+import interview.guide.exception.ErrorCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Optional;
+
+/**
+ * local disk storage backend (app.storage.type=local), for single-node deployments and test rigs
+ *
+ * <p>an object is the file root/key. writes go to a temp file in the same directory and are
+ * renamed into place, so readers never see a partial object. reads avoid user-space copies:
+ * downloads use FileChannel.transferTo, parsing reads the stored file in place ({@link #localPath}).</p>
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "app.storage", name = "type", havingValue = "local")
+public class LocalStorageBackend implements StorageBackend {
+
+    private final Path root;
+
+    public LocalStorageBackend(StorageConfigProperties storageConfig) {
+        this.root = Path.of(storageConfig.getLocal().getRoot()).toAbsolutePath().normalize();
+    }
+
+    @Override
+    public void upload(String fileKey, Path file, long size, String contentType) throws IOException {
+        Path target = resolve(fileKey);
+        Path temp = createTemp(target);
+        try {
+            // kernel-side copy of the spool file
+            Files.copy(file, temp, StandardCopyOption.REPLACE_EXISTING);
+            moveIntoPlace(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public void uploadBytes(String fileKey, byte[] bytes, String contentType) throws IOException {
+        Path target = resolve(fileKey);
+        Path temp = createTemp(target);
+        try {
+            Files.write(temp, bytes);
+            moveIntoPlace(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public StoredObjectMetadata download(String fileKey, OutputStream out) throws IOException {
+        Path path = resolve(fileKey);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            // file sink: file-to-file transfer in the kernel, otherwise straight from the page cache to the sink
+            WritableByteChannel target = out instanceof FileOutputStream fileOut
+                    ? fileOut.getChannel()
+                    : Channels.newChannel(out);
+            long position = 0;
+            while (position < size) {
+                position += channel.transferTo(position, size - position, target);
+            }
+            return metadata(Files.readAttributes(path, BasicFileAttributes.class));
+        } catch (NoSuchFileException e) {
+            throw new StoredObjectNotFoundException(fileKey);
+        }
+    }
+
+    @Override
+    public void downloadToFile(String fileKey, Path target) throws IOException {
+        try {
+            Files.copy(resolve(fileKey), target, StandardCopyOption.REPLACE_EXISTING);
+        } catch (NoSuchFileException e) {
+            throw new StoredObjectNotFoundException(fileKey);
+        }
+    }
+
+    @Override
+    public InputStream openStream(String fileKey) throws IOException {
+        try {
+            return Files.newInputStream(resolve(fileKey));
+        } catch (NoSuchFileException e) {
+            throw new StoredObjectNotFoundException(fileKey);
+        }
+    }
+
+    @Override
+    public InputStream openRange(String fileKey, long start, long end) throws IOException {
+        try {
+            return new FileRangeInputStream(resolve(fileKey), start, end - start + 1);
+        } catch (NoSuchFileException e) {
+            throw new StoredObjectNotFoundException(fileKey);
+        }
+    }
+
+    @Override
+    public StoredObjectMetadata stat(String fileKey) throws IOException {
+        Path path = resolve(fileKey);
+        try {
+            return metadata(Files.readAttributes(path, BasicFileAttributes.class));
+        } catch (NoSuchFileException e) {
+            throw new StoredObjectNotFoundException(fileKey);
+        }
+    }
+
+    @Override
+    public void delete(String fileKey) throws IOException {
+        Files.deleteIfExists(resolve(fileKey));
+    }
+
+    @Override
+    public PresignedUpload presignUpload(String fileKey, String contentType, long size) {
+        throw new BusinessException(ErrorCode.BAD_REQUEST, "presigned upload is not supported by local storage");
+    }
+
+    @Override
+    public String getUrl(String fileKey) {
+        return resolveUnchecked(fileKey).toUri().toString();
+    }
+
+    @Override
+    public void checkReady() {
+        try {
+            Files.createDirectories(root);
+            log.info("local storage root: {}", root);
+        } catch (IOException e) {
+            log.error("create local storage root fail: {} - {}", root, e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Optional<Path> localPath(String fileKey) {
+        Path path = resolveUnchecked(fileKey);
+        return Files.isRegularFile(path) ? Optional.of(path) : Optional.empty();
+    }
+
+    /**
+     * key -> file under root, keys escaping the root are rejected
+     */
+    private Path resolve(String fileKey) throws IOException {
+        Path path = root.resolve(fileKey).normalize();
+        if (!path.startsWith(root) || path.equals(root)) {
+            throw new IOException("invalid storage key: " + fileKey);
+        }
+        return path;
+    }
+
+    private Path resolveUnchecked(String fileKey) {
+        try {
+            return resolve(fileKey);
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    private static Path createTemp(Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        return Files.createTempFile(target.getParent(), ".upload-", ".tmp");
+    }
+
+    private static void moveIntoPlace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * no stored content type on disk; ETag from modification time + size, changes on every overwrite
+     */
+    private static StoredObjectMetadata metadata(BasicFileAttributes attributes) {
+        String eTag = "\"" + Long.toHexString(attributes.lastModifiedTime().toMillis()) + "-"
+                + Long.toHexString(attributes.size()) + "\"";
+        return new StoredObjectMetadata(attributes.size(), null, eTag);
+    }
+}
@@ -0,0 +1,195 @@
+package interview.guide.infrastructure.file;
+
+import interview.guide.common.config.ParseConfigProperties;
+import interview.guide.infrastructure.redis.RedisService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * content-addressed cache of parsed text, keyed by the file SHA-256
+ *
+ * <p>same bytes always give the same text, so a known file never needs download + Tika again.</p>
+ * <ol>
+ *   <li>local LRU, bounded by total chars</li>
+ *   <li>Redis index: hash -> storage key of the blob</li>
+ *   <li>gzip blob in the bucket under parsed-text/</li>
+ * </ol>
+ *
+ * <p>cache failures are logged and treated as a miss, they never fail the caller.</p>
+ *
+ * <p>blob lifetime: a blob belongs to the entity with that file hash (fileHash is unique per
+ * table) and is removed with it through {@link #evict}. an index entry that expires only drops
+ * the Redis side, the blob is overwritten by the next put of the same file. after a
+ * {@link #VERSION} bump nothing reads parsed-text/{old version}/ any more and the old index keys
+ * expire with indexTtl; delete the old prefix once (e.g. {@code mc rm --recursive --force
+ * <bucket>/parsed-text/v1/}) after the rollout.</p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ParsedTextCacheService {
+
+    /**
+     * bump when parse / clean rules change, old entries are then ignored (see class doc for the old blobs)
+     */
+    private static final String VERSION = "v2";
+
+    private static final String INDEX_KEY_PREFIX = "parsed-text:" + VERSION + ":";
+    private static final String BLOB_KEY_PREFIX = "parsed-text/" + VERSION + "/";
+    private static final String BLOB_CONTENT_TYPE = "application/gzip";
+
+    private final RedisService redisService;
+    private final FileStorageService storageService;
+    private final ParseConfigProperties parseConfig;
+
+    private final LinkedHashMap<String, String> local = new LinkedHashMap<>(16, 0.75f, true);
+    private long localChars;
+
+    /**
+     * get cached text, otherwise load and cache it
+     *
+     * @param fileHash SHA-256 of the file, no caching when null
+     * @param loader   download + parse, only called on a miss
+     */
+    public String getOrParse(String fileHash, Supplier<String> loader) {
+        if (!parseConfig.getCache().isEnabled() || fileHash == null || fileHash.isBlank()) {
+            return loader.get();
+        }
+        String cached = get(fileHash);
+        if (cached != null) {
+            return cached;
+        }
+        String text = loader.get();
+        put(fileHash, text);
+        return text;
+    }
+
+    /**
+     * cached text of the file, null on miss
+     */
+    public String get(String fileHash) {
+        String text = getLocal(fileHash);
+        if (text != null) {
+            log.debug("parsed text hit (local): {}", fileHash);
+            return text;
+        }
+
+        String indexKey = INDEX_KEY_PREFIX + fileHash;
+        try {
+            String blobKey = redisService.get(indexKey);
+            if (blobKey == null) {
+                return null;
+            }
+            text = gunzip(storageService.downloadFile(blobKey));
+            redisService.expire(indexKey, parseConfig.getCache().getIndexTtl());
+            putLocal(fileHash, text);
+            log.info("parsed text hit (storage): {}", fileHash);
+            return text;
+        } catch (Exception e) {
+            // index without blob, drop it and parse again
+            log.warn("parsed text cache read failed: {} - {}", fileHash, e.getMessage());
+            try {
+                redisService.delete(indexKey);
+            } catch (Exception deleteError) {
+                log.warn("drop parsed text index failed: {} - {}", fileHash, deleteError.getMessage());
+            }
+            return null;
+        }
+    }
+
+    /**
+     * cache parsed text, empty text is not cached
+     */
+    public void put(String fileHash, String text) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        putLocal(fileHash, text);
+
+        String blobKey = blobKey(fileHash);
+        try {
+            storageService.uploadBytes(blobKey, gzip(text), BLOB_CONTENT_TYPE);
+            redisService.set(INDEX_KEY_PREFIX + fileHash, blobKey, parseConfig.getCache().getIndexTtl());
+            log.info("parsed text cached: {} ({} chars)", fileHash, text.length());
+        } catch (Exception e) {
+            log.warn("parsed text cache write failed: {} - {}", fileHash, e.getMessage());
+        }
+    }
+
+    /**
+     * drop the cached text of a file whose entity is deleted, from all three tiers
+     */
+    public void evict(String fileHash) {
+        if (fileHash == null || fileHash.isBlank()) {
+            return;
+        }
+        synchronized (this) {
+            String previous = local.remove(fileHash);
+            if (previous != null) {
+                localChars -= previous.length();
+            }
+        }
+        try {
+            redisService.delete(INDEX_KEY_PREFIX + fileHash);
+            storageService.deleteFile(blobKey(fileHash));
+            log.info("parsed text evicted: {}", fileHash);
+        } catch (Exception e) {
+            log.warn("parsed text cache evict failed: {} - {}", fileHash, e.getMessage());
+        }
+    }
+
+    private synchronized String getLocal(String fileHash) {
+        return local.get(fileHash);
+    }
+
+    private synchronized void putLocal(String fileHash, String text) {
+        long maxChars = parseConfig.getCache().getLocalMaxChars();
+        if (text.length() > maxChars) {
+            return;
+        }
+        String previous = local.put(fileHash, text);
+        if (previous != null) {
+            localChars -= previous.length();
+        }
+        localChars += text.length();
+
+        // evict least recently used
+        Iterator<Map.Entry<String, String>> it = local.entrySet().iterator();
+        while (localChars > maxChars && it.hasNext()) {
+            localChars -= it.next().getValue().length();
+            it.remove();
+        }
+    }
+
+    private static String blobKey(String fileHash) {
+        return BLOB_KEY_PREFIX + fileHash + ".txt.gz";
+    }
+
+    private static byte[] gzip(String text) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String gunzip(byte[] blob) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(blob))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
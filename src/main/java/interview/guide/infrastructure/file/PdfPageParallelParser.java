@@ -0,0 +1,371 @@
+package interview.guide.infrastructure.file;
+
+import interview.guide.common.config.ParseConfigProperties;
+import interview.guide.exception.BusinessException;
+import interview.guide.exception.ErrorCode;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.tika.parser.pdf.PDFParserConfig;
+import org.springframework.stereotype.Component;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serial;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * page-parallel text extraction for large PDFs
+ *
+ * <p>the document is split into page ranges of {@code pagesPerTask} pages. up to
+ * {@code parallelism} fork-join workers open the file once each (PDDocument is not thread-safe,
+ * the page-count load is reused by the first worker) and take ranges in page order. the calling
+ * thread hands every range to the cleaning handler as soon as it and the ones before it are done,
+ * and workers run at most {@link #WINDOW_PER_WORKER} ranges per worker ahead of it, so only a few
+ * ranges of text are buffered at a time. a worker waits for the window through
+ * {@link ForkJoinPool#managedBlock}, so the pool adds a spare thread meanwhile and the ranges of
+ * other documents keep going.</p>
+ *
+ * <p>a document with fewer than {@code minPages} pages is extracted the same way by a single
+ * worker on the document already opened for the page count, it is not loaded again by Tika.</p>
+ *
+ * <p>extraction uses the same {@link PDFParserConfig} as Tika (sort by position, duplicate text,
+ * spacing), inline images are never extracted. annotation and bookmark text is not included,
+ * small documents keep the full Tika path.</p>
+ */
+@Slf4j
+@Component
+public class PdfPageParallelParser {
+
+    private static final byte[] PDF_MAGIC = "%PDF-".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * ranges extracted but not handed to the handler yet, per worker
+     */
+    private static final int WINDOW_PER_WORKER = 2;
+
+    private final ParseConfigProperties parseConfig;
+    private final PDFParserConfig pdfConfig;
+    private ForkJoinPool pool;
+
+    public PdfPageParallelParser(ParseConfigProperties parseConfig, TikaParserEngine parserEngine) {
+        this.parseConfig = parseConfig;
+        this.pdfConfig = parserEngine.pdfConfig();
+    }
+
+    @PostConstruct
+    public void init() {
+        ParseConfigProperties.Pdf config = parseConfig.getPdf();
+        if (config.isParallelEnabled()) {
+            this.pool = new ForkJoinPool(Math.max(1, config.getParallelism()),
+                    namedFactory("pdf-page-"), null, false);
+            log.info("pdf page-parallel parsing enabled: parallelism={}, minPages={}, pagesPerTask={}",
+                    config.getParallelism(), config.getMinPages(), config.getPagesPerTask());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * extract the text of a large PDF page-parallel into the handler
+     *
+     * @param file    local file (spool file, download or local storage)
+     * @param handler receives the text in page order on the calling thread, e.g. a cleaning handler
+     * @return false when the file is not a PDF of at least minFileSize or can not be opened by
+     *         PDFBox, the caller then parses it with Tika
+     */
+    public boolean parse(Path file, ContentHandler handler) throws IOException, SAXException {
+        ParseConfigProperties.Pdf config = parseConfig.getPdf();
+        if (pool == null || Files.size(file) < config.getMinFileSize().toBytes() || !isPdf(file)) {
+            return false;
+        }
+
+        PDDocument document;
+        try {
+            document = load(file);
+        } catch (IOException e) {
+            // encrypted / broken: Tika has more fallbacks
+            log.debug("pdfbox can not open {}, use tika: {}", file, e.getMessage());
+            return false;
+        }
+        int pages = document.getNumberOfPages();
+
+        int pagesPerTask = Math.max(1, config.getPagesPerTask());
+        int rangeCount = Math.max(1, (pages + pagesPerTask - 1) / pagesPerTask);
+        // few pages: serial on the loaded document, no second load
+        int workers = pages < config.getMinPages() ? 1 : Math.min(pool.getParallelism(), rangeCount);
+        long deadline = System.nanoTime() + parseConfig.getTimeout().toNanos();
+        Extraction extraction = new Extraction(pages, pagesPerTask, rangeCount, workers * WINDOW_PER_WORKER, deadline);
+
+        long start = System.currentTimeMillis();
+        try {
+            try {
+                pool.execute(new RangeTask(file, document, extraction));
+            } catch (RuntimeException e) {
+                document.close();
+                throw e;
+            }
+            for (int i = 1; i < workers; i++) {
+                pool.execute(new RangeTask(file, null, extraction));
+            }
+
+            handler.startDocument();
+            for (int range = 0; range < rangeCount; range++) {
+                char[] chars = extraction.await(range).toCharArray();
+                handler.characters(chars, 0, chars.length);
+            }
+            handler.endDocument();
+        } finally {
+            // handler failure (e.g. write limit), timeout or a failed range: workers stop after
+            // their current range and close their documents (not cancelled, a worker that never
+            // ran would not close the handed-over one)
+            extraction.cancel();
+        }
+        log.info("pdf parsed by pages: pages={}, ranges={}, workers={}, cost={}ms",
+                pages, rangeCount, workers, System.currentTimeMillis() - start);
+        return true;
+    }
+
+    /**
+     * ranges of one document: claimed in page order by the workers, taken in page order by the caller
+     */
+    private static final class Extraction {
+        private final int pages;
+        private final int pagesPerTask;
+        private final long deadline;
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicReferenceArray<CompletableFuture<String>> ranges;
+        private final Semaphore window;
+        private volatile boolean cancelled;
+
+        Extraction(int pages, int pagesPerTask, int rangeCount, int window, long deadline) {
+            this.pages = pages;
+            this.pagesPerTask = pagesPerTask;
+            this.deadline = deadline;
+            this.ranges = new AtomicReferenceArray<>(rangeCount);
+            for (int i = 0; i < rangeCount; i++) {
+                ranges.set(i, new CompletableFuture<>());
+            }
+            this.window = new Semaphore(window);
+        }
+
+        /**
+         * next range for a worker, waits while the window is full
+         *
+         * @return -1 when there is nothing left to do
+         */
+        int claim() throws InterruptedException {
+            if (cancelled) {
+                return -1;
+            }
+            WindowPermit permit = new WindowPermit();
+            ForkJoinPool.managedBlock(permit);
+            if (!permit.acquired) {
+                return -1;
+            }
+            int range = next.getAndIncrement();
+            if (cancelled || range >= ranges.length()) {
+                window.release();
+                return -1;
+            }
+            return range;
+        }
+
+        int startPage(int range) {
+            return range * pagesPerTask + 1;
+        }
+
+        int endPage(int range) {
+            return Math.min(pages, startPage(range) + pagesPerTask - 1);
+        }
+
+        void complete(int range, String text) {
+            CompletableFuture<String> future = ranges.get(range);
+            if (future != null) {
+                future.complete(text);
+            }
+        }
+
+        /**
+         * the caller fails on the first range not done yet
+         */
+        void fail(Throwable error) {
+            cancelled = true;
+            for (int i = 0; i < ranges.length(); i++) {
+                CompletableFuture<String> future = ranges.get(i);
+                if (future != null) {
+                    future.completeExceptionally(error);
+                }
+            }
+        }
+
+        /**
+         * wait for a range within the deadline and release its text
+         */
+        String await(int range) throws IOException {
+            try {
+                String text = ranges.get(range).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                ranges.set(range, null);
+                window.release();
+                return text;
+            } catch (TimeoutException e) {
+                log.warn("pdf parsing timeout: pages={}, range={}", pages, range);
+                throw new BusinessException(ErrorCode.INTERNAL_ERROR, "parsing timeout");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BusinessException(ErrorCode.INTERNAL_ERROR, "parsing interrupted");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException ioe) throw ioe;
+                if (cause instanceof RuntimeException re) throw re;
+                throw new IOException("pdf parsing failed", cause);
+            }
+        }
+
+        /**
+         * a slot in the window, waited for as a managed block of the fork-join worker
+         */
+        private final class WindowPermit implements ForkJoinPool.ManagedBlocker {
+            private boolean acquired;
+            private boolean done;
+
+            @Override
+            public boolean block() throws InterruptedException {
+                long remaining = deadline - System.nanoTime();
+                acquired = remaining > 0 && window.tryAcquire(remaining, TimeUnit.NANOSECONDS);
+                done = true;
+                return true;
+            }
+
+            @Override
+            public boolean isReleasable() {
+                return done || (acquired = window.tryAcquire());
+            }
+        }
+
+        /**
+         * wake up workers waiting for the window, they see the flag and stop
+         */
+        void cancel() {
+            cancelled = true;
+            window.release(ranges.length());
+        }
+    }
+
+    /**
+     * one worker: opens the document once and extracts ranges until none are left
+     */
+    private final class RangeTask extends RecursiveAction {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final transient Path file;
+        private final transient Extraction extraction;
+        private transient PDDocument document;
+
+        /**
+         * @param document already loaded document handed over to this worker, null to load one
+         */
+        RangeTask(Path file, PDDocument document, Extraction extraction) {
+            this.file = file;
+            this.document = document;
+            this.extraction = extraction;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                if (document == null) {
+                    document = load(file);
+                }
+                int range;
+                while ((range = extraction.claim()) >= 0) {
+                    extraction.complete(range,
+                            newStripper(extraction.startPage(range), extraction.endPage(range)).getText(document));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                extraction.fail(new IOException("pdf worker interrupted", e));
+            } catch (IOException | RuntimeException e) {
+                extraction.fail(e);
+            } finally {
+                closeQuietly();
+            }
+        }
+
+        private void closeQuietly() {
+            if (document != null) {
+                try {
+                    document.close();
+                } catch (IOException e) {
+                    log.debug("close pdf document failed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * stripper with the same settings Tika's PDF parser applies from {@link PDFParserConfig}
+     */
+    private PDFTextStripper newStripper(int startPage, int endPage) throws IOException {
+        PDFTextStripper stripper = new PDFTextStripper();
+        stripper.setStartPage(startPage);
+        stripper.setEndPage(endPage);
+        stripper.setSortByPosition(pdfConfig.isSortByPosition());
+        stripper.setSuppressDuplicateOverlappingText(pdfConfig.isSuppressDuplicateOverlappingText());
+        stripper.setShouldSeparateByBeads(true);
+        if (!pdfConfig.isEnableAutoSpace()) {
+            stripper.setWordSeparator("");
+        }
+        if (pdfConfig.getAverageCharTolerance() != null) {
+            stripper.setAverageCharTolerance(pdfConfig.getAverageCharTolerance());
+        }
+        if (pdfConfig.getSpacingTolerance() != null) {
+            stripper.setSpacingTolerance(pdfConfig.getSpacingTolerance());
+        }
+        if (pdfConfig.getDropThreshold() != null) {
+            stripper.setDropThreshold(pdfConfig.getDropThreshold());
+        }
+        stripper.setLineSeparator("\n");
+        stripper.setPageEnd("\n\n");
+        return stripper;
+    }
+
+    /**
+     * objects are read from the file on demand, large streams spill to temp files instead of heap
+     */
+    private static PDDocument load(Path file) throws IOException {
+        return PDDocument.load(file.toFile(), MemoryUsageSetting.setupMixed(16 * 1024 * 1024));
+    }
+
+    private static boolean isPdf(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return Arrays.equals(in.readNBytes(PDF_MAGIC.length), PDF_MAGIC);
+        }
+    }
+
+    private static ForkJoinPool.ForkJoinWorkerThreadFactory namedFactory(String prefix) {
+        return forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName(prefix + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,21 @@
+package interview.guide.infrastructure.file;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * presigned PUT for a direct-to-storage upload
+ *
+ * @param fileKey   storage key the client uploads to
+ * @param url       presigned PUT URL
+ * @param headers   headers the client must send with the PUT (signed)
+ * @param expiresAt URL expiry
+ */
+public record PresignedUpload(
+        String fileKey,
+        String url,
+        Map<String, List<String>> headers,
+        Instant expiresAt
+) {
+}
@@ -0,0 +1,180 @@
+package interview.guide.infrastructure.file;
+
+import interview.guide.common.config.StorageConfigProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PutObjectPresignRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+/**
+ * S3 / RustFS storage backend (app.storage.type=s3, the default)
+ * large transfers go through {@link StorageTransferEngine}
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "app.storage", name = "type", havingValue = "s3", matchIfMissing = true)
+public class S3StorageBackend implements StorageBackend {
+
+    private final S3Client s3Client;
+    private final S3Presigner s3Presigner;
+    private final StorageConfigProperties storageConfig;
+    private final StorageTransferEngine transferEngine;
+    private final StorageMetrics metrics;
+
+    @Override
+    public void upload(String fileKey, Path file, long size, String contentType) throws IOException {
+        try {
+            // multipart with parallel parts above the threshold
+            transferEngine.upload(fileKey, file, size, contentType);
+        } catch (SdkException e) {
+            throw translate(fileKey, e);
+        }
+    }
+
+    @Override
+    public void uploadBytes(String fileKey, byte[] bytes, String contentType) throws IOException {
+        PutObjectRequest putRequest = PutObjectRequest.builder()
+                .bucket(storageConfig.getBucket())
+                .key(fileKey)
+                .contentType(contentType)
+                .contentLength((long) bytes.length)
+                .build();
+        try {
+            metrics.roundTrip("PUT");
+            s3Client.putObject(putRequest, RequestBody.fromBytes(bytes));
+        } catch (SdkException e) {
+            throw translate(fileKey, e);
+        }
+    }
+
+    @Override
+    public StoredObjectMetadata download(String fileKey, OutputStream out) throws IOException {
+        try {
+            // a single GET answers not-found itself, no HEAD first
+            return transferEngine.download(fileKey, out);
+        } catch (SdkException e) {
+            throw translate(fileKey, e);
+        }
+    }
+
+    @Override
+    public InputStream openStream(String fileKey) throws IOException {
+        GetObjectRequest getRequest = GetObjectRequest.builder()
+                .bucket(storageConfig.getBucket())
+                .key(fileKey)
+                .build();
+        try {
+            metrics.roundTrip("GET");
+            return s3Client.getObject(getRequest);
+        } catch (SdkException e) {
+            throw translate(fileKey, e);
+        }
+    }
+
+    @Override
+    public InputStream openRange(String fileKey, long start, long end) throws IOException {
+        GetObjectRequest getRequest = GetObjectRequest.builder()
+                .bucket(storageConfig.getBucket())
+                .key(fileKey)
+                .range("bytes=" + start + "-" + end)
+                .build();
+        try {
+            metrics.roundTrip("GET");
+            return s3Client.getObject(getRequest);
+        } catch (SdkException e) {
+            throw translate(fileKey, e);
+        }
+    }
+
+    @Override
+    public StoredObjectMetadata stat(String fileKey) throws IOException {
+        HeadObjectRequest headRequest = HeadObjectRequest.builder()
+                .bucket(storageConfig.getBucket())
+                .key(fileKey)
+                .build();
+        try {
+            metrics.roundTrip("HEAD");
+            HeadObjectResponse head = s3Client.headObject(headRequest);
+            return new StoredObjectMetadata(head.contentLength(), head.contentType(), head.eTag());
+        } catch (SdkException e) {
+            throw translate(fileKey, e);
+        }
+    }
+
+    @Override
+    public void delete(String fileKey) throws IOException {
+        DeleteObjectRequest deleteRequest = DeleteObjectRequest.builder()
+                .bucket(storageConfig.getBucket())
+                .key(fileKey)
+                .build();
+        try {
+            metrics.roundTrip("DELETE");
+            s3Client.deleteObject(deleteRequest);
+        } catch (SdkException e) {
+            throw translate(fileKey, e);
+        }
+    }
+
+    /**
+     * content type and length are signed, the PUT must send the same values
+     */
+    @Override
+    public PresignedUpload presignUpload(String fileKey, String contentType, long size) {
+        PutObjectRequest putRequest = PutObjectRequest.builder()
+                .bucket(storageConfig.getBucket())
+                .key(fileKey)
+                .contentType(contentType)
+                .contentLength(size)
+                .build();
+        PresignedPutObjectRequest presigned = s3Presigner.presignPutObject(PutObjectPresignRequest.builder()
+                .signatureDuration(storageConfig.getPresignExpiry())
+                .putObjectRequest(putRequest)
+                .build());
+        return new PresignedUpload(fileKey, presigned.url().toString(), presigned.signedHeaders(), presigned.expiration());
+    }
+
+    @Override
+    public String getUrl(String fileKey) {
+        return String.format("%s/%s/%s", storageConfig.getEndpoint(), storageConfig.getBucket(), fileKey);
+    }
+
+    @Override
+    public void checkReady() {
+        try {
+            HeadBucketRequest headRequest = HeadBucketRequest.builder()
+                    .bucket(storageConfig.getBucket())
+                    .build();
+            s3Client.headBucket(headRequest);
+            log.info("bucket exist: {}", storageConfig.getBucket());
+        } catch (NoSuchBucketException e) {
+            log.info("存储桶不存在，正在创建: {}", storageConfig.getBucket());
+            CreateBucketRequest createRequest = CreateBucketRequest.builder()
+                    .bucket(storageConfig.getBucket())
+                    .build();
+            s3Client.createBucket(createRequest);
+            log.info("存储桶创建成功: {}", storageConfig.getBucket());
+        } catch (S3Exception e) {
+            log.error("create bucket fail: {}", e.getMessage(), e);
+        }
+    }
+
+    private static IOException translate(String fileKey, SdkException e) {
+        if (e instanceof NoSuchKeyException || (e instanceof S3Exception s3Exception && s3Exception.statusCode() == 404)) {
+            return new StoredObjectNotFoundException(fileKey);
+        }
+        return new IOException(e.getMessage(), e);
+    }
+}
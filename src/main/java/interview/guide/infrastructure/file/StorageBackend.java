@@ -0,0 +1,90 @@
+package interview.guide.infrastructure.file;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * object storage backend behind {@link FileStorageService}, chosen by app.storage.type
+ * <ul>
+ *   <li>s3 (default): S3 / RustFS, see {@link S3StorageBackend}</li>
+ *   <li>local: a directory on local disk, see {@link LocalStorageBackend}</li>
+ * </ul>
+ *
+ * <p>keys are the same on every backend. a missing object is reported as
+ * {@link StoredObjectNotFoundException}, other failures as IOException;
+ * {@link FileStorageService} maps both to BusinessException and owns metrics and the metadata cache.</p>
+ */
+public interface StorageBackend {
+
+    /**
+     * store a local file under the key
+     */
+    void upload(String fileKey, Path file, long size, String contentType) throws IOException;
+
+    /**
+     * store bytes under the key
+     */
+    void uploadBytes(String fileKey, byte[] bytes, String contentType) throws IOException;
+
+    /**
+     * stream the whole object into the sink
+     *
+     * @return metadata of the object that was written
+     */
+    StoredObjectMetadata download(String fileKey, OutputStream out) throws IOException;
+
+    /**
+     * copy the whole object into a local file
+     */
+    default void downloadToFile(String fileKey, Path target) throws IOException {
+        try (OutputStream out = Files.newOutputStream(target)) {
+            download(fileKey, out);
+        }
+    }
+
+    /**
+     * open a stream on the object, caller must close it
+     */
+    InputStream openStream(String fileKey) throws IOException;
+
+    /**
+     * open a stream on bytes [start, end] (inclusive), caller must close it
+     */
+    InputStream openRange(String fileKey, long start, long end) throws IOException;
+
+    /**
+     * size / content type / ETag of the object
+     */
+    StoredObjectMetadata stat(String fileKey) throws IOException;
+
+    /**
+     * delete the object, a missing object is not an error
+     */
+    void delete(String fileKey) throws IOException;
+
+    /**
+     * presigned direct upload to the key
+     */
+    PresignedUpload presignUpload(String fileKey, String contentType, long size);
+
+    /**
+     * url recorded on the entity
+     */
+    String getUrl(String fileKey);
+
+    /**
+     * make sure the bucket / root directory exists
+     */
+    void checkReady();
+
+    /**
+     * the object as a local file, when the backend keeps one (read in place, no copy)
+     */
+    default Optional<Path> localPath(String fileKey) {
+        return Optional.empty();
+    }
+}
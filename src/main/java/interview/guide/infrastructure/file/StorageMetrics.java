@@ -0,0 +1,55 @@
+package interview.guide.infrastructure.file;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * storage metrics, see /actuator/metrics
+ * <ul>
+ *   <li>storage.operation: latency per logical operation (download, upload, delete, metadata), tagged by outcome</li>
+ *   <li>storage.round.trips: requests sent to storage, tagged by request (GET, PUT, HEAD, DELETE, ...)</li>
+ *   <li>storage.metadata.cache: metadata cache lookups, tagged by result (hit, miss)</li>
+ * </ul>
+ */
+@Component
+@RequiredArgsConstructor
+public class StorageMetrics {
+
+    private final MeterRegistry meterRegistry;
+
+    @FunctionalInterface
+    public interface StorageCall<T> {
+        T call() throws IOException;
+    }
+
+    public void roundTrip(String request) {
+        meterRegistry.counter("storage.round.trips", "request", request).increment();
+    }
+
+    public void metadataCache(boolean hit) {
+        meterRegistry.counter("storage.metadata.cache", "result", hit ? "hit" : "miss").increment();
+    }
+
+    /**
+     * time a logical operation
+     */
+    public <T> T time(String operation, StorageCall<T> call) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "success";
+        try {
+            return call.call();
+        } catch (StoredObjectNotFoundException e) {
+            outcome = "not_found";
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            outcome = "error";
+            throw e;
+        } finally {
+            sample.stop(meterRegistry.timer("storage.operation", "operation", operation, "outcome", outcome));
+        }
+    }
+}
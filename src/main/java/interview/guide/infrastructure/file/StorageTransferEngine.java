@@ -0,0 +1,283 @@
+package interview.guide.infrastructure.file;
+
+import interview.guide.common.config.StorageConfigProperties;
+import interview.guide.exception.BusinessException;
+import interview.guide.exception.ErrorCode;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * parallel object transfers
+ *
+ * <p>upload: files at or above the multipart threshold are sent as a multipart upload, parts
+ * are read straight from the file (no heap copy) and uploaded in parallel.</p>
+ *
+ * <p>download: large objects are fetched as parallel ranged GETs and written to the sink in
+ * order, at most {@code concurrency} parts are held in memory. later ranges are pinned to the
+ * ETag of the first one, so a concurrent overwrite fails the download instead of mixing
+ * versions.</p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "app.storage", name = "type", havingValue = "s3", matchIfMissing = true)
+public class StorageTransferEngine {
+
+    private final S3Client s3Client;
+    private final StorageConfigProperties storageConfig;
+    private final StorageMetrics metrics;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        int concurrency = Math.max(1, storageConfig.getTransfer().getConcurrency());
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(concurrency, r -> {
+            Thread t = new Thread(r, "storage-transfer-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        log.info("storage transfer engine ready: concurrency={}, partSize={}, threshold={}",
+                concurrency, storageConfig.getTransfer().getPartSize(), storageConfig.getTransfer().getMultipartThreshold());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    // ========== upload ==========
+
+    /**
+     * upload a local file, multipart above the threshold
+     */
+    public void upload(String fileKey, Path file, long size, String contentType) {
+        if (size < storageConfig.getTransfer().getMultipartThreshold().toBytes()) {
+            PutObjectRequest putRequest = PutObjectRequest.builder()
+                    .bucket(storageConfig.getBucket())
+                    .key(fileKey)
+                    .contentType(contentType)
+                    .contentLength(size)
+                    .build();
+            metrics.roundTrip("PUT");
+            s3Client.putObject(putRequest, RequestBody.fromFile(file));
+            return;
+        }
+        multipartUpload(fileKey, file, size, contentType);
+    }
+
+    private void multipartUpload(String fileKey, Path file, long size, String contentType) {
+        String bucket = storageConfig.getBucket();
+        long partSize = partSize();
+        metrics.roundTrip("CREATE_MULTIPART");
+        String uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(fileKey)
+                .contentType(contentType)
+                .build()).uploadId();
+
+        List<Future<CompletedPart>> futures = new ArrayList<>();
+        try {
+            int partNumber = 1;
+            for (long offset = 0; offset < size; offset += partSize, partNumber++) {
+                long length = Math.min(partSize, size - offset);
+                long partOffset = offset;
+                int number = partNumber;
+                futures.add(executor.submit(() -> uploadPart(fileKey, uploadId, number, file, partOffset, length)));
+            }
+
+            List<CompletedPart> parts = new ArrayList<>(futures.size());
+            for (Future<CompletedPart> future : futures) {
+                parts.add(await(future));
+            }
+            parts.sort(Comparator.comparing(CompletedPart::partNumber));
+
+            metrics.roundTrip("COMPLETE_MULTIPART");
+            s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(fileKey)
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                    .build());
+            log.debug("multipart upload done: {} ({} parts, {} bytes)", fileKey, parts.size(), size);
+        } catch (RuntimeException e) {
+            // 先取消其余分片：排队的不再上传，进行中的被中断，不会在 abort 之后再写入分片
+            futures.forEach(f -> f.cancel(true));
+            abort(fileKey, uploadId);
+            throw e;
+        }
+    }
+
+    private CompletedPart uploadPart(String fileKey, String uploadId, int partNumber, Path file, long offset, long length) {
+        UploadPartRequest partRequest = UploadPartRequest.builder()
+                .bucket(storageConfig.getBucket())
+                .key(fileKey)
+                .uploadId(uploadId)
+                .partNumber(partNumber)
+                .contentLength(length)
+                .build();
+        // provider opens a new range stream per attempt, so SDK retries can re-read the part
+        RequestBody body = RequestBody.fromContentProvider(() -> openRange(file, offset, length), length,
+                "application/octet-stream");
+        metrics.roundTrip("UPLOAD_PART");
+        String eTag = s3Client.uploadPart(partRequest, body).eTag();
+        return CompletedPart.builder().partNumber(partNumber).eTag(eTag).build();
+    }
+
+    private void abort(String fileKey, String uploadId) {
+        try {
+            metrics.roundTrip("ABORT_MULTIPART");
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(storageConfig.getBucket())
+                    .key(fileKey)
+                    .uploadId(uploadId)
+                    .build());
+        } catch (S3Exception e) {
+            log.warn("abort multipart upload failed: {} - {}", fileKey, e.getMessage());
+        }
+    }
+
+    // ========== download ==========
+
+    /**
+     * stream an object into the sink, parallel ranged GETs for large objects
+     *
+     * @return object metadata seen on the first response
+     */
+    public StoredObjectMetadata download(String fileKey, OutputStream out) throws IOException {
+        long partSize = partSize();
+
+        // first range also tells the object size, no HEAD needed
+        ResponseBytes<GetObjectResponse> first;
+        try {
+            first = getRange(fileKey, 0, partSize - 1, null);
+        } catch (S3Exception e) {
+            if (e.statusCode() == 416) {
+                // empty object, no range is satisfiable
+                return new StoredObjectMetadata(0, null, null);
+            }
+            throw e;
+        }
+        first.asInputStream().transferTo(out);
+        GetObjectResponse response = first.response();
+        if (response.contentRange() == null) {
+            // range ignored by the server, whole object already written
+            return new StoredObjectMetadata(response.contentLength(), response.contentType(), response.eTag());
+        }
+        long totalSize = totalSize(response);
+        StoredObjectMetadata metadata = new StoredObjectMetadata(totalSize, response.contentType(), response.eTag());
+        if (totalSize <= partSize) {
+            return metadata;
+        }
+        if (totalSize < storageConfig.getTransfer().getMultipartThreshold().toBytes()) {
+            // small object: rest in one sequential stream
+            metrics.roundTrip("GET");
+            try (ResponseInputStream<GetObjectResponse> rest = s3Client.getObject(rangeRequest(fileKey, partSize, totalSize - 1,
+                    first.response().eTag()))) {
+                rest.transferTo(out);
+            }
+            return metadata;
+        }
+
+        String eTag = response.eTag();
+        int window = Math.max(1, storageConfig.getTransfer().getConcurrency());
+        Deque<Future<ResponseBytes<GetObjectResponse>>> inFlight = new ArrayDeque<>(window);
+        long nextOffset = partSize;
+        try {
+            while (nextOffset < totalSize || !inFlight.isEmpty()) {
+                // keep the window full, write parts in order
+                while (nextOffset < totalSize && inFlight.size() < window) {
+                    long start = nextOffset;
+                    long end = Math.min(start + partSize, totalSize) - 1;
+                    inFlight.add(executor.submit(() -> getRange(fileKey, start, end, eTag)));
+                    nextOffset = end + 1;
+                }
+                await(inFlight.poll()).asInputStream().transferTo(out);
+            }
+        } finally {
+            inFlight.forEach(f -> f.cancel(true));
+        }
+        return metadata;
+    }
+
+    private ResponseBytes<GetObjectResponse> getRange(String fileKey, long start, long end, String eTag) {
+        metrics.roundTrip("GET");
+        return s3Client.getObjectAsBytes(rangeRequest(fileKey, start, end, eTag));
+    }
+
+    private GetObjectRequest rangeRequest(String fileKey, long start, long end, String eTag) {
+        return GetObjectRequest.builder()
+                .bucket(storageConfig.getBucket())
+                .key(fileKey)
+                .range("bytes=" + start + "-" + end)
+                .ifMatch(eTag)
+                .build();
+    }
+
+    /**
+     * total size from Content-Range "bytes 0-8388607/123456789"
+     */
+    private static long totalSize(GetObjectResponse response) {
+        String contentRange = response.contentRange();
+        int slash = contentRange.lastIndexOf('/');
+        if (slash >= 0 && slash < contentRange.length() - 1 && contentRange.charAt(slash + 1) != '*') {
+            return Long.parseLong(contentRange.substring(slash + 1).trim());
+        }
+        return response.contentLength();
+    }
+
+    // ========== helpers ==========
+
+    private long partSize() {
+        return Math.max(5L * 1024 * 1024, storageConfig.getTransfer().getPartSize().toBytes());
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCode.INTERNAL_ERROR, "storage transfer interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new BusinessException(ErrorCode.INTERNAL_ERROR, "storage transfer failed: " + e.getCause().getMessage());
+        }
+    }
+
+    private static InputStream openRange(Path file, long offset, long length) {
+        try {
+            return new FileRangeInputStream(file, offset, length);
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.STORAGE_UPLOAD_FAILED, "read upload part failed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package interview.guide.infrastructure.file;
+
+/**
+ * metadata of a stored object, cached by {@link FileStorageService}
+ *
+ * @param size        object size in bytes
+ * @param contentType stored Content-Type (nullable)
+ * @param eTag        object ETag (nullable)
+ */
+public record StoredObjectMetadata(
+        long size,
+        String contentType,
+        String eTag
+) {
+}
@@ -0,0 +1,13 @@
+package interview.guide.infrastructure.file;
+
+import java.io.IOException;
+
+/**
+ * the object does not exist in the storage backend (S3 NoSuchKey / 404, missing local file)
+ */
+public class StoredObjectNotFoundException extends IOException {
+
+    public StoredObjectNotFoundException(String fileKey) {
+        super("object not found: " + fileKey);
+    }
+}
@@ -8,48 +8,34 @@ import java.util.regex.Pattern;
 @Service
 @Slf4j
 public class TextCleaningService {
-    private static final Pattern IMAGE_FILENAME_LINE =
-            Pattern.compile("(?m)^image\\d+\\.(png|jpe?g|gif/bmp|webp)\\s*$");
-
-    private static final Pattern IMAGE_URL =
-            Pattern.compile("https?://\\\\S+?\\\\.(png|jpe?g|gif|bmp|webp)(\\\\?\\\\S*)?", Pattern.CASE_INSENSITIVE);
-
-    /**
-     * file URL（Tika PDF temp file path ect）
-     */
-    private static final Pattern FILE_URL =
-            Pattern.compile("file:(//)?\\S+", Pattern.CASE_INSENSITIVE);
-
-    /**
-     * 分隔线：---, ___, ***, ===
-     * 整行匹配，至少 3 个连续符号
-     */
-    private static final Pattern SEPARATOR_LINE =
-            Pattern.compile("(?m)^\\s*[-_*=]{3,}\\s*$");
-
-    /**
-     * control chars（un-seeable chars）
-     * preserve \n (0x0A) and \t (0x09)
-     */
-    private static final Pattern CONTROL_CHARS =
-            Pattern.compile("[\\u0000-\\u0008\\u000B\\u000C\\u000E-\\u001F]");
-
     /**
      * HTML tag
      */
     private static final Pattern HTML_TAGS =
             Pattern.compile("<[^>]+>");
 
+    private static final Pattern LINE_BREAKS =
+            Pattern.compile("[\\r\\n]+");
+
+    private static final Pattern WHITESPACES =
+            Pattern.compile("\\s+");
+
+    private static final String FILE_SCHEME = "file:";
+
+    private static final String[] IMAGE_LINE_EXTENSIONS = {"png", "jpeg", "jpg", "gif/bmp", "webp"};
+
+    private static final String[] IMAGE_URL_EXTENSIONS = {"png", "jpeg", "jpg", "gif", "bmp", "webp"};
+
     /**
      *  clean and parse file
      *
      * <p>语义级过滤（简历场景化）：</p>
      * <ul>
-     *   <li>去除控制字符</li>
-     *   <li>去除图片文件名（整行匹配）</li>
+     *   <li>去除控制字符（保留 \t \n \r）</li>
+     *   <li>去除图片文件名（整行匹配 image1.png）</li>
      *   <li>去除图片链接</li>
-     *   <li>去除文件协议路径</li>
-     *   <li>去除符号分隔线</li>
+     *   <li>去除文件协议路径（file:...，Tika PDF temp file path）</li>
+     *   <li>去除符号分隔线（---, ___, ***, ===，至少 3 个）</li>
      * </ul>
      *
      * <p>格式级清理：</p>
@@ -61,6 +47,15 @@ public class TextCleaningService {
      *
      * <p>作为 RAG/AI 分析前的"保险层"，确保文本质量</p>
      *
+     * <p>implementation: char scanning over one preallocated buffer, no regex and no intermediate
+     * strings. the text is compacted in place in three linear passes, the pass order is the rule
+     * order so the output is the same as applying the rules one after another:</p>
+     * <ol>
+     *   <li>control chars, while filling the buffer</li>
+     *   <li>image file name lines, image links, file links</li>
+     *   <li>separator lines, newline normalization, trailing spaces, blank line compression, strip</li>
+     * </ol>
+     *
      * @param text 原始文本
      * @return 清理后的文本
      */
@@ -69,26 +64,332 @@ public class TextCleaningService {
             return "";
         }
 
-        String t = text;
+        char[] buf = new char[text.length()];
+        int len = fillWithoutControlChars(text, buf);
+        len = removeImagesAndFileUrls(buf, len);
+        len = removeSeparatorsAndFormat(buf, len);
+        return strip(buf, len);
+    }
+
+    // ========== 第一层：control chars ==========
+
+    /**
+     * copy text into buffer without control chars
+     */
+    private static int fillWithoutControlChars(String text, char[] buf) {
+        int o = 0;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = text.charAt(i);
+            if (!isControlChar(c)) {
+                buf[o++] = c;
+            }
+        }
+        return o;
+    }
+
+    // ========== 第二层：image name line / image url / file url ==========
+
+    static int removeImagesAndFileUrls(char[] buf, int len) {
+        int o = 0;
+        char prev = '\n';
+        boolean inFileUrl = false;
+        int i = 0;
+        while (i < len) {
+            // image1.png on its own line (checked on the text before url removal)
+            if (isLineStart(prev, buf[i])) {
+                int end = imageNameLineEnd(buf, i, len);
+                if (end >= 0) {
+                    prev = buf[end - 1];
+                    i = end;
+                    continue;
+                }
+            }
+
+            int end = imageUrlEnd(buf, i, len);
+            if (end >= 0) {
+                prev = buf[end - 1];
+                i = end;
+                continue;
+            }
+
+            char c = buf[i++];
+            prev = c;
+
+            // file:xxx runs until the next whitespace
+            if (inFileUrl) {
+                if (isRegexSpace(c)) {
+                    inFileUrl = false;
+                    buf[o++] = c;
+                }
+                continue;
+            }
+            if (!isRegexSpace(c) && endsWithFileScheme(buf, o)) {
+                o -= FILE_SCHEME.length();
+                inFileUrl = true;
+                continue;
+            }
+            buf[o++] = c;
+        }
+        return o;
+    }
+
+    /**
+     * image\d+.(png|jpe?g|gif/bmp|webp) + trailing whitespace, whole line
+     *
+     * @return match end, -1 if not matched
+     */
+    static int imageNameLineEnd(char[] buf, int start, int len) {
+        if (!regionMatches(buf, start, len, "image", false)) {
+            return -1;
+        }
+        int i = start + 5;
+        int digits = i;
+        while (i < len && buf[i] >= '0' && buf[i] <= '9') {
+            i++;
+        }
+        if (i == digits || i >= len || buf[i] != '.') {
+            return -1;
+        }
+        i++;
+        int extEnd = -1;
+        for (String ext : IMAGE_LINE_EXTENSIONS) {
+            if (regionMatches(buf, i, len, ext, false)) {
+                extEnd = i + ext.length();
+                break;
+            }
+        }
+        return extEnd < 0 ? -1 : trailingWhitespaceEnd(buf, extEnd, len);
+    }
+
+    /**
+     * image link, same shape as the former pattern
+     * {@code https?://\\S+?\\.(png|jpe?g|gif|bmp|webp)(\\?\\S*)?} (case-insensitive),
+     * whose double escaping makes it match a literal backslash followed by S, not \S
+     *
+     * @return match end, -1 if not matched
+     */
+    private static int imageUrlEnd(char[] buf, int start, int len) {
+        char first = buf[start];
+        if (first != 'h' && first != 'H') {
+            return -1;
+        }
+        if (!regionMatches(buf, start, len, "http", true)) {
+            return -1;
+        }
+        int i = start + 4;
+        if (i < len && (buf[i] == 's' || buf[i] == 'S')) {
+            i++;
+        }
+        if (!regionMatches(buf, i, len, "://\\", false)) {
+            return -1;
+        }
+        i += 4;
+        int letters = i;
+        while (i < len && (buf[i] == 's' || buf[i] == 'S')) {
+            i++;
+        }
+        if (i == letters || i >= len || buf[i] != '\\') {
+            return -1;
+        }
+        i++;
+        // any char but a line terminator, a surrogate pair counts as one
+        if (i >= len || isLineTerminator(buf[i])) {
+            return -1;
+        }
+        i += (Character.isHighSurrogate(buf[i]) && i + 1 < len && Character.isLowSurrogate(buf[i + 1])) ? 2 : 1;
+        int extEnd = -1;
+        for (String ext : IMAGE_URL_EXTENSIONS) {
+            if (regionMatches(buf, i, len, ext, true)) {
+                extEnd = i + ext.length();
+                break;
+            }
+        }
+        if (extEnd < 0) {
+            return -1;
+        }
+        i = extEnd;
+        if (i < len && buf[i] == '\\') {
+            i += (i + 1 < len && buf[i + 1] == '\\') ? 2 : 1;
+            while (i < len && (buf[i] == 's' || buf[i] == 'S')) {
+                i++;
+            }
+        }
+        return i;
+    }
+
+    private static boolean endsWithFileScheme(char[] buf, int end) {
+        int start = end - FILE_SCHEME.length();
+        return start >= 0 && regionMatches(buf, start, end, FILE_SCHEME, true);
+    }
+
+    // ========== 第三层：separator line + format content ==========
+
+    /**
+     * compacts the buffer in place, without the final strip
+     *
+     * @return new length
+     */
+    static int removeSeparatorsAndFormat(char[] buf, int len) {
+        int o = 0;
+        char prev = '\n';
+        // separator lines starting at or before this index are known not to match
+        int separatorCheckedUntil = -1;
+        // spaces/tabs at the end of the output, dropped if the line ends here
+        int trailingBlanks = 0;
+        boolean afterCr = false;
+        int i = 0;
+        while (i < len) {
+            if (i > separatorCheckedUntil && isLineStart(prev, buf[i])) {
+                int end = separatorLineEnd(buf, i, len);
+                if (end >= 0) {
+                    prev = buf[end - 1];
+                    i = end;
+                    continue;
+                }
+                separatorCheckedUntil = -end - 1;
+            }
+
+            char c = buf[i++];
+            prev = c;
+
+            // 统一换行符
+            if (c == '\r') {
+                c = '\n';
+                afterCr = true;
+            } else if (c == '\n' && afterCr) {
+                afterCr = false;
+                continue;
+            } else {
+                afterCr = false;
+            }
+
+            if (c == ' ' || c == '\t') {
+                trailingBlanks++;
+                buf[o++] = c;
+                continue;
+            }
+            if (isLineTerminator(c)) {
+                // 去掉行尾空格和制表符，保留空行（保持段落结构）
+                o -= trailingBlanks;
+                // 压缩连续空行：最多保留 2 个换行符（即一个空行）
+                if (c == '\n' && o >= 2 && buf[o - 1] == '\n' && buf[o - 2] == '\n') {
+                    trailingBlanks = 0;
+                    continue;
+                }
+            }
+            trailingBlanks = 0;
+            buf[o++] = c;
+        }
+        return o - trailingBlanks;
+    }
+
+    private static String strip(char[] buf, int o) {
+        int from = 0;
+        while (from < o && Character.isWhitespace(buf[from])) {
+            from++;
+        }
+        while (o > from && Character.isWhitespace(buf[o - 1])) {
+            o--;
+        }
+        return new String(buf, from, o - from);
+    }
+
+    /**
+     * whitespace + at least 3 of -_*= + whitespace, whole line
+     *
+     * @return match end; when not matched a negative value {@code -(k + 1)}, where k is the
+     * first non-whitespace index, every line start up to k fails the same way
+     */
+    static int separatorLineEnd(char[] buf, int start, int len) {
+        int i = start;
+        while (i < len && isRegexSpace(buf[i])) {
+            i++;
+        }
+        int symbols = i;
+        while (i < len && isSeparatorChar(buf[i])) {
+            i++;
+        }
+        int end = i - symbols >= 3 ? trailingWhitespaceEnd(buf, i, len) : -1;
+        return end >= 0 ? end : -symbols - 1;
+    }
+
+    // ========== helpers ==========
+
+    /**
+     * same as regex {@code \s*$} in multiline mode: take the whitespace run, then back off
+     * to the last position that is followed by a line terminator (or the end)
+     *
+     * @return match end, -1 if there is no such position
+     */
+    private static int trailingWhitespaceEnd(char[] buf, int start, int len) {
+        int end = start;
+        while (end < len && isRegexSpace(buf[end])) {
+            end++;
+        }
+        for (int i = end; i >= start; i--) {
+            if (isLineEnd(buf, i, len)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * regex ^ in multiline mode, \r\n counts as one line terminator
+     */
+    private static boolean isLineStart(char prev, char current) {
+        return isLineTerminator(prev) && !(prev == '\r' && current == '\n');
+    }
 
-        // ========== 第一层：replace certain text ==========
-        t = CONTROL_CHARS.matcher(t).replaceAll("");
-        t = IMAGE_FILENAME_LINE.matcher(t).replaceAll("");
-        t = IMAGE_URL.matcher(t).replaceAll("");
-        t = FILE_URL.matcher(t).replaceAll("");
-        t = SEPARATOR_LINE.matcher(t).replaceAll("");
+    /**
+     * regex $ in multiline mode, \r\n counts as one line terminator
+     */
+    private static boolean isLineEnd(char[] buf, int index, int len) {
+        if (index == len) {
+            return true;
+        }
+        char c = buf[index];
+        return isLineTerminator(c) && !(c == '\n' && index > 0 && buf[index - 1] == '\r');
+    }
 
-        // ========== 第二层：format content ==========
-        // 统一换行符
-        t = t.replace("\r\n", "\n").replace("\r", "\n");
+    private static boolean regionMatches(char[] buf, int start, int len, String word, boolean ignoreCase) {
+        int n = word.length();
+        if (start + n > len) {
+            return false;
+        }
+        for (int k = 0; k < n; k++) {
+            char c = buf[start + k];
+            char w = word.charAt(k);
+            if (c != w && !(ignoreCase && c < 128 && Character.toLowerCase(c) == w)) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-        // 去掉行尾空格和制表符，保留空行（保持段落结构）
-        t = t.replaceAll("(?m)[ \t]+$", "");
+    /**
+     * control chars（un-seeable chars）, preserve \n (0x0A), \t (0x09) and \r (0x0D)
+     */
+    static boolean isControlChar(char c) {
+        return c <= 0x1F && c != '\t' && c != '\n' && c != '\r';
+    }
 
-        // 压缩连续空行：最多保留 2 个换行符（即一个空行）
-        t = t.replaceAll("\\n{3,}", "\n\n");
+    /**
+     * regex \s (ASCII)
+     */
+    private static boolean isRegexSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * line terminators recognised by regex ^ and $
+     */
+    static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
 
-        return t.strip();
+    private static boolean isSeparatorChar(char c) {
+        return c == '-' || c == '_' || c == '*' || c == '=';
     }
 
     /**
@@ -118,10 +419,8 @@ public class TextCleaningService {
             return "";
         }
 
-        return text
-                .replaceAll("[\\r\\n]+", " ")
-                .replaceAll("\\s+", " ")
-                .strip();
+        String singleLine = LINE_BREAKS.matcher(text).replaceAll(" ");
+        return WHITESPACES.matcher(singleLine).replaceAll(" ").strip();
     }
 
     /**
@@ -142,7 +441,7 @@ public class TextCleaningService {
                 .replace("&gt;", ">")
                 .replace("&quot;", "\"")
                 .replace("&apos;", "'")
-                .replaceAll("\\s+", " ")
+                .transform(t -> WHITESPACES.matcher(t).replaceAll(" "))
                 .strip();
     }
 }
@@ -0,0 +1,220 @@
+package interview.guide.infrastructure.file;
+
+import interview.guide.common.config.ParseConfigProperties;
+import interview.guide.exception.BusinessException;
+import interview.guide.exception.ErrorCode;
+import interview.guide.exception.QueueOverloadedException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.extractor.EmbeddedDocumentExtractor;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.parser.pdf.PDFParserConfig;
+import org.apache.tika.sax.BodyContentHandler;
+import org.springframework.stereotype.Component;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * reusable Tika parsing engine
+ *
+ * <p>parser, PDF config and embedded extractor are built once at startup (service loading,
+ * detector setup) and shared, they are thread-safe. parsing runs on a bounded pool with a
+ * per-document timeout, so a broken file can not hold a request thread forever.</p>
+ *
+ * <p>a timed-out parse is cancelled, but Tika / PDFBox hardly ever check the interrupt, so the
+ * parse usually runs on until it ends by itself. such abandoned parses are counted and each gets
+ * a replacement thread (up to maxAbandoned), so stuck documents do not eat the pool; the extra
+ * threads go away when the abandoned parses end. a full queue is answered with 503 +
+ * Retry-After.</p>
+ */
+@Slf4j
+@Component
+public class TikaParserEngine {
+    private static final int QUEUED = 0;
+    private static final int RUNNING = 1;
+    private static final int DONE = 2;
+    private static final int ABANDONED = 3;
+
+    private final ParseConfigProperties parseConfig;
+    private final AutoDetectParser parser;
+    private final PDFParserConfig pdfConfig;
+    private final EmbeddedDocumentExtractor embeddedDocumentExtractor;
+    private ThreadPoolExecutor parsePool;
+
+    /**
+     * timed-out parses still running, each holding a pool thread
+     */
+    private final AtomicInteger abandoned = new AtomicInteger();
+
+    public TikaParserEngine(ParseConfigProperties parseConfig) {
+        this.parseConfig = parseConfig;
+        this.parser = new AutoDetectParser();
+
+        // for PDF：ignore image，format content
+        this.pdfConfig = new PDFParserConfig();
+        this.pdfConfig.setExtractInlineImages(false);
+        this.pdfConfig.setSortByPosition(true); // sorted by x-axis/y-axis
+
+        // forbidden embedded doc (avoid image and temp doc path)
+        this.embeddedDocumentExtractor = new NoOpEmbeddedDocumentExtractor();
+    }
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.parsePool = new ThreadPoolExecutor(
+                parseConfig.getPoolSize(),
+                parseConfig.getPoolSize(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(parseConfig.getQueueCapacity()),
+                r -> {
+                    Thread t = new Thread(r, "tika-parser-" + threadIndex.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+        this.parsePool.prestartAllCoreThreads();
+        warmUp();
+        log.info("tika parser engine init: poolSize={}, queueCapacity={}, timeout={}",
+                parseConfig.getPoolSize(), parseConfig.getQueueCapacity(), parseConfig.getTimeout());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (parsePool != null) {
+            parsePool.shutdownNow();
+        }
+    }
+
+    /**
+     * per-call context, only holds references to the shared instances
+     */
+    public ParseContext newContext() {
+        ParseContext context = new ParseContext();
+        context.set(Parser.class, parser);
+        context.set(EmbeddedDocumentExtractor.class, embeddedDocumentExtractor);
+        context.set(PDFParserConfig.class, pdfConfig);
+        return context;
+    }
+
+    /**
+     * shared PDF settings, also applied by {@link PdfPageParallelParser}
+     */
+    public PDFParserConfig pdfConfig() {
+        return pdfConfig;
+    }
+
+    /**
+     * parse on the parser pool and wait for the result
+     *
+     * @param inputStream input stream, owned (and closed) by the caller
+     * @param handler     content handler receiving the text
+     * @param metadata    metadata
+     */
+    public void parse(InputStream inputStream, ContentHandler handler, Metadata metadata)
+            throws IOException, TikaException, SAXException {
+        // QUEUED -> RUNNING -> DONE; ABANDONED when the caller gives up first
+        AtomicInteger state = new AtomicInteger(QUEUED);
+        Future<Void> future;
+        try {
+            future = parsePool.submit(() -> {
+                if (!state.compareAndSet(QUEUED, RUNNING)) {
+                    // timed out while still queued
+                    return null;
+                }
+                try {
+                    parser.parse(inputStream, handler, metadata, newContext());
+                    return null;
+                } finally {
+                    if (!state.compareAndSet(RUNNING, DONE)) {
+                        releaseAbandoned();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("parser pool is full: active={}, queued={}", parsePool.getActiveCount(), parsePool.getQueue().size());
+            throw new QueueOverloadedException("document parser is busy, please try later",
+                    Math.max(1, parseConfig.getBusyRetryAfter().toSeconds()));
+        }
+
+        try {
+            future.get(parseConfig.getTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            abandon(state);
+            log.warn("parsing timeout after {}", parseConfig.getTimeout());
+            throw new BusinessException(ErrorCode.INTERNAL_ERROR, "parsing timeout");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            abandon(state);
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCode.INTERNAL_ERROR, "parsing interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioe) throw ioe;
+            if (cause instanceof TikaException te) throw te;
+            if (cause instanceof SAXException se) throw se;
+            if (cause instanceof RuntimeException re) throw re;
+            throw new TikaException("parsing failed", cause);
+        }
+    }
+
+    /**
+     * a running parse given up by its caller keeps its thread: add a replacement while under
+     * maxAbandoned. a queued one never starts, nothing to replace
+     */
+    private synchronized void abandon(AtomicInteger state) {
+        if (state.compareAndSet(QUEUED, ABANDONED) || !state.compareAndSet(RUNNING, ABANDONED)) {
+            return;
+        }
+        int count = abandoned.incrementAndGet();
+        if (count > parseConfig.getMaxAbandoned()) {
+            log.error("abandoned parses over the limit, parser pool shrinks: abandoned={}, max={}",
+                    count, parseConfig.getMaxAbandoned());
+            return;
+        }
+        int size = parseConfig.getPoolSize() + count;
+        parsePool.setMaximumPoolSize(size);
+        parsePool.setCorePoolSize(size);
+        log.warn("abandoned parse still running, parser pool grown: abandoned={}, poolSize={}", count, size);
+    }
+
+    /**
+     * an abandoned parse ended after all, its replacement thread is no longer needed
+     */
+    private synchronized void releaseAbandoned() {
+        int count = abandoned.decrementAndGet();
+        int size = parseConfig.getPoolSize() + Math.min(count, parseConfig.getMaxAbandoned());
+        if (parsePool.isShutdown() || size >= parsePool.getCorePoolSize()) {
+            return;
+        }
+        parsePool.setCorePoolSize(size);
+        parsePool.setMaximumPoolSize(size);
+        log.info("abandoned parse ended: abandoned={}, poolSize={}", count, size);
+    }
+
+    /**
+     * parse one tiny document at startup, so the first upload does not pay
+     * for lazy class loading in the detectors and parsers
+     */
+    private void warmUp() {
+        try (InputStream inputStream = new ByteArrayInputStream("warm up".getBytes(StandardCharsets.UTF_8))) {
+            parse(inputStream, new BodyContentHandler(), new Metadata());
+        } catch (Exception e) {
+            log.warn("tika warm up failed: {}", e.getMessage());
+        }
+    }
+}
@@ -3,16 +3,24 @@ package interview.guide.infrastructure.redis;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.redisson.api.*;
+import org.redisson.api.stream.AutoClaimResult;
 import org.redisson.api.stream.StreamAddArgs;
 import org.redisson.api.stream.StreamCreateGroupArgs;
+import org.redisson.api.stream.StreamGroup;
 import org.redisson.api.stream.StreamMessageId;
+import org.redisson.api.stream.StreamRangeArgs;
 import org.redisson.api.stream.StreamReadGroupArgs;
 import org.redisson.client.codec.StringCodec;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 @Slf4j
@@ -108,6 +116,22 @@ public class RedisService {
         return map.containsKey(field);
     }
 
+    /**
+     * 批量写入字符串 Hash（StringCodec，redis-cli 可读）
+     */
+    public void hSetAllStrings(String key, Map<String, String> fields) {
+        RMap<String, String> map = redissonClient.getMap(key, StringCodec.INSTANCE);
+        map.putAll(fields);
+    }
+
+    /**
+     * 读取字符串 Hash（StringCodec）
+     */
+    public Map<String, String> hGetAllStrings(String key) {
+        RMap<String, String> map = redissonClient.getMap(key, StringCodec.INSTANCE);
+        return map.readAllMap();
+    }
+
     // ==================== 分布式锁 ====================
 
     /**
@@ -177,9 +201,15 @@ public class RedisService {
         void process(StreamMessageId messageId, Map<String, String> data);
     }
 
-    public void streamAck(String streamKey, String groupName, StreamMessageId messageId) {
-            RStream<String, String> stream = redissonClient.getStream(streamKey, StringCodec.INSTANCE);
-            stream.ack(groupName,messageId);
+    /**
+     * 确认消息，多个 ID 合并为一次 XACK
+     */
+    public long streamAck(String streamKey, String groupName, StreamMessageId... messageIds) {
+        if (messageIds.length == 0) {
+            return 0;
+        }
+        RStream<String, String> stream = redissonClient.getStream(streamKey, StringCodec.INSTANCE);
+        return stream.ack(groupName, messageIds);
     }
 
     /**
@@ -224,6 +254,175 @@ public class RedisService {
         return true;
     }
 
+    /**
+     * 读取已到达的新消息，不阻塞（多个 Stream 轮流读取时使用）
+     *
+     * @return 读取到的消息数
+     */
+    public int streamConsumeAvailable(
+            String streamKey,
+            String groupName,
+            String consumerName,
+            int count,
+            StreamMessageProcessor processor) {
+
+        RStream<String, String> stream = redissonClient.getStream(streamKey, StringCodec.INSTANCE);
+        Map<StreamMessageId, Map<String, String>> messages = stream.readGroup(
+                groupName,
+                consumerName,
+                StreamReadGroupArgs.neverDelivered().count(count)
+        );
+
+        if (messages == null || messages.isEmpty()) {
+            return 0;
+        }
+
+        for (Map.Entry<StreamMessageId, Map<String, String>> entry : messages.entrySet()) {
+            processor.process(entry.getKey(), entry.getValue());
+        }
+
+        return messages.size();
+    }
+
+    /**
+     * 重新读取本消费者 PEL 中的消息（已投递未确认，例如上次进程崩溃前读到的）
+     * 不阻塞，按 ID 翻页
+     *
+     * @param afterId 从该 ID 之后开始，首次传 {@link StreamMessageId#ALL}
+     * @return 本页最后一条消息 ID，没有更多时返回 null
+     */
+    public StreamMessageId streamConsumeOwnPending(
+            String streamKey,
+            String groupName,
+            String consumerName,
+            StreamMessageId afterId,
+            int count,
+            StreamMessageProcessor processor) {
+
+        RStream<String, String> stream = redissonClient.getStream(streamKey, StringCodec.INSTANCE);
+        Map<StreamMessageId, Map<String, String>> messages = stream.readGroup(
+                groupName,
+                consumerName,
+                StreamReadGroupArgs.greaterThan(afterId).count(count)
+        );
+
+        StreamMessageId lastId = null;
+        if (messages != null) {
+            for (Map.Entry<StreamMessageId, Map<String, String>> entry : messages.entrySet()) {
+                // 已被删除（裁剪）的消息只剩 ID，以空消息交给处理器确认掉
+                processor.process(entry.getKey(), entry.getValue() != null ? entry.getValue() : Map.of());
+                lastId = entry.getKey();
+            }
+        }
+        return lastId;
+    }
+
+    /**
+     * XAUTOCLAIM：把其他消费者空闲超过 minIdle 的待确认消息转给本消费者并处理
+     * 用于消费者崩溃 / 重启后恢复任务
+     *
+     * @param startId 扫描起点，首次传 {@link StreamMessageId#MIN}
+     * @return 下一次扫描的起点，扫完一轮后回到 0-0
+     */
+    public StreamMessageId streamAutoClaim(
+            String streamKey,
+            String groupName,
+            String consumerName,
+            Duration minIdle,
+            StreamMessageId startId,
+            int count,
+            StreamMessageProcessor processor) {
+
+        RStream<String, String> stream = redissonClient.getStream(streamKey, StringCodec.INSTANCE);
+        AutoClaimResult<String, String> result = stream.autoClaim(
+                groupName, consumerName, minIdle.toMillis(), TimeUnit.MILLISECONDS, startId, count);
+
+        if (!result.getDeletedIds().isEmpty()) {
+            log.warn("待确认消息已被裁剪: stream={}, count={}", streamKey, result.getDeletedIds().size());
+        }
+        for (Map.Entry<StreamMessageId, Map<String, String>> entry : result.getMessages().entrySet()) {
+            log.info("认领空闲消息: stream={}, messageId={}, consumer={}", streamKey, entry.getKey(), consumerName);
+            processor.process(entry.getKey(), entry.getValue());
+        }
+        return result.getNextId();
+    }
+
+    /**
+     * XCLAIM JUSTID 给自己：重置处理中消息的空闲时间，避免长任务被其他节点认领
+     */
+    public void streamRenewClaim(String streamKey, String groupName, String consumerName, StreamMessageId... messageIds) {
+        if (messageIds.length == 0) {
+            return;
+        }
+        RStream<String, String> stream = redissonClient.getStream(streamKey, StringCodec.INSTANCE);
+        stream.fastClaim(groupName, consumerName, 0, TimeUnit.MILLISECONDS, messageIds);
+    }
+
+    /**
+     * 加入有序集合（score 通常为到期时间戳）
+     */
+    public boolean zAdd(String key, double score, String member) {
+        RScoredSortedSet<String> set = redissonClient.getScoredSortedSet(key, StringCodec.INSTANCE);
+        return set.add(score, member);
+    }
+
+    public int zCard(String key) {
+        return redissonClient.getScoredSortedSet(key, StringCodec.INSTANCE).size();
+    }
+
+    /**
+     * 执行 Lua 脚本，返回整数结果
+     */
+    public long evalLong(String script, List<Object> keys, Object... args) {
+        RScript rScript = redissonClient.getScript(StringCodec.INSTANCE);
+        Object result = rScript.eval(RScript.Mode.READ_WRITE, script, RScript.ReturnType.LONG, keys, args);
+        return result instanceof Number number ? number.longValue() : 0;
+    }
+
+    /**
+     * 按 ID 顺序读取 Stream 中的消息（不经过消费者组）
+     */
+    public Map<StreamMessageId, Map<String, String>> streamRange(String streamKey, int count) {
+        RStream<String, String> stream = redissonClient.getStream(streamKey, StringCodec.INSTANCE);
+        return stream.range(StreamRangeArgs.startId(StreamMessageId.MIN).endId(StreamMessageId.MAX).count(count));
+    }
+
+    /**
+     * 读取指定 ID 的消息，不存在的 ID 被忽略
+     */
+    public Map<StreamMessageId, Map<String, String>> streamGet(String streamKey, StreamMessageId... messageIds) {
+        RStream<String, String> stream = redissonClient.getStream(streamKey, StringCodec.INSTANCE);
+        Map<StreamMessageId, Map<String, String>> messages = new LinkedHashMap<>();
+        for (StreamMessageId messageId : messageIds) {
+            messages.putAll(stream.range(StreamRangeArgs.startId(messageId).endId(messageId).count(1)));
+        }
+        return messages;
+    }
+
+    public long streamDelete(String streamKey, StreamMessageId... messageIds) {
+        if (messageIds.length == 0) {
+            return 0;
+        }
+        return redissonClient.getStream(streamKey, StringCodec.INSTANCE).remove(messageIds);
+    }
+
+    public long streamSize(String streamKey) {
+        return redissonClient.getStream(streamKey, StringCodec.INSTANCE).size();
+    }
+
+    /**
+     * 消费者组信息（XINFO GROUPS）：lag、pending、entries-read
+     */
+    public Optional<StreamGroup> streamGroupInfo(String streamKey, String groupName) {
+        RStream<String, String> stream = redissonClient.getStream(streamKey, StringCodec.INSTANCE);
+        if (!stream.isExists()) {
+            return Optional.empty();
+        }
+        return stream.listGroups().stream()
+                .filter(group -> groupName.equals(group.getName()))
+                .findFirst();
+    }
+
     public void createStreamGroup(String streamKey, String groupName){
         RStream<String, String> stream = redissonClient.getStream(streamKey);
         try {
@@ -264,5 +463,57 @@ public class RedisService {
         return messageId.toString();
     }
 
+    /**
+     * 批量发送消息到 Stream（一次往返）
+     *
+     * @param streamKey Stream 键
+     * @param messages  消息内容列表
+     * @param maxLen    最大长度，0 表示不限制
+     * @return 消息ID列表，与 messages 顺序一致
+     */
+    public List<String> streamAddAll(String streamKey, List<Map<String, String>> messages, int maxLen) {
+        if (messages.isEmpty()) {
+            return List.of();
+        }
+        RBatch batch = redissonClient.createBatch();
+        RStreamAsync<String, String> stream = batch.getStream(streamKey, StringCodec.INSTANCE);
+        for (Map<String, String> message : messages) {
+            StreamAddArgs<String, String> args = StreamAddArgs.entries(message);
+            if (maxLen > 0) {
+                args.trimNonStrict().maxLen(maxLen);
+            }
+            stream.addAsync(args);
+        }
+        List<String> messageIds = new ArrayList<>(messages.size());
+        for (Object response : batch.execute().getResponses()) {
+            messageIds.add(response.toString());
+        }
+        log.debug("批量发送 Stream 消息: stream={}, count={}", streamKey, messageIds.size());
+        return messageIds;
+    }
+
+    // ==================== Pub/Sub 操作 ====================
+
+    /**
+     * 发布消息到频道
+     *
+     * @return 收到消息的订阅者数量
+     */
+    public long publish(String channel, String message) {
+        return redissonClient.getTopic(channel, StringCodec.INSTANCE).publish(message);
+    }
+
+    /**
+     * 订阅频道，监听器在 Redisson 的事件线程上执行，不能阻塞
+     *
+     * @return 监听器 ID，用于取消订阅
+     */
+    public int subscribe(String channel, Consumer<String> listener) {
+        return redissonClient.getTopic(channel, StringCodec.INSTANCE)
+                .addListener(String.class, (ch, message) -> listener.accept(message));
+    }
 
+    public void unsubscribe(String channel, int listenerId) {
+        redissonClient.getTopic(channel, StringCodec.INSTANCE).removeListener(listenerId);
+    }
 }
@@ -0,0 +1,133 @@
+package interview.guide.infrastructure.similarity;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * MinHash signatures over character shingles, with LSH banding
+ *
+ * <p>text is reduced to lower-case letters and digits (layout, whitespace and punctuation
+ * differences of a re-export disappear), then cut into {@value #SHINGLE_SIZE}-char shingles.
+ * character shingles work the same for Chinese and English text.</p>
+ *
+ * <p>{@value #BANDS} bands x {@value #ROWS} rows: two texts share at least one band key with
+ * probability 1 - (1 - J^8)^16, about 0.99 at J = 0.9 and under 0.1 at J = 0.5.</p>
+ */
+public final class MinHash {
+
+    public static final int NUM_HASHES = 128;
+    public static final int BANDS = 16;
+    public static final int ROWS = NUM_HASHES / BANDS;
+    private static final int SHINGLE_SIZE = 5;
+
+    /**
+     * fixed seeds, signatures stay comparable across restarts and nodes
+     */
+    private static final long[] SEEDS = new SplittableRandom(0x5EED_0F_5161L).longs(NUM_HASHES).toArray();
+
+    private MinHash() {
+    }
+
+    /**
+     * signature of the text, null when nothing is left after normalization
+     */
+    public static int[] signature(String text) {
+        String normalized = normalize(text);
+        if (normalized.isEmpty()) {
+            return null;
+        }
+        int[] signature = new int[NUM_HASHES];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+
+        int shingles = Math.max(1, normalized.length() - SHINGLE_SIZE + 1);
+        for (int i = 0; i < shingles; i++) {
+            long shingle = fnv1a(normalized, i, Math.min(normalized.length(), i + SHINGLE_SIZE));
+            for (int j = 0; j < NUM_HASHES; j++) {
+                int value = (int) (mix64(shingle ^ SEEDS[j]) >>> 32);
+                if (value < signature[j]) {
+                    signature[j] = value;
+                }
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * estimated Jaccard similarity of the two shingle sets
+     */
+    public static double similarity(int[] a, int[] b) {
+        int same = 0;
+        for (int i = 0; i < NUM_HASHES; i++) {
+            if (a[i] == b[i]) {
+                same++;
+            }
+        }
+        return (double) same / NUM_HASHES;
+    }
+
+    /**
+     * one key per band, band index mixed in so equal rows in different bands do not collide
+     */
+    public static long[] bandKeys(int[] signature) {
+        long[] keys = new long[BANDS];
+        for (int band = 0; band < BANDS; band++) {
+            long h = band;
+            for (int row = 0; row < ROWS; row++) {
+                h = mix64(h * 31 + signature[band * ROWS + row]);
+            }
+            keys[band] = h;
+        }
+        return keys;
+    }
+
+    public static byte[] toBytes(int[] signature) {
+        ByteBuffer buffer = ByteBuffer.allocate(NUM_HASHES * Integer.BYTES);
+        buffer.asIntBuffer().put(signature);
+        return buffer.array();
+    }
+
+    /**
+     * null for a missing or foreign-sized signature
+     */
+    public static int[] fromBytes(byte[] bytes) {
+        if (bytes == null || bytes.length != NUM_HASHES * Integer.BYTES) {
+            return null;
+        }
+        int[] signature = new int[NUM_HASHES];
+        ByteBuffer.wrap(bytes).asIntBuffer().get(signature);
+        return signature;
+    }
+
+    private static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(Character.toLowerCase(c));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static long fnv1a(String s, int from, int to) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = from; i < to; i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    /**
+     * SplitMix64 finalizer
+     */
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
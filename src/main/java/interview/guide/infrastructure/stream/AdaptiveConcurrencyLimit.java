@@ -0,0 +1,201 @@
+package interview.guide.infrastructure.stream;
+
+import interview.guide.common.config.StreamConfigProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * in-flight limit of a stream worker, adjusted from the model calls it makes (AIMD)
+ *
+ * <ul>
+ *   <li>additive increase: +1 after {@code limit} successful calls in a row at normal latency,
+ *       only while the worker actually uses its limit</li>
+ *   <li>multiplicative decrease: limit * backoffRatio on a rate-limit (HTTP 429 / 503) or timeout,
+ *       or when the short-term latency exceeds latencyTolerance * the long-term latency</li>
+ * </ul>
+ *
+ * <p>decreases are applied at most once per {@code cooldown}, the calls already in flight when
+ * the endpoint starts throttling would otherwise halve the limit several times. with adaptive
+ * control disabled the limit stays at {@code concurrency}.</p>
+ */
+@Slf4j
+public class AdaptiveConcurrencyLimit {
+
+    /**
+     * why the limit changed, used as metric tag
+     */
+    public enum Reason {
+        HEALTHY, RATE_LIMITED, TIMEOUT, LATENCY
+    }
+
+    /**
+     * notified after every change
+     */
+    @FunctionalInterface
+    public interface Listener {
+        void limitChanged(int from, int to, Reason reason);
+    }
+
+    private static final double SHORT_ALPHA = 0.3;
+    private static final double LONG_ALPHA = 0.02;
+
+    private final String name;
+    private final StreamConfigProperties.Adaptive config;
+    private final boolean adaptive;
+    private final Listener listener;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+
+    private int limit;
+    private int inFlight;
+    private int successes;
+    private double shortLatency;
+    private double longLatency;
+    private long lastDecreaseAt;
+
+    public AdaptiveConcurrencyLimit(String name, StreamConfigProperties.Worker config, Listener listener) {
+        this.name = name;
+        this.config = config.getAdaptive();
+        this.adaptive = this.config.isEnabled();
+        this.listener = listener;
+        int initial = Math.max(1, config.getConcurrency());
+        this.limit = adaptive ? clamp(initial) : initial;
+    }
+
+    /**
+     * wait until a call slot is free
+     */
+    public void acquire() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (inFlight >= limit) {
+                released.await();
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean tryAcquire() {
+        lock.lock();
+        try {
+            if (inFlight >= limit) {
+                return false;
+            }
+            inFlight++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void release(int permits) {
+        if (permits <= 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            inFlight = Math.max(0, inFlight - permits);
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * a model call returned
+     */
+    public void onSuccess(long latencyNanos) {
+        if (!adaptive) {
+            return;
+        }
+        lock.lock();
+        try {
+            recordLatency(latencyNanos);
+            if (shortLatency > longLatency * config.getLatencyTolerance()) {
+                decrease(Reason.LATENCY);
+                return;
+            }
+            // do not grow a limit nobody uses
+            if (inFlight < limit - 1) {
+                return;
+            }
+            if (++successes >= limit && limit < config.getMaxLimit()) {
+                change(limit + 1, Reason.HEALTHY);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * a model call was rejected / timed out, other errors do not say anything about the load
+     */
+    public void onOverload(Reason reason) {
+        if (!adaptive) {
+            return;
+        }
+        lock.lock();
+        try {
+            decrease(reason);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int limit() {
+        return limit;
+    }
+
+    public int inFlight() {
+        return inFlight;
+    }
+
+    private void recordLatency(long latencyNanos) {
+        double latency = latencyNanos;
+        if (longLatency == 0) {
+            shortLatency = latency;
+            longLatency = latency;
+            return;
+        }
+        shortLatency += SHORT_ALPHA * (latency - shortLatency);
+        longLatency += LONG_ALPHA * (latency - longLatency);
+    }
+
+    private void decrease(Reason reason) {
+        successes = 0;
+        long now = System.nanoTime();
+        if (lastDecreaseAt != 0 && now - lastDecreaseAt < config.getCooldown().toNanos()) {
+            return;
+        }
+        int decreased = clamp((int) (limit * config.getBackoffRatio()));
+        if (decreased < limit) {
+            lastDecreaseAt = now;
+            change(decreased, reason);
+        }
+        if (reason == Reason.LATENCY) {
+            // the lower limit is the new normal, do not decrease again for the same samples
+            shortLatency = longLatency;
+        }
+    }
+
+    private void change(int to, Reason reason) {
+        int from = limit;
+        limit = to;
+        successes = 0;
+        released.signalAll();
+        log.info("concurrency limit changed: worker={}, {} -> {}, reason={}, latency={}ms/{}ms",
+                name, from, to, reason, TimeUnit.NANOSECONDS.toMillis((long) shortLatency),
+                TimeUnit.NANOSECONDS.toMillis((long) longLatency));
+        listener.limitChanged(from, to, reason);
+    }
+
+    private int clamp(int value) {
+        return Math.max(Math.max(1, config.getMinLimit()), Math.min(config.getMaxLimit(), value));
+    }
+}
@@ -0,0 +1,12 @@
+package interview.guide.infrastructure.stream;
+
+import java.util.Map;
+
+/**
+ * a task that failed all its retries, kept on the dead-letter stream
+ *
+ * @param id     message id on the dead-letter stream
+ * @param fields original message fields plus the failure (error, time, retries)
+ */
+public record DeadLetter(String id, Map<String, String> fields) {
+}
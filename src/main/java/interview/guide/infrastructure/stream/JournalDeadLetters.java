@@ -0,0 +1,152 @@
+package interview.guide.infrastructure.stream;
+
+import org.redisson.api.stream.StreamMessageId;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * dead letters of one queue on the journal backend, see {@link JournalTaskQueue}
+ *
+ * <p>one file per dead letter, named after its id ({@code <millis>-<seq>}, zero-padded so the
+ * directory listing is the id order) and holding the fields in the journal encoding. dead letters
+ * are rare and only read by the admin API, which deletes single ones: a file each keeps that
+ * simple where the append-only journal can not. a file is written under a temp name and renamed,
+ * a crash never leaves half a dead letter.</p>
+ */
+final class JournalDeadLetters {
+
+    private static final String SUFFIX = ".msg";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path dir;
+    private final boolean sync;
+    private long lastSeq;
+    private long lastTimestamp;
+
+    JournalDeadLetters(Path dir, boolean sync) throws IOException {
+        this.dir = dir;
+        this.sync = sync;
+        Files.createDirectories(dir);
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.filter(path -> path.getFileName().toString().endsWith(TEMP_SUFFIX)).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+        List<StreamMessageId> ids = ids();
+        if (!ids.isEmpty()) {
+            lastSeq = ids.getLast().getId1();
+            lastTimestamp = ids.getLast().getId0();
+        }
+    }
+
+    /**
+     * @param maxLen dead letters kept, the oldest are deleted beyond it; 0 = no limit
+     */
+    synchronized StreamMessageId add(Map<String, String> message, int maxLen) throws IOException {
+        // ids stay ordered when the clock goes back
+        long timestamp = Math.max(System.currentTimeMillis(), lastTimestamp);
+        StreamMessageId id = new StreamMessageId(timestamp, lastSeq + 1);
+        Path temp = dir.resolve(fileName(id) + TEMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer data = ByteBuffer.wrap(TaskJournal.encode(message));
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+            if (sync) {
+                channel.force(true);
+            }
+        }
+        Files.move(temp, file(id), StandardCopyOption.ATOMIC_MOVE);
+        lastSeq = id.getId1();
+        lastTimestamp = timestamp;
+
+        if (maxLen > 0) {
+            List<StreamMessageId> ids = ids();
+            for (int i = 0; i < ids.size() - maxLen; i++) {
+                Files.deleteIfExists(file(ids.get(i)));
+            }
+        }
+        return id;
+    }
+
+    /**
+     * oldest first
+     */
+    synchronized Map<StreamMessageId, Map<String, String>> range(int count) throws IOException {
+        Map<StreamMessageId, Map<String, String>> deadLetters = new LinkedHashMap<>();
+        for (StreamMessageId id : ids()) {
+            if (deadLetters.size() >= count) {
+                break;
+            }
+            deadLetters.put(id, read(id));
+        }
+        return deadLetters;
+    }
+
+    synchronized Map<StreamMessageId, Map<String, String>> get(StreamMessageId... ids) throws IOException {
+        Map<StreamMessageId, Map<String, String>> deadLetters = new LinkedHashMap<>();
+        for (StreamMessageId id : ids) {
+            if (Files.exists(file(id))) {
+                deadLetters.put(id, read(id));
+            }
+        }
+        return deadLetters;
+    }
+
+    synchronized long remove(StreamMessageId... ids) throws IOException {
+        long removed = 0;
+        for (StreamMessageId id : ids) {
+            if (Files.deleteIfExists(file(id))) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    synchronized long clear() throws IOException {
+        List<StreamMessageId> ids = ids();
+        return remove(ids.toArray(StreamMessageId[]::new));
+    }
+
+    synchronized long count() throws IOException {
+        return ids().size();
+    }
+
+    private Map<String, String> read(StreamMessageId id) throws IOException {
+        return TaskJournal.decode(ByteBuffer.wrap(Files.readAllBytes(file(id))));
+    }
+
+    private List<StreamMessageId> ids() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SUFFIX))
+                    .sorted()
+                    .map(JournalDeadLetters::parseId)
+                    .toList();
+        }
+    }
+
+    private Path file(StreamMessageId id) {
+        return dir.resolve(fileName(id) + SUFFIX);
+    }
+
+    private static String fileName(StreamMessageId id) {
+        return String.format("%020d-%020d", id.getId0(), id.getId1());
+    }
+
+    private static StreamMessageId parseId(String fileName) {
+        String[] parts = fileName.substring(0, fileName.length() - SUFFIX.length()).split("-");
+        return new StreamMessageId(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+    }
+}
@@ -0,0 +1,332 @@
+package interview.guide.infrastructure.stream;
+
+import interview.guide.common.config.StreamConfigProperties;
+import interview.guide.common.constant.AsyncTaskStreamConstants;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.stream.StreamMessageId;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * embedded task queue (app.stream.type=journal): memory-mapped append-only files in this JVM,
+ * for single-node deployments and test rigs
+ *
+ * <p>every queue is a {@link TaskJournal} under {@code app.stream.journal.dir}: enqueue and
+ * dequeue are a copy into / out of the page cache under a lock, no network round trip, and the
+ * files survive a process crash (an OS crash too with {@code sync}). consumer groups, pending
+ * lists, replay and idle claims behave like Redis Streams, so {@link StreamWorker} runs unchanged.
+ * maxLen is not applied, a message is kept until every group has acked it.</p>
+ *
+ * <p>scheduled retries go to the retry journal {@code <queue>:retry} and are indexed by due time
+ * in memory; a promoted retry is appended to the queue, then acked in the retry journal. dead
+ * letters are files in {@code <queue>:dlq}, see {@link JournalDeadLetters}.</p>
+ *
+ * <p>the files belong to one process: the queue cannot be shared by several nodes. only the task
+ * queues move here, Redis is still needed for the rest of the application state (see {@link TaskQueue}).</p>
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "app.stream", name = "type", havingValue = "journal")
+public class JournalTaskQueue implements TaskQueue {
+
+    private static final String RETRY_GROUP = "retry";
+    private static final String RETRY_CONSUMER = "promoter";
+    private static final String FIELD_DUE_AT = "journal.dueAt";
+    private static final int PROMOTE_BATCH_SIZE = 100;
+
+    private static final StreamMessageId SCAN_START = new StreamMessageId(0, 0);
+
+    private final Path dir;
+    private final int segmentSize;
+    private final boolean sync;
+
+    private final Map<String, TaskJournal> journals = new ConcurrentHashMap<>();
+    private final Map<String, Retries> retries = new ConcurrentHashMap<>();
+    private final Map<String, JournalDeadLetters> deadLetters = new ConcurrentHashMap<>();
+
+    public JournalTaskQueue(StreamConfigProperties streamConfig) {
+        StreamConfigProperties.Journal config = streamConfig.getJournal();
+        this.dir = Path.of(config.getDir()).toAbsolutePath().normalize();
+        this.segmentSize = Math.toIntExact(config.getSegmentSize().toBytes());
+        this.sync = config.isSync();
+        log.info("journal task queue: dir={}, segmentSize={}, sync={}", dir, config.getSegmentSize(), sync);
+    }
+
+    @PreDestroy
+    public void close() {
+        journals.forEach((queue, journal) -> {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                log.warn("close journal failed: queue={}, error={}", queue, e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public void createGroup(String queue, String group) {
+        try {
+            journal(queue).createGroup(group);
+        } catch (IOException e) {
+            throw new UncheckedIOException("create journal group failed: " + queue, e);
+        }
+    }
+
+    @Override
+    public String add(String queue, Map<String, String> message, int maxLen) {
+        return append(queue, List.of(message)).getFirst().toString();
+    }
+
+    @Override
+    public List<String> addAll(String queue, List<Map<String, String>> messages, int maxLen) {
+        return append(queue, messages).stream().map(StreamMessageId::toString).toList();
+    }
+
+    @Override
+    public int read(String queue, String group, String consumer, int count, Duration block, MessageProcessor processor) {
+        try {
+            return deliver(journal(queue).read(group, consumer, count, block.toNanos()), processor);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        }
+    }
+
+    @Override
+    public StreamMessageId readOwnPending(String queue, String group, String consumer, StreamMessageId afterId,
+                                         int count, MessageProcessor processor) {
+        // ALL and the other special ids have a negative first part
+        long afterSeq = afterId.getId0() < 0 ? 0 : afterId.getId1();
+        List<TaskJournal.Entry> entries = journal(queue).readOwnPending(group, consumer, afterSeq, count);
+        deliver(entries, processor);
+        return entries.isEmpty() ? null : entries.getLast().id();
+    }
+
+    @Override
+    public StreamMessageId claimIdle(String queue, String group, String consumer, Duration minIdle,
+                                     StreamMessageId startId, int count, MessageProcessor processor) {
+        TaskJournal.Claimed claimed = journal(queue).claimIdle(group, consumer, minIdle.toMillis(),
+                Math.max(0, startId.getId1()), count);
+        for (TaskJournal.Entry entry : claimed.entries()) {
+            log.info("认领空闲消息: queue={}, messageId={}, consumer={}", queue, entry.id(), consumer);
+        }
+        deliver(claimed.entries(), processor);
+        return claimed.next() == 0 ? SCAN_START : new StreamMessageId(0, claimed.next());
+    }
+
+    @Override
+    public void renew(String queue, String group, String consumer, StreamMessageId... messageIds) {
+        journal(queue).renew(group, consumer, seqs(messageIds));
+    }
+
+    @Override
+    public void ack(String queue, String group, StreamMessageId... messageIds) {
+        if (messageIds.length > 0) {
+            journal(queue).ack(group, seqs(messageIds));
+        }
+    }
+
+    @Override
+    public Optional<GroupStats> groupStats(String queue, String group) {
+        return journal(queue).stats(group);
+    }
+
+    @Override
+    public void schedule(String queue, Map<String, String> message, Duration delay) {
+        Map<String, String> scheduled = new HashMap<>(message);
+        scheduled.put(FIELD_DUE_AT, String.valueOf(System.currentTimeMillis() + delay.toMillis()));
+        try {
+            retries(queue).journal.append(List.of(scheduled));
+        } catch (IOException e) {
+            throw new UncheckedIOException("schedule retry failed: " + queue, e);
+        }
+    }
+
+    @Override
+    public long promoteDue(String queue, int maxLen) {
+        Retries delayed = retries(queue);
+        synchronized (delayed) {
+            delayed.load();
+            long now = System.currentTimeMillis();
+            int moved = 0;
+            while (moved < PROMOTE_BATCH_SIZE && !delayed.due.isEmpty() && delayed.due.peek().dueAt() <= now) {
+                Retry retry = delayed.due.poll();
+                // add before ack: a crash in between promotes twice rather than losing the retry
+                append(queue, List.of(retry.message()));
+                delayed.journal.ack(RETRY_GROUP, retry.seq());
+                moved++;
+            }
+            return moved;
+        }
+    }
+
+    @Override
+    public long countDelayed(String queue) {
+        return retries(queue).journal.stats(RETRY_GROUP)
+                .map(stats -> stats.lag() + stats.pending())
+                .orElse(0L);
+    }
+
+    @Override
+    public void addDeadLetter(String queue, Map<String, String> message, int maxLen) {
+        try {
+            deadLetters(queue).add(message, maxLen);
+        } catch (IOException e) {
+            throw new UncheckedIOException("add dead letter failed: " + queue, e);
+        }
+    }
+
+    @Override
+    public Map<StreamMessageId, Map<String, String>> deadLetters(String queue, int count) {
+        try {
+            return deadLetters(queue).range(count);
+        } catch (IOException e) {
+            throw new UncheckedIOException("read dead letters failed: " + queue, e);
+        }
+    }
+
+    @Override
+    public Map<StreamMessageId, Map<String, String>> deadLetters(String queue, StreamMessageId... ids) {
+        try {
+            return deadLetters(queue).get(ids);
+        } catch (IOException e) {
+            throw new UncheckedIOException("read dead letters failed: " + queue, e);
+        }
+    }
+
+    @Override
+    public long removeDeadLetters(String queue, StreamMessageId... ids) {
+        try {
+            return deadLetters(queue).remove(ids);
+        } catch (IOException e) {
+            throw new UncheckedIOException("remove dead letters failed: " + queue, e);
+        }
+    }
+
+    @Override
+    public long clearDeadLetters(String queue) {
+        try {
+            return deadLetters(queue).clear();
+        } catch (IOException e) {
+            throw new UncheckedIOException("remove dead letters failed: " + queue, e);
+        }
+    }
+
+    @Override
+    public long countDeadLetters(String queue) {
+        try {
+            return deadLetters(queue).count();
+        } catch (IOException e) {
+            throw new UncheckedIOException("count dead letters failed: " + queue, e);
+        }
+    }
+
+    private List<StreamMessageId> append(String queue, List<Map<String, String>> messages) {
+        try {
+            return journal(queue).append(messages);
+        } catch (IOException e) {
+            throw new UncheckedIOException("append to journal failed: " + queue, e);
+        }
+    }
+
+    private TaskJournal journal(String queue) {
+        return journals.computeIfAbsent(queue, key -> {
+            try {
+                return new TaskJournal(key, dir.resolve(TaskJournal.fileName(key)), segmentSize, sync);
+            } catch (IOException e) {
+                throw new UncheckedIOException("open journal failed: " + key, e);
+            }
+        });
+    }
+
+    private Retries retries(String queue) {
+        return retries.computeIfAbsent(queue, key -> {
+            TaskJournal journal = journal(key + AsyncTaskStreamConstants.RETRY_KEY_SUFFIX);
+            try {
+                journal.createGroup(RETRY_GROUP);
+            } catch (IOException e) {
+                throw new UncheckedIOException("open retry journal failed: " + key, e);
+            }
+            return new Retries(journal);
+        });
+    }
+
+    private JournalDeadLetters deadLetters(String queue) {
+        return deadLetters.computeIfAbsent(queue, key -> {
+            String name = key + AsyncTaskStreamConstants.DEAD_LETTER_KEY_SUFFIX;
+            try {
+                return new JournalDeadLetters(dir.resolve(TaskJournal.fileName(name)), sync);
+            } catch (IOException e) {
+                throw new UncheckedIOException("open dead letters failed: " + key, e);
+            }
+        });
+    }
+
+    /**
+     * processor runs outside the journal lock
+     */
+    private static int deliver(List<TaskJournal.Entry> entries, MessageProcessor processor) {
+        for (TaskJournal.Entry entry : entries) {
+            processor.process(entry.id(), entry.data());
+        }
+        return entries.size();
+    }
+
+    private static long[] seqs(StreamMessageId... messageIds) {
+        return Arrays.stream(messageIds).mapToLong(StreamMessageId::getId1).toArray();
+    }
+
+    private record Retry(long seq, long dueAt, Map<String, String> message) {
+    }
+
+    /**
+     * retry journal of one queue and its due-time index, guarded by the instance
+     */
+    private static final class Retries {
+        private final TaskJournal journal;
+        private final PriorityQueue<Retry> due = new PriorityQueue<>(Comparator.comparingLong(Retry::dueAt));
+        private boolean recovered;
+
+        private Retries(TaskJournal journal) {
+            this.journal = journal;
+        }
+
+        /**
+         * index retries scheduled since the last call; the first call also takes the ones
+         * read before a restart and never promoted
+         */
+        private void load() {
+            if (!recovered) {
+                long after = 0;
+                List<TaskJournal.Entry> pending;
+                while (!(pending = journal.readOwnPending(RETRY_GROUP, RETRY_CONSUMER, after, PROMOTE_BATCH_SIZE)).isEmpty()) {
+                    pending.forEach(this::index);
+                    after = pending.getLast().id().getId1();
+                }
+                recovered = true;
+            }
+            try {
+                List<TaskJournal.Entry> scheduled;
+                while (!(scheduled = journal.read(RETRY_GROUP, RETRY_CONSUMER, PROMOTE_BATCH_SIZE, 0)).isEmpty()) {
+                    scheduled.forEach(this::index);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void index(TaskJournal.Entry entry) {
+            Map<String, String> message = new HashMap<>(entry.data());
+            long dueAt = Long.parseLong(message.remove(FIELD_DUE_AT));
+            due.add(new Retry(entry.id().getId1(), dueAt, message));
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package interview.guide.infrastructure.stream;
+
+import interview.guide.common.config.StreamConfigProperties;
+import interview.guide.exception.QueueOverloadedException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * queue-lag admission control for the uploads that feed a task stream
+ *
+ * <p>backlog of a lane = consumer group lag (never delivered) + pending (being handled), from
+ * the {@link TaskQueue} group stats (XINFO GROUPS on Redis). the processing rate is the growth of
+ * the groups' entries-read over time, shared by every node, floored by {@code minRate}. a new
+ * interactive task waits about interactive backlog / rate (the interactive lane is served first).</p>
+ *
+ * <ul>
+ *   <li>wait within {@code maxWait} and the lane not close to maxLen: interactive</li>
+ *   <li>otherwise with action DOWNGRADE (and a bulk lane): the user's bulk partition, unless that is full too</li>
+ *   <li>otherwise {@link QueueOverloadedException}: 503 with Retry-After = time until the wait is back within the SLO</li>
+ * </ul>
+ *
+ * <p>samples are cached for {@code refreshInterval}, so a burst of uploads costs one stats read per lane.</p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class QueueAdmissionService {
+
+    private static final long MAX_RETRY_AFTER_SECONDS = 3600;
+    private static final double RATE_ALPHA = 0.3;
+
+    private final TaskQueue taskQueue;
+    private final StreamConfigProperties streamConfig;
+    private final StreamMetrics metrics;
+
+    private final Map<String, Backlog> backlogs = new ConcurrentHashMap<>();
+
+    /**
+     * lane for a new task of the stream, or rejected
+     *
+     * @param worker    worker name, its settings are used
+     * @param streamKey interactive stream of the worker
+     * @param groupName consumer group of the worker
+     * @param userId    submitting user, picks the bulk partition
+     * @throws QueueOverloadedException the task would not be handled in time
+     */
+    public TaskLane admit(String worker, String streamKey, String groupName, String userId) {
+        StreamConfigProperties.Worker config = streamConfig.worker(worker);
+        StreamConfigProperties.Admission admission = config.getAdmission();
+        if (!admission.isEnabled()) {
+            return TaskLane.INTERACTIVE;
+        }
+
+        Backlog backlog;
+        try {
+            backlog = backlogs.computeIfAbsent(worker, name -> new Backlog())
+                    .refresh(streamKey, groupName, config);
+        } catch (Exception e) {
+            // the queue itself will fail loudly enough, do not block uploads on a stats read
+            log.warn("read stream backlog failed, admitting: stream={}, error={}", streamKey, e.getMessage());
+            return TaskLane.INTERACTIVE;
+        }
+
+        double rate = Math.max(backlog.rate, admission.getMinRate());
+        long fullAt = (long) (config.getMaxLen() * admission.getMaxFill());
+        long interactive = backlog.lanes.getOrDefault(streamKey, 0L);
+        double waitSeconds = interactive / rate;
+        long maxWaitSeconds = admission.getMaxWait().toSeconds();
+
+        if (waitSeconds <= maxWaitSeconds && interactive < fullAt) {
+            metrics.admission(worker, "accepted");
+            return TaskLane.INTERACTIVE;
+        }
+
+        int partitions = Math.max(0, config.getBulkPartitions());
+        if (admission.getAction() == StreamConfigProperties.Admission.Action.DOWNGRADE && partitions > 0) {
+            String bulkKey = TaskLane.BULK.streamKey(streamKey, userId, partitions);
+            if (backlog.lanes.getOrDefault(bulkKey, 0L) < fullAt) {
+                metrics.admission(worker, "downgraded");
+                log.info("queue over SLO, task downgraded to bulk lane: stream={}, backlog={}, wait={}s, userId={}",
+                        streamKey, interactive, (long) waitSeconds, userId);
+                return TaskLane.BULK;
+            }
+        }
+
+        // until the wait is within the SLO and the lane has room again
+        double drainSeconds = Math.max(waitSeconds - maxWaitSeconds, (interactive - fullAt + 1) / rate);
+        long retryAfter = Math.clamp((long) Math.ceil(drainSeconds), 1, MAX_RETRY_AFTER_SECONDS);
+        metrics.admission(worker, "rejected");
+        log.warn("queue over SLO, upload rejected: stream={}, backlog={}, rate={}/s, wait={}s, retryAfter={}s",
+                streamKey, interactive, String.format("%.2f", rate), (long) waitSeconds, retryAfter);
+        throw new QueueOverloadedException("任务队列繁忙，预计等待 " + (long) waitSeconds + " 秒，请稍后再试", retryAfter);
+    }
+
+    /**
+     * backlog per lane stream and the smoothed group read rate of one worker
+     */
+    private final class Backlog {
+        private Map<String, Long> lanes = Map.of();
+        private double rate;
+        private long entriesRead = -1;
+        private long sampledAt;
+
+        synchronized Backlog refresh(String streamKey, String groupName, StreamConfigProperties.Worker config) {
+            long now = System.currentTimeMillis();
+            if (sampledAt != 0 && now - sampledAt < config.getAdmission().getRefreshInterval().toMillis()) {
+                return this;
+            }
+
+            List<String> keys = TaskLane.streamKeys(streamKey, Math.max(0, config.getBulkPartitions()));
+            Map<String, Long> sampled = new HashMap<>();
+            long read = 0;
+            for (String key : keys) {
+                TaskQueue.GroupStats group = taskQueue.groupStats(key, groupName).orElse(null);
+                if (group == null) {
+                    continue;
+                }
+                sampled.put(key, group.lag() + group.pending());
+                read += group.entriesRead();
+            }
+
+            if (entriesRead >= 0 && read >= entriesRead && now > sampledAt) {
+                double sample = (read - entriesRead) * 1000.0 / (now - sampledAt);
+                rate = rate == 0 ? sample : rate + RATE_ALPHA * (sample - rate);
+            }
+            this.lanes = sampled;
+            this.entriesRead = read;
+            this.sampledAt = now;
+            return this;
+        }
+    }
+}
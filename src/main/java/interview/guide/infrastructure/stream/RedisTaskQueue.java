@@ -0,0 +1,167 @@
+package interview.guide.infrastructure.stream;
+
+import interview.guide.common.constant.AsyncTaskStreamConstants;
+import interview.guide.infrastructure.redis.RedisService;
+import lombok.RequiredArgsConstructor;
+import org.redisson.api.stream.StreamGroup;
+import org.redisson.api.stream.StreamMessageId;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Redis Streams task queue (app.stream.type=redis), shared by every node
+ *
+ * <p>scheduled messages wait in the sorted set {@code <queue>:retry} (score = due time) and are
+ * moved onto the stream by a Lua script, atomically so several nodes can poll. dead letters are
+ * the stream {@code <queue>:dlq}.</p>
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "app.stream", name = "type", havingValue = "redis", matchIfMissing = true)
+public class RedisTaskQueue implements TaskQueue {
+
+    private static final String PROMOTE_SCRIPT;
+    private static final int PROMOTE_BATCH_SIZE = 100;
+
+    static {
+        try {
+            ClassPathResource resource = new ClassPathResource("scripts/stream_retry_promote.lua");
+            PROMOTE_SCRIPT = new String(resource.getContentAsByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException("加载重试 Lua 脚本失败", e);
+        }
+    }
+
+    private final RedisService redisService;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public void createGroup(String queue, String group) {
+        redisService.createStreamGroup(queue, group);
+    }
+
+    @Override
+    public String add(String queue, Map<String, String> message, int maxLen) {
+        return redisService.streamAdd(queue, message, maxLen);
+    }
+
+    @Override
+    public List<String> addAll(String queue, List<Map<String, String>> messages, int maxLen) {
+        return redisService.streamAddAll(queue, messages, maxLen);
+    }
+
+    @Override
+    public int read(String queue, String group, String consumer, int count, Duration block, MessageProcessor processor) {
+        if (block.isZero()) {
+            return redisService.streamConsumeAvailable(queue, group, consumer, count, processor::process);
+        }
+        int[] read = {0};
+        redisService.streamConsumeMessages(queue, group, consumer, count, block.toMillis(), (messageId, data) -> {
+            read[0]++;
+            processor.process(messageId, data);
+        });
+        return read[0];
+    }
+
+    @Override
+    public StreamMessageId readOwnPending(String queue, String group, String consumer, StreamMessageId afterId,
+                                         int count, MessageProcessor processor) {
+        return redisService.streamConsumeOwnPending(queue, group, consumer, afterId, count, processor::process);
+    }
+
+    @Override
+    public StreamMessageId claimIdle(String queue, String group, String consumer, Duration minIdle,
+                                     StreamMessageId startId, int count, MessageProcessor processor) {
+        return redisService.streamAutoClaim(queue, group, consumer, minIdle, startId, count, processor::process);
+    }
+
+    @Override
+    public void renew(String queue, String group, String consumer, StreamMessageId... messageIds) {
+        redisService.streamRenewClaim(queue, group, consumer, messageIds);
+    }
+
+    @Override
+    public void ack(String queue, String group, StreamMessageId... messageIds) {
+        redisService.streamAck(queue, group, messageIds);
+    }
+
+    @Override
+    public Optional<GroupStats> groupStats(String queue, String group) {
+        return redisService.streamGroupInfo(queue, group).map(RedisTaskQueue::toStats);
+    }
+
+    @Override
+    public void schedule(String queue, Map<String, String> message, Duration delay) {
+        long dueAt = System.currentTimeMillis() + delay.toMillis();
+        redisService.zAdd(retryKey(queue), dueAt, objectMapper.writeValueAsString(new TreeMap<>(message)));
+    }
+
+    @Override
+    public long promoteDue(String queue, int maxLen) {
+        return redisService.evalLong(PROMOTE_SCRIPT, List.of(retryKey(queue), queue),
+                String.valueOf(System.currentTimeMillis()), String.valueOf(PROMOTE_BATCH_SIZE), String.valueOf(maxLen));
+    }
+
+    @Override
+    public long countDelayed(String queue) {
+        return redisService.zCard(retryKey(queue));
+    }
+
+    @Override
+    public void addDeadLetter(String queue, Map<String, String> message, int maxLen) {
+        redisService.streamAdd(deadLetterKey(queue), message, maxLen);
+    }
+
+    @Override
+    public Map<StreamMessageId, Map<String, String>> deadLetters(String queue, int count) {
+        return redisService.streamRange(deadLetterKey(queue), count);
+    }
+
+    @Override
+    public Map<StreamMessageId, Map<String, String>> deadLetters(String queue, StreamMessageId... ids) {
+        return redisService.streamGet(deadLetterKey(queue), ids);
+    }
+
+    @Override
+    public long removeDeadLetters(String queue, StreamMessageId... ids) {
+        return redisService.streamDelete(deadLetterKey(queue), ids);
+    }
+
+    @Override
+    public long clearDeadLetters(String queue) {
+        String key = deadLetterKey(queue);
+        long removed = redisService.streamSize(key);
+        redisService.delete(key);
+        return removed;
+    }
+
+    @Override
+    public long countDeadLetters(String queue) {
+        return redisService.streamSize(deadLetterKey(queue));
+    }
+
+    /**
+     * lag is unknown (negative) after deletions inside the stream, counted as 0
+     */
+    private static GroupStats toStats(StreamGroup group) {
+        return new GroupStats(Math.max(0, group.getLag()), group.getPending(), Math.max(0, group.getEntriesRead()));
+    }
+
+    private static String retryKey(String queue) {
+        return queue + AsyncTaskStreamConstants.RETRY_KEY_SUFFIX;
+    }
+
+    private static String deadLetterKey(String queue) {
+        return queue + AsyncTaskStreamConstants.DEAD_LETTER_KEY_SUFFIX;
+    }
+}
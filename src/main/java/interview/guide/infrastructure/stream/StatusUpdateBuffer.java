@@ -0,0 +1,93 @@
+package interview.guide.infrastructure.stream;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * collects the status transitions of a stream worker and writes them as bulk updates
+ *
+ * <p>only the latest transition per id is kept (PROCESSING followed by COMPLETED in the same
+ * window writes COMPLETED once), then ids with the same status + error go into one
+ * {@code UPDATE ... WHERE id IN (...)}. {@link StreamWorker} flushes the buffer right before
+ * it acks a batch, so an acked message always has its final status written: a failed update is
+ * put back for the next flush and the worker holds back the acks until it is written.</p>
+ *
+ * @param <S> status enum of the entity
+ */
+@Slf4j
+public class StatusUpdateBuffer<S> {
+
+    /**
+     * one bulk update, e.g. a {@code @Modifying} repository query
+     */
+    @FunctionalInterface
+    public interface BulkWriter<S> {
+        void write(List<Long> ids, S status, String error);
+    }
+
+    private final String name;
+    private final BulkWriter<S> writer;
+    private final Object flushLock = new Object();
+    private Map<Long, Update<S>> pending = new LinkedHashMap<>();
+
+    public StatusUpdateBuffer(String name, BulkWriter<S> writer) {
+        this.name = name;
+        this.writer = writer;
+    }
+
+    public synchronized void update(Long id, S status, String error) {
+        // re-insert so the map keeps the order of the latest transition
+        pending.remove(id);
+        pending.put(id, new Update<>(status, error));
+    }
+
+    /**
+     * write everything collected so far, flushes never overlap
+     *
+     * @return false when an update failed, it is kept for the next flush
+     */
+    public boolean flush() {
+        synchronized (flushLock) {
+            Map<Long, Update<S>> batch;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return true;
+                }
+                batch = pending;
+                pending = new LinkedHashMap<>();
+            }
+
+            Map<Update<S>, List<Long>> groups = new LinkedHashMap<>();
+            batch.forEach((id, update) -> groups.computeIfAbsent(update, u -> new ArrayList<>()).add(id));
+            boolean written = true;
+            for (Map.Entry<Update<S>, List<Long>> group : groups.entrySet()) {
+                Update<S> update = group.getKey();
+                List<Long> ids = group.getValue();
+                try {
+                    writer.write(ids, update.status(), update.error());
+                } catch (Exception e) {
+                    log.error("bulk status update failed: {}, status={}, ids={}, error={}",
+                            name, update.status(), ids, e.getMessage(), e);
+                    requeue(ids, update);
+                    written = false;
+                }
+            }
+            log.debug("status updates flushed: {}, rows={}, statements={}", name, batch.size(), groups.size());
+            return written;
+        }
+    }
+
+    /**
+     * a transition buffered since the flush started is newer and wins
+     */
+    private synchronized void requeue(List<Long> ids, Update<S> update) {
+        ids.forEach(id -> pending.putIfAbsent(id, update));
+    }
+
+    private record Update<S>(S status, String error) {
+    }
+}
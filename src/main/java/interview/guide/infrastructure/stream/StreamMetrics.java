@@ -0,0 +1,59 @@
+package interview.guide.infrastructure.stream;
+
+import interview.guide.common.config.StreamConfigProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * stream worker metrics, see /actuator/metrics
+ * <ul>
+ *   <li>stream.worker.concurrency.limit: current in-flight limit, tagged by worker</li>
+ *   <li>stream.worker.in.flight: messages being handled, tagged by worker</li>
+ *   <li>stream.worker.limit.changes: limit changes, tagged by worker, direction (up, down) and reason</li>
+ *   <li>stream.worker.model.calls: model call latency, tagged by worker and outcome (success, rate_limited, timeout, error)</li>
+ *   <li>stream.worker.queue.wait: time from XADD to handling, tagged by worker and lane (interactive, bulk)</li>
+ *   <li>stream.admission: admission decisions of new uploads, tagged by worker and decision (accepted, downgraded, rejected)</li>
+ * </ul>
+ */
+@Component
+@RequiredArgsConstructor
+public class StreamMetrics {
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * in-flight limit of a worker, with its gauges and change counter registered
+     */
+    public AdaptiveConcurrencyLimit newLimit(String worker, StreamConfigProperties.Worker config) {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(worker, config, (from, to, reason) ->
+                meterRegistry.counter("stream.worker.limit.changes",
+                        "worker", worker,
+                        "direction", to > from ? "up" : "down",
+                        "reason", reason.name().toLowerCase()).increment());
+        Gauge.builder("stream.worker.concurrency.limit", limit, AdaptiveConcurrencyLimit::limit)
+                .tag("worker", worker)
+                .register(meterRegistry);
+        Gauge.builder("stream.worker.in.flight", limit, AdaptiveConcurrencyLimit::inFlight)
+                .tag("worker", worker)
+                .register(meterRegistry);
+        return limit;
+    }
+
+    public void modelCall(String worker, String outcome, long latencyNanos) {
+        meterRegistry.timer("stream.worker.model.calls", "worker", worker, "outcome", outcome)
+                .record(latencyNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void queueWait(String worker, TaskLane lane, long waitMillis) {
+        meterRegistry.timer("stream.worker.queue.wait", "worker", worker, "lane", lane.name().toLowerCase())
+                .record(Math.max(0, waitMillis), TimeUnit.MILLISECONDS);
+    }
+
+    public void admission(String worker, String decision) {
+        meterRegistry.counter("stream.admission", "worker", worker, "decision", decision).increment();
+    }
+}
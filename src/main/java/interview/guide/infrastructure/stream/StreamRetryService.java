@@ -0,0 +1,136 @@
+package interview.guide.infrastructure.stream;
+
+import interview.guide.common.config.StreamConfigProperties;
+import interview.guide.common.constant.AsyncTaskStreamConstants;
+import interview.guide.exception.BusinessException;
+import interview.guide.exception.ErrorCode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.stream.StreamMessageId;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * delayed retries and dead letters of the task streams
+ *
+ * <ul>
+ *   <li>retry: the message is scheduled on the {@link TaskQueue} and moved back onto the stream
+ *       by {@link #promoteDue} once due (Redis: sorted set + Lua, journal: retry journal)</li>
+ *   <li>backoff: retryBaseDelay * 2^(retry - 1), capped at retryMaxDelay, half of it jittered</li>
+ *   <li>dead letter: exhausted messages are kept by the {@link TaskQueue} with the last error
+ *       (Redis: {@code <stream>:dlq}, journal: one file per dead letter), they can be listed,
+ *       replayed or purged from the admin API</li>
+ * </ul>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StreamRetryService {
+
+    private static final String FIELD_DLQ_ERROR = "dlq.error";
+    private static final String FIELD_DLQ_FAILED_AT = "dlq.failedAt";
+
+    private final TaskQueue taskQueue;
+
+    /**
+     * exponential backoff with jitter for the given retry (1 = first retry)
+     */
+    public Duration backoff(StreamConfigProperties.Worker config, int retryCount) {
+        long base = config.getRetryBaseDelay().toMillis();
+        long max = config.getRetryMaxDelay().toMillis();
+        long delay = Math.min(max, base << Math.min(Math.max(retryCount - 1, 0), 30));
+        // equal jitter: retries of a burst spread out instead of returning together
+        long half = delay / 2;
+        return Duration.ofMillis(half + ThreadLocalRandom.current().nextLong(half + 1));
+    }
+
+    /**
+     * put the message back on the stream after the delay
+     */
+    public void schedule(String streamKey, Map<String, String> message, Duration delay) {
+        taskQueue.schedule(streamKey, message, delay);
+    }
+
+    /**
+     * move due retries onto the stream
+     *
+     * @return number of messages moved
+     */
+    public long promoteDue(String streamKey, int maxLen) {
+        return taskQueue.promoteDue(streamKey, maxLen);
+    }
+
+    public void deadLetter(String streamKey, Map<String, String> message, String error, int maxLen) {
+        Map<String, String> deadLetter = new HashMap<>(message);
+        deadLetter.put(FIELD_DLQ_ERROR, error);
+        deadLetter.put(FIELD_DLQ_FAILED_AT, Instant.now().toString());
+        taskQueue.addDeadLetter(streamKey, deadLetter, maxLen);
+    }
+
+    public List<DeadLetter> listDeadLetters(String streamKey, int count) {
+        return taskQueue.deadLetters(streamKey, count).entrySet().stream()
+                .map(entry -> new DeadLetter(entry.getKey().toString(), entry.getValue()))
+                .toList();
+    }
+
+    /**
+     * put dead letters back on the stream with a fresh retry count, then remove them from the DLQ
+     *
+     * @param ids dead letters to replay, null / empty replays the oldest {@code count}
+     * @return number of messages replayed
+     */
+    public int replay(String streamKey, List<String> ids, int count, int maxLen) {
+        Map<StreamMessageId, Map<String, String>> deadLetters = ids == null || ids.isEmpty()
+                ? taskQueue.deadLetters(streamKey, count)
+                : taskQueue.deadLetters(streamKey, parseIds(ids));
+
+        int replayed = 0;
+        for (Map.Entry<StreamMessageId, Map<String, String>> entry : deadLetters.entrySet()) {
+            Map<String, String> message = new HashMap<>(entry.getValue());
+            message.remove(FIELD_DLQ_ERROR);
+            message.remove(FIELD_DLQ_FAILED_AT);
+            message.put(AsyncTaskStreamConstants.FIELD_RETRY_COUNT, "0");
+            // add before delete: a crash in between replays twice rather than losing the task
+            taskQueue.add(streamKey, message, maxLen);
+            taskQueue.removeDeadLetters(streamKey, entry.getKey());
+            replayed++;
+        }
+        log.info("dead letters replayed: stream={}, count={}", streamKey, replayed);
+        return replayed;
+    }
+
+    /**
+     * @param ids dead letters to delete, null / empty deletes the whole DLQ
+     * @return number of dead letters removed
+     */
+    public long purge(String streamKey, List<String> ids) {
+        long removed = ids == null || ids.isEmpty()
+                ? taskQueue.clearDeadLetters(streamKey)
+                : taskQueue.removeDeadLetters(streamKey, parseIds(ids));
+        log.info("dead letters purged: stream={}, count={}", streamKey, removed);
+        return removed;
+    }
+
+    public long countDelayed(String streamKey) {
+        return taskQueue.countDelayed(streamKey);
+    }
+
+    public long countDeadLetters(String streamKey) {
+        return taskQueue.countDeadLetters(streamKey);
+    }
+
+    private static StreamMessageId[] parseIds(List<String> ids) {
+        return ids.stream().map(id -> {
+            String[] parts = id.split("-");
+            try {
+                return new StreamMessageId(Long.parseLong(parts[0]), parts.length > 1 ? Long.parseLong(parts[1]) : 0);
+            } catch (NumberFormatException e) {
+                throw new BusinessException(ErrorCode.BAD_REQUEST, "invalid message id: " + id);
+            }
+        }).toArray(StreamMessageId[]::new);
+    }
+}
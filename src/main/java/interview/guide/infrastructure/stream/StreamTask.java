@@ -0,0 +1,32 @@
+package interview.guide.infrastructure.stream;
+
+import org.redisson.api.stream.StreamMessageId;
+
+import java.util.Map;
+
+/**
+ * one stream message handed to a {@link StreamWorker}
+ *
+ * @param messageId  stream message id
+ * @param data       message fields
+ * @param retryCount requeues so far
+ * @param maxRetry   requeues allowed for this stream
+ */
+public record StreamTask(
+        StreamMessageId messageId,
+        Map<String, String> data,
+        int retryCount,
+        int maxRetry
+) {
+
+    public String get(String field) {
+        return data.get(field);
+    }
+
+    /**
+     * a failure of this attempt is requeued (unless the requeue itself fails)
+     */
+    public boolean hasRetriesLeft() {
+        return retryCount < maxRetry;
+    }
+}
@@ -0,0 +1,614 @@
+package interview.guide.infrastructure.stream;
+
+import interview.guide.common.config.StreamConfigProperties;
+import interview.guide.common.constant.AsyncTaskStreamConstants;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.stream.StreamMessageId;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * task stream consumer with configurable concurrency, shared by all async task streams; the
+ * transport is the {@link TaskQueue} (Redis Streams, or the embedded journal)
+ *
+ * <p>one fetch thread reads from the consumer group, every message is handled on its own
+ * virtual thread. the fetch only asks for as many messages as there are free handler slots
+ * ({@code concurrency}), so a slow LLM / embedding call no longer blocks the messages behind it
+ * and nothing waits unhandled in the pending list of a busy node.</p>
+ *
+ * <p>retry / ack policy is the same for every stream: a failed message is retried with
+ * retryCount + 1 after an exponential backoff ({@link StreamRetryService}) up to {@code maxRetry},
+ * after that it goes to the dead-letter stream and {@link #onFailed} records the failure. the
+ * original message is always acked, acks are collected and sent as one multi-id XACK every
+ * {@code ackFlushInterval}, right after the buffered status updates ({@link #flushStatus}).
+ * settings come from {@code app.stream.workers.<name>}.</p>
+ *
+ * <p>the number of handlers is the worker's {@link AdaptiveConcurrencyLimit}: fixed at
+ * {@code concurrency}, or with {@code adaptive.enabled} adjusted (AIMD) from the model calls the
+ * handler makes through {@link #callModel} / {@link #runModel}: latency and rate-limit errors.</p>
+ *
+ * <p>lanes: with {@code bulkPartitions} > 0 the worker reads the interactive stream
+ * ({@link #streamKey()}) and the bulk partitions ({@link TaskLane}). interactive messages are taken
+ * first, but after {@code interactiveWeight} of them the bulk lane gets a turn; bulk partitions
+ * (one per hashed user) are taken one message at a time, round-robin. retries stay in their lane,
+ * dead letters of all lanes go to the dead-letter stream of {@link #streamKey()}.</p>
+ *
+ * <p>recovery: the consumer name is stable per node (prefix + node id), so after a restart the
+ * messages this node had read but not acked are replayed from its own pending list first.
+ * pending messages of other consumers (crashed node, old random names) are taken over with
+ * XAUTOCLAIM once idle for {@code claimIdle}; messages still being handled are renewed
+ * (XCLAIM to self) every claimIdle / 3, so long LLM calls are never claimed away.</p>
+ */
+@Slf4j
+public abstract class StreamWorker {
+
+    private static final int MAX_ERROR_LENGTH = 500;
+    private static final long RETRY_POLL_MS = 1000;
+
+    /**
+     * XAUTOCLAIM scan start, a scan is complete when Redis returns it again
+     */
+    private static final StreamMessageId SCAN_START = new StreamMessageId(0, 0);
+
+    protected final TaskQueue taskQueue;
+    private final StreamRetryService retryService;
+    private final StreamMetrics metrics;
+    private final String name;
+    private final StreamConfigProperties.Worker config;
+    private final String nodeId;
+
+    /**
+     * messages handed to a handler and not acked yet, renewed by the lease thread; a handled
+     * message stays here until its batched XACK went through, so a slow or failing ack never
+     * lets it go idle and be claimed (and handled) again
+     */
+    private final Set<MessageRef> inFlight = ConcurrentHashMap.newKeySet();
+
+    /**
+     * handled messages waiting for the next batched XACK, still in {@link #inFlight}
+     */
+    private final BlockingQueue<MessageRef> pendingAcks = new LinkedBlockingQueue<>();
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AdaptiveConcurrencyLimit limit;
+    private ExecutorService handlerExecutor;
+    private Thread fetchThread;
+    private Thread leaseThread;
+    private Thread retryThread;
+    private Thread ackThread;
+    private String consumerName;
+
+    /**
+     * interactive stream first, then the bulk partitions
+     */
+    private List<Lane> lanes;
+    private int claimLane;
+    private int bulkCursor;
+    private int interactiveStreak;
+    private long nextRecoveryAt;
+
+    protected StreamWorker(String name, TaskQueue taskQueue, StreamRetryService retryService,
+                           StreamMetrics metrics, StreamConfigProperties streamConfig) {
+        this.name = name;
+        this.taskQueue = taskQueue;
+        this.retryService = retryService;
+        this.metrics = metrics;
+        this.config = streamConfig.worker(name);
+        this.nodeId = streamConfig.getNodeId();
+        this.limit = metrics.newLimit(name, config);
+    }
+
+    protected abstract String streamKey();
+
+    protected abstract String groupName();
+
+    protected abstract String consumerPrefix();
+
+    /**
+     * handle one message; returning normally acks it, throwing retries it later (see class doc)
+     * malformed messages should be logged and returned, they are acked and dropped
+     */
+    protected abstract void handle(StreamTask task) throws Exception;
+
+    /**
+     * the message failed for the last time, record the failure on the task / entity
+     *
+     * @param error error message, already truncated for the status column
+     */
+    protected abstract void onFailed(StreamTask task, String error);
+
+    /**
+     * write buffered status updates ({@link StatusUpdateBuffer}), called right before each batched ack
+     *
+     * @return false when an update could not be written, the acks are held back until it is
+     */
+    protected boolean flushStatus() {
+        return true;
+    }
+
+    @PostConstruct
+    public void start() {
+        this.consumerName = consumerPrefix() + nodeId;
+        this.lanes = TaskLane.streamKeys(streamKey(), Math.max(0, config.getBulkPartitions())).stream()
+                .map(Lane::new)
+                .toList();
+        for (Lane lane : lanes) {
+            taskQueue.createGroup(lane.key, groupName());
+        }
+
+        this.handlerExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-handler-", 0).factory());
+        running.set(true);
+        this.fetchThread = Thread.ofPlatform().name(name + "-consumer").daemon(true).start(this::consumeLoop);
+        this.leaseThread = Thread.ofVirtual().name(name + "-lease").start(this::leaseLoop);
+        this.retryThread = Thread.ofVirtual().name(name + "-retry").start(this::retryLoop);
+        this.ackThread = Thread.ofVirtual().name(name + "-ack").start(this::ackLoop);
+
+        log.info("stream worker started: stream={}, consumerName={}, concurrency={}, adaptive={}, batchSize={}, bulkPartitions={}",
+                streamKey(), consumerName, limit.limit(), config.getAdaptive().isEnabled(), config.getBatchSize(), lanes.size() - 1);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running.set(false);
+        if (fetchThread != null) {
+            fetchThread.interrupt();
+        }
+        if (leaseThread != null) {
+            leaseThread.interrupt();
+        }
+        if (retryThread != null) {
+            retryThread.interrupt();
+        }
+        if (handlerExecutor != null) {
+            handlerExecutor.shutdown();
+            try {
+                // unacked messages stay pending and are delivered again
+                if (!handlerExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+                    handlerExecutor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                handlerExecutor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (ackThread != null) {
+            ackThread.interrupt();
+        }
+        // acks of the last handled messages
+        flushAcks();
+        log.info("stream worker stopped: consumerName={}", consumerName);
+    }
+
+    private void consumeLoop() {
+        while (running.get()) {
+            int acquired = 0;
+            int[] dispatched = {0};
+            try {
+                // wait for a free slot, then take up to batchSize
+                limit.acquire();
+                acquired = 1;
+                while (acquired < config.getBatchSize() && limit.tryAcquire()) {
+                    acquired++;
+                }
+
+                // 1. after a restart: messages this node read but never acked
+                Lane replay = lanes.stream().filter(lane -> lane.pendingCursor != null).findFirst().orElse(null);
+                if (replay != null) {
+                    replay.pendingCursor = taskQueue.readOwnPending(
+                            replay.key, groupName(), consumerName, replay.pendingCursor, acquired, dispatcher(replay, dispatched));
+                    if (replay.pendingCursor == null) {
+                        log.info("own pending messages replayed: stream={}, consumer={}", replay.key, consumerName);
+                    }
+                    continue;
+                }
+
+                // 2. idle messages of crashed / gone consumers, one lane after another
+                if (System.currentTimeMillis() >= nextRecoveryAt) {
+                    Lane lane = lanes.get(claimLane);
+                    lane.claimCursor = taskQueue.claimIdle(lane.key, groupName(), consumerName,
+                            config.getClaimIdle(), lane.claimCursor, acquired, dispatcher(lane, dispatched));
+                    if (isScanStart(lane.claimCursor)) {
+                        claimLane = (claimLane + 1) % lanes.size();
+                        if (claimLane == 0) {
+                            nextRecoveryAt = System.currentTimeMillis() + config.getRecoveryInterval().toMillis();
+                        }
+                    }
+                    if (dispatched[0] > 0) {
+                        continue;
+                    }
+                }
+
+                // 3. new messages
+                consumeNew(acquired, dispatched);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                if (!running.get() || Thread.currentThread().isInterrupted()) {
+                    log.info("stream worker interrupted: {}", name);
+                    break;
+                }
+                log.error("consume stream failed: stream={}, error={}", streamKey(), e.getMessage(), e);
+            } finally {
+                limit.release(acquired - dispatched[0]);
+            }
+        }
+    }
+
+    /**
+     * run a model (LLM / embedding) call and feed its latency / outcome into the concurrency limit
+     */
+    protected <T> T callModel(Supplier<T> call) {
+        long start = System.nanoTime();
+        try {
+            T result = call.get();
+            long latency = System.nanoTime() - start;
+            metrics.modelCall(name, "success", latency);
+            limit.onSuccess(latency);
+            return result;
+        } catch (RuntimeException e) {
+            AdaptiveConcurrencyLimit.Reason overload = overloadReason(e);
+            metrics.modelCall(name, overload == null ? "error" : overload.name().toLowerCase(), System.nanoTime() - start);
+            if (overload != null) {
+                limit.onOverload(overload);
+            }
+            throw e;
+        }
+    }
+
+    protected void runModel(Runnable call) {
+        callModel(() -> {
+            call.run();
+            return null;
+        });
+    }
+
+    /**
+     * 429 / 503 from the model API, or a timeout; decided on exception types and HTTP status
+     * codes along the cause chain, never on message text
+     */
+    static AdaptiveConcurrencyLimit.Reason overloadReason(Throwable error) {
+        for (Throwable e = error; e != null; e = e.getCause() == e ? null : e.getCause()) {
+            if (e instanceof SocketTimeoutException || e instanceof TimeoutException || e instanceof HttpTimeoutException) {
+                return AdaptiveConcurrencyLimit.Reason.TIMEOUT;
+            }
+            int status = httpStatus(e);
+            if (status == 429 || status == 503) {
+                return AdaptiveConcurrencyLimit.Reason.RATE_LIMITED;
+            }
+            if (status == 408 || status == 504) {
+                return AdaptiveConcurrencyLimit.Reason.TIMEOUT;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return status of an HTTP error response, -1 when e is not one
+     */
+    private static int httpStatus(Throwable e) {
+        if (e instanceof RestClientResponseException response) {
+            return response.getStatusCode().value();
+        }
+        if (e instanceof WebClientResponseException response) {
+            return response.getStatusCode().value();
+        }
+        // Spring AI's default response error handler only keeps the status as "<status> - <body>"
+        if ((e instanceof TransientAiException || e instanceof NonTransientAiException) && e.getMessage() != null) {
+            String message = e.getMessage();
+            int end = message.indexOf(" - ");
+            if (end == 3) {
+                try {
+                    return Integer.parseInt(message, 0, end, 10);
+                } catch (NumberFormatException ignored) {
+                    return -1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * hand a message to a handler thread
+     */
+    private TaskQueue.MessageProcessor dispatcher(Lane lane, int[] dispatched) {
+        return (messageId, data) -> {
+            MessageRef ref = new MessageRef(lane.key, messageId);
+            // already being handled here (e.g. replayed while still running)
+            if (!inFlight.add(ref)) {
+                return;
+            }
+            dispatched[0]++;
+            handlerExecutor.execute(() -> {
+                try {
+                    process(lane.key, messageId, data);
+                } finally {
+                    // the ref leaves inFlight once acked, see flushAcks
+                    limit.release(1);
+                }
+            });
+        };
+    }
+
+    /**
+     * interactive lane first, bulk partitions round-robin; every interactiveWeight interactive
+     * messages the bulk lane goes first once. nothing anywhere: block on the interactive stream
+     */
+    private void consumeNew(int count, int[] dispatched) {
+        Lane interactive = lanes.getFirst();
+        if (lanes.size() > 1) {
+            int remaining = count;
+            boolean bulkFirst = interactiveStreak >= Math.max(1, config.getInteractiveWeight());
+            if (!bulkFirst) {
+                remaining -= consumeInteractive(remaining, dispatched);
+            }
+            if (remaining > 0) {
+                remaining -= consumeBulk(remaining, dispatched);
+                interactiveStreak = 0;
+            }
+            if (bulkFirst && remaining > 0) {
+                consumeInteractive(remaining, dispatched);
+            }
+            if (dispatched[0] > 0) {
+                return;
+            }
+        }
+        // new bulk messages are picked up after pollInterval at the latest
+        taskQueue.read(
+                interactive.key,
+                groupName(),
+                consumerName,
+                count,
+                config.getPollInterval(),
+                dispatcher(interactive, dispatched)
+        );
+    }
+
+    private int consumeInteractive(int count, int[] dispatched) {
+        Lane interactive = lanes.getFirst();
+        int read = taskQueue.read(interactive.key, groupName(), consumerName, count, Duration.ZERO,
+                dispatcher(interactive, dispatched));
+        interactiveStreak += read;
+        return read;
+    }
+
+    /**
+     * one message per partition per round, until count is reached or every partition is empty
+     */
+    private int consumeBulk(int count, int[] dispatched) {
+        int partitions = lanes.size() - 1;
+        int read = 0;
+        int empty = 0;
+        while (read < count && empty < partitions) {
+            Lane lane = lanes.get(1 + bulkCursor);
+            bulkCursor = (bulkCursor + 1) % partitions;
+            int n = taskQueue.read(lane.key, groupName(), consumerName, 1, Duration.ZERO, dispatcher(lane, dispatched));
+            if (n == 0) {
+                empty++;
+            } else {
+                empty = 0;
+                read += n;
+            }
+        }
+        return read;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getStreamKey() {
+        return streamKey();
+    }
+
+    /**
+     * interactive stream and bulk partitions
+     */
+    public List<String> getStreamKeys() {
+        return TaskLane.streamKeys(streamKey(), Math.max(0, config.getBulkPartitions()));
+    }
+
+    /**
+     * settings of this stream
+     */
+    public StreamConfigProperties.Worker getConfig() {
+        return config;
+    }
+
+    /**
+     * keep the idle time of in-flight messages below claimIdle, handled ones included until acked
+     */
+    private void leaseLoop() {
+        long period = Math.max(1000, config.getClaimIdle().toMillis() / 3);
+        while (running.get()) {
+            try {
+                Thread.sleep(period);
+                byLane(List.copyOf(inFlight)).forEach((key, ids) ->
+                        taskQueue.renew(key, groupName(), consumerName, ids));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.warn("renew in-flight messages failed: stream={}, error={}", streamKey(), e.getMessage());
+            }
+        }
+    }
+
+    private static boolean isScanStart(StreamMessageId id) {
+        return id == null || (id.getId0() == 0 && id.getId1() == 0);
+    }
+
+    private void process(String laneKey, StreamMessageId messageId, Map<String, String> data) {
+        int retryCount = Integer.parseInt(data.getOrDefault(AsyncTaskStreamConstants.FIELD_RETRY_COUNT, "0"));
+        StreamTask task = new StreamTask(messageId, data, retryCount, config.getMaxRetry());
+        metrics.queueWait(name, TaskLane.of(streamKey(), laneKey), System.currentTimeMillis() - messageId.getId0());
+        try {
+            handle(task);
+        } catch (Exception e) {
+            log.error("stream task failed: stream={}, messageId={}, retryCount={}, error={}",
+                    streamKey(), messageId, retryCount, e.getMessage(), e);
+            String error = null;
+            if (!task.hasRetriesLeft()) {
+                error = truncateError("处理失败(已重试" + retryCount + "次): " + e.getMessage());
+            } else if (!scheduleRetry(laneKey, task)) {
+                error = truncateError("重试入队失败: " + e.getMessage());
+            }
+            if (error != null) {
+                deadLetter(task, error);
+                onFailed(task, error);
+            }
+        } finally {
+            // 无论成功失败都要确认，否则会重复消费；合并到下一次批量 XACK
+            pendingAcks.add(new MessageRef(laneKey, messageId));
+        }
+    }
+
+    /**
+     * 延迟重试（增加重试计数），到期后由 {@link #retryLoop} 放回 Stream
+     */
+    private boolean scheduleRetry(String laneKey, StreamTask task) {
+        try {
+            int retryCount = task.retryCount() + 1;
+            Map<String, String> message = new HashMap<>(task.data());
+            message.put(AsyncTaskStreamConstants.FIELD_RETRY_COUNT, String.valueOf(retryCount));
+            Duration delay = retryService.backoff(config, retryCount);
+            retryService.schedule(laneKey, message, delay);
+            log.info("stream task retry scheduled: stream={}, retryCount={}, delay={}", laneKey, retryCount, delay);
+            return true;
+        } catch (Exception e) {
+            log.error("schedule retry failed: stream={}, error={}", streamKey(), e.getMessage(), e);
+            return false;
+        }
+    }
+
+    private void deadLetter(StreamTask task, String error) {
+        try {
+            retryService.deadLetter(streamKey(), task.data(), error, config.getDeadLetterMaxLen());
+        } catch (Exception e) {
+            log.error("dead-letter failed: stream={}, messageId={}, error={}", streamKey(), task.messageId(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * move due retries back onto the stream, every node polls, the Lua move is atomic
+     */
+    private void retryLoop() {
+        while (running.get()) {
+            try {
+                Thread.sleep(RETRY_POLL_MS);
+                for (Lane lane : lanes) {
+                    long moved = retryService.promoteDue(lane.key, config.getMaxLen());
+                    if (moved > 0) {
+                        log.debug("due retries moved to stream: stream={}, count={}", lane.key, moved);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.warn("move due retries failed: stream={}, error={}", streamKey(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 批量确认：先写入缓冲的状态，再用一次 XACK 确认本批消息
+     */
+    private void ackLoop() {
+        long interval = Math.max(10, config.getAckFlushInterval().toMillis());
+        while (running.get()) {
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            flushAcks();
+        }
+    }
+
+    private synchronized void flushAcks() {
+        // drain first: a message handled while the status is being written has its update
+        // buffered after this flush, so it waits for the next one
+        List<MessageRef> handled = new ArrayList<>();
+        pendingAcks.drainTo(handled);
+
+        boolean written;
+        try {
+            written = flushStatus();
+        } catch (Exception e) {
+            log.error("flush status updates failed: stream={}, error={}", streamKey(), e.getMessage(), e);
+            written = false;
+        }
+        if (!written) {
+            // not acked yet, retried with the next flush; a crash meanwhile redelivers them
+            pendingAcks.addAll(handled);
+            return;
+        }
+
+        Map<String, List<MessageRef>> byLane = new LinkedHashMap<>();
+        handled.forEach(ref -> byLane.computeIfAbsent(ref.streamKey(), key -> new ArrayList<>()).add(ref));
+        byLane.forEach((key, refs) -> {
+            try {
+                taskQueue.ack(key, groupName(), refs.stream().map(MessageRef::messageId).toArray(StreamMessageId[]::new));
+                refs.forEach(inFlight::remove);
+            } catch (Exception e) {
+                // still renewed, acked with the next flush; a crash meanwhile redelivers them
+                log.error("确认消息失败: stream={}, count={}, error={}", key, refs.size(), e.getMessage(), e);
+                pendingAcks.addAll(refs);
+            }
+        });
+    }
+
+    private static Map<String, StreamMessageId[]> byLane(Collection<MessageRef> refs) {
+        Map<String, List<StreamMessageId>> grouped = new LinkedHashMap<>();
+        for (MessageRef ref : refs) {
+            grouped.computeIfAbsent(ref.streamKey(), key -> new ArrayList<>()).add(ref.messageId());
+        }
+        Map<String, StreamMessageId[]> result = new LinkedHashMap<>();
+        grouped.forEach((key, ids) -> result.put(key, ids.toArray(StreamMessageId[]::new)));
+        return result;
+    }
+
+    /**
+     * message ids are only unique within one stream
+     */
+    private record MessageRef(String streamKey, StreamMessageId messageId) {
+    }
+
+    /**
+     * one stream of the worker with its recovery cursors, only touched by the fetch thread
+     */
+    private static final class Lane {
+        private final String key;
+
+        /**
+         * own pending list replay cursor, null once replayed
+         */
+        private StreamMessageId pendingCursor = StreamMessageId.ALL;
+        private StreamMessageId claimCursor = SCAN_START;
+
+        private Lane(String key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * 截断错误信息，避免超过数据库字段长度
+     */
+    private static String truncateError(String error) {
+        return error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+    }
+}
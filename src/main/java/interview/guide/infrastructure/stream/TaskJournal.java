@@ -0,0 +1,560 @@
+package interview.guide.infrastructure.stream;
+
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.stream.StreamMessageId;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * one queue of the journal backend: an append-only log on memory-mapped segment files and the
+ * consumer groups reading it, see {@link JournalTaskQueue}
+ *
+ * <p>record: length (int) | crc (int) | seq (long) | timestamp (long) | fields. the length is
+ * written last, so a record torn by a crash has length 0 or a bad crc and ends the log on
+ * recovery. seq starts at 1 without gaps, the message id is {@code <timestamp>-<seq>}.</p>
+ *
+ * <p>group: the last delivered seq and the ack low watermark (every seq up to it acked) live in
+ * a 16 byte mapped file, pending messages in memory. after a restart everything between the
+ * watermark and the last delivered seq is pending again without an owner, so a message acked
+ * out of order right before a crash is delivered once more (at-least-once). segments are
+ * deleted once every group's watermark has passed them.</p>
+ *
+ * <p>everything runs under one lock per queue; an append or read is a copy into / out of the page cache.</p>
+ */
+@Slf4j
+final class TaskJournal implements Closeable {
+
+    private static final int HEADER_SIZE = 24;
+    private static final int GROUP_STATE_SIZE = 16;
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String GROUP_SUFFIX = ".group";
+
+    /**
+     * a delivered message
+     */
+    record Entry(StreamMessageId id, Map<String, String> data) {
+    }
+
+    /**
+     * claimed messages and the scan cursor, 0 once the scan is complete
+     */
+    record Claimed(List<Entry> entries, long next) {
+    }
+
+    private final String name;
+    private final Path dir;
+    private final int segmentSize;
+    private final boolean sync;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+
+    /**
+     * base seq -> segment, the last one is written
+     */
+    private final NavigableMap<Long, Segment> segments = new TreeMap<>();
+    private final Map<String, Group> groups = new HashMap<>();
+    private long lastSeq;
+    private long lastTimestamp;
+
+    TaskJournal(String name, Path dir, int segmentSize, boolean sync) throws IOException {
+        this.name = name;
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.sync = sync;
+        Files.createDirectories(dir);
+        recover();
+        loadGroups();
+    }
+
+    /**
+     * append the messages in order, readers blocked in {@link #read} are woken up
+     */
+    List<StreamMessageId> append(List<Map<String, String>> messages) throws IOException {
+        List<byte[]> encoded = messages.stream().map(TaskJournal::encode).toList();
+        lock.lock();
+        try {
+            List<StreamMessageId> ids = new ArrayList<>(encoded.size());
+            for (byte[] fields : encoded) {
+                ids.add(write(fields));
+            }
+            appended.signalAll();
+            return ids;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * create the group if missing, a new group starts at the oldest retained message
+     */
+    void createGroup(String groupName) throws IOException {
+        lock.lock();
+        try {
+            String file = fileName(groupName);
+            if (!groups.containsKey(file)) {
+                groups.put(file, openGroup(file));
+                log.info("journal consumer group created: queue={}, group={}", name, groupName);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * deliver up to count new messages to the consumer
+     *
+     * @param blockNanos wait this long when nothing is available, 0 returns at once
+     */
+    List<Entry> read(String groupName, String consumer, int count, long blockNanos) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            Group group = group(groupName);
+            long nanos = blockNanos;
+            while (group.delivered >= lastSeq && nanos > 0) {
+                nanos = appended.awaitNanos(nanos);
+            }
+            long to = Math.min(lastSeq, group.delivered + count);
+            if (to <= group.delivered) {
+                return List.of();
+            }
+            long now = System.currentTimeMillis();
+            List<Entry> entries = new ArrayList<>((int) (to - group.delivered));
+            for (long seq = group.delivered + 1; seq <= to; seq++) {
+                entries.add(entry(seq));
+                group.pending.put(seq, new Pending(consumer, now));
+            }
+            group.delivered = to;
+            group.persist();
+            return entries;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * pending messages of the consumer, or without owner (delivered before a restart), after afterSeq
+     */
+    List<Entry> readOwnPending(String groupName, String consumer, long afterSeq, int count) {
+        lock.lock();
+        try {
+            Group group = group(groupName);
+            long now = System.currentTimeMillis();
+            List<Entry> entries = new ArrayList<>();
+            for (Map.Entry<Long, Pending> pending : group.pending.tailMap(afterSeq, false).entrySet()) {
+                if (entries.size() >= count) {
+                    break;
+                }
+                Pending message = pending.getValue();
+                if (message.consumer != null && !message.consumer.equals(consumer)) {
+                    continue;
+                }
+                message.consumer = consumer;
+                message.deliveredAt = now;
+                entries.add(entry(pending.getKey()));
+            }
+            return entries;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * take over pending messages of other consumers idle for at least minIdleMillis, from startSeq on
+     */
+    Claimed claimIdle(String groupName, String consumer, long minIdleMillis, long startSeq, int count) {
+        lock.lock();
+        try {
+            Group group = group(groupName);
+            long now = System.currentTimeMillis();
+            List<Entry> entries = new ArrayList<>();
+            for (Map.Entry<Long, Pending> pending : group.pending.tailMap(startSeq, true).entrySet()) {
+                if (entries.size() >= count) {
+                    return new Claimed(entries, pending.getKey());
+                }
+                Pending message = pending.getValue();
+                if (consumer.equals(message.consumer) || now - message.deliveredAt < minIdleMillis) {
+                    continue;
+                }
+                message.consumer = consumer;
+                message.deliveredAt = now;
+                entries.add(entry(pending.getKey()));
+            }
+            return new Claimed(entries, 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void renew(String groupName, String consumer, long... seqs) {
+        lock.lock();
+        try {
+            Group group = group(groupName);
+            long now = System.currentTimeMillis();
+            for (long seq : seqs) {
+                Pending message = group.pending.get(seq);
+                if (message != null && consumer.equals(message.consumer)) {
+                    message.deliveredAt = now;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void ack(String groupName, long... seqs) {
+        lock.lock();
+        try {
+            Group group = group(groupName);
+            for (long seq : seqs) {
+                group.pending.remove(seq);
+            }
+            long committed = group.pending.isEmpty() ? group.delivered : group.pending.firstKey() - 1;
+            if (committed != group.committed) {
+                group.committed = committed;
+                group.persist();
+                deleteConsumedSegments();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return empty when the group does not exist
+     */
+    Optional<TaskQueue.GroupStats> stats(String groupName) {
+        lock.lock();
+        try {
+            Group group = groups.get(fileName(groupName));
+            if (group == null) {
+                return Optional.empty();
+            }
+            return Optional.of(new TaskQueue.GroupStats(lastSeq - group.delivered, group.pending.size(), group.delivered));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            for (Group group : groups.values()) {
+                group.state.force();
+                group.channel.close();
+            }
+            for (Segment segment : segments.values()) {
+                segment.buffer.force();
+                segment.channel.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private StreamMessageId write(byte[] fields) throws IOException {
+        int size = HEADER_SIZE + fields.length;
+        if (size > segmentSize) {
+            throw new IllegalArgumentException("message of " + size + " bytes does not fit into a journal segment of " + segmentSize);
+        }
+        Segment segment = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        if (segment == null || segment.writePos + size > segment.buffer.capacity()) {
+            segment = openSegment(lastSeq + 1);
+        }
+
+        long seq = lastSeq + 1;
+        // ids stay ordered when the clock goes back
+        long timestamp = Math.max(System.currentTimeMillis(), lastTimestamp);
+        MappedByteBuffer buffer = segment.buffer;
+        int pos = segment.writePos;
+        buffer.putLong(pos + 8, seq);
+        buffer.putLong(pos + 16, timestamp);
+        buffer.put(pos + HEADER_SIZE, fields);
+        buffer.putInt(pos + 4, crc(buffer, pos, fields.length));
+        // length last: the record exists once it is non-zero
+        buffer.putInt(pos, fields.length);
+        if (sync) {
+            buffer.force(pos, size);
+        }
+
+        segment.index(pos, size);
+        lastSeq = seq;
+        lastTimestamp = timestamp;
+        return new StreamMessageId(timestamp, seq);
+    }
+
+    private Entry entry(long seq) {
+        Segment segment = segments.floorEntry(seq).getValue();
+        int pos = segment.offsets[(int) (seq - segment.baseSeq)];
+        int length = segment.buffer.getInt(pos);
+        long timestamp = segment.buffer.getLong(pos + 16);
+        return new Entry(new StreamMessageId(timestamp, seq), decode(segment.buffer.slice(pos + HEADER_SIZE, length)));
+    }
+
+    private Group group(String groupName) {
+        Group group = groups.get(fileName(groupName));
+        if (group == null) {
+            throw new IllegalStateException("no consumer group " + groupName + " on journal " + name);
+        }
+        return group;
+    }
+
+    private long firstSeq() {
+        return segments.isEmpty() ? lastSeq + 1 : segments.firstKey();
+    }
+
+    /**
+     * segments below every group's watermark, never the one being written
+     */
+    private void deleteConsumedSegments() {
+        long committed = groups.values().stream().mapToLong(group -> group.committed).min().orElse(0);
+        while (segments.size() > 1) {
+            long nextBase = segments.higherKey(segments.firstKey());
+            if (nextBase - 1 > committed) {
+                return;
+            }
+            Segment segment = segments.pollFirstEntry().getValue();
+            try {
+                segment.channel.close();
+                Files.deleteIfExists(segment.path);
+                log.debug("journal segment deleted: queue={}, segment={}", name, segment.path.getFileName());
+            } catch (IOException e) {
+                log.warn("delete journal segment failed: queue={}, segment={}, error={}", name, segment.path, e.getMessage());
+            }
+        }
+    }
+
+    // ==================== recovery ====================
+
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(dir)) {
+            files = list.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted().toList();
+        }
+        for (Path file : files) {
+            String fileName = file.getFileName().toString();
+            long baseSeq = Long.parseLong(fileName.substring(0, fileName.length() - SEGMENT_SUFFIX.length()));
+            if (segments.isEmpty()) {
+                lastSeq = baseSeq - 1;
+            } else if (baseSeq != lastSeq + 1) {
+                throw new IOException("journal " + name + " has a gap before " + fileName + ", expected seq " + (lastSeq + 1));
+            }
+            Segment segment = openSegment(baseSeq);
+            scan(segment);
+            lastSeq = baseSeq + segment.count - 1;
+        }
+        if (!segments.isEmpty()) {
+            log.info("journal recovered: queue={}, segments={}, messages={}..{}", name, segments.size(), firstSeq(), lastSeq);
+        }
+    }
+
+    /**
+     * index the complete records of the segment, the first incomplete one ends it
+     */
+    private void scan(Segment segment) {
+        MappedByteBuffer buffer = segment.buffer;
+        int pos = 0;
+        while (pos + HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(pos);
+            if (length <= 0 || length > buffer.capacity() - pos - HEADER_SIZE) {
+                break;
+            }
+            if (buffer.getLong(pos + 8) != segment.baseSeq + segment.count || buffer.getInt(pos + 4) != crc(buffer, pos, length)) {
+                break;
+            }
+            segment.index(pos, HEADER_SIZE + length);
+            long timestamp = buffer.getLong(pos + 16);
+            lastTimestamp = Math.max(lastTimestamp, timestamp);
+            pos += HEADER_SIZE + length;
+        }
+        if (pos + 4 <= buffer.capacity() && buffer.getInt(pos) != 0) {
+            // torn record of a crash, cleared so the next append starts on zeroed bytes
+            log.warn("journal torn record dropped: queue={}, segment={}, offset={}", name, segment.path.getFileName(), pos);
+            for (int i = pos; i < buffer.capacity(); i++) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+    }
+
+    private void loadGroups() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(dir)) {
+            files = list.filter(path -> path.getFileName().toString().endsWith(GROUP_SUFFIX)).toList();
+        }
+        for (Path file : files) {
+            String fileName = file.getFileName().toString();
+            String key = fileName.substring(0, fileName.length() - GROUP_SUFFIX.length());
+            Group group = openGroup(key);
+            groups.put(key, group);
+            if (!group.pending.isEmpty()) {
+                log.info("journal group recovered: queue={}, group={}, pending={}", name, key, group.pending.size());
+            }
+        }
+    }
+
+    private Segment openSegment(long baseSeq) throws IOException {
+        Path path = dir.resolve(String.format("%020d%s", baseSeq, SEGMENT_SUFFIX));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // an existing segment written with a larger segmentSize keeps its size
+        long size = Math.max(channel.size(), segmentSize);
+        Segment segment = new Segment(baseSeq, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        segments.put(baseSeq, segment);
+        return segment;
+    }
+
+    private Group openGroup(String key) throws IOException {
+        FileChannel channel = FileChannel.open(dir.resolve(key + GROUP_SUFFIX),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Group group = new Group(channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, GROUP_STATE_SIZE));
+        // the log may have lost a torn tail, and a new group starts at the oldest retained message
+        long delivered = Math.min(Math.max(group.state.getLong(0), firstSeq() - 1), lastSeq);
+        long committed = Math.min(Math.max(group.state.getLong(8), firstSeq() - 1), delivered);
+        group.delivered = delivered;
+        group.committed = committed;
+        for (long seq = committed + 1; seq <= delivered; seq++) {
+            group.pending.put(seq, new Pending(null, 0));
+        }
+        group.persist();
+        return group;
+    }
+
+    // ==================== encoding ====================
+
+    /**
+     * field count, then length-prefixed UTF-8 key / value pairs
+     */
+    static byte[] encode(Map<String, String> message) {
+        byte[][] parts = new byte[message.size() * 2][];
+        int size = 4;
+        int i = 0;
+        for (Map.Entry<String, String> field : message.entrySet()) {
+            parts[i] = field.getKey().getBytes(StandardCharsets.UTF_8);
+            parts[i + 1] = Objects.requireNonNullElse(field.getValue(), "").getBytes(StandardCharsets.UTF_8);
+            size += 8 + parts[i].length + parts[i + 1].length;
+            i += 2;
+        }
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.putInt(message.size());
+        for (byte[] part : parts) {
+            out.putInt(part.length);
+            out.put(part);
+        }
+        return out.array();
+    }
+
+    static Map<String, String> decode(ByteBuffer in) {
+        int fields = in.getInt();
+        Map<String, String> message = HashMap.newHashMap(fields);
+        for (int i = 0; i < fields; i++) {
+            message.put(readString(in), readString(in));
+        }
+        return message;
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * over seq, timestamp and fields
+     */
+    private static int crc(ByteBuffer buffer, int pos, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(pos + 8, HEADER_SIZE - 8 + length));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * group names and queue names as file names
+     */
+    static String fileName(String name) {
+        return name.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    private static final class Segment {
+        private final long baseSeq;
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+
+        /**
+         * offsets[seq - baseSeq] = position of the record
+         */
+        private int[] offsets = new int[256];
+        private int count;
+        private int writePos;
+
+        private Segment(long baseSeq, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.baseSeq = baseSeq;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        private void index(int pos, int size) {
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            offsets[count++] = pos;
+            writePos = pos + size;
+        }
+    }
+
+    private final class Group {
+        private final FileChannel channel;
+        private final MappedByteBuffer state;
+
+        /**
+         * last seq handed to a consumer
+         */
+        private long delivered;
+
+        /**
+         * ack low watermark, every seq up to it is acked
+         */
+        private long committed;
+        private final NavigableMap<Long, Pending> pending = new TreeMap<>();
+
+        private Group(FileChannel channel, MappedByteBuffer state) {
+            this.channel = channel;
+            this.state = state;
+        }
+
+        private void persist() {
+            state.putLong(0, delivered);
+            state.putLong(8, committed);
+            if (sync) {
+                state.force();
+            }
+        }
+    }
+
+    /**
+     * owner null: delivered before a restart, free for anyone
+     */
+    private static final class Pending {
+        private String consumer;
+        private long deliveredAt;
+
+        private Pending(String consumer, long deliveredAt) {
+            this.consumer = consumer;
+            this.deliveredAt = deliveredAt;
+        }
+    }
+}
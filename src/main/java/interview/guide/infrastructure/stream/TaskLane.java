@@ -0,0 +1,61 @@
+package interview.guide.infrastructure.stream;
+
+import interview.guide.common.constant.AsyncTaskStreamConstants;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * priority lane of a task stream
+ *
+ * <p>INTERACTIVE is the stream itself, served first. BULK is split into
+ * {@code bulkPartitions} streams ({@code <stream>:bulk:<n>}), a user is hashed to one partition,
+ * so one user's 500-file import only competes with the imports of other users, never with
+ * single uploads, and the worker takes partitions round-robin.</p>
+ */
+public enum TaskLane {
+
+    INTERACTIVE,
+
+    BULK;
+
+    /**
+     * stream a task of this lane is added to
+     *
+     * @param partitions bulk partitions of the worker, 0 sends bulk tasks to the interactive stream
+     */
+    public String streamKey(String streamKey, String userId, int partitions) {
+        if (this == INTERACTIVE || partitions <= 0) {
+            return streamKey;
+        }
+        int partition = Math.floorMod(userId == null ? 0 : userId.hashCode(), partitions);
+        return bulkKey(streamKey, partition);
+    }
+
+    public static String bulkKey(String streamKey, int partition) {
+        return streamKey + AsyncTaskStreamConstants.BULK_LANE_KEY_INFIX + partition;
+    }
+
+    /**
+     * the interactive stream followed by all bulk partitions
+     */
+    public static List<String> streamKeys(String streamKey, int partitions) {
+        List<String> keys = new ArrayList<>(partitions + 1);
+        keys.add(streamKey);
+        for (int i = 0; i < partitions; i++) {
+            keys.add(bulkKey(streamKey, i));
+        }
+        return keys;
+    }
+
+    /**
+     * lane saved as a task param, INTERACTIVE when absent
+     */
+    public static TaskLane parse(String lane) {
+        return lane == null || lane.isBlank() ? INTERACTIVE : valueOf(lane);
+    }
+
+    public static TaskLane of(String streamKey, String laneKey) {
+        return streamKey.equals(laneKey) ? INTERACTIVE : BULK;
+    }
+}
@@ -0,0 +1,149 @@
+package interview.guide.infrastructure.stream;
+
+import org.redisson.api.stream.StreamMessageId;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * transport of the task streams behind {@link StreamWorker} and the producers, chosen by app.stream.type
+ * <ul>
+ *   <li>redis (default): Redis Streams with consumer groups, see {@link RedisTaskQueue}</li>
+ *   <li>journal: memory-mapped append-only files in this JVM, for single-node deployments and
+ *       test rigs, see {@link JournalTaskQueue}</li>
+ * </ul>
+ *
+ * <p>the contract is the consumer group one of Redis Streams: a message is delivered to one
+ * consumer of a group and stays pending until acked; pending messages of a consumer are replayed
+ * to it after a restart and taken over by others once idle. delivery is at-least-once on both
+ * backends. message ids are {@code <millis>-<seq>}, ordered within one queue.</p>
+ *
+ * <p>the task queues, their scheduled retries and dead letters are all behind this interface. the
+ * rest of the application state does not move with app.stream.type and still needs Redis: upload
+ * task state and issued presigned uploads, the parsed-text cache index, single-flight locks, rate
+ * limits and the cross-node fan-out of task events (SSE).</p>
+ */
+public interface TaskQueue {
+
+    /**
+     * receives delivered messages, called on the reading thread
+     */
+    @FunctionalInterface
+    interface MessageProcessor {
+        void process(StreamMessageId messageId, Map<String, String> data);
+    }
+
+    /**
+     * consumer group state (XINFO GROUPS)
+     *
+     * @param lag         messages not delivered to the group yet
+     * @param pending     delivered, not acked
+     * @param entriesRead messages delivered to the group so far, a counter
+     */
+    record GroupStats(long lag, long pending, long entriesRead) {
+    }
+
+    /**
+     * create the queue and the group if missing
+     */
+    void createGroup(String queue, String group);
+
+    /**
+     * @param maxLen approximate max length, older messages may be trimmed; 0 = no limit
+     * @return message id
+     */
+    String add(String queue, Map<String, String> message, int maxLen);
+
+    /**
+     * add several messages at once (one round trip)
+     */
+    List<String> addAll(String queue, List<Map<String, String>> messages, int maxLen);
+
+    /**
+     * deliver up to count new messages to the consumer
+     *
+     * @param block how long to wait when nothing is available, zero returns at once
+     * @return messages delivered
+     */
+    int read(String queue, String group, String consumer, int count, Duration block, MessageProcessor processor);
+
+    /**
+     * deliver the consumer's own pending messages again (read before a restart, never acked), by id
+     *
+     * @param afterId start after this id, {@link StreamMessageId#ALL} the first time
+     * @return last id of this page, null when there are no more
+     */
+    StreamMessageId readOwnPending(String queue, String group, String consumer, StreamMessageId afterId,
+                                   int count, MessageProcessor processor);
+
+    /**
+     * take over pending messages of other consumers idle for at least minIdle and deliver them
+     *
+     * @param startId scan cursor, 0-0 the first time
+     * @return cursor of the next call, 0-0 again once the scan is complete
+     */
+    StreamMessageId claimIdle(String queue, String group, String consumer, Duration minIdle,
+                              StreamMessageId startId, int count, MessageProcessor processor);
+
+    /**
+     * reset the idle time of messages the consumer is still handling
+     */
+    void renew(String queue, String group, String consumer, StreamMessageId... messageIds);
+
+    void ack(String queue, String group, StreamMessageId... messageIds);
+
+    /**
+     * @return empty when the queue or the group does not exist
+     */
+    Optional<GroupStats> groupStats(String queue, String group);
+
+    /**
+     * add the message to the queue once the delay has passed, see {@link #promoteDue}
+     */
+    void schedule(String queue, Map<String, String> message, Duration delay);
+
+    /**
+     * move due scheduled messages onto the queue, may be called by every node
+     *
+     * @return messages moved
+     */
+    long promoteDue(String queue, int maxLen);
+
+    /**
+     * scheduled messages not due yet
+     */
+    long countDelayed(String queue);
+
+    /**
+     * keep a message that ran out of retries until it is replayed or purged
+     *
+     * @param maxLen approximate max number of dead letters kept, older ones may be dropped
+     */
+    void addDeadLetter(String queue, Map<String, String> message, int maxLen);
+
+    /**
+     * oldest dead letters first
+     */
+    Map<StreamMessageId, Map<String, String>> deadLetters(String queue, int count);
+
+    /**
+     * the given dead letters, unknown ids are skipped
+     */
+    Map<StreamMessageId, Map<String, String>> deadLetters(String queue, StreamMessageId... ids);
+
+    /**
+     * @return dead letters removed
+     */
+    long removeDeadLetters(String queue, StreamMessageId... ids);
+
+    /**
+     * remove every dead letter of the queue
+     *
+     * @return dead letters removed
+     */
+    long clearDeadLetters(String queue);
+
+    long countDeadLetters(String queue);
+}
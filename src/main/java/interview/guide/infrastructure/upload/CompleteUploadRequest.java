@@ -0,0 +1,12 @@
+package interview.guide.infrastructure.upload;
+
+import jakarta.validation.constraints.NotBlank;
+
+/**
+ * client finished the presigned PUT
+ */
+public record CompleteUploadRequest(
+        @NotBlank(message = "fileKey 不能为空")
+        String fileKey
+) {
+}
@@ -0,0 +1,24 @@
+package interview.guide.infrastructure.upload;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
+
+/**
+ * request for a presigned direct-to-storage upload
+ * name / category are only used by knowledge base uploads
+ */
+public record PresignUploadRequest(
+        @NotBlank(message = "文件名不能为空")
+        String fileName,
+
+        @NotBlank(message = "文件类型不能为空")
+        String contentType,
+
+        @Positive(message = "文件大小必须大于 0")
+        long size,
+
+        String name,
+
+        String category
+) {
+}
@@ -0,0 +1,116 @@
+package interview.guide.infrastructure.upload;
+
+import interview.guide.exception.BusinessException;
+import interview.guide.exception.ErrorCode;
+import interview.guide.infrastructure.redis.RedisService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import static interview.guide.common.constant.AsyncTaskStreamConstants.UPLOAD_FLIGHT_LOCK_PREFIX;
+import static interview.guide.common.constant.AsyncTaskStreamConstants.UPLOAD_FLIGHT_WAIT_SECONDS;
+
+/**
+ * single-flight per uploaded file (type + SHA-256)
+ *
+ * <p>only one upload of the same bytes runs at a time: in process through a shared future,
+ * across nodes through a Redis lock. a concurrent duplicate waits for the running upload and
+ * then runs its own work, whose hash lookup now finds the saved row and takes the duplicate
+ * path, so parse, storage write and LLM / embedding work happen once.</p>
+ *
+ * <p>if the first upload fails, the next waiter does the full work. a lock that cannot be taken
+ * (timeout, Redis down) only loses the deduplication, the unique hash index still holds.</p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UploadSingleFlight {
+
+    private final RedisService redisService;
+
+    private final ConcurrentHashMap<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * run the work for this file, after any in-flight upload of the same file
+     *
+     * @param type     upload type (resume / knowledgebase)
+     * @param fileHash SHA-256 of the file, no coordination when null
+     * @param work     hash lookup + parse + store + save
+     */
+    public <T> T execute(String type, String fileHash, Supplier<T> work) {
+        if (fileHash == null || fileHash.isBlank()) {
+            return work.get();
+        }
+        String key = type + ":" + fileHash;
+
+        while (true) {
+            CompletableFuture<Void> mine = new CompletableFuture<>();
+            CompletableFuture<Void> running = inFlight.putIfAbsent(key, mine);
+            if (running == null) {
+                try {
+                    return executeLocked(key, work);
+                } finally {
+                    inFlight.remove(key, mine);
+                    mine.complete(null);
+                }
+            }
+
+            log.info("same file is being uploaded, waiting: {}", key);
+            if (!await(running)) {
+                log.warn("wait for in-flight upload timed out, running anyway: {}", key);
+                return work.get();
+            }
+        }
+    }
+
+    /**
+     * cross-node part, lease renewed by the Redisson watchdog while the work runs
+     */
+    private <T> T executeLocked(String key, Supplier<T> work) {
+        RLock lock = null;
+        boolean locked = false;
+        try {
+            lock = redisService.getLock(UPLOAD_FLIGHT_LOCK_PREFIX + key);
+            locked = lock.tryLock(UPLOAD_FLIGHT_WAIT_SECONDS, -1, TimeUnit.SECONDS);
+            if (!locked) {
+                log.warn("upload lock wait timed out, running anyway: {}", key);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCode.INTERNAL_ERROR, "upload interrupted");
+        } catch (RuntimeException e) {
+            log.warn("upload lock unavailable, running without it: {} - {}", key, e.getMessage());
+        }
+
+        try {
+            return work.get();
+        } finally {
+            if (locked && lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static boolean await(CompletableFuture<Void> running) {
+        try {
+            running.get(UPLOAD_FLIGHT_WAIT_SECONDS, TimeUnit.SECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCode.INTERNAL_ERROR, "upload interrupted");
+        } catch (ExecutionException e) {
+            // never completed exceptionally
+            return true;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package interview.guide.infrastructure.upload;
+
+import interview.guide.common.config.StreamConfigProperties;
+import interview.guide.common.constant.AsyncTaskStreamConstants;
+import interview.guide.common.model.UploadTaskStage;
+import interview.guide.infrastructure.file.FileStorageService;
+import interview.guide.infrastructure.file.IngestedFile;
+import interview.guide.infrastructure.stream.StreamMetrics;
+import interview.guide.infrastructure.stream.StreamRetryService;
+import interview.guide.infrastructure.stream.StreamTask;
+import interview.guide.infrastructure.stream.StreamWorker;
+import interview.guide.infrastructure.stream.TaskQueue;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * background stage of async uploads: parse, store, save and enqueue off the request thread
+ */
+@Slf4j
+@Component
+public class UploadStreamConsumer extends StreamWorker {
+    private final UploadTaskService uploadTaskService;
+    private final FileStorageService storageService;
+    private final Map<String, UploadTaskHandler> handlers;
+
+    public UploadStreamConsumer(TaskQueue taskQueue, StreamRetryService retryService, StreamMetrics metrics,
+                                StreamConfigProperties streamConfig,
+                                UploadTaskService uploadTaskService, FileStorageService storageService,
+                                List<UploadTaskHandler> handlers) {
+        super(AsyncTaskStreamConstants.UPLOAD_INGEST_WORKER, taskQueue, retryService, metrics, streamConfig);
+        this.uploadTaskService = uploadTaskService;
+        this.storageService = storageService;
+        this.handlers = handlers.stream()
+                .collect(Collectors.toMap(UploadTaskHandler::type, Function.identity()));
+    }
+
+    @Override
+    protected String streamKey() {
+        return uploadTaskService.getStreamKey();
+    }
+
+    @Override
+    protected String groupName() {
+        return AsyncTaskStreamConstants.UPLOAD_INGEST_GROUP_NAME;
+    }
+
+    @Override
+    protected String consumerPrefix() {
+        return AsyncTaskStreamConstants.UPLOAD_INGEST_CONSUMER_PREFIX;
+    }
+
+    @Override
+    protected void handle(StreamTask task) throws Exception {
+        String taskId = task.get(AsyncTaskStreamConstants.FIELD_TASK_ID);
+        UploadTaskHandler handler = handlers.get(task.get(AsyncTaskStreamConstants.FIELD_TASK_TYPE));
+
+        if (taskId == null || handler == null) {
+            log.warn("invalid upload message, skip: messageId={}, taskId={}", task.messageId(), taskId);
+            return;
+        }
+
+        log.info("upload task start: taskId={}, type={}, retryCount={}", taskId, handler.type(), task.retryCount());
+        IngestedFile file = null;
+        boolean keepFile = false;
+        try {
+            file = uploadTaskService.openIngestedFile(task.data());
+            uploadTaskService.updateStage(taskId, UploadTaskStage.SPOOLED);
+            Map<String, Object> result = handler.process(file, uploadTaskService.toParams(task.data()),
+                    stage -> uploadTaskService.updateStage(taskId, stage));
+            uploadTaskService.complete(taskId, result);
+            log.info("upload task done: taskId={}", taskId);
+        } catch (Exception e) {
+            // the spool file is needed by the retry
+            keepFile = task.hasRetriesLeft() && uploadTaskService.isSpooled(task.data());
+            throw e;
+        } finally {
+            if (file != null && !keepFile) {
+                file.close();
+            }
+        }
+    }
+
+    @Override
+    protected void onFailed(StreamTask task, String error) {
+        String taskId = task.get(AsyncTaskStreamConstants.FIELD_TASK_ID);
+        uploadTaskService.fail(taskId, "upload failed: " + error);
+        // kept for a retry whose requeue failed
+        uploadTaskService.discardSpool(task.data());
+        deleteStoredUpload(task.data());
+    }
+
+    /**
+     * a failed presigned upload is not kept in storage, unless an earlier delivery saved a row
+     * pointing at it (e.g. it failed after the save)
+     */
+    private void deleteStoredUpload(Map<String, String> data) {
+        String storageKey = uploadTaskService.toParams(data).get(UploadTaskHandler.PARAM_STORAGE_KEY);
+        if (storageKey == null) {
+            return;
+        }
+        try {
+            UploadTaskHandler handler = handlers.get(data.get(AsyncTaskStreamConstants.FIELD_TASK_TYPE));
+            if (handler != null && handler.isReferenced(storageKey)) {
+                log.info("failed upload is referenced, kept in storage: {}", storageKey);
+                return;
+            }
+            storageService.deleteFile(storageKey);
+        } catch (Exception e) {
+            log.warn("delete failed upload from storage failed: {} - {}", storageKey, e.getMessage());
+        }
+    }
+}
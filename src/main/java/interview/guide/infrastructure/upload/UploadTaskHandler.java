@@ -0,0 +1,49 @@
+package interview.guide.infrastructure.upload;
+
+import interview.guide.common.model.UploadTaskStage;
+import interview.guide.infrastructure.file.IngestedFile;
+
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * background stage of an async upload: parse, store, save, enqueue
+ * implemented by the module upload services, picked by {@link #type()}
+ */
+public interface UploadTaskHandler {
+
+    /**
+     * param set when the file is already in storage (presigned upload), the handler
+     * must not upload it again and should delete it when the file is not kept
+     */
+    String PARAM_STORAGE_KEY = "storageKey";
+
+    /**
+     * lane granted by admission control at submit time ({@code TaskLane} name) and the submitting user,
+     * the background stage enqueues the follow-up task there
+     */
+    String PARAM_LANE = "lane";
+
+    String PARAM_USER_ID = "userId";
+
+    /**
+     * task type, stored with the task and used to route messages
+     */
+    String type();
+
+    /**
+     * process a spooled upload, same work as the synchronous upload
+     *
+     * @param file     spooled upload, closed by the caller
+     * @param params   request params saved with the task (e.g. name, category)
+     * @param progress stage callback
+     * @return upload result, same shape as the synchronous response
+     */
+    Map<String, Object> process(IngestedFile file, Map<String, String> params, Consumer<UploadTaskStage> progress);
+
+    /**
+     * whether a saved row points at the stored object, such an object is kept when the task fails
+     * (a redelivered task may have saved the row before)
+     */
+    boolean isReferenced(String storageKey);
+}
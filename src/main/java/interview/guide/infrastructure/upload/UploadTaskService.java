@@ -0,0 +1,317 @@
+package interview.guide.infrastructure.upload;
+
+import interview.guide.common.config.StreamConfigProperties;
+import interview.guide.common.constant.AsyncTaskStreamConstants;
+import interview.guide.common.model.AsyncTaskStatus;
+import interview.guide.common.model.UploadTaskStage;
+import interview.guide.exception.BusinessException;
+import interview.guide.exception.ErrorCode;
+import interview.guide.infrastructure.event.TaskEvent;
+import interview.guide.infrastructure.event.TaskEventPublisher;
+import interview.guide.infrastructure.event.TaskStatusSource;
+import interview.guide.infrastructure.file.FileIngestionService;
+import interview.guide.infrastructure.file.FileStorageService;
+import interview.guide.infrastructure.file.IngestedFile;
+import interview.guide.infrastructure.file.PresignedUpload;
+import interview.guide.infrastructure.redis.RedisService;
+import interview.guide.infrastructure.stream.TaskQueue;
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * async upload tasks
+ *
+ * <p>the request thread only spools the upload and calls {@link #submit}, which records the
+ * task in Redis and enqueues it on this node's ingest stream. {@link UploadStreamConsumer}
+ * runs the handler and reports stages back here.</p>
+ *
+ * <p>presigned uploads never pass through this node: {@link #registerPresigned} remembers the
+ * issued key, {@link #submitFromStorage} enqueues a task that reads the object from storage.</p>
+ *
+ * <p>every stage change is also published as a {@link TaskEvent} (SSE, no polling needed).</p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UploadTaskService implements TaskStatusSource {
+
+    private static final String FIELD_PATH = "path";
+    private static final String FIELD_FILENAME = "originalFilename";
+    private static final String FIELD_CONTENT_TYPE = "contentType";
+    private static final String FIELD_DETECTED_CONTENT_TYPE = "detectedContentType";
+    private static final String FIELD_SIZE = "size";
+    private static final String FIELD_FILE_HASH = "fileHash";
+    private static final String FIELD_STORAGE_KEY = "storageKey";
+
+    private static final String PARAM_PREFIX = "param.";
+
+    private final RedisService redisService;
+    private final TaskQueue taskQueue;
+    private final ObjectMapper objectMapper;
+    private final FileIngestionService fileIngestionService;
+    private final FileStorageService storageService;
+    private final TaskEventPublisher eventPublisher;
+    private final StreamConfigProperties streamConfig;
+
+    /**
+     * node-local ingest stream, the spool file only exists on this node
+     */
+    @Getter
+    private String streamKey;
+
+    @PostConstruct
+    public void init() {
+        this.streamKey = AsyncTaskStreamConstants.UPLOAD_INGEST_STREAM_KEY_PREFIX + streamConfig.getNodeId();
+    }
+
+    /**
+     * record the task and enqueue it, the spool file is now owned by the task
+     *
+     * @return task id
+     */
+    public String submit(String type, IngestedFile file, Map<String, String> params) {
+        Map<String, String> message = new HashMap<>();
+        message.put(FIELD_PATH, file.path().toString());
+        message.put(FIELD_FILENAME, file.originalFilename() != null ? file.originalFilename() : "");
+        message.put(FIELD_CONTENT_TYPE, file.contentType() != null ? file.contentType() : "");
+        message.put(FIELD_DETECTED_CONTENT_TYPE, file.detectedContentType());
+        message.put(FIELD_SIZE, String.valueOf(file.size()));
+        message.put(FIELD_FILE_HASH, file.fileHash());
+        return enqueue(type, message, params, UploadTaskStage.SPOOLED);
+    }
+
+    /**
+     * remember an issued presigned upload, so only keys issued here can be completed
+     */
+    public void registerPresigned(String type, PresignedUpload upload, String fileName, String contentType,
+                                  Map<String, String> params) {
+        Map<String, String> pending = new HashMap<>();
+        pending.put(AsyncTaskStreamConstants.FIELD_TASK_TYPE, type);
+        pending.put(FIELD_FILENAME, fileName);
+        pending.put(FIELD_CONTENT_TYPE, contentType);
+        params.forEach((k, v) -> {
+            if (v != null) {
+                pending.put(PARAM_PREFIX + k, v);
+            }
+        });
+        String key = presignedKey(upload.fileKey());
+        redisService.hSetAllStrings(key, pending);
+        redisService.expire(key, Duration.ofHours(AsyncTaskStreamConstants.UPLOAD_TASK_TTL_HOURS));
+    }
+
+    /**
+     * the client finished a presigned upload: hash, parse and enqueue from storage
+     *
+     * @return task id
+     */
+    public String submitFromStorage(String type, String fileKey) {
+        String key = presignedKey(fileKey);
+        Map<String, String> pending = redisService.hGetAllStrings(key);
+        if (pending == null || pending.isEmpty() || !type.equals(pending.get(AsyncTaskStreamConstants.FIELD_TASK_TYPE))) {
+            throw new BusinessException(ErrorCode.BAD_REQUEST, "unknown upload: " + fileKey);
+        }
+        if (!storageService.fileExists(fileKey)) {
+            throw new BusinessException(ErrorCode.BAD_REQUEST, "file is not uploaded yet: " + fileKey);
+        }
+        // one-shot claim: of concurrent completions only the one whose delete removed the key enqueues
+        if (!redisService.delete(key)) {
+            throw new BusinessException(ErrorCode.BAD_REQUEST, "upload already completed: " + fileKey);
+        }
+
+        Map<String, String> message = new HashMap<>();
+        message.put(FIELD_STORAGE_KEY, fileKey);
+        message.put(FIELD_FILENAME, pending.get(FIELD_FILENAME));
+        message.put(FIELD_CONTENT_TYPE, pending.get(FIELD_CONTENT_TYPE));
+        Map<String, String> params = toParams(pending);
+        params.put(UploadTaskHandler.PARAM_STORAGE_KEY, fileKey);
+        return enqueue(type, message, params, UploadTaskStage.UPLOADED);
+    }
+
+    private String enqueue(String type, Map<String, String> message, Map<String, String> params, UploadTaskStage stage) {
+        String taskId = UUID.randomUUID().toString();
+        String fileName = message.get(FIELD_FILENAME);
+
+        Map<String, String> task = new HashMap<>();
+        task.put(AsyncTaskStreamConstants.FIELD_TASK_ID, taskId);
+        task.put(AsyncTaskStreamConstants.FIELD_TASK_TYPE, type);
+        task.put("fileName", fileName);
+        putStage(task, stage);
+        saveTask(taskId, task);
+
+        message.put(AsyncTaskStreamConstants.FIELD_TASK_ID, taskId);
+        message.put(AsyncTaskStreamConstants.FIELD_TASK_TYPE, type);
+        message.put(AsyncTaskStreamConstants.FIELD_RETRY_COUNT, "0");
+        params.forEach((k, v) -> {
+            if (v != null) {
+                message.put(PARAM_PREFIX + k, v);
+            }
+        });
+
+        taskQueue.add(streamKey, message, streamConfig.worker(AsyncTaskStreamConstants.UPLOAD_INGEST_WORKER).getMaxLen());
+        log.info("upload task submitted: taskId={}, type={}, file={}", taskId, type, fileName);
+        return taskId;
+    }
+
+    /**
+     * task status: stage, status, result or error
+     */
+    public Map<String, Object> getTask(String taskId) {
+        Map<String, String> task = redisService.hGetAllStrings(taskKey(taskId));
+        if (task == null || task.isEmpty()) {
+            throw new BusinessException(ErrorCode.NOT_FOUND, "upload task not found: " + taskId);
+        }
+        Map<String, Object> view = new LinkedHashMap<>(task);
+        String result = task.get("result");
+        if (result != null) {
+            view.put("result", objectMapper.readValue(result, Map.class));
+        }
+        return view;
+    }
+
+    @Override
+    public String type() {
+        return AsyncTaskStreamConstants.TASK_EVENT_UPLOAD;
+    }
+
+    @Override
+    public Optional<TaskEvent> current(String taskId) {
+        Map<String, String> task = redisService.hGetAllStrings(taskKey(taskId));
+        if (task == null || task.get("stage") == null) {
+            return Optional.empty();
+        }
+        return Optional.of(toEvent(taskId, task));
+    }
+
+    public void updateStage(String taskId, UploadTaskStage stage) {
+        Map<String, String> task = new HashMap<>();
+        putStage(task, stage);
+        saveTask(taskId, task);
+        log.debug("upload task stage: taskId={}, stage={}", taskId, stage);
+    }
+
+    public void complete(String taskId, Map<String, Object> result) {
+        Map<String, String> task = new HashMap<>();
+        putStage(task, UploadTaskStage.ENQUEUED);
+        task.put("result", objectMapper.writeValueAsString(result));
+        saveTask(taskId, task);
+    }
+
+    public void fail(String taskId, String error) {
+        Map<String, String> task = new HashMap<>();
+        putStage(task, UploadTaskStage.FAILED);
+        task.put("error", error.length() > 500 ? error.substring(0, 500) : error);
+        saveTask(taskId, task);
+    }
+
+    /**
+     * the upload of a stream message: the local spool file, or read once from storage
+     * (hash + sniff + spool) for presigned uploads
+     */
+    IngestedFile openIngestedFile(Map<String, String> message) throws IOException {
+        String storageKey = message.get(FIELD_STORAGE_KEY);
+        if (storageKey != null) {
+            try (InputStream inputStream = storageService.openStream(storageKey)) {
+                return fileIngestionService.ingest(inputStream, message.get(FIELD_FILENAME), message.get(FIELD_CONTENT_TYPE));
+            }
+        }
+
+        Path path = Path.of(message.get(FIELD_PATH));
+        if (!Files.exists(path)) {
+            throw new BusinessException(ErrorCode.INTERNAL_ERROR, "spooled file is gone");
+        }
+        return new IngestedFile(
+                message.get(FIELD_FILENAME),
+                message.get(FIELD_CONTENT_TYPE),
+                message.get(FIELD_DETECTED_CONTENT_TYPE),
+                Long.parseLong(message.get(FIELD_SIZE)),
+                message.get(FIELD_FILE_HASH),
+                path
+        );
+    }
+
+    /**
+     * the spool file of this message survives a retry (presigned uploads are read from storage again)
+     */
+    boolean isSpooled(Map<String, String> message) {
+        return message.containsKey(FIELD_PATH);
+    }
+
+    /**
+     * delete the spool file of a message that will not be processed again
+     */
+    void discardSpool(Map<String, String> message) {
+        String path = message.get(FIELD_PATH);
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(Path.of(path));
+        } catch (IOException e) {
+            log.warn("delete spool file failed: {} - {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * request params saved with the task
+     */
+    Map<String, String> toParams(Map<String, String> message) {
+        Map<String, String> params = new HashMap<>();
+        message.forEach((k, v) -> {
+            if (k.startsWith(PARAM_PREFIX)) {
+                params.put(k.substring(PARAM_PREFIX.length()), v);
+            }
+        });
+        return params;
+    }
+
+    private void saveTask(String taskId, Map<String, String> fields) {
+        fields.put("updatedAt", Instant.now().toString());
+        String key = taskKey(taskId);
+        redisService.hSetAllStrings(key, fields);
+        redisService.expire(key, Duration.ofHours(AsyncTaskStreamConstants.UPLOAD_TASK_TTL_HOURS));
+        eventPublisher.publish(toEvent(taskId, fields));
+    }
+
+    private static TaskEvent toEvent(String taskId, Map<String, String> task) {
+        UploadTaskStage stage = UploadTaskStage.valueOf(task.get("stage"));
+        return TaskEvent.stage(AsyncTaskStreamConstants.TASK_EVENT_UPLOAD, taskId, toStatus(stage), stage, task.get("error"));
+    }
+
+    private static void putStage(Map<String, String> task, UploadTaskStage stage) {
+        task.put("stage", stage.name());
+        task.put("status", toStatus(stage).name());
+    }
+
+    private static AsyncTaskStatus toStatus(UploadTaskStage stage) {
+        return switch (stage) {
+            case UPLOADED, SPOOLED -> AsyncTaskStatus.PENDING;
+            case PARSING, STORING, SAVING -> AsyncTaskStatus.PROCESSING;
+            case ENQUEUED -> AsyncTaskStatus.COMPLETED;
+            case FAILED -> AsyncTaskStatus.FAILED;
+        };
+    }
+
+    private static String presignedKey(String fileKey) {
+        return AsyncTaskStreamConstants.UPLOAD_PRESIGNED_KEY_PREFIX + fileKey;
+    }
+
+    private static String taskKey(String taskId) {
+        return AsyncTaskStreamConstants.UPLOAD_TASK_KEY_PREFIX + taskId;
+    }
+}
@@ -0,0 +1,105 @@
+package interview.guide.modules.admin;
+
+import interview.guide.common.config.StreamConfigProperties;
+import interview.guide.common.result.Result;
+import interview.guide.exception.BusinessException;
+import interview.guide.exception.ErrorCode;
+import interview.guide.infrastructure.stream.DeadLetter;
+import interview.guide.infrastructure.stream.StreamRetryService;
+import interview.guide.infrastructure.stream.StreamWorker;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 任务 Stream 运维接口：延迟重试 / 死信查看、重放、清理
+ * {name} 为 Worker 名称（resume-analyze、kb-vectorize、upload-ingest）
+ * 死信统一在交互通道 Stream 的死信中，重放也回到交互通道
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/admin/streams")
+public class StreamAdminController {
+
+    private final StreamRetryService retryService;
+    private final StreamConfigProperties streamConfig;
+    private final Map<String, StreamWorker> workers;
+
+    public StreamAdminController(StreamRetryService retryService, StreamConfigProperties streamConfig,
+                                 List<StreamWorker> workers) {
+        this.retryService = retryService;
+        this.streamConfig = streamConfig;
+        this.workers = workers.stream()
+                .collect(Collectors.toMap(StreamWorker::getName, Function.identity(), (a, b) -> a, LinkedHashMap::new));
+    }
+
+    /**
+     * 所有任务 Stream 的延迟重试数、死信数
+     */
+    @GetMapping
+    public Result<List<Map<String, Object>>> listStreams() {
+        return Result.success(workers.values().stream()
+                .map(worker -> Map.<String, Object>of(
+                        "name", worker.getName(),
+                        "stream", worker.getStreamKey(),
+                        "delayedRetries", worker.getStreamKeys().stream().mapToLong(retryService::countDelayed).sum(),
+                        "deadLetters", retryService.countDeadLetters(worker.getStreamKey())
+                ))
+                .toList());
+    }
+
+    /**
+     * 查看死信（最早的在前）
+     */
+    @GetMapping("/{name}/dead-letters")
+    public Result<List<DeadLetter>> listDeadLetters(@PathVariable String name,
+                                                    @RequestParam(defaultValue = "100") int count) {
+        return Result.success(retryService.listDeadLetters(worker(name).getStreamKey(), count));
+    }
+
+    /**
+     * 重放死信：指定 ids，或不传时重放最早的 count 条
+     */
+    @PostMapping("/{name}/dead-letters/replay")
+    public Result<Map<String, Object>> replayDeadLetters(@PathVariable String name,
+                                                         @RequestParam(required = false) List<String> ids,
+                                                         @RequestParam(defaultValue = "100") int count) {
+        StreamWorker worker = worker(name);
+        int replayed = retryService.replay(worker.getStreamKey(), ids, count, worker.getConfig().getMaxLen());
+        return Result.success(Map.of("replayed", replayed));
+    }
+
+    /**
+     * 清理死信：指定 ids；不传时清空，需开启 app.stream.dead-letter-purge-all-enabled 且 confirm 为 Stream key
+     */
+    @DeleteMapping("/{name}/dead-letters")
+    public Result<Map<String, Object>> purgeDeadLetters(@PathVariable String name,
+                                                        @RequestParam(required = false) List<String> ids,
+                                                        @RequestParam(required = false) String confirm) {
+        String streamKey = worker(name).getStreamKey();
+        if (ids == null || ids.isEmpty()) {
+            if (!streamConfig.isDeadLetterPurgeAllEnabled()) {
+                throw new BusinessException(ErrorCode.FORBIDDEN, "purging all dead letters is disabled, pass ids");
+            }
+            if (!streamKey.equals(confirm)) {
+                throw new BusinessException(ErrorCode.BAD_REQUEST, "purging all dead letters needs confirm=" + streamKey);
+            }
+            log.warn("purging all dead letters: stream={}", streamKey);
+        }
+        long purged = retryService.purge(streamKey, ids);
+        return Result.success(Map.of("purged", purged));
+    }
+
+    private StreamWorker worker(String name) {
+        StreamWorker worker = workers.get(name);
+        if (worker == null) {
+            throw new BusinessException(ErrorCode.NOT_FOUND, "unknown stream: " + name);
+        }
+        return worker;
+    }
+}
@@ -1,17 +1,26 @@
 package interview.guide.modules.knowledgeBase;
 
 import interview.guide.common.result.Result;
+import interview.guide.infrastructure.file.FileDownloadService;
+import interview.guide.infrastructure.file.PresignedUpload;
+import interview.guide.infrastructure.upload.CompleteUploadRequest;
+import interview.guide.infrastructure.upload.PresignUploadRequest;
+import interview.guide.infrastructure.upload.UploadTaskService;
 import interview.guide.modules.knowledgeBase.model.*;
+import interview.guide.modules.knowledgeBase.service.KnowledgeBaseArchiveService;
 import interview.guide.modules.knowledgeBase.service.KnowledgeBaseListService;
 import interview.guide.modules.knowledgeBase.service.KnowledgeBaseQueryService;
 import interview.guide.modules.knowledgeBase.service.KnowledgeBaseUploadService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Map;
@@ -26,6 +35,9 @@ public class KnowledgeBaseController {
 //    private final KnowledgeBaseUploadService uploadService;
     private final KnowledgeBaseQueryService queryService;
     private final KnowledgeBaseListService listService;
+    private final UploadTaskService uploadTaskService;
+    private final KnowledgeBaseArchiveService archiveService;
+    private final FileDownloadService fileDownloadService;
 //    private final KnowledgeBaseDeleteService deleteService;
 
     /**
@@ -115,37 +127,78 @@ public class KnowledgeBaseController {
 
     // ========== 上传下载 API ==========
 
+    /**
+     * 上传知识库文件
+     * async=true 时只落盘并返回 202 + taskId，通过 /upload/tasks/{taskId} 查询进度
+     */
     @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public Result<Map<String,Object>> uploadKnowledgebase(
+    public ResponseEntity<Result<Map<String,Object>>> uploadKnowledgebase(
             @RequestParam("file")MultipartFile file,
             @RequestParam (value = "name", required = false) String name,
-            @RequestParam(value = "category",required = false) String category)
+            @RequestParam(value = "category",required = false) String category,
+            @RequestParam(value = "async", defaultValue = "false") boolean async)
     {
+        if (async) {
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(Result.success(uploadService.submitUpload(file, name, category)));
+        }
+        return ResponseEntity.ok(Result.success(uploadService.uploadKnowledgeBase(file, name, category)));
+    }
 
-        return Result.success(uploadService.uploadKnowledgeBase(file, name, category));
+    /**
+     * 预签名直传：客户端按返回的 url 和 headers 直接 PUT 到存储，再调用 /upload/complete
+     */
+    @PostMapping("/upload/presign")
+    public Result<PresignedUpload> presignUpload(@Valid @RequestBody PresignUploadRequest request) {
+        return Result.success(uploadService.presignUpload(request));
     }
 
-//    /**
-//     * 下载知识库文件
-//     */
-//    @GetMapping("/api/knowledgebase/{id}/download")
-//    public ResponseEntity<byte[]> downloadKnowledgeBase(@PathVariable Long id) {
-//        var entity = listService.getEntityForDownload(id);
-//        byte[] fileContent = listService.downloadFile(id);
-//
-//        String filename = entity.getOriginalFilename();
-//        String encodedFilename = URLEncoder.encode(filename, StandardCharsets.UTF_8)
-//                .replaceAll("\\+", "%20");
-//
-//        return ResponseEntity.ok()
-//                .header(HttpHeaders.CONTENT_DISPOSITION,
-//                        "attachment; filename=\"" + encodedFilename + "\"; filename*=UTF-8''" + encodedFilename)
-//                .header(HttpHeaders.CONTENT_TYPE,
-//                        entity.getContentType() != null ? entity.getContentType()
-//                                : MediaType.APPLICATION_OCTET_STREAM_VALUE)
-//                .body(fileContent);
-//    }
+    /**
+     * 预签名直传完成，后台从存储读取并解析、向量化（202 + taskId）
+     */
+    @PostMapping("/upload/complete")
+    public ResponseEntity<Result<Map<String,Object>>> completeUpload(@Valid @RequestBody CompleteUploadRequest request) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(Result.success(uploadService.completeUpload(request.fileKey())));
+    }
 
+    /**
+     * 压缩包批量导入（ZIP / TAR / TAR.GZ），后台处理，返回 202 + batchId
+     */
+    @PostMapping(value = "/upload/archive", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<Result<Map<String,Object>>> uploadArchive(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "category", required = false) String category) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(Result.success(archiveService.submitArchive(file, category)));
+    }
+
+    /**
+     * 压缩包导入进度（总数、成功、重复、失败及每个失败文件的原因）
+     */
+    @GetMapping("/upload/archive/{batchId}")
+    public Result<Map<String,Object>> getArchiveProgress(@PathVariable String batchId) {
+        return Result.success(archiveService.getProgress(batchId));
+    }
+
+    /**
+     * 异步上传任务状态（阶段、结果或错误）
+     */
+    @GetMapping("/upload/tasks/{taskId}")
+    public Result<Map<String,Object>> getUploadTask(@PathVariable String taskId) {
+        return Result.success(uploadTaskService.getTask(taskId));
+    }
+
+    /**
+     * 下载知识库文件，从存储流式输出
+     * 支持 Range（206）和 If-None-Match（304，ETag 为文件 SHA-256）
+     */
+    @GetMapping("/{id}/download")
+    public ResponseEntity<StreamingResponseBody> downloadKnowledgeBase(@PathVariable Long id,
+                                                                       @RequestHeader HttpHeaders headers) {
+        var entity = listService.getEntityForDownload(id);
+        return fileDownloadService.download(entity.getStorageKey(), entity.getFileHash(),
+                entity.getOriginalFilename(), entity.getContentType(), entity.getFileSize(), headers);
+    }
 
     // ========== 搜索 API ==========
 
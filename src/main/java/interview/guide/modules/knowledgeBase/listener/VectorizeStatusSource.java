@@ -0,0 +1,30 @@
+package interview.guide.modules.knowledgeBase.listener;
+
+import interview.guide.common.constant.AsyncTaskStreamConstants;
+import interview.guide.infrastructure.event.TaskEvent;
+import interview.guide.infrastructure.event.TaskStatusSource;
+import interview.guide.modules.knowledgeBase.repository.KnowledgeBaseRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+/**
+ * 向量化状态快照，SSE 订阅时推送一次
+ */
+@Component
+@RequiredArgsConstructor
+public class VectorizeStatusSource implements TaskStatusSource {
+    private final KnowledgeBaseRepository knowledgeBaseRepository;
+
+    @Override
+    public String type() {
+        return AsyncTaskStreamConstants.TASK_EVENT_KNOWLEDGE_BASE;
+    }
+
+    @Override
+    public Optional<TaskEvent> current(String id) {
+        return knowledgeBaseRepository.findVectorStatusById(Long.parseLong(id))
+                .map(status -> TaskEvent.status(type(), id, status.getVectorStatus(), status.getVectorError()));
+    }
+}
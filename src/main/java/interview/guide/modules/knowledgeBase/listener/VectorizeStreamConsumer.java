@@ -1,201 +1,121 @@
 package interview.guide.modules.knowledgeBase.listener;
 
+import interview.guide.common.config.StreamConfigProperties;
 import interview.guide.common.constant.AsyncTaskStreamConstants;
-import interview.guide.infrastructure.redis.RedisService;
+import interview.guide.infrastructure.event.TaskEvent;
+import interview.guide.infrastructure.event.TaskEventPublisher;
+import interview.guide.infrastructure.stream.StatusUpdateBuffer;
+import interview.guide.infrastructure.stream.StreamMetrics;
+import interview.guide.infrastructure.stream.StreamRetryService;
+import interview.guide.infrastructure.stream.StreamTask;
+import interview.guide.infrastructure.stream.StreamWorker;
+import interview.guide.infrastructure.stream.TaskQueue;
 import interview.guide.modules.knowledgeBase.model.VectorStatus;
 import interview.guide.modules.knowledgeBase.repository.KnowledgeBaseRepository;
+import interview.guide.modules.knowledgeBase.service.KnowledgeBaseParserService;
 import interview.guide.modules.knowledgeBase.service.KnowledgeBaseVectorService;
-import jakarta.annotation.PostConstruct;
-import jakarta.annotation.PreDestroy;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.redisson.api.stream.StreamMessageId;
 import org.springframework.stereotype.Component;
 
-import java.util.Map;
-import java.util.UUID;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicBoolean;
-
+/**
+ * 知识库向量化消费者，并发 / 重试见 {@link StreamWorker}
+ */
 @Component
 @Slf4j
-@RequiredArgsConstructor
-public class VectorizeStreamConsumer {
-    private final RedisService redisService;
+public class VectorizeStreamConsumer extends StreamWorker {
     private final KnowledgeBaseRepository knowledgeBaseRepository;
     private final KnowledgeBaseVectorService vectorService;
-
-    private final AtomicBoolean running = new AtomicBoolean(false);
-    private ExecutorService executorService;
-    private String consumerName;
-
-
-    @PostConstruct
-    public void init() {
-        this.consumerName = AsyncTaskStreamConstants.KB_VECTORIZE_CONSUMER_PREFIX + UUID.randomUUID().toString().substring(0, 8);
-        try {
-            // init consumer for vectorize
-            redisService.createStreamGroup(
-                    AsyncTaskStreamConstants.KB_VECTORIZE_STREAM_KEY,
-                    AsyncTaskStreamConstants.KB_VECTORIZE_GROUP_NAME
-            );
-            log.info("consumer group exist or create {}", AsyncTaskStreamConstants.KB_VECTORIZE_GROUP_NAME);
-
-        } catch (Exception e) {
-            log.warn("consumer might be exist: {}", e.getMessage());
-        }
-        // add tread to run this consumer
-        this.executorService = Executors.newSingleThreadExecutor(r -> {
-            Thread t = new Thread( r, "vectorize-consumer");
-            t.setDaemon(true);
-            return t;
+    private final KnowledgeBaseParserService parserService;
+    private final StatusUpdateBuffer<VectorStatus> statusBuffer;
+    private final TaskEventPublisher eventPublisher;
+
+    public VectorizeStreamConsumer(TaskQueue taskQueue, StreamRetryService retryService, StreamMetrics metrics,
+                                   StreamConfigProperties streamConfig,
+                                   KnowledgeBaseRepository knowledgeBaseRepository, KnowledgeBaseVectorService vectorService,
+                                   KnowledgeBaseParserService parserService, TaskEventPublisher eventPublisher) {
+        super(AsyncTaskStreamConstants.KB_VECTORIZE_WORKER, taskQueue, retryService, metrics, streamConfig);
+        this.knowledgeBaseRepository = knowledgeBaseRepository;
+        this.vectorService = vectorService;
+        this.parserService = parserService;
+        this.eventPublisher = eventPublisher;
+        // clients are notified once the status is written
+        this.statusBuffer = new StatusUpdateBuffer<>(AsyncTaskStreamConstants.KB_VECTORIZE_WORKER, (ids, status, error) -> {
+            knowledgeBaseRepository.updateVectorStatusBatch(ids, status, error);
+            ids.forEach(id -> eventPublisher.publish(
+                    TaskEvent.status(AsyncTaskStreamConstants.TASK_EVENT_KNOWLEDGE_BASE, id, status, error)));
         });
-        running.set(true);
-        executorService.submit(this::consumeLoop);
-
-        log.info("vector consumer init: consumerName={}", consumerName);
     }
 
-
-    @PreDestroy
-    public void shutdown() {
-        running.set(false);
-        if (executorService != null) {
-            executorService.shutdown();
-        }
-        log.info("向量化消费者已关闭: consumerName={}", consumerName);
+    @Override
+    protected String streamKey() {
+        return AsyncTaskStreamConstants.KB_VECTORIZE_STREAM_KEY;
     }
 
-    private void consumeLoop() {
-        // listen and get from stream
-        while (running.get()) {
-            try {
-                redisService.streamConsumeMessages(
-                        AsyncTaskStreamConstants.KB_VECTORIZE_STREAM_KEY,
-                        AsyncTaskStreamConstants.KB_VECTORIZE_GROUP_NAME,
-                        this.consumerName,
-                        AsyncTaskStreamConstants.BATCH_SIZE,
-                        AsyncTaskStreamConstants.POLL_INTERVAL_MS,
-                        this::processMessage
-                );
-
-            } catch (Exception e) {
-                if (Thread.currentThread().isInterrupted()) {
-                    log.info("consumer vectorize is interrupt");
-                    break;
-                }
-                log.error("vectorize consumer error: {}", e.getMessage(), e);
-            }
-        }
-
-
+    @Override
+    protected String groupName() {
+        return AsyncTaskStreamConstants.KB_VECTORIZE_GROUP_NAME;
     }
 
-    private void processMessage(StreamMessageId messageId, Map<String, String> data) {
-        String kbIdStr = data.get(AsyncTaskStreamConstants.FIELD_KB_ID);
-        String content = data.get(AsyncTaskStreamConstants.FIELD_CONTENT);
-        String retryCountStr = data.getOrDefault(AsyncTaskStreamConstants.FIELD_RETRY_COUNT, "0");
+    @Override
+    protected String consumerPrefix() {
+        return AsyncTaskStreamConstants.KB_VECTORIZE_CONSUMER_PREFIX;
+    }
 
+    @Override
+    protected void handle(StreamTask task) {
+        String kbIdStr = task.get(AsyncTaskStreamConstants.FIELD_KB_ID);
+        String storageKey = task.get(AsyncTaskStreamConstants.FIELD_STORAGE_KEY);
 
-        if (kbIdStr == null || content == null) {
-            log.warn("消息格式错误，跳过: messageId={}", messageId);
-            ackMessage(messageId);
+        if (kbIdStr == null || (storageKey == null && task.get(AsyncTaskStreamConstants.FIELD_CONTENT) == null)) {
+            log.warn("消息格式错误，跳过: messageId={}", task.messageId());
             return;
         }
 
-
         Long kbId = Long.parseLong(kbIdStr);
-        int retryCount = Integer.parseInt(retryCountStr);
+        log.info("processing message for vector init: kbId = {}, messageId = {}, retryCount = {}", kbId, task.messageId(), task.retryCount());
 
-        log.info("processing message for vector init: vectorId = {}, messageId = {}, retryCount = {}", kbId, messageId, retryCount);
-        try {
-            // 1. 更新状态为 PROCESSING
-            updateVectorStatus(kbId, VectorStatus.PROCESSING, null);
+        // 1. 更新状态为 PROCESSING
+        updateVectorStatus(kbId, VectorStatus.PROCESSING, null);
 
-            // 2. 执行向量化
-            vectorService.vectorizeAndStore(kbId, content);
-
-            // 3. 更新状态为 COMPLETED
-            updateVectorStatus(kbId, VectorStatus.COMPLETED, null);
-
-            // 4. 确认消息
-            ackMessage(messageId);
-
-            log.info("向量化任务完成: kbId={}", kbId);
-
-        } catch (Exception e) {
-            // if failed, retry
-            if (retryCount < AsyncTaskStreamConstants.MAX_RETRY_COUNT) {
-                retryMessage(kbId, content, retryCount + 1);
-            } else {
-                String errorMsg = truncateError("分析失败(已重试" + retryCount + "次): " + e.getMessage());
-                updateVectorStatus(kbId, VectorStatus.FAILED, errorMsg);
-            }
-
-            ackMessage(messageId);
-        }
+        // 2. 取回文本并执行向量化
+        String content = resolveContent(task, storageKey);
+        runModel(() -> vectorService.vectorizeAndStore(kbId, content, (done, total) -> eventPublisher.publish(
+                TaskEvent.progress(AsyncTaskStreamConstants.TASK_EVENT_KNOWLEDGE_BASE, kbId, VectorStatus.PROCESSING, done, total))));
 
+        // 3. 更新状态为 COMPLETED
+        updateVectorStatus(kbId, VectorStatus.COMPLETED, null);
 
+        log.info("向量化任务完成: kbId={}", kbId);
     }
 
     /**
-     * 重试消息（重新发送到 Stream）
+     * claim check: text from the parsed-text cache, re-parsed from the stored file on a miss
      */
-    private void retryMessage(Long kbId, String content, int retryCount) {
-        try {
-            Map<String, String> message = Map.of(
-                    AsyncTaskStreamConstants.FIELD_KB_ID, kbId.toString(),
-                    AsyncTaskStreamConstants.FIELD_CONTENT, content,
-                    AsyncTaskStreamConstants.FIELD_RETRY_COUNT, String.valueOf(retryCount)
-            );
-
-            redisService.streamAdd(
-                    AsyncTaskStreamConstants.KB_VECTORIZE_STREAM_KEY,
-                    message,
-                    AsyncTaskStreamConstants.STREAM_MAX_LEN
-            );
-            log.info("向量化任务已重新入队: kbId={}, retryCount={}", kbId, retryCount);
-
-        } catch (Exception e) {
-            log.error("重试入队失败: kbId={}, error={}", kbId, e.getMessage(), e);
-            updateVectorStatus(kbId, VectorStatus.FAILED, truncateError("重试入队失败: " + e.getMessage()));
+    private String resolveContent(StreamTask task, String storageKey) {
+        // 旧消息内联全文
+        String content = task.get(AsyncTaskStreamConstants.FIELD_CONTENT);
+        if (content != null) {
+            return content;
         }
+        String fileName = task.get(AsyncTaskStreamConstants.FIELD_ORIGINAL_FILENAME);
+        return parserService.downloadAndParseContent(storageKey, fileName != null ? fileName : storageKey,
+                task.get(AsyncTaskStreamConstants.FIELD_CONTENT_HASH));
     }
 
-    private void ackMessage(StreamMessageId messageId) {
-        try {
-            redisService.streamAck(
-                    AsyncTaskStreamConstants.KB_VECTORIZE_STREAM_KEY,
-                    AsyncTaskStreamConstants.KB_VECTORIZE_GROUP_NAME,
-                    messageId
-            );
-        } catch (Exception e) {
-            log.error("确认消息失败: messageId={}, error={}", messageId, e.getMessage(), e);
-        }
+    @Override
+    protected void onFailed(StreamTask task, String error) {
+        updateVectorStatus(Long.parseLong(task.get(AsyncTaskStreamConstants.FIELD_KB_ID)), VectorStatus.FAILED, error);
     }
 
-
-    private void updateVectorStatus(Long kbId, VectorStatus status, String error) {
-        try {
-            knowledgeBaseRepository.findById(kbId)
-                    .ifPresent((kb) -> {
-                        kb.setVectorStatus(status);
-                        kb.setVectorError(error);
-                        knowledgeBaseRepository.save(kb);
-                    });
-        } catch (Exception e) {
-            log.error("fail with update vector status", e);
-        }
-
+    @Override
+    protected boolean flushStatus() {
+        return statusBuffer.flush();
     }
 
     /**
-     * 截断错误信息，避免超过数据库字段长度
+     * 状态变更先缓冲，随批量 ack 一起写入
      */
-    private String truncateError(String error) {
-        if (error == null) return null;
-        return error.length() > 500 ? error.substring(0, 500) : error;
+    private void updateVectorStatus(Long kbId, VectorStatus status, String error) {
+        statusBuffer.update(kbId, status, error);
     }
-
 }
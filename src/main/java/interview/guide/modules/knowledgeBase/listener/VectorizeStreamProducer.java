@@ -1,8 +1,12 @@
 package interview.guide.modules.knowledgeBase.listener;
 
+import interview.guide.common.config.StreamConfigProperties;
 import interview.guide.common.constant.AsyncTaskStreamConstants;
 import interview.guide.exception.BusinessException;
-import interview.guide.infrastructure.redis.RedisService;
+import interview.guide.infrastructure.event.TaskEvent;
+import interview.guide.infrastructure.event.TaskEventPublisher;
+import interview.guide.infrastructure.stream.TaskLane;
+import interview.guide.infrastructure.stream.TaskQueue;
 import interview.guide.modules.knowledgeBase.model.KnowledgeBaseEntity;
 import interview.guide.modules.knowledgeBase.model.VectorStatus;
 import interview.guide.modules.knowledgeBase.repository.KnowledgeBaseRepository;
@@ -11,33 +15,85 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Service;
 
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Component
 @Slf4j
 @RequiredArgsConstructor
 public class VectorizeStreamProducer {
-    private final RedisService redisService;
+    private final TaskQueue taskQueue;
+    private final StreamConfigProperties streamConfig;
     private final KnowledgeBaseRepository knowledgeBaseRepository;
+    private final TaskEventPublisher eventPublisher;
 
 
-    public void sendVectorizeTask(Long kbId, String content) {
+    /**
+     * enqueue vectorization, the message only carries a reference to the parsed text (claim check)
+     *
+     * @param lane lane granted by admission control, BULK when the interactive queue is over its SLO
+     */
+    public void sendVectorizeTask(KnowledgeBaseEntity kb, TaskLane lane, String userId) {
         try {
-            Map<String, String> message = Map.of(
-                    AsyncTaskStreamConstants.FIELD_KB_ID, kbId.toString(),
-                    AsyncTaskStreamConstants.FIELD_CONTENT, content,
-                    AsyncTaskStreamConstants.FIELD_RETRY_COUNT, "0"
-            );
-            String messageId = redisService.streamAdd(
-                    AsyncTaskStreamConstants.KB_VECTORIZE_STREAM_KEY,
+            StreamConfigProperties.Worker worker = streamConfig.worker(AsyncTaskStreamConstants.KB_VECTORIZE_WORKER);
+            Map<String, String> message = toMessage(kb);
+            if (userId != null) {
+                message.put(AsyncTaskStreamConstants.FIELD_USER_ID, userId);
+            }
+            String messageId = taskQueue.add(
+                    lane.streamKey(AsyncTaskStreamConstants.KB_VECTORIZE_STREAM_KEY, userId, worker.getBulkPartitions()),
                     message,
-                    AsyncTaskStreamConstants.STREAM_MAX_LEN
+                    worker.getMaxLen()
             );
-            log.info("vector task send to stream kbId = {}, messageId = {}", kbId, messageId);
+            log.info("vector task send to stream kbId = {}, lane = {}, messageId = {}", kb.getId(), lane, messageId);
         } catch (Exception e) {
-            log.error("发送向量化任务失败: kbId={}, error={}", kbId, e.getMessage(), e);
-            updateVectorStatus(kbId, VectorStatus.FAILED, "任务入队失败: " + e.getMessage());
+            log.error("发送向量化任务失败: kbId={}, error={}", kb.getId(), e.getMessage(), e);
+            updateVectorStatus(kb.getId(), VectorStatus.FAILED, "任务入队失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * enqueue several vectorization tasks in one Redis round trip (bulk import), on the bulk
+     * lane partition of the user so single uploads are not queued behind them
+     */
+    public void sendVectorizeTasks(List<KnowledgeBaseEntity> knowledgeBases, String userId) {
+        if (knowledgeBases.isEmpty()) {
+            return;
+        }
+        StreamConfigProperties.Worker worker = streamConfig.worker(AsyncTaskStreamConstants.KB_VECTORIZE_WORKER);
+        String streamKey = TaskLane.BULK.streamKey(AsyncTaskStreamConstants.KB_VECTORIZE_STREAM_KEY, userId, worker.getBulkPartitions());
+        List<Map<String, String>> messages = knowledgeBases.stream()
+                .map(kb -> {
+                    Map<String, String> message = toMessage(kb);
+                    message.put(AsyncTaskStreamConstants.FIELD_USER_ID, userId);
+                    return message;
+                })
+                .toList();
+        try {
+            taskQueue.addAll(streamKey, messages, worker.getMaxLen());
+            log.info("vector tasks send to stream {}, count = {}, userId = {}", streamKey, messages.size(), userId);
+        } catch (Exception e) {
+            log.error("批量发送向量化任务失败: count={}, error={}", messages.size(), e.getMessage(), e);
+            knowledgeBases.forEach(kb -> updateVectorStatus(kb.getId(), VectorStatus.FAILED, "任务入队失败: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * id + content reference, the text itself stays in the parsed-text cache
+     */
+    private static Map<String, String> toMessage(KnowledgeBaseEntity kb) {
+        Map<String, String> message = new HashMap<>();
+        message.put(AsyncTaskStreamConstants.FIELD_KB_ID, kb.getId().toString());
+        message.put(AsyncTaskStreamConstants.FIELD_STORAGE_KEY, kb.getStorageKey());
+        if (kb.getOriginalFilename() != null) {
+            message.put(AsyncTaskStreamConstants.FIELD_ORIGINAL_FILENAME, kb.getOriginalFilename());
+        }
+        if (kb.getFileHash() != null) {
+            message.put(AsyncTaskStreamConstants.FIELD_CONTENT_HASH, kb.getFileHash());
         }
+        message.put(AsyncTaskStreamConstants.FIELD_RETRY_COUNT, "0");
+        return message;
     }
 
     private void updateVectorStatus(Long kbId, VectorStatus status, String error) {
@@ -48,6 +104,8 @@ public class VectorizeStreamProducer {
                                 kb.setVectorError(error.length() > 500 ? error.substring(0, 500) : error);
                             }
                             knowledgeBaseRepository.save(kb);
+                            eventPublisher.publish(TaskEvent.status(
+                                    AsyncTaskStreamConstants.TASK_EVENT_KNOWLEDGE_BASE, kbId, status, kb.getVectorError()));
                         }
                 );
     }
@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -21,6 +22,11 @@ public interface KnowledgeBaseRepository extends JpaRepository<KnowledgeBaseEnti
      */
     boolean existsByFileHash(String fileHash);
 
+    /**
+     * 检查存储对象是否被知识库引用
+     */
+    boolean existsByStorageKey(String storageKey);
+
     /**
      * 按上传时间倒序查找所有知识库
      */
@@ -74,6 +80,27 @@ public interface KnowledgeBaseRepository extends JpaRepository<KnowledgeBaseEnti
     @Query("UPDATE KnowledgeBaseEntity k SET k.questionCount = k.questionCount + 1 WHERE k.id IN :ids")
     int incrementQuestionCountBatch(@Param("ids") List<Long> ids);
 
+    /**
+     * 批量更新向量化状态（消费者按批次写入，不加载实体）
+     * @return 更新的行数
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE KnowledgeBaseEntity k SET k.vectorStatus = :status, k.vectorError = :error WHERE k.id IN :ids")
+    int updateVectorStatusBatch(@Param("ids") List<Long> ids, @Param("status") VectorStatus status, @Param("error") String error);
+
+    /**
+     * 只查询向量化状态（SSE 订阅快照，不加载实体）
+     */
+    @Query("SELECT k.vectorStatus AS vectorStatus, k.vectorError AS vectorError FROM KnowledgeBaseEntity k WHERE k.id = :id")
+    Optional<VectorStatusView> findVectorStatusById(@Param("id") Long id);
+
+    interface VectorStatusView {
+        VectorStatus getVectorStatus();
+
+        String getVectorError();
+    }
+
     // ==================== 统计查询 ====================
 
     /**
@@ -0,0 +1,518 @@
+package interview.guide.modules.knowledgeBase.service;
+
+import interview.guide.common.config.UploadConfigProperties;
+import interview.guide.common.constant.AsyncTaskStreamConstants;
+import interview.guide.common.model.UploadTaskStage;
+import interview.guide.common.util.CurrentUser;
+import interview.guide.exception.BusinessException;
+import interview.guide.exception.ErrorCode;
+import interview.guide.infrastructure.file.FileIngestionService;
+import interview.guide.infrastructure.file.FileStorageService;
+import interview.guide.infrastructure.file.IngestedFile;
+import interview.guide.infrastructure.redis.RedisService;
+import interview.guide.modules.knowledgeBase.listener.VectorizeStreamProducer;
+import interview.guide.modules.knowledgeBase.model.KnowledgeBaseEntity;
+import interview.guide.modules.knowledgeBase.repository.KnowledgeBaseRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * bulk import of a ZIP / TAR (.tar, .tar.gz, .tgz) archive into knowledge bases
+ *
+ * <p>the archive is spooled and imported in the background (202 + batch id). entries are read
+ * one by one from the archive stream and ingested (hash + sniff + spool), then type check,
+ * dedup, parse and storage upload run on a bounded worker pool. rows are saved and
+ * vectorization is enqueued in batches. progress and per-entry failures are kept in one
+ * Redis hash, see {@link #getProgress}.</p>
+ *
+ * <p>when the archive can not be read to the end (truncated, corrupt) the entries read so far
+ * are still finished and saved before the import is marked FAILED, no upload is left behind.</p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class KnowledgeBaseArchiveService {
+
+    private static final String FIELD_STAGE = "stage";
+    private static final String FIELD_ARCHIVE = "archive";
+    private static final String FIELD_TOTAL = "total";
+    private static final String FIELD_SUCCEEDED = "succeeded";
+    private static final String FIELD_DUPLICATES = "duplicates";
+    private static final String FIELD_FAILED = "failed";
+    private static final String FIELD_ERROR = "error";
+    private static final String FAILURE_PREFIX = "failure.";
+
+    private final FileIngestionService fileIngestionService;
+    private final FileStorageService storageService;
+    private final KnowledgeBaseUploadService uploadService;
+    private final KnowledgeBaseParserService parserService;
+    private final KnowledgeBaseRepository knowledgeBaseRepository;
+    private final KnowledgeBasePersistenceService persistenceService;
+    private final VectorizeStreamProducer vectorizeStreamProducer;
+    private final RedisService redisService;
+    private final UploadConfigProperties uploadConfig;
+
+    private ExecutorService importExecutor;
+    private ExecutorService workerExecutor;
+
+    @PostConstruct
+    public void init() {
+        UploadConfigProperties.Archive config = uploadConfig.getArchive();
+        this.importExecutor = Executors.newFixedThreadPool(Math.max(1, config.getMaxConcurrentImports()),
+                daemonThreads("kb-archive-import-"));
+        this.workerExecutor = Executors.newFixedThreadPool(Math.max(1, config.getWorkers()),
+                daemonThreads("kb-archive-worker-"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        importExecutor.shutdownNow();
+        workerExecutor.shutdownNow();
+    }
+
+    /**
+     * spool the archive and start the import
+     *
+     * @return batch id and initial stage, poll {@link #getProgress}
+     */
+    public Map<String, Object> submitArchive(MultipartFile file, String category) {
+        String archiveName = file.getOriginalFilename();
+        if (file.isEmpty()) {
+            throw new BusinessException(ErrorCode.BAD_REQUEST, "please select file archive");
+        }
+        String suffix = archiveSuffix(archiveName);
+        if (suffix == null) {
+            throw new BusinessException(ErrorCode.BAD_REQUEST, "不支持的压缩包类型，支持：ZIP、TAR、TAR.GZ、TGZ");
+        }
+
+        Path archive;
+        try {
+            archive = Files.createTempFile("archive-", suffix);
+            file.transferTo(archive);
+        } catch (IOException e) {
+            log.error("spool archive failed: {} - {}", archiveName, e.getMessage(), e);
+            throw new BusinessException(ErrorCode.INTERNAL_ERROR, "reading file is failed");
+        }
+
+        String batchId = UUID.randomUUID().toString().replace("-", "");
+        // the import runs in the background, remember who submitted it for the bulk lane
+        ArchiveImport job = new ArchiveImport(batchId, archiveName, category, CurrentUser.id());
+        job.saveProgress(UploadTaskStage.SPOOLED, null);
+        importExecutor.execute(() -> runImport(job, archive, suffix));
+
+        log.info("archive import submitted: batchId={}, archive={}", batchId, archiveName);
+        return Map.of(
+                "batchId", batchId,
+                FIELD_STAGE, UploadTaskStage.SPOOLED.name()
+        );
+    }
+
+    /**
+     * aggregated progress of an archive import
+     */
+    public Map<String, Object> getProgress(String batchId) {
+        Map<String, String> fields = redisService.hGetAllStrings(AsyncTaskStreamConstants.UPLOAD_ARCHIVE_KEY_PREFIX + batchId);
+        if (fields == null || fields.isEmpty()) {
+            throw new BusinessException(ErrorCode.NOT_FOUND, "archive import not found");
+        }
+        List<Map<String, String>> failures = new ArrayList<>();
+        fields.forEach((field, value) -> {
+            if (field.startsWith(FAILURE_PREFIX)) {
+                failures.add(Map.of("entry", field.substring(FAILURE_PREFIX.length()), FIELD_ERROR, value));
+            }
+        });
+
+        Map<String, Object> progress = new LinkedHashMap<>();
+        progress.put("batchId", batchId);
+        progress.put(FIELD_ARCHIVE, fields.getOrDefault(FIELD_ARCHIVE, ""));
+        progress.put(FIELD_STAGE, fields.get(FIELD_STAGE));
+        progress.put(FIELD_TOTAL, parseInt(fields.get(FIELD_TOTAL)));
+        progress.put(FIELD_SUCCEEDED, parseInt(fields.get(FIELD_SUCCEEDED)));
+        progress.put(FIELD_DUPLICATES, parseInt(fields.get(FIELD_DUPLICATES)));
+        progress.put(FIELD_FAILED, parseInt(fields.get(FIELD_FAILED)));
+        if (fields.containsKey(FIELD_ERROR)) {
+            progress.put(FIELD_ERROR, fields.get(FIELD_ERROR));
+        }
+        progress.put("failures", failures);
+        return progress;
+    }
+
+    // ========== import ==========
+
+    private void runImport(ArchiveImport job, Path archive, String suffix) {
+        UploadConfigProperties.Archive config = uploadConfig.getArchive();
+        int permits = Math.max(1, config.getWorkers()) * 2;
+        // bounds spooled-but-unprocessed entries (disk) while the reader runs ahead
+        Semaphore inFlight = new Semaphore(permits);
+        long maxEntrySize = config.getMaxEntrySize().toBytes();
+        long maxTotalSize = config.getMaxTotalSize().toBytes();
+        long totalSize = 0;
+
+        job.saveProgress(UploadTaskStage.PARSING, null);
+        String error = null;
+        try (ArchiveInputStream<?> entries = openArchive(archive, suffix)) {
+            ArchiveEntry entry;
+            while ((entry = entries.getNextEntry()) != null) {
+                String entryName = entry.getName();
+                if (entry.isDirectory() || isIgnored(entryName)) {
+                    continue;
+                }
+                if (job.total.get() >= config.getMaxEntries()) {
+                    job.fail(entryName, "too many entries, max " + config.getMaxEntries());
+                    break;
+                }
+                job.total.incrementAndGet();
+                if (!entries.canReadEntryData(entry)) {
+                    job.fail(entryName, "unsupported entry (encrypted or unknown compression)");
+                    continue;
+                }
+
+                IngestedFile ingested;
+                try {
+                    ingested = fileIngestionService.ingest(new LimitedInputStream(entries, maxEntrySize),
+                            baseName(entryName), null);
+                } catch (IOException | RuntimeException e) {
+                    job.fail(entryName, e.getMessage());
+                    continue;
+                }
+                totalSize += ingested.size();
+                if (totalSize > maxTotalSize) {
+                    ingested.close();
+                    job.fail(entryName, "archive exceeds max uncompressed size");
+                    break;
+                }
+                if (ingested.isEmpty()) {
+                    ingested.close();
+                    job.fail(entryName, "file is empty");
+                    continue;
+                }
+
+                submit(job, entryName, ingested, inFlight);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error = "import interrupted";
+        } catch (Exception e) {
+            log.error("archive import failed: batchId={}, error={}", job.batchId, e.getMessage(), e);
+            error = "archive read failed: " + e.getMessage();
+        } finally {
+            // 先等 worker 结束，再保存已上传的条目，最后才写终态：失败时也不留下孤儿文件
+            inFlight.acquireUninterruptibly(permits);
+            try {
+                job.flush();
+            } catch (RuntimeException e) {
+                log.error("archive import save failed: batchId={}, error={}", job.batchId, e.getMessage(), e);
+                if (error == null) {
+                    error = "save failed: " + e.getMessage();
+                }
+            }
+            if (error == null) {
+                job.saveProgress(UploadTaskStage.ENQUEUED, null);
+                log.info("archive import done: batchId={}, total={}, succeeded={}, duplicates={}, failed={}",
+                        job.batchId, job.total.get(), job.succeeded.get(), job.duplicates.get(), job.failed.get());
+            } else {
+                job.saveProgress(UploadTaskStage.FAILED, error);
+            }
+            try {
+                Files.deleteIfExists(archive);
+            } catch (IOException e) {
+                log.warn("delete archive spool failed: {} - {}", archive, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * process the entry on the worker pool, at most the permits of inFlight at a time
+     */
+    private void submit(ArchiveImport job, String entryName, IngestedFile ingested, Semaphore inFlight)
+            throws InterruptedException {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            ingested.close();
+            throw e;
+        }
+        try {
+            workerExecutor.execute(() -> {
+                try {
+                    processEntry(job, entryName, ingested);
+                } finally {
+                    ingested.close();
+                    inFlight.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            ingested.close();
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    /**
+     * type check, dedup, parse and store one entry, the row is saved with its batch
+     */
+    private void processEntry(ArchiveImport job, String entryName, IngestedFile ingested) {
+        String fileKey = null;
+        try {
+            uploadService.validateContentType(ingested.detectedContentType(), ingested.originalFilename());
+
+            String fileHash = ingested.fileHash();
+            if (!job.claimHash(fileHash) || knowledgeBaseRepository.existsByFileHash(fileHash)) {
+                job.duplicate();
+                return;
+            }
+
+            // the text stays in the parsed-text cache, the vectorize message only references it
+            String content = parserService.parseContent(ingested);
+            if (content == null || content.trim().isEmpty()) {
+                throw new BusinessException(ErrorCode.INTERNAL_ERROR, "无法从文件中提取文本内容");
+            }
+
+            fileKey = storageService.uploadKnowledgeBase(ingested);
+            job.add(new PendingEntry(entryName, ingested, fileKey, storageService.getFileUrl(fileKey)));
+        } catch (Exception e) {
+            log.warn("archive entry failed: batchId={}, entry={}, error={}", job.batchId, entryName, e.getMessage());
+            job.fail(entryName, e.getMessage());
+        }
+    }
+
+    private record PendingEntry(String entryName, IngestedFile file, String fileKey, String fileUrl) {
+    }
+
+    /**
+     * state of one archive import, counters are written through to Redis
+     */
+    private final class ArchiveImport {
+        private final String batchId;
+        private final String archiveName;
+        private final String category;
+        private final String userId;
+        private final AtomicInteger total = new AtomicInteger();
+        private final AtomicInteger succeeded = new AtomicInteger();
+        private final AtomicInteger duplicates = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final Set<String> seenHashes = Collections.synchronizedSet(new HashSet<>());
+        private List<PendingEntry> pending = new ArrayList<>();
+
+        private ArchiveImport(String batchId, String archiveName, String category, String userId) {
+            this.batchId = batchId;
+            this.archiveName = archiveName;
+            this.category = category;
+            this.userId = userId;
+        }
+
+        /**
+         * false when the same bytes already appeared earlier in this archive
+         */
+        boolean claimHash(String fileHash) {
+            return seenHashes.add(fileHash);
+        }
+
+        void duplicate() {
+            duplicates.incrementAndGet();
+            saveCounters(Map.of());
+        }
+
+        void fail(String entryName, String error) {
+            failed.incrementAndGet();
+            String message = error == null ? "unknown error" : error;
+            saveCounters(Map.of(FAILURE_PREFIX + entryName, message.length() > 500 ? message.substring(0, 500) : message));
+        }
+
+        synchronized void add(PendingEntry entry) {
+            pending.add(entry);
+            if (pending.size() >= Math.max(1, uploadConfig.getArchive().getBatchSize())) {
+                flush();
+            }
+        }
+
+        /**
+         * save pending rows in one transaction and enqueue their vectorization in one round trip;
+         * if the batch fails (e.g. the same file was uploaded elsewhere meanwhile) rows are saved one by one
+         */
+        synchronized void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            List<PendingEntry> batch = pending;
+            pending = new ArrayList<>();
+
+            List<KnowledgeBaseEntity> saved = new ArrayList<>();
+            try {
+                saved.addAll(persistenceService.saveKnowledgeBases(
+                        batch.stream().map(this::toEntity).toList()));
+            } catch (RuntimeException batchError) {
+                log.warn("archive batch save failed, saving one by one: batchId={}, error={}", batchId, batchError.getMessage());
+                saved.clear();
+                for (PendingEntry entry : batch) {
+                    try {
+                        saved.add(persistenceService.saveKnowledgeBases(List.of(toEntity(entry))).getFirst());
+                    } catch (RuntimeException e) {
+                        storageService.deleteKnowledgeBase(entry.fileKey());
+                        fail(entry.entryName(), "save failed: " + e.getMessage());
+                    }
+                }
+            }
+
+            vectorizeStreamProducer.sendVectorizeTasks(saved, userId);
+            succeeded.addAndGet(saved.size());
+            saveCounters(Map.of());
+        }
+
+        /**
+         * fresh entity per attempt, a rolled back insert leaves its id on the old instance
+         */
+        private KnowledgeBaseEntity toEntity(PendingEntry entry) {
+            return persistenceService.newKnowledgeBase(entry.file(), null, category, entry.fileKey(), entry.fileUrl());
+        }
+
+        void saveProgress(UploadTaskStage stage, String error) {
+            Map<String, String> fields = new HashMap<>();
+            fields.put(FIELD_STAGE, stage.name());
+            fields.put(FIELD_ARCHIVE, archiveName != null ? archiveName : "");
+            if (error != null) {
+                fields.put(FIELD_ERROR, error);
+            }
+            saveCounters(fields);
+        }
+
+        private void saveCounters(Map<String, String> extra) {
+            Map<String, String> fields = new HashMap<>(extra);
+            fields.put(FIELD_TOTAL, String.valueOf(total.get()));
+            fields.put(FIELD_SUCCEEDED, String.valueOf(succeeded.get()));
+            fields.put(FIELD_DUPLICATES, String.valueOf(duplicates.get()));
+            fields.put(FIELD_FAILED, String.valueOf(failed.get()));
+            String key = AsyncTaskStreamConstants.UPLOAD_ARCHIVE_KEY_PREFIX + batchId;
+            try {
+                redisService.hSetAllStrings(key, fields);
+                redisService.expire(key, Duration.ofHours(AsyncTaskStreamConstants.UPLOAD_TASK_TTL_HOURS));
+            } catch (Exception e) {
+                log.warn("save archive progress failed: batchId={}, error={}", batchId, e.getMessage());
+            }
+        }
+    }
+
+    // ========== helpers ==========
+
+    private static ArchiveInputStream<?> openArchive(Path archive, String suffix) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(archive));
+        try {
+            return switch (suffix) {
+                case ".zip" -> new ZipArchiveInputStream(in);
+                case ".tar" -> new TarArchiveInputStream(in);
+                default -> new TarArchiveInputStream(new GzipCompressorInputStream(in));
+            };
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    private static String archiveSuffix(String filename) {
+        if (filename == null) {
+            return null;
+        }
+        String lower = filename.toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".zip")) {
+            return ".zip";
+        }
+        if (lower.endsWith(".tar.gz") || lower.endsWith(".tgz")) {
+            return ".tgz";
+        }
+        if (lower.endsWith(".tar")) {
+            return ".tar";
+        }
+        return null;
+    }
+
+    /**
+     * OS metadata entries (macOS resource forks, dot files)
+     */
+    private static boolean isIgnored(String entryName) {
+        return entryName.startsWith("__MACOSX/") || baseName(entryName).startsWith(".");
+    }
+
+    private static String baseName(String entryName) {
+        int slash = entryName.lastIndexOf('/');
+        return slash >= 0 ? entryName.substring(slash + 1) : entryName;
+    }
+
+    private static int parseInt(String value) {
+        return value != null ? Integer.parseInt(value) : 0;
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger index = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + index.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * entry stream that fails past the size limit; close does not close the archive stream
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+        private final long limit;
+        private long count;
+
+        private LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                checkLimit(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                checkLimit(n);
+            }
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private void checkLimit(int n) throws IOException {
+            count += n;
+            if (count > limit) {
+                throw new IOException("entry exceeds max size");
+            }
+        }
+    }
+}
@@ -3,6 +3,7 @@ package interview.guide.modules.knowledgeBase.service;
 import interview.guide.exception.BusinessException;
 import interview.guide.exception.ErrorCode;
 import interview.guide.infrastructure.file.FileStorageService;
+import interview.guide.infrastructure.file.ParsedTextCacheService;
 import interview.guide.modules.knowledgeBase.model.KnowledgeBaseEntity;
 import interview.guide.modules.knowledgeBase.model.RagChatSessionEntity;
 import interview.guide.modules.knowledgeBase.repository.KnowledgeBaseRepository;
@@ -23,6 +24,7 @@ public class KnowledgeBaseDeleteService {
     private final FileStorageService storageService;
     private final RagChatSessionRepository sessionRepository;
     private final KnowledgeBaseVectorService vectorService;
+    private final ParsedTextCacheService parsedTextCache;
 
     @Transactional(rollbackFor = Exception.class)
     public void deleteKnowledgeBase(Long id){
@@ -54,7 +56,10 @@ public class KnowledgeBaseDeleteService {
             log.warn("删除RustFS文件失败，继续删除知识库记录: kbId={}, error={}", id, e.getMessage());
         }
 
-        // 5. delete knowledge base
+        // 5. parsed text cached for the file, best effort
+        parsedTextCache.evict(kb.getFileHash());
+
+        // 6. delete knowledge base
         knowledgeBaseRepository.deleteById(id);
         log.info("知识库已删除: id={}", id);
 
@@ -2,7 +2,6 @@ package interview.guide.modules.knowledgeBase.service;
 
 import interview.guide.exception.BusinessException;
 import interview.guide.exception.ErrorCode;
-import interview.guide.infrastructure.file.FileStorageService;
 import interview.guide.infrastructure.mapper.KnowledgeBaseMapper;
 import interview.guide.modules.knowledgeBase.model.KnowledgeBaseEntity;
 import interview.guide.modules.knowledgeBase.model.KnowledgeBaseListItemDTO;
@@ -26,7 +25,6 @@ public class KnowledgeBaseListService {
     private final KnowledgeBaseRepository knowledgeBaseRepository;
 //    private final RagChatMessageRepository ragChatMessageRepository;
     private final KnowledgeBaseMapper knowledgeBaseMapper;
-    private final FileStorageService fileStorageService;
 
     /**
      * 获取知识库列表（支持状态过滤和排序）
@@ -188,22 +186,6 @@ public class KnowledgeBaseListService {
 
     // ========== download ==========
 
-    /**
-     *  download knowledge file
-     */
-    public byte[] downloadFile(Long id) {
-        KnowledgeBaseEntity entity = knowledgeBaseRepository.findById(id)
-                .orElseThrow(() -> new BusinessException(ErrorCode.KNOWLEDGE_BASE_NOT_FOUND, "知识库不存在"));
-
-        String storageKey = entity.getStorageKey();
-        if (storageKey == null || storageKey.isBlank()) {
-            throw new BusinessException(ErrorCode.STORAGE_DOWNLOAD_FAILED, "文件存储信息不存在");
-        }
-
-        log.info("下载知识库文件: id={}, filename={}", id, entity.getOriginalFilename());
-        return fileStorageService.downloadFile(storageKey);
-    }
-
     /**
      * Get knowledge doc download
      */
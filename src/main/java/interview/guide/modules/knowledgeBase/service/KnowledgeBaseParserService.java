@@ -1,19 +1,17 @@
 package interview.guide.modules.knowledgeBase.service;
 
-import interview.guide.infrastructure.file.ContentTypeDetectionService;
 import interview.guide.infrastructure.file.DocumentParseService;
 import interview.guide.infrastructure.file.FileStorageService;
+import interview.guide.infrastructure.file.IngestedFile;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class KnowledgeBaseParserService {
     private final DocumentParseService documentParseService;
-    private final ContentTypeDetectionService contentTypeDetectionService;
     private final FileStorageService storageService;
 
 
@@ -23,40 +21,21 @@ public class KnowledgeBaseParserService {
      * @param file 上传的文件（支持PDF、DOCX、DOC、TXT、MD等）
      * @return 提取的文本内容
      */
-    public String parseContent(MultipartFile file) {
-        log.info("parsing init: {}", file.getOriginalFilename());
+    public String parseContent(IngestedFile file) {
+        log.info("parsing init: {}", file.originalFilename());
         return documentParseService.parseContent(file);
     }
 
-    /**
-     * 解析字节数组形式的文件内容
-     *
-     * @param fileBytes 文件字节数组
-     * @param fileName  原始文件名（用于日志）
-     * @return 提取的文本内容
-     */
-    public String parseContent(byte[] fileBytes, String fileName) {
-        log.info("开始解析知识库文件（从字节数组）: {}", fileName);
-        return documentParseService.parseContent(fileBytes, fileName);
-    }
-
     /**
      * 从存储下载文件并解析内容
      *
      * @param storageKey       存储键
      * @param originalFilename 原始文件名
+     * @param fileHash         文件 SHA-256（命中解析缓存时不下载、不解析）
      * @return 提取的文本内容
      */
-    public String downloadAndParseContent(String storageKey, String originalFilename) {
+    public String downloadAndParseContent(String storageKey, String originalFilename, String fileHash) {
         log.info("从存储下载并解析知识库文件: {}", originalFilename);
-        return documentParseService.downloadAndParseContent(storageService, storageKey, originalFilename);
+        return documentParseService.downloadAndParseContent(storageService, storageKey, originalFilename, fileHash);
     }
-
-    /**
-     * 检测文件的MIME类型
-     */
-    public String detectContentType(MultipartFile file) {
-        return contentTypeDetectionService.detectContentType(file);
-    }
-
 }
@@ -2,6 +2,7 @@ package interview.guide.modules.knowledgeBase.service;
 
 import interview.guide.exception.BusinessException;
 import interview.guide.exception.ErrorCode;
+import interview.guide.infrastructure.file.IngestedFile;
 import interview.guide.modules.knowledgeBase.model.KnowledgeBaseEntity;
 import interview.guide.modules.knowledgeBase.model.VectorStatus;
 import interview.guide.modules.knowledgeBase.repository.KnowledgeBaseRepository;
@@ -9,8 +10,8 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.multipart.MultipartFile;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -44,17 +45,9 @@ public class KnowledgeBasePersistenceService {
 
     // save data to knowledge base entity
 
-    public KnowledgeBaseEntity saveKnowledgeBase(MultipartFile file, String name, String category, String storageKey, String storageUrl, String fileHash){
+    public KnowledgeBaseEntity saveKnowledgeBase(IngestedFile file, String name, String category, String storageKey, String storageUrl){
         try {
-            KnowledgeBaseEntity kb = new KnowledgeBaseEntity();
-            kb.setFileHash(fileHash);
-            kb.setName(name != null && !name.trim().isEmpty()? name: extractNameFromFilename(file.getOriginalFilename()));
-            kb.setCategory(category != null && !category.trim().isEmpty() ? category.trim() : null);
-            kb.setOriginalFilename(file.getOriginalFilename());
-            kb.setFileSize(file.getSize());
-            kb.setContentType(file.getContentType());
-            kb.setStorageKey(storageKey);
-            kb.setStorageUrl(storageUrl);
+            KnowledgeBaseEntity kb = newKnowledgeBase(file, name, category, storageKey, storageUrl);
 
             KnowledgeBaseEntity saved = knowledgeBaseRepository.save(kb);
             log.info("save successfully");
@@ -65,6 +58,32 @@ public class KnowledgeBasePersistenceService {
         }
     }
 
+    /**
+     * save several knowledge bases in one transaction (bulk import), all or nothing
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public List<KnowledgeBaseEntity> saveKnowledgeBases(List<KnowledgeBaseEntity> knowledgeBases){
+        List<KnowledgeBaseEntity> saved = knowledgeBaseRepository.saveAll(knowledgeBases);
+        log.info("save successfully, count = {}", saved.size());
+        return saved;
+    }
+
+    /**
+     * new (unsaved) knowledge base for an ingested file
+     */
+    public KnowledgeBaseEntity newKnowledgeBase(IngestedFile file, String name, String category, String storageKey, String storageUrl){
+        KnowledgeBaseEntity kb = new KnowledgeBaseEntity();
+        kb.setFileHash(file.fileHash());
+        kb.setName(name != null && !name.trim().isEmpty()? name: extractNameFromFilename(file.originalFilename()));
+        kb.setCategory(category != null && !category.trim().isEmpty() ? category.trim() : null);
+        kb.setOriginalFilename(file.originalFilename());
+        kb.setFileSize(file.size());
+        kb.setContentType(file.contentType());
+        kb.setStorageKey(storageKey);
+        kb.setStorageUrl(storageUrl);
+        return kb;
+    }
+
     // update task as pending
     public void updateVectorStatusToPending(Long kbId){
         KnowledgeBaseEntity kb = knowledgeBaseRepository.findById(kbId)
@@ -1,10 +1,22 @@
 package interview.guide.modules.knowledgeBase.service;
 
+import interview.guide.common.constant.AsyncTaskStreamConstants;
+import interview.guide.common.model.UploadTaskStage;
+import interview.guide.common.util.CurrentUser;
 import interview.guide.exception.BusinessException;
 import interview.guide.exception.ErrorCode;
-import interview.guide.infrastructure.file.FileHashService;
+import interview.guide.infrastructure.file.FileIngestionService;
 import interview.guide.infrastructure.file.FileStorageService;
 import interview.guide.infrastructure.file.FileValidationService;
+import interview.guide.infrastructure.file.IngestedFile;
+import interview.guide.infrastructure.file.PresignedUpload;
+import interview.guide.infrastructure.stream.QueueAdmissionService;
+import interview.guide.infrastructure.stream.TaskLane;
+import interview.guide.infrastructure.upload.PresignUploadRequest;
+import interview.guide.infrastructure.upload.UploadSingleFlight;
+import interview.guide.infrastructure.upload.UploadStreamConsumer;
+import interview.guide.infrastructure.upload.UploadTaskHandler;
+import interview.guide.infrastructure.upload.UploadTaskService;
 import interview.guide.modules.knowledgeBase.model.KnowledgeBaseEntity;
 import interview.guide.modules.knowledgeBase.model.VectorStatus;
 import interview.guide.modules.knowledgeBase.repository.KnowledgeBaseRepository;
@@ -14,86 +26,216 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
-public class KnowledgeBaseUploadService {
+public class KnowledgeBaseUploadService implements UploadTaskHandler {
+
+    public static final String TASK_TYPE = "knowledgebase";
+    private static final String PARAM_NAME = "name";
+    private static final String PARAM_CATEGORY = "category";
 
     private final FileValidationService fileValidationService;
     private final FileStorageService storageService;
-    private final FileHashService fileHashService;
+    private final FileIngestionService fileIngestionService;
     private final KnowledgeBaseParserService parserService;
     private final KnowledgeBaseRepository knowledgeBaseRepository;
     private final KnowledgeBasePersistenceService persistenceService;
 //    private final KnowledgeBaseParseService parseService;
     private final VectorizeStreamProducer vectorizeStreamProducer;
+    private final UploadTaskService uploadTaskService;
+    private final UploadSingleFlight uploadSingleFlight;
+    private final QueueAdmissionService queueAdmissionService;
 
     private static final long MAX_FILE_SIZE = 50 * 1024 * 1024;
 
     public Map<String, Object> uploadKnowledgeBase(MultipartFile file, String name, String category){
             // validate file
             fileValidationService.validateFile(file, MAX_FILE_SIZE, "knowledgeBase");
-            String fileName = file.getOriginalFilename();
 
-            log.info("upload knowledge init: {}, size: {} bytes, category: {}", fileName, file.getSize(), category);
+            log.info("upload knowledge init: {}, size: {} bytes, category: {}", file.getOriginalFilename(), file.getSize(), category);
 
-            // check file type
-            String contentType = parserService.detectContentType(file);
-            validateContentType(contentType, fileName);
+            // queue too long: 503 / bulk lane before anything is read or stored
+            Map<String, String> params = admit(toParams(name, category));
 
-            // find the file, if it's exists then return
-            String fileHash = fileHashService.calculateHash(file);
-            Optional<KnowledgeBaseEntity> existingDb = knowledgeBaseRepository.findByFileHash(fileHash);
-            if(existingDb.isPresent()){
-                log.info("found the knowledgeBase hash = {}", fileHash);
-                return persistenceService.handleDuplicateKnowledgeBase(existingDb.get(), fileHash);
+            // read upload once: hash + MIME sniff + spool
+            try (IngestedFile ingested = fileIngestionService.ingest(file)) {
+                return process(ingested, params, stage -> {});
             }
+    }
+
+    /**
+     * async mode: only spool the upload, parse/store/vectorize run in {@link UploadStreamConsumer}
+     *
+     * @return task id and initial status
+     */
+    public Map<String, Object> submitUpload(MultipartFile file, String name, String category){
+        fileValidationService.validateFile(file, MAX_FILE_SIZE, "knowledgeBase");
+        Map<String, String> params = admit(toParams(name, category));
+
+        IngestedFile ingested = fileIngestionService.ingest(file);
+        try {
+            validateContentType(ingested.detectedContentType(), ingested.originalFilename());
+            String taskId = uploadTaskService.submit(TASK_TYPE, ingested, params);
+            return Map.of(
+                    "taskId", taskId,
+                    "stage", UploadTaskStage.SPOOLED.name()
+            );
+        } catch (RuntimeException e) {
+            ingested.close();
+            throw e;
+        }
+    }
+
+    /**
+     * presigned mode: the client uploads straight to storage, then calls {@link #completeUpload}
+     */
+    public PresignedUpload presignUpload(PresignUploadRequest request){
+        fileValidationService.validateSize(request.size(), MAX_FILE_SIZE, "knowledgeBase");
+        validateContentType(request.contentType(), request.fileName());
+        Map<String, String> params = admit(toParams(request.name(), request.category()));
+
+        PresignedUpload upload = storageService.presignUpload("knowledgebase", request.fileName(), request.contentType(), request.size());
+        uploadTaskService.registerPresigned(TASK_TYPE, upload, request.fileName(), request.contentType(), params);
+        return upload;
+    }
+
+    /**
+     * presigned upload finished: hash, parse and vectorize from storage in the background
+     */
+    public Map<String, Object> completeUpload(String fileKey){
+        String taskId = uploadTaskService.submitFromStorage(TASK_TYPE, fileKey);
+        return Map.of(
+                "taskId", taskId,
+                "stage", UploadTaskStage.UPLOADED.name()
+        );
+    }
+
+    @Override
+    public String type() {
+        return TASK_TYPE;
+    }
 
-            // parse the file
-            String content = parserService.parseContent(file);
-            if (content == null || content.trim().isEmpty()) {
-                throw new BusinessException(ErrorCode.INTERNAL_ERROR, "无法从文件中提取文本内容，请确保文件格式正确");
+    @Override
+    public boolean isReferenced(String storageKey) {
+        return knowledgeBaseRepository.existsByStorageKey(storageKey);
+    }
+
+    /**
+     * parse, upload, save and enqueue vectorization for a spooled upload
+     */
+    @Override
+    public Map<String, Object> process(IngestedFile ingested, Map<String, String> params, Consumer<UploadTaskStage> progress) {
+        // concurrent uploads of the same file run one after another, later ones hit the duplicate path
+        return uploadSingleFlight.execute(TASK_TYPE, ingested.fileHash(), () -> doProcess(ingested, params, progress));
+    }
+
+    private Map<String, Object> doProcess(IngestedFile ingested, Map<String, String> params, Consumer<UploadTaskStage> progress) {
+        String fileName = ingested.originalFilename();
+        String name = params.get(PARAM_NAME);
+        String category = params.get(PARAM_CATEGORY);
+
+        // check file type
+        String contentType = ingested.detectedContentType();
+        validateContentType(contentType, fileName);
+
+        // presigned upload, already in storage
+        String storedKey = params.get(PARAM_STORAGE_KEY);
+
+        // find the file, if it's exists then return
+        String fileHash = ingested.fileHash();
+        Optional<KnowledgeBaseEntity> existingDb = knowledgeBaseRepository.findByFileHash(fileHash);
+        if(existingDb.isPresent()){
+            log.info("found the knowledgeBase hash = {}", fileHash);
+            // a redelivered task finds the row it saved itself, its object must stay
+            if (storedKey != null && !storedKey.equals(existingDb.get().getStorageKey())) {
+                storageService.deleteKnowledgeBase(storedKey);
             }
+            return persistenceService.handleDuplicateKnowledgeBase(existingDb.get(), fileHash);
+        }
 
+        // parse the file
+        progress.accept(UploadTaskStage.PARSING);
+        String content = parserService.parseContent(ingested);
+        if (content == null || content.trim().isEmpty()) {
+            throw new BusinessException(ErrorCode.INTERNAL_ERROR, "无法从文件中提取文本内容，请确保文件格式正确");
+        }
 
-            // upload to RustFS
-            String fileKey = storageService.uploadKnowledgeBase(file);
-            String fileUrl = storageService.getFileUrl(fileKey);
-            log.info("save to RustFS: {}", fileKey);
 
-            // save in the vector db
-            KnowledgeBaseEntity savedKb = persistenceService.saveKnowledgeBase(file, name, category, fileKey, fileUrl, fileHash);
+        // upload to RustFS
+        String fileKey = storedKey;
+        if (fileKey == null) {
+            progress.accept(UploadTaskStage.STORING);
+            fileKey = storageService.uploadKnowledgeBase(ingested);
+            log.info("save to RustFS: {}", fileKey);
+        }
+        String fileUrl = storageService.getFileUrl(fileKey);
 
-            // 7. 发送向量化任务到 Redis Stream（异步处理）
-            vectorizeStreamProducer.sendVectorizeTask(savedKb.getId(), content);
+        // save in the vector db
+        progress.accept(UploadTaskStage.SAVING);
+        KnowledgeBaseEntity savedKb;
+        try {
+            savedKb = persistenceService.saveKnowledgeBase(ingested, name, category, fileKey, fileUrl);
+        } catch (RuntimeException e) {
+            // no row points at the object we just wrote, don't leave it orphaned (presigned objects are removed by the task)
+            if (storedKey == null) {
+                try {
+                    storageService.deleteKnowledgeBase(fileKey);
+                } catch (RuntimeException cleanupError) {
+                    e.addSuppressed(cleanupError);
+                }
+            }
+            throw e;
+        }
 
-            log.info("知识库上传完成，向量化任务已入队: {}, kbId={}", fileName, savedKb.getId());
+        // 7. 发送向量化任务到 Redis Stream（异步处理）
+        vectorizeStreamProducer.sendVectorizeTask(savedKb, TaskLane.parse(params.get(PARAM_LANE)), params.get(PARAM_USER_ID));
 
-            // 8. 返回结果（状态为 PENDING，前端可轮询获取最新状态）
-            return Map.of(
-                    "knowledgeBase", Map.of(
-                            "id", savedKb.getId(),
-                            "name", savedKb.getName(),
-                            "category", savedKb.getCategory() != null ? savedKb.getCategory() : "",
-                            "fileSize", savedKb.getFileSize(),
-                            "contentLength", content.length(),
-                            "vectorStatus", VectorStatus.PENDING.name()
-                    ),
-                    "storage", Map.of(
-                            "fileKey", fileKey,
-                            "fileUrl", fileUrl
-                    ),
-                    "duplicate", false
-            );
+        log.info("知识库上传完成，向量化任务已入队: {}, kbId={}", fileName, savedKb.getId());
 
+        // 8. 返回结果（状态为 PENDING，后续状态通过 SSE 推送：GET /api/tasks/events）
+        return Map.of(
+                "knowledgeBase", Map.of(
+                        "id", savedKb.getId(),
+                        "name", savedKb.getName(),
+                        "category", savedKb.getCategory() != null ? savedKb.getCategory() : "",
+                        "fileSize", savedKb.getFileSize(),
+                        "contentLength", content.length(),
+                        "vectorStatus", VectorStatus.PENDING.name()
+                ),
+                "storage", Map.of(
+                        "fileKey", fileKey,
+                        "fileUrl", fileUrl
+                ),
+                "duplicate", false
+        );
+    }
 
+    /**
+     * admission control of the vectorize queue, the granted lane travels with the task params
+     */
+    private Map<String, String> admit(Map<String, String> params) {
+        String userId = CurrentUser.id();
+        TaskLane lane = queueAdmissionService.admit(AsyncTaskStreamConstants.KB_VECTORIZE_WORKER,
+                AsyncTaskStreamConstants.KB_VECTORIZE_STREAM_KEY, AsyncTaskStreamConstants.KB_VECTORIZE_GROUP_NAME, userId);
+        params.put(PARAM_LANE, lane.name());
+        params.put(PARAM_USER_ID, userId);
+        return params;
     }
 
+    private static Map<String, String> toParams(String name, String category) {
+        Map<String, String> params = new HashMap<>();
+        params.put(PARAM_NAME, name);
+        params.put(PARAM_CATEGORY, category);
+        return params;
+    }
 
-    private void validateContentType(String contentType, String fileName) {
+    void validateContentType(String contentType, String fileName) {
         fileValidationService.validateContentType(
                 contentType,
                 fileName,
@@ -116,7 +258,7 @@ public class KnowledgeBaseUploadService {
 //        log.info("开始重新向量化知识库: kbId={}, name={}", kbId, kb.getName());
 //
 //        // 1. 下载文件并解析内容
-//        String content = parseService.downloadAndParseContent(kb.getStorageKey(), kb.getOriginalFilename());
+//        String content = parseService.downloadAndParseContent(kb.getStorageKey(), kb.getOriginalFilename(), kb.getFileHash());
 //        if (content == null || content.trim().isEmpty()) {
 //            throw new BusinessException(ErrorCode.INTERNAL_ERROR, "无法从文件中提取文本内容");
 //        }
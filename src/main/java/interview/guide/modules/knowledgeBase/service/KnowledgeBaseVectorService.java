@@ -10,6 +10,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -32,6 +33,14 @@ public class KnowledgeBaseVectorService {
 
     @Transactional
     public void vectorizeAndStore(Long knowledgeBaseId, String content){
+        vectorizeAndStore(knowledgeBaseId, content, (done, total) -> {});
+    }
+
+    /**
+     * @param progress called after every stored batch with (chunks done, chunks total)
+     */
+    @Transactional
+    public void vectorizeAndStore(Long knowledgeBaseId, String content, BiConsumer<Integer, Integer> progress){
         log.info("vectorize init kbId = {}, contentLength = {}", knowledgeBaseId,content.length());
         try{
             // 1. delete all existing data
@@ -58,6 +67,7 @@ public class KnowledgeBaseVectorService {
                 List<Document> batch = chunks.subList(start, end);
                 log.debug("handle number {}/{} batch: chunks {}-{}", i + 1, batchCount, start + 1, end);
                 vectorStore.add(batch);
+                progress.accept(end, totalChunks);
             }
             log.info("vectorize finished: kbId={}, chunks={}, batches={}",
                     knowledgeBaseId, totalChunks, batchCount);
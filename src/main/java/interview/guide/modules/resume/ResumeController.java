@@ -1,15 +1,25 @@
 package interview.guide.modules.resume;
 
 import interview.guide.common.result.Result;
+import interview.guide.infrastructure.file.FileDownloadService;
+import interview.guide.infrastructure.file.PresignedUpload;
+import interview.guide.infrastructure.upload.CompleteUploadRequest;
+import interview.guide.infrastructure.upload.PresignUploadRequest;
+import interview.guide.infrastructure.upload.UploadTaskService;
 import interview.guide.modules.resume.dto.ResumeResponse;
 import interview.guide.modules.resume.model.ResumeDetailDTO;
 import interview.guide.modules.resume.model.ResumeListItemDTO;
 import interview.guide.modules.resume.service.ResumeHistoryService;
 import interview.guide.modules.resume.service.ResumeUploadService;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Map;
@@ -21,6 +31,8 @@ public class ResumeController {
     private final ResumeUploadService uploadService;
 //    private final ResumeDeleteService deleteService;
     private final ResumeHistoryService historyService;
+    private final UploadTaskService uploadTaskService;
+    private final FileDownloadService fileDownloadService;
 
     @GetMapping(value = "/health")
     public String healthCheck(){
@@ -43,14 +55,61 @@ public class ResumeController {
         return Result.success(detail);
     }
 
+    /**
+     *  download resume file, streamed from storage
+     *  supports Range (206) and If-None-Match (304, ETag = file SHA-256)
+     */
+    @GetMapping("/{id}/download")
+    public ResponseEntity<StreamingResponseBody> downloadResume(@PathVariable Long id,
+                                                                @RequestHeader HttpHeaders headers) {
+        var entity = historyService.getEntityForDownload(id);
+        return fileDownloadService.download(entity.getStorageKey(), entity.getFileHash(),
+                entity.getOriginalFilename(), entity.getContentType(), entity.getFileSize(), headers);
+    }
+
+    /**
+     *  upload resume
+     *  async=true: only spool the file and return 202 with a task id, follow it on /api/tasks/events?upload={taskId} (SSE) or /upload/tasks/{taskId}
+     */
     @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public Result<Map<String,Object>> uploadAndAnalyze(@RequestParam("file") MultipartFile file){
+    public ResponseEntity<Result<Map<String,Object>>> uploadAndAnalyze(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "async", defaultValue = "false") boolean async){
+        if(async){
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(Result.success(uploadService.submitUpload(file)));
+        }
+
         Map<String, Object> result = uploadService.uploadAndAnalyze(file);
         boolean isDuplicate = (Boolean) result.get("duplicate");
         if(isDuplicate){
-            return Result.success("analysis found", result);
+            return ResponseEntity.ok(Result.success("analysis found", result));
         }
 
-        return  Result.success(result);
+        return ResponseEntity.ok(Result.success(result));
+    }
+
+    /**
+     *  presigned direct upload: PUT the file to the returned url with the returned headers,
+     *  then call /upload/complete
+     */
+    @PostMapping("/upload/presign")
+    public Result<PresignedUpload> presignUpload(@Valid @RequestBody PresignUploadRequest request){
+        return Result.success(uploadService.presignUpload(request));
+    }
+
+    /**
+     *  presigned upload finished, processing runs in the background (202 + task id)
+     */
+    @PostMapping("/upload/complete")
+    public ResponseEntity<Result<Map<String,Object>>> completeUpload(@Valid @RequestBody CompleteUploadRequest request){
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(Result.success(uploadService.completeUpload(request.fileKey())));
+    }
+
+    /**
+     *  async upload task status (stage, result or error)
+     */
+    @GetMapping("/upload/tasks/{taskId}")
+    public Result<Map<String,Object>> getUploadTask(@PathVariable String taskId){
+        return Result.success(uploadTaskService.getTask(taskId));
     }
 }
@@ -0,0 +1,30 @@
+package interview.guide.modules.resume.listener;
+
+import interview.guide.common.constant.AsyncTaskStreamConstants;
+import interview.guide.infrastructure.event.TaskEvent;
+import interview.guide.infrastructure.event.TaskStatusSource;
+import interview.guide.modules.resume.repository.ResumeRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+/**
+ * 简历分析状态快照，SSE 订阅时推送一次
+ */
+@Component
+@RequiredArgsConstructor
+public class AnalyzeStatusSource implements TaskStatusSource {
+    private final ResumeRepository resumeRepository;
+
+    @Override
+    public String type() {
+        return AsyncTaskStreamConstants.TASK_EVENT_RESUME;
+    }
+
+    @Override
+    public Optional<TaskEvent> current(String id) {
+        return resumeRepository.findAnalyzeStatusById(Long.parseLong(id))
+                .map(status -> TaskEvent.status(type(), id, status.getAnalyzeStatus(), status.getAnalyzeError()));
+    }
+}
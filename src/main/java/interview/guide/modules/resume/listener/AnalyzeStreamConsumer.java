@@ -1,221 +1,145 @@
 package interview.guide.modules.resume.listener;
 
+import interview.guide.common.config.StreamConfigProperties;
 import interview.guide.common.constant.AsyncTaskStreamConstants;
 import interview.guide.common.model.AsyncTaskStatus;
-import interview.guide.infrastructure.redis.RedisService;
+import interview.guide.infrastructure.event.TaskEvent;
+import interview.guide.infrastructure.event.TaskEventPublisher;
+import interview.guide.infrastructure.stream.StatusUpdateBuffer;
+import interview.guide.infrastructure.stream.StreamMetrics;
+import interview.guide.infrastructure.stream.StreamRetryService;
+import interview.guide.infrastructure.stream.StreamTask;
+import interview.guide.infrastructure.stream.StreamWorker;
+import interview.guide.infrastructure.stream.TaskQueue;
 import interview.guide.modules.interview.model.ResumeAnalysisResponse;
 import interview.guide.modules.resume.model.ResumeEntity;
 import interview.guide.modules.resume.repository.ResumeRepository;
 import interview.guide.modules.resume.service.ResumeGradingService;
+import interview.guide.modules.resume.service.ResumeParseService;
 import interview.guide.modules.resume.service.ResumePersistenceService;
-import jakarta.annotation.PostConstruct;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.redisson.api.stream.StreamMessageId;
 import org.springframework.stereotype.Component;
 
-import java.util.Map;
-import java.util.UUID;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicBoolean;
-
+/**
+ * 简历分析消费者，并发 / 重试见 {@link StreamWorker}
+ */
 @Slf4j
 @Component
-@RequiredArgsConstructor
-public class AnalyzeStreamConsumer {
-    private final RedisService redisService;
+public class AnalyzeStreamConsumer extends StreamWorker {
     private final ResumeGradingService gradingService;
     private final ResumePersistenceService persistenceService;
     private final ResumeRepository resumeRepository;
-
-    private final AtomicBoolean running = new AtomicBoolean(false);
-    private ExecutorService executorService;
-    private String consumerName;
-
-
-    @PostConstruct
-    public void init(){
-        this.consumerName = AsyncTaskStreamConstants.RESUME_ANALYZE_CONSUMER_PREFIX + UUID.randomUUID().toString().substring(0,8);
-        try {
-            // create consumer if it's not exists
-            redisService.createStreamGroup(
-                    AsyncTaskStreamConstants.RESUME_ANALYZE_STREAM_KEY,
-                    AsyncTaskStreamConstants.RESUME_ANALYZE_GROUP_NAME
-            );
-            log.info("consumer group create or exists {}", AsyncTaskStreamConstants.RESUME_ANALYZE_GROUP_NAME);
-        } catch (Exception e) {
-            log.warn("consumer might be exists");
-//            throw new RuntimeException(e);
-        }
-        // 启动消费者线程
-        this.executorService = Executors.newSingleThreadExecutor(r -> {
-            Thread t = new Thread(r, "analyze-consumer");
-            t.setDaemon(true);
-            return t;
+    private final ResumeParseService parseService;
+    private final StatusUpdateBuffer<AsyncTaskStatus> statusBuffer;
+
+    public AnalyzeStreamConsumer(TaskQueue taskQueue, StreamRetryService retryService, StreamMetrics metrics,
+                                 StreamConfigProperties streamConfig,
+                                 ResumeGradingService gradingService, ResumePersistenceService persistenceService,
+                                 ResumeRepository resumeRepository, ResumeParseService parseService,
+                                 TaskEventPublisher eventPublisher) {
+        super(AsyncTaskStreamConstants.RESUME_ANALYZE_WORKER, taskQueue, retryService, metrics, streamConfig);
+        this.gradingService = gradingService;
+        this.persistenceService = persistenceService;
+        this.resumeRepository = resumeRepository;
+        this.parseService = parseService;
+        // clients are notified once the status is written
+        this.statusBuffer = new StatusUpdateBuffer<>(AsyncTaskStreamConstants.RESUME_ANALYZE_WORKER, (ids, status, error) -> {
+            resumeRepository.updateAnalyzeStatusBatch(ids, status, error);
+            ids.forEach(id -> eventPublisher.publish(
+                    TaskEvent.status(AsyncTaskStreamConstants.TASK_EVENT_RESUME, id, status, error)));
         });
+    }
 
-        running.set(true);
-        executorService.submit(this::consumeLoop);
-
-        log.info("向量化消费者已启动: consumerName={}", consumerName);
+    @Override
+    protected String streamKey() {
+        return AsyncTaskStreamConstants.RESUME_ANALYZE_STREAM_KEY;
     }
 
-    /**
-     * 消费循环
-     */
-    private void consumeLoop() {
-        while (running.get()) {
-            try {
-                redisService.streamConsumeMessages(
-                        AsyncTaskStreamConstants.RESUME_ANALYZE_STREAM_KEY,
-                        AsyncTaskStreamConstants.RESUME_ANALYZE_GROUP_NAME,
-                        consumerName,
-                        AsyncTaskStreamConstants.BATCH_SIZE,
-                        AsyncTaskStreamConstants.POLL_INTERVAL_MS,
-                        this::processMessage
-                );
-            } catch (Exception e) {
-                if (Thread.currentThread().isInterrupted()) {
-                    log.info("消费者线程被中断");
-                    break;
-                }
-                log.error("消费消息时发生错误: {}", e.getMessage(), e);
-            }
-        }
+    @Override
+    protected String groupName() {
+        return AsyncTaskStreamConstants.RESUME_ANALYZE_GROUP_NAME;
     }
 
+    @Override
+    protected String consumerPrefix() {
+        return AsyncTaskStreamConstants.RESUME_ANALYZE_CONSUMER_PREFIX;
+    }
 
     /**
      * 处理单条消息
      */
-    private void processMessage(StreamMessageId messageId, Map<String, String> data) {
-        String resumeIdStr = data.get(AsyncTaskStreamConstants.FIELD_RESUME_ID);
-        String content = data.get(AsyncTaskStreamConstants.FIELD_CONTENT);
-        String retryCountStr = data.getOrDefault(AsyncTaskStreamConstants.FIELD_RETRY_COUNT, "0");
-
-        if (resumeIdStr == null || content == null) {
-            log.warn("消息格式错误，跳过: messageId={}, kbIdStr={}", messageId, resumeIdStr);
-            ackMessage(messageId);
+    @Override
+    protected void handle(StreamTask task) {
+        String resumeIdStr = task.get(AsyncTaskStreamConstants.FIELD_RESUME_ID);
+        String storageKey = task.get(AsyncTaskStreamConstants.FIELD_STORAGE_KEY);
+
+        if (resumeIdStr == null || (storageKey == null && task.get(AsyncTaskStreamConstants.FIELD_CONTENT) == null)) {
+            log.warn("消息格式错误，跳过: messageId={}, resumeIdStr={}", task.messageId(), resumeIdStr);
             return;
         }
 
         Long resumeId = Long.parseLong(resumeIdStr);
-        int retryCount = Integer.parseInt(retryCountStr);
-
-        log.info("开始处理简历分析任务: resumeId={}, messageId={}, retryCount={}", resumeId, messageId, retryCount);
-
-        try {
-            // 1. 检查简历是否仍然存在（可能在分析过程中被删除）
-            if (!resumeRepository.existsById(resumeId)) {
-                log.warn("简历已被删除，跳过分析任务: resumeId={}", resumeId);
-                ackMessage(messageId);
-                return;
-            }
-
-            // 2. 更新状态为 PROCESSING
-            updateAnalyzeStatus(resumeId, AsyncTaskStatus.PROCESSING, null);
-
-            // 3. 执行 AI 分析
-            ResumeAnalysisResponse analysis = gradingService.analyzeResume(content);
-
-            // 4. 再次检查简历是否存在（分析期间可能被删除）
-            ResumeEntity resume = resumeRepository.findById(resumeId).orElse(null);
-            if (resume == null) {
-                log.warn("简历在分析期间被删除，跳过保存结果: resumeId={}", resumeId);
-                ackMessage(messageId);
-                return;
-            }
-            persistenceService.saveAnalysis(resume, analysis);
-
-            // 4. 更新状态为 COMPLETED
-            updateAnalyzeStatus(resumeId, AsyncTaskStatus.COMPLETED, null);
-
-            // 5. 确认消息
-            ackMessage(messageId);
-
-            log.info("简历分析任务完成: resumeId={}, score={}", resumeId, analysis.overallScore());
-
-        } catch (Exception e) {
-            log.error("简历分析任务失败: resumeId={}, error={}", resumeId, e.getMessage(), e);
-
-            // 判断是否需要重试
-            if (retryCount < AsyncTaskStreamConstants.MAX_RETRY_COUNT) {
-                // 重新入队（增加重试计数）
-                retryMessage(resumeId, content, retryCount + 1);
-            } else {
-                // 超过最大重试次数，标记为失败
-                String errorMsg = truncateError("分析失败(已重试" + retryCount + "次): " + e.getMessage());
-                updateAnalyzeStatus(resumeId, AsyncTaskStatus.FAILED, errorMsg);
-            }
-
-            // 确认原消息（无论成功失败都要确认，否则会重复消费）
-            ackMessage(messageId);
+        log.info("开始处理简历分析任务: resumeId={}, messageId={}, retryCount={}", resumeId, task.messageId(), task.retryCount());
+
+        // 1. 加载简历，检查是否仍然存在（可能在分析过程中被删除）
+        ResumeEntity resume = resumeRepository.findById(resumeId).orElse(null);
+        if (resume == null) {
+            log.warn("简历已被删除，跳过分析任务: resumeId={}", resumeId);
+            return;
         }
-    }
 
+        // 2. 更新状态为 PROCESSING
+        updateAnalyzeStatus(resumeId, AsyncTaskStatus.PROCESSING, null);
 
-    /**
-     * 重试消息（重新发送到 Stream）
-     */
-    private void retryMessage(Long resumeId, String content, int retryCount) {
-        try {
-            Map<String, String> message = Map.of(
-                    AsyncTaskStreamConstants.FIELD_RESUME_ID, resumeId.toString(),
-                    AsyncTaskStreamConstants.FIELD_CONTENT, content,
-                    AsyncTaskStreamConstants.FIELD_RETRY_COUNT, String.valueOf(retryCount)
-            );
-
-            redisService.streamAdd(
-                    AsyncTaskStreamConstants.RESUME_ANALYZE_STREAM_KEY,
-                    message,
-                    AsyncTaskStreamConstants.STREAM_MAX_LEN
-            );
-            log.info("简历分析任务已重新入队: resumeId={}, retryCount={}", resumeId, retryCount);
-
-        } catch (Exception e) {
-            log.error("重试入队失败: resumeId={}, error={}", resumeId, e.getMessage(), e);
-            updateAnalyzeStatus(resumeId, AsyncTaskStatus.FAILED, truncateError("重试入队失败: " + e.getMessage()));
+        // 3. 取回简历文本，执行 AI 分析
+        String content = resolveContent(task, resume, storageKey);
+        ResumeAnalysisResponse analysis = callModel(() -> gradingService.analyzeResume(content));
+
+        // 4. 再次检查简历是否存在（分析期间可能被删除）
+        if (!resumeRepository.existsById(resumeId)) {
+            log.warn("简历在分析期间被删除，跳过保存结果: resumeId={}", resumeId);
+            return;
         }
+        persistenceService.saveAnalysis(resume, analysis);
+
+        // 5. 更新状态为 COMPLETED
+        updateAnalyzeStatus(resumeId, AsyncTaskStatus.COMPLETED, null);
+
+        log.info("简历分析任务完成: resumeId={}, score={}", resumeId, analysis.overallScore());
     }
 
     /**
-     * 确认消息
+     * claim check: the text saved with the resume; only without it the parsed-text cache, or a
+     * re-parse of the stored file on a miss
      */
-    private void ackMessage(StreamMessageId messageId) {
-        try {
-            redisService.streamAck(
-                    AsyncTaskStreamConstants.RESUME_ANALYZE_STREAM_KEY,
-                    AsyncTaskStreamConstants.RESUME_ANALYZE_GROUP_NAME,
-                    messageId
-            );
-        } catch (Exception e) {
-            log.error("确认消息失败: messageId={}, error={}", messageId, e.getMessage(), e);
+    private String resolveContent(StreamTask task, ResumeEntity resume, String storageKey) {
+        if (resume.getResumeText() != null) {
+            return resume.getResumeText();
+        }
+        // 旧消息内联全文
+        String content = task.get(AsyncTaskStreamConstants.FIELD_CONTENT);
+        if (content != null) {
+            return content;
         }
+        String fileName = task.get(AsyncTaskStreamConstants.FIELD_ORIGINAL_FILENAME);
+        return parseService.downloadAndParseContent(storageKey, fileName != null ? fileName : storageKey,
+                task.get(AsyncTaskStreamConstants.FIELD_CONTENT_HASH));
     }
 
-    /**
-     * 更新分析状态
-     */
-    private void updateAnalyzeStatus(Long resumeId, AsyncTaskStatus status, String error) {
-        try {
-            resumeRepository.findById(resumeId).ifPresent(resume -> {
-                resume.setAnalyzeStatus(status);
-                resume.setAnalyzeError(error);
-                resumeRepository.save(resume);
-                log.debug("分析状态已更新: resumeId={}, status={}", resumeId, status);
-            });
-        } catch (Exception e) {
-            log.error("更新分析状态失败: resumeId={}, status={}, error={}", resumeId, status, e.getMessage(), e);
-        }
+    @Override
+    protected void onFailed(StreamTask task, String error) {
+        updateAnalyzeStatus(Long.parseLong(task.get(AsyncTaskStreamConstants.FIELD_RESUME_ID)), AsyncTaskStatus.FAILED, error);
+    }
+
+    @Override
+    protected boolean flushStatus() {
+        return statusBuffer.flush();
     }
 
     /**
-     * 截断错误信息，避免超过数据库字段长度
+     * 更新分析状态：先缓冲，随批量 ack 一起写入
      */
-    private String truncateError(String error) {
-        if (error == null) return null;
-        return error.length() > 500 ? error.substring(0, 500) : error;
+    private void updateAnalyzeStatus(Long resumeId, AsyncTaskStatus status, String error) {
+        statusBuffer.update(resumeId, status, error);
     }
-
 }
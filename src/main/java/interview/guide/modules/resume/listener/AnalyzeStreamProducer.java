@@ -1,39 +1,62 @@
 package interview.guide.modules.resume.listener;
 
+import interview.guide.common.config.StreamConfigProperties;
 import interview.guide.common.constant.AsyncTaskStreamConstants;
 import interview.guide.common.model.AsyncTaskStatus;
-import interview.guide.infrastructure.redis.RedisService;
+import interview.guide.infrastructure.event.TaskEvent;
+import interview.guide.infrastructure.event.TaskEventPublisher;
+import interview.guide.infrastructure.stream.TaskLane;
+import interview.guide.infrastructure.stream.TaskQueue;
+import interview.guide.modules.resume.model.ResumeEntity;
 import interview.guide.modules.resume.repository.ResumeRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Service;
 
+import java.util.HashMap;
 import java.util.Map;
 
 @RequiredArgsConstructor
 @Slf4j
 @Component
 public class AnalyzeStreamProducer {
-    private final RedisService redisService;
+    private final TaskQueue taskQueue;
+    private final StreamConfigProperties streamConfig;
     private final ResumeRepository resumeRepository;
+    private final TaskEventPublisher eventPublisher;
 
 
-    public void sendAnalyzeTask(Long resumeId, String content){
+    /**
+     * enqueue analysis, the message only carries a reference to the parsed text (claim check)
+     *
+     * @param lane lane granted by admission control, BULK when the interactive queue is over its SLO
+     */
+    public void sendAnalyzeTask(ResumeEntity resume, TaskLane lane, String userId){
+        Long resumeId = resume.getId();
         try {
-            Map<String, String> message = Map.of(
-                    AsyncTaskStreamConstants.FIELD_RESUME_ID, resumeId.toString(),
-                    AsyncTaskStreamConstants.FIELD_CONTENT, content,
-                    AsyncTaskStreamConstants.FIELD_RETRY_COUNT,"0"
-            );
+            Map<String, String> message = new HashMap<>();
+            message.put(AsyncTaskStreamConstants.FIELD_RESUME_ID, resumeId.toString());
+            message.put(AsyncTaskStreamConstants.FIELD_STORAGE_KEY, resume.getStorageKey());
+            if (resume.getOriginalFilename() != null) {
+                message.put(AsyncTaskStreamConstants.FIELD_ORIGINAL_FILENAME, resume.getOriginalFilename());
+            }
+            if (resume.getFileHash() != null) {
+                message.put(AsyncTaskStreamConstants.FIELD_CONTENT_HASH, resume.getFileHash());
+            }
+            message.put(AsyncTaskStreamConstants.FIELD_RETRY_COUNT, "0");
+            if (userId != null) {
+                message.put(AsyncTaskStreamConstants.FIELD_USER_ID, userId);
+            }
 
-            String messageId = redisService.streamAdd(
-                    AsyncTaskStreamConstants.RESUME_ANALYZE_STREAM_KEY,
+            StreamConfigProperties.Worker worker = streamConfig.worker(AsyncTaskStreamConstants.RESUME_ANALYZE_WORKER);
+            String messageId = taskQueue.add(
+                    lane.streamKey(AsyncTaskStreamConstants.RESUME_ANALYZE_STREAM_KEY, userId, worker.getBulkPartitions()),
                     message,
-                    AsyncTaskStreamConstants.STREAM_MAX_LEN
+                    worker.getMaxLen()
             );
 
-            log.info("send success to stream resumeId={}, messageId={}", resumeId, messageId);
+            log.info("send success to stream resumeId={}, lane={}, messageId={}", resumeId, lane, messageId);
         } catch (RuntimeException e) {
             log.error("send analysis failed: resumeId={}, error={}", resumeId, e.getMessage(), e);
             updateAnalyzeStatus(resumeId, AsyncTaskStatus.FAILED, "task is failed: " + e.getMessage());
@@ -48,6 +71,7 @@ public class AnalyzeStreamProducer {
             }
 
             resumeRepository.save(resume);
+            eventPublisher.publish(TaskEvent.status(AsyncTaskStreamConstants.TASK_EVENT_RESUME, resumeId, status, resume.getAnalyzeError()));
         });
     }
 
@@ -42,6 +42,10 @@ public class ResumeEntity {
     @Column(columnDefinition = "TEXT")
     private String resumeText;
 
+    // MinHash signature of resumeText, near-duplicate detection
+    @Column(length = 512)
+    private byte[] minhashSignature;
+
     @Column(nullable = false)
     private LocalDateTime uploadedAt;
 
@@ -0,0 +1,35 @@
+package interview.guide.modules.resume.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * LSH band of a resume MinHash signature, lookup by band key finds near-duplicate candidates
+ */
+@Entity
+@Table(name = "resume_lsh_bands", indexes = {
+        @Index(name = "idx_resume_lsh_band", columnList = "bandKey"),
+        @Index(name = "idx_resume_lsh_resume", columnList = "resumeId")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+public class ResumeLshBandEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long bandKey;
+
+    @Column(nullable = false)
+    private Long resumeId;
+
+    public ResumeLshBandEntity(Long bandKey, Long resumeId) {
+        this.bandKey = bandKey;
+        this.resumeId = resumeId;
+    }
+}
@@ -0,0 +1,20 @@
+package interview.guide.modules.resume.repository;
+
+import interview.guide.modules.resume.model.ResumeLshBandEntity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ResumeLshBandRepository extends JpaRepository<ResumeLshBandEntity, Long> {
+
+    /**
+     * resumes sharing at least one band, most shared bands first
+     */
+    @Query("select b.resumeId from ResumeLshBandEntity b where b.bandKey in :bandKeys " +
+            "group by b.resumeId order by count(b) desc")
+    List<Long> findCandidateResumeIds(@Param("bandKeys") Collection<Long> bandKeys, Pageable pageable);
+}
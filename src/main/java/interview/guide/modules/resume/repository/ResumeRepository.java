@@ -1,8 +1,14 @@
 package interview.guide.modules.resume.repository;
 
+import interview.guide.common.model.AsyncTaskStatus;
 import interview.guide.modules.resume.model.ResumeEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface ResumeRepository extends JpaRepository<ResumeEntity, Long> {
@@ -11,5 +17,26 @@ public interface ResumeRepository extends JpaRepository<ResumeEntity, Long> {
 
     boolean existsByFileHash(String fileHash);
 
+    boolean existsByStorageKey(String storageKey);
 
+    /**
+     * 批量更新分析状态（消费者按批次写入，不加载实体）
+     * @return 更新的行数
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE ResumeEntity r SET r.analyzeStatus = :status, r.analyzeError = :error WHERE r.id IN :ids")
+    int updateAnalyzeStatusBatch(@Param("ids") List<Long> ids, @Param("status") AsyncTaskStatus status, @Param("error") String error);
+
+    /**
+     * 只查询分析状态（SSE 订阅快照，不加载实体）
+     */
+    @Query("SELECT r.analyzeStatus AS analyzeStatus, r.analyzeError AS analyzeError FROM ResumeEntity r WHERE r.id = :id")
+    Optional<AnalyzeStatusView> findAnalyzeStatusById(@Param("id") Long id);
+
+    interface AnalyzeStatusView {
+        AsyncTaskStatus getAnalyzeStatus();
+
+        String getAnalyzeError();
+    }
 }
@@ -90,6 +90,14 @@ public class ResumeHistoryService {
     }
 
 
+    /**
+     * resume entity for file download, file bytes are streamed by the caller
+     */
+    public ResumeEntity getEntityForDownload(Long id) {
+        return resumePersistenceService.findById(id)
+                .orElseThrow(() -> new BusinessException(ErrorCode.RESUME_NOT_FOUND));
+    }
+
     /**
      * 从 JSON 提取 strengths
      */
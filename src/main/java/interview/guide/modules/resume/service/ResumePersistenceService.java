@@ -1,8 +1,9 @@
 package interview.guide.modules.resume.service;
 
+import interview.guide.common.model.AsyncTaskStatus;
 import interview.guide.exception.BusinessException;
 import interview.guide.exception.ErrorCode;
-import interview.guide.infrastructure.file.FileHashService;
+import interview.guide.infrastructure.file.IngestedFile;
 import interview.guide.infrastructure.mapper.ResumeMapper;
 import interview.guide.modules.interview.model.ResumeAnalysisResponse;
 import interview.guide.modules.resume.model.ResumeAnalysisEntity;
@@ -13,7 +14,6 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.multipart.MultipartFile;
 import tools.jackson.core.JacksonException;
 import tools.jackson.core.type.TypeReference;
 import tools.jackson.databind.ObjectMapper;
@@ -29,19 +29,16 @@ public class ResumePersistenceService {
     private final ResumeAnalysisRepository analysisRepository;
     private final ObjectMapper objectMapper;
     private final ResumeMapper resumeMapper;
-    private final FileHashService fileHashService;
 
 
     /**
      * check if file is already exists (fileHash)
      *
-     * @param file uploaded file
+     * @param fileHash SHA-256 of the uploaded file
      * @return resume or empty
      */
-    public Optional<ResumeEntity> findExistingResume(MultipartFile file){
+    public Optional<ResumeEntity> findExistingResume(String fileHash){
         try {
-            // make hash from hash service
-            String fileHash = fileHashService.calculateHash(file);
             // check if it's in db
             Optional<ResumeEntity> existing = resumeRepository.findByFileHash(fileHash);
             if (existing.isPresent()) {
@@ -61,16 +58,16 @@ public class ResumePersistenceService {
      * save new resume
      */
     @Transactional(rollbackFor = Exception.class)
-    public ResumeEntity saveResume(MultipartFile file, String resumeText,
+    public ResumeEntity saveResume(IngestedFile file, String resumeText,
                                    String storageKey, String storageUrl) {
         try {
-            String fileHash = fileHashService.calculateHash(file);
+            String fileHash = file.fileHash();
 
             ResumeEntity resume = new ResumeEntity();
             resume.setFileHash(fileHash);
-            resume.setOriginalFilename(file.getOriginalFilename());
-            resume.setFileSize(file.getSize());
-            resume.setContentType(file.getContentType());
+            resume.setOriginalFilename(file.originalFilename());
+            resume.setFileSize(file.size());
+            resume.setContentType(file.contentType());
             resume.setStorageKey(storageKey);
             resume.setStorageUrl(storageUrl);
             resume.setResumeText(resumeText);
@@ -168,6 +165,25 @@ public class ResumePersistenceService {
         }
     }
 
+    /**
+     * copy the latest analysis of a near-duplicate resume to a new resume, no LLM call
+     *
+     * @return false when the source has no analysis yet
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public boolean reuseAnalysis(ResumeEntity source, ResumeEntity target) {
+        Optional<ResumeAnalysisEntity> latest = getLatestAnalysis(source.getId());
+        if (latest.isEmpty()) {
+            return false;
+        }
+        saveAnalysis(target, entityToDTO(latest.get()));
+        target.setAnalyzeStatus(AsyncTaskStatus.COMPLETED);
+        target.setAnalyzeError(null);
+        resumeRepository.save(target);
+        log.info("analysis reused: resumeId={} <- resumeId={}", target.getId(), source.getId());
+        return true;
+    }
+
     public List<ResumeAnalysisEntity> findAnalysesByResumeId(Long id){
         return analysisRepository.findByResumeIdOrderByAnalyzedAtDesc(id);
     }
@@ -0,0 +1,106 @@
+package interview.guide.modules.resume.service;
+
+import interview.guide.common.config.AppConfigProperties;
+import interview.guide.infrastructure.similarity.MinHash;
+import interview.guide.modules.resume.model.ResumeEntity;
+import interview.guide.modules.resume.model.ResumeLshBandEntity;
+import interview.guide.modules.resume.repository.ResumeLshBandRepository;
+import interview.guide.modules.resume.repository.ResumeRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * near-duplicate resumes by MinHash over the parsed text
+ *
+ * <p>candidates come from an indexed lookup of the LSH band keys, only those are compared,
+ * so cost does not grow with the number of stored resumes.</p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ResumeSimilarityService {
+
+    private final ResumeRepository resumeRepository;
+    private final ResumeLshBandRepository bandRepository;
+    private final AppConfigProperties appConfig;
+
+    /**
+     * near-duplicate of an earlier resume
+     */
+    public record NearDuplicate(ResumeEntity resume, double similarity) {
+    }
+
+    public int[] signature(String resumeText) {
+        return MinHash.signature(resumeText);
+    }
+
+    /**
+     * most similar stored resume at or above the threshold
+     */
+    public Optional<NearDuplicate> findNearDuplicate(int[] signature) {
+        AppConfigProperties.Similarity config = appConfig.getSimilarity();
+        if (!config.isEnabled() || signature == null) {
+            return Optional.empty();
+        }
+        try {
+            List<Long> candidateIds = bandRepository.findCandidateResumeIds(
+                    toList(MinHash.bandKeys(signature)), PageRequest.of(0, config.getMaxCandidates()));
+            if (candidateIds.isEmpty()) {
+                return Optional.empty();
+            }
+
+            NearDuplicate best = null;
+            for (ResumeEntity candidate : resumeRepository.findAllById(candidateIds)) {
+                int[] candidateSignature = MinHash.fromBytes(candidate.getMinhashSignature());
+                if (candidateSignature == null) {
+                    continue;
+                }
+                double similarity = MinHash.similarity(signature, candidateSignature);
+                if (similarity >= config.getThreshold() && (best == null || similarity > best.similarity())) {
+                    best = new NearDuplicate(candidate, similarity);
+                }
+            }
+            if (best != null) {
+                log.info("near-duplicate resume: resumeId={}, similarity={}", best.resume().getId(), best.similarity());
+            }
+            return Optional.ofNullable(best);
+        } catch (Exception e) {
+            // detection is an optimization, a failure means a normal analysis
+            log.warn("near-duplicate lookup failed: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * store the signature and its band keys for later lookups
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public void index(ResumeEntity resume, int[] signature) {
+        if (signature == null) {
+            return;
+        }
+        resume.setMinhashSignature(MinHash.toBytes(signature));
+        resumeRepository.save(resume);
+
+        List<ResumeLshBandEntity> bands = new ArrayList<>(MinHash.BANDS);
+        for (long bandKey : MinHash.bandKeys(signature)) {
+            bands.add(new ResumeLshBandEntity(bandKey, resume.getId()));
+        }
+        bandRepository.saveAll(bands);
+    }
+
+    private static List<Long> toList(long[] values) {
+        List<Long> list = new ArrayList<>(values.length);
+        for (long value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+}
@@ -1,9 +1,22 @@
 package interview.guide.modules.resume.service;
 
 import interview.guide.common.config.AppConfigProperties;
+import interview.guide.common.constant.AsyncTaskStreamConstants;
 import interview.guide.common.model.AsyncTaskStatus;
+import interview.guide.common.model.UploadTaskStage;
+import interview.guide.common.util.CurrentUser;
+import interview.guide.infrastructure.file.FileIngestionService;
 import interview.guide.infrastructure.file.FileStorageService;
 import interview.guide.infrastructure.file.FileValidationService;
+import interview.guide.infrastructure.file.IngestedFile;
+import interview.guide.infrastructure.file.PresignedUpload;
+import interview.guide.infrastructure.stream.QueueAdmissionService;
+import interview.guide.infrastructure.stream.TaskLane;
+import interview.guide.infrastructure.upload.PresignUploadRequest;
+import interview.guide.infrastructure.upload.UploadSingleFlight;
+import interview.guide.infrastructure.upload.UploadStreamConsumer;
+import interview.guide.infrastructure.upload.UploadTaskHandler;
+import interview.guide.infrastructure.upload.UploadTaskService;
 import interview.guide.modules.interview.model.ResumeAnalysisResponse;
 import interview.guide.modules.resume.listener.AnalyzeStreamProducer;
 import interview.guide.modules.resume.model.ResumeAnalysisEntity;
@@ -18,19 +31,27 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
-public class ResumeUploadService {
+public class ResumeUploadService implements UploadTaskHandler {
+
+    public static final String TASK_TYPE = "resume";
 
     private final ResumeParseService parseService;
     private final FileStorageService storageService;
     private final ResumePersistenceService persistenceService;
     private final AppConfigProperties appConfig;
     private final FileValidationService fileValidationService;
+    private final FileIngestionService fileIngestionService;
     private final AnalyzeStreamProducer analyzeStreamProducer;
     private final ResumeGradingService gradingService;
+    private final UploadTaskService uploadTaskService;
+    private final UploadSingleFlight uploadSingleFlight;
+    private final ResumeSimilarityService similarityService;
+    private final QueueAdmissionService queueAdmissionService;
 
     private static final long MAX_FILE_SIZE = 10 * 1024 * 1024; // 10MB
     private final ResumeRepository resumeRepository;
@@ -38,28 +59,165 @@ public class ResumeUploadService {
     public Map<String, Object> uploadAndAnalyze(MultipartFile file){
         // validation
         fileValidationService.validateFile(file, MAX_FILE_SIZE, "resume");
-        String contentType = parseService.detectContentType(file);
+
+        // queue too long: 503 / bulk lane before anything is read or stored
+        Map<String, String> params = admit();
+
+        // read upload once: hash + MIME sniff + spool
+        try (IngestedFile ingested = fileIngestionService.ingest(file)) {
+            return process(ingested, params, stage -> {});
+        }
+    }
+
+    /**
+     * async mode: only spool the upload, parse/store/analyze run in {@link UploadStreamConsumer}
+     *
+     * @return task id and initial status
+     */
+    public Map<String, Object> submitUpload(MultipartFile file){
+        fileValidationService.validateFile(file, MAX_FILE_SIZE, "resume");
+        Map<String, String> params = admit();
+
+        IngestedFile ingested = fileIngestionService.ingest(file);
+        try {
+            validateContentType(ingested.detectedContentType());
+            String taskId = uploadTaskService.submit(TASK_TYPE, ingested, params);
+            return Map.of(
+                    "taskId", taskId,
+                    "stage", UploadTaskStage.SPOOLED.name()
+            );
+        } catch (RuntimeException e) {
+            ingested.close();
+            throw e;
+        }
+    }
+
+    /**
+     * presigned mode: the client uploads straight to storage, then calls {@link #completeUpload}
+     */
+    public PresignedUpload presignUpload(PresignUploadRequest request){
+        fileValidationService.validateSize(request.size(), MAX_FILE_SIZE, "resume");
+        validateContentType(request.contentType());
+        Map<String, String> params = admit();
+
+        PresignedUpload upload = storageService.presignUpload("resume", request.fileName(), request.contentType(), request.size());
+        uploadTaskService.registerPresigned(TASK_TYPE, upload, request.fileName(), request.contentType(), params);
+        return upload;
+    }
+
+    /**
+     * presigned upload finished: hash, parse and analyze from storage in the background
+     */
+    public Map<String, Object> completeUpload(String fileKey){
+        String taskId = uploadTaskService.submitFromStorage(TASK_TYPE, fileKey);
+        return Map.of(
+                "taskId", taskId,
+                "stage", UploadTaskStage.UPLOADED.name()
+        );
+    }
+
+    /**
+     * admission control of the analyze queue, the granted lane travels with the task params
+     */
+    private Map<String, String> admit() {
+        String userId = CurrentUser.id();
+        TaskLane lane = queueAdmissionService.admit(AsyncTaskStreamConstants.RESUME_ANALYZE_WORKER,
+                AsyncTaskStreamConstants.RESUME_ANALYZE_STREAM_KEY, AsyncTaskStreamConstants.RESUME_ANALYZE_GROUP_NAME, userId);
+        return Map.of(PARAM_LANE, lane.name(), PARAM_USER_ID, userId);
+    }
+
+    @Override
+    public String type() {
+        return TASK_TYPE;
+    }
+
+    @Override
+    public boolean isReferenced(String storageKey) {
+        return resumeRepository.existsByStorageKey(storageKey);
+    }
+
+    /**
+     * parse, upload, save and enqueue analysis for a spooled upload
+     */
+    @Override
+    public Map<String, Object> process(IngestedFile ingested, Map<String, String> params, Consumer<UploadTaskStage> progress) {
+        // concurrent uploads of the same file run one after another, later ones hit the duplicate path
+        return uploadSingleFlight.execute(TASK_TYPE, ingested.fileHash(), () -> doProcess(ingested, params, progress));
+    }
+
+    private Map<String, Object> doProcess(IngestedFile ingested, Map<String, String> params, Consumer<UploadTaskStage> progress) {
+        String contentType = ingested.detectedContentType();
         validateContentType(contentType);
 
+        // presigned upload, already in storage
+        String storedKey = params.get(PARAM_STORAGE_KEY);
+
         // check file exists
-        Optional<ResumeEntity> existingResume = persistenceService.findExistingResume(file);
+        Optional<ResumeEntity> existingResume = persistenceService.findExistingResume(ingested.fileHash());
         if(existingResume.isPresent()){
+            // a redelivered task finds the row it saved itself, its object must stay
+            if (storedKey != null && !storedKey.equals(existingResume.get().getStorageKey())) {
+                storageService.deleteResume(storedKey);
+            }
             return handleDuplicateResume(existingResume.get());
         }
         // parse file
-        String resumeText = parseService.parseResume(file);
+        progress.accept(UploadTaskStage.PARSING);
+        String resumeText = parseService.parseResume(ingested);
+
+        // near-duplicate of an analyzed resume (re-export, small edits): reuse its analysis
+        int[] signature = similarityService.signature(resumeText);
+        Optional<ResumeSimilarityService.NearDuplicate> nearDuplicate = similarityService.findNearDuplicate(signature);
 
         // upload
-        String fileKey = storageService.uploadResume(file);
+        String fileKey = storedKey;
+        if (fileKey == null) {
+            progress.accept(UploadTaskStage.STORING);
+            fileKey = storageService.uploadResume(ingested);
+            log.info("upload success to RustFS: {}", fileKey);
+        }
         String fileUrl = storageService.getFileUrl(fileKey);
-        log.info("upload success to RustFS: {}", fileKey);
 
         // save to db
-        ResumeEntity savedResume = persistenceService.saveResume(file, resumeText, fileKey, fileUrl);
+        progress.accept(UploadTaskStage.SAVING);
+        ResumeEntity savedResume;
+        try {
+            savedResume = persistenceService.saveResume(ingested, resumeText, fileKey, fileUrl);
+        } catch (RuntimeException e) {
+            // no row points at the object we just wrote, don't leave it orphaned (presigned objects are removed by the task)
+            if (storedKey == null) {
+                try {
+                    storageService.deleteResume(fileKey);
+                } catch (RuntimeException cleanupError) {
+                    e.addSuppressed(cleanupError);
+                }
+            }
+            throw e;
+        }
 
+        try {
+            similarityService.index(savedResume, signature);
+        } catch (RuntimeException e) {
+            // detection is an optimization, an unindexed resume is only missed by later lookups
+            log.warn("near-duplicate index failed: resumeId={}, error={}", savedResume.getId(), e.getMessage());
+        }
+
+        if (nearDuplicate.isPresent() && persistenceService.reuseAnalysis(nearDuplicate.get().resume(), savedResume)) {
+            return Map.of(
+                    "analysis", persistenceService.getLatestAnalysisAsDTO(savedResume.getId()).orElseThrow(),
+                    "storage", Map.of(
+                            "fileKey", fileKey,
+                            "fileUrl", fileUrl,
+                            "resumeId", savedResume.getId()
+                    ),
+                    "duplicate", false,
+                    "nearDuplicateOf", nearDuplicate.get().resume().getId(),
+                    "similarity", nearDuplicate.get().similarity()
+            );
+        }
 
         // send event to message queue
-        analyzeStreamProducer.sendAnalyzeTask(savedResume.getId(),resumeText);
+        analyzeStreamProducer.sendAnalyzeTask(savedResume, TaskLane.parse(params.get(PARAM_LANE)), params.get(PARAM_USER_ID));
 
         return Map.of(
                 "resume", Map.of(
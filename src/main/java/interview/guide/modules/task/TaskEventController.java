@@ -0,0 +1,62 @@
+package interview.guide.modules.task;
+
+import interview.guide.common.constant.AsyncTaskStreamConstants;
+import interview.guide.exception.BusinessException;
+import interview.guide.exception.ErrorCode;
+import interview.guide.infrastructure.event.TaskEvent;
+import interview.guide.infrastructure.event.TaskEventHub;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 任务状态推送（SSE），替代轮询知识库 / 简历详情与上传任务接口
+ * 例：GET /api/tasks/events?knowledgebase=1,2&resume=3&upload={taskId}
+ * 先推送当前状态，之后推送状态变化（event: status）与向量化进度（event: progress）
+ */
+@RestController
+@RequestMapping("/api/tasks")
+@RequiredArgsConstructor
+public class TaskEventController {
+
+    private static final int MAX_TASKS = 100;
+
+    private final TaskEventHub eventHub;
+
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<TaskEvent>> events(
+            @RequestParam(value = "knowledgebase", required = false) List<String> knowledgeBaseIds,
+            @RequestParam(value = "resume", required = false) List<String> resumeIds,
+            @RequestParam(value = "upload", required = false) List<String> uploadTaskIds) {
+        Set<String> keys = new LinkedHashSet<>();
+        addKeys(keys, AsyncTaskStreamConstants.TASK_EVENT_KNOWLEDGE_BASE, knowledgeBaseIds);
+        addKeys(keys, AsyncTaskStreamConstants.TASK_EVENT_RESUME, resumeIds);
+        addKeys(keys, AsyncTaskStreamConstants.TASK_EVENT_UPLOAD, uploadTaskIds);
+        if (keys.isEmpty()) {
+            throw new BusinessException(ErrorCode.BAD_REQUEST, "no task to subscribe");
+        }
+        if (keys.size() > MAX_TASKS) {
+            throw new BusinessException(ErrorCode.BAD_REQUEST, "too many tasks, max " + MAX_TASKS);
+        }
+        return eventHub.subscribe(keys);
+    }
+
+    private static void addKeys(Set<String> keys, String type, List<String> ids) {
+        if (ids == null) {
+            return;
+        }
+        ids.stream()
+                .map(String::trim)
+                .filter(id -> !id.isEmpty())
+                .forEach(id -> keys.add(TaskEvent.key(type, id)));
+    }
+}
@@ -0,0 +1,25 @@
+-- move due delayed retries from the retry sorted set back onto the stream, atomically
+-- KEYS[1]: retry sorted set (score = due time ms, member = JSON of the message fields)
+-- KEYS[2]: stream
+-- ARGV[1]: now (ms), ARGV[2]: max messages per call, ARGV[3]: stream max len (0 = no trim)
+local due = redis.call("zrangebyscore", KEYS[1], "-inf", ARGV[1], "LIMIT", 0, tonumber(ARGV[2]))
+local max_len = tonumber(ARGV[3])
+
+for _, member in ipairs(due) do
+    local fields = cjson.decode(member)
+    local args = { KEYS[2] }
+    if max_len > 0 then
+        table.insert(args, "MAXLEN")
+        table.insert(args, "~")
+        table.insert(args, max_len)
+    end
+    table.insert(args, "*")
+    for field, value in pairs(fields) do
+        table.insert(args, field)
+        table.insert(args, tostring(value))
+    end
+    redis.call("xadd", unpack(args))
+    redis.call("zrem", KEYS[1], member)
+end
+
+return #due
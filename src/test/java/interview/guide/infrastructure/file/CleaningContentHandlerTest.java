@@ -0,0 +1,146 @@
+package interview.guide.infrastructure.file;
+
+import org.apache.tika.sax.WriteOutContentHandler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.xml.sax.SAXException;
+
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * the streaming cleaner against cleanText on the whole text, fed in chunks of every size
+ */
+class CleaningContentHandlerTest {
+
+    private static final String[] TOKENS = {
+            "a", "b", "中文", " ", "  ", "\t", "\n", "\r", "\r\n", "\n\n\n", "\u000B", "\u0007",
+            "\u0085", " ", " ",
+            "---", "===", "--", " *** ",
+            "image1.png", "image23.jpeg", "image.png",
+            "http://\\S.png", "https://\\S\\.jpeg\\?\\S", "file:", "file:/tmp/a.pdf", "profile:x"
+    };
+
+    private final TextCleaningService service = new TextCleaningService();
+
+    static Stream<String> samples() {
+        return Stream.of(
+                "",
+                "plain text",
+                "line1\r\nline2\rline3\nline4",
+                "a\n\n\n\n\nb",
+                "title\r\n===\r\nbody",
+                // CR-only line ends around dropped lines
+                "-\r===\nb",
+                "a\r\r===\nb",
+                "a\rimage1.png\nb",
+                "a\r---\r\n\r\nb",
+                // NEL, U+2028 and U+2029 end lines for the line rules
+                "x\u0085---\u0085y",
+                "x image1.png y",
+                "x   ===   y   ",
+                "\u0085start and end\u0085",
+                "text ---\n\n\nb",
+                "file:x y\nz",
+                "---\n   y",
+                "中文简历\n\n\n\n技能：Java\t \n项目经历"
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("samples")
+    void matchesCleanText(String text) throws SAXException {
+        String expected = service.cleanText(text);
+        for (int chunk = 1; chunk <= Math.max(1, text.length()); chunk++) {
+            assertThat(stream(text, chunk)).as("chunk %d", chunk).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void randomTextsMatchCleanText() throws SAXException {
+        Random random = new Random(7);
+        for (int n = 0; n < 20_000; n++) {
+            StringBuilder text = new StringBuilder();
+            for (int k = random.nextInt(40); k > 0; k--) {
+                text.append(TOKENS[random.nextInt(TOKENS.length)]);
+            }
+            String input = text.toString();
+            assertThat(stream(input, 1 + random.nextInt(8))).as("input %s", escape(input))
+                    .isEqualTo(service.cleanText(input));
+        }
+    }
+
+    @Test
+    void longTextIsCleanedAcrossSegmentBuffers() throws SAXException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2_000; i++) {
+            text.append("line ").append(i).append("\r\n\r\n\r\n---\rimage1.png\n  \t\n");
+        }
+        String input = text.toString();
+        assertThat(stream(input, 1000)).isEqualTo(service.cleanText(input));
+    }
+
+    @Test
+    void longLineIsSplitAtWhitespace() throws SAXException {
+        String word = "word ";
+        String input = word.repeat(CleaningContentHandler.MAX_LINE_LENGTH / word.length() * 3);
+        assertThat(stream(input, 4096)).isEqualTo(service.cleanText(input));
+    }
+
+    @Test
+    void blankRunsLongerThanTheSegmentAroundDroppedLines() throws SAXException {
+        String beforeSeparator = "a\r---" + "\n".repeat(8200) + "---\na";
+        String beforeContent = "a\r---" + "\n".repeat(9000) + "b";
+        assertThat(service.cleanText(beforeSeparator)).isEqualTo("a\na");
+        assertThat(service.cleanText(beforeContent)).isEqualTo("a\nb");
+        for (int chunk : new int[]{1, 1000, 4096}) {
+            assertThat(stream(beforeSeparator, chunk)).isEqualTo("a\na");
+            assertThat(stream(beforeContent, chunk)).isEqualTo("a\nb");
+        }
+    }
+
+    @Test
+    void randomLongBlankRunsMatchCleanText() throws SAXException {
+        String[] blank = {"\n", "\r", "\r\n", " ", "\t"};
+        Random random = new Random(11);
+        for (int n = 0; n < 300; n++) {
+            StringBuilder text = new StringBuilder();
+            for (int k = random.nextInt(12); k > 0; k--) {
+                if (random.nextInt(3) == 0) {
+                    // blank run longer than the segment buffer
+                    for (int r = CleaningContentHandler.MAX_LINE_LENGTH + random.nextInt(4000); r > 0; r--) {
+                        text.append(blank[random.nextInt(blank.length)]);
+                    }
+                } else {
+                    text.append(TOKENS[random.nextInt(TOKENS.length)]);
+                }
+            }
+            String input = text.toString();
+            assertThat(stream(input, 1 + random.nextInt(3000))).as("input #%d", n)
+                    .isEqualTo(service.cleanText(input));
+        }
+    }
+
+    private static String stream(String text, int chunk) throws SAXException {
+        WriteOutContentHandler sink = new WriteOutContentHandler(-1);
+        CleaningContentHandler handler = new CleaningContentHandler(sink);
+        handler.startDocument();
+        char[] chars = text.toCharArray();
+        for (int i = 0; i < chars.length; i += chunk) {
+            handler.characters(chars, i, Math.min(chunk, chars.length - i));
+        }
+        handler.endDocument();
+        return sink.toString();
+    }
+
+    private static String escape(String text) {
+        StringBuilder out = new StringBuilder();
+        for (char c : text.toCharArray()) {
+            out.append(c < 0x20 || c > 0x7E ? String.format("\\u%04X", (int) c) : String.valueOf(c));
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,147 @@
+package interview.guide.infrastructure.file;
+
+import interview.guide.common.config.ParseConfigProperties;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.sax.BodyContentHandler;
+import org.apache.tika.sax.WriteOutContentHandler;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * scaling of the page-parallel PDF path over the worker count, Tika serial as the baseline
+ *
+ * <p>run with {@code ./gradlew benchmark --tests '*PdfPageParallelParserBenchmarkTest'}</p>
+ */
+@Tag("benchmark")
+class PdfPageParallelParserBenchmarkTest {
+
+    private static final int PAGES = 600;
+    private static final int LINES_PER_PAGE = 45;
+    private static final int WARMUP = 2;
+    private static final int RUNS = 5;
+
+    @TempDir
+    static Path dir;
+
+    private static Path pdf;
+
+    @BeforeAll
+    static void writePdf() throws IOException {
+        pdf = dir.resolve("large.pdf");
+        try (PDDocument document = new PDDocument()) {
+            for (int page = 1; page <= PAGES; page++) {
+                PDPage pdPage = new PDPage();
+                document.addPage(pdPage);
+                try (PDPageContentStream content = new PDPageContentStream(document, pdPage)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 10);
+                    content.setLeading(14);
+                    content.newLineAtOffset(50, 750);
+                    for (int line = 1; line <= LINES_PER_PAGE; line++) {
+                        content.showText("page " + page + " line " + line
+                                + " distributed systems, message queues and consistent hashing");
+                        content.newLine();
+                    }
+                    content.endText();
+                }
+            }
+            document.save(pdf.toFile());
+        }
+    }
+
+    @Test
+    void scalesWithWorkers() throws Exception {
+        TikaParserEngine engine = new TikaParserEngine(config(1));
+        engine.init();
+        try {
+            double tika = medianMillis(() -> parseWithTika(engine));
+            // speedup is capped by the cores of the machine
+            System.out.printf("pdf %d pages, %d cores, tika serial: %.1f ms%n",
+                    PAGES, Runtime.getRuntime().availableProcessors(), tika);
+
+            String reference = null;
+            double single = 0;
+            for (int workers : List.of(1, 2, 4, 8)) {
+                PdfPageParallelParser parser = new PdfPageParallelParser(config(workers), engine);
+                parser.init();
+                try {
+                    String text = parse(parser);
+                    if (reference == null) {
+                        reference = text;
+                    }
+                    // same text in the same page order whatever the worker count
+                    assertThat(text).isEqualTo(reference);
+
+                    double millis = medianMillis(() -> parse(parser));
+                    if (workers == 1) {
+                        single = millis;
+                    }
+                    System.out.printf("pdf %d pages, %d workers: %.1f ms, speedup %.2fx (vs tika %.2fx)%n",
+                            PAGES, workers, millis, single / millis, tika / millis);
+                } finally {
+                    parser.shutdown();
+                }
+            }
+            assertThat(reference).contains("page " + PAGES + " line " + LINES_PER_PAGE);
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    private static ParseConfigProperties config(int workers) {
+        ParseConfigProperties config = new ParseConfigProperties();
+        config.setPoolSize(1);
+        config.getPdf().setMinFileSize(DataSize.ofBytes(0));
+        config.getPdf().setParallelism(workers);
+        return config;
+    }
+
+    private static String parse(PdfPageParallelParser parser) throws Exception {
+        WriteOutContentHandler sink = new WriteOutContentHandler(-1);
+        assertThat(parser.parse(pdf, new CleaningContentHandler(sink))).isTrue();
+        return sink.toString();
+    }
+
+    private static String parseWithTika(TikaParserEngine engine) throws Exception {
+        WriteOutContentHandler sink = new WriteOutContentHandler(-1);
+        try (InputStream in = TikaInputStream.get(pdf)) {
+            engine.parse(in, new BodyContentHandler(new CleaningContentHandler(sink)), new Metadata());
+        }
+        return sink.toString();
+    }
+
+    private static double medianMillis(Run run) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            run.run();
+        }
+        double[] millis = new double[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            run.run();
+            millis[i] = (System.nanoTime() - start) / 1e6;
+        }
+        Arrays.sort(millis);
+        return millis[RUNS / 2];
+    }
+
+    @FunctionalInterface
+    private interface Run {
+        void run() throws Exception;
+    }
+}
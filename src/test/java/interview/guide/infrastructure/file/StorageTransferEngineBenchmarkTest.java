@@ -0,0 +1,365 @@
+package interview.guide.infrastructure.file;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import interview.guide.common.config.StorageConfigProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * upload / download throughput of the transfer engine over the concurrency, one PUT / one GET as
+ * the baseline, against an in-JVM S3 stand-in
+ *
+ * <p>the stand-in answers the path-style requests the engine sends (PUT, multipart create /
+ * part / complete / abort, ranged GET) and limits every connection to {@link #CONNECTION_BYTES_PER_SECOND}
+ * after {@link #LATENCY_NANOS}, like one S3 connection does, so the gain of parallel parts shows
+ * even on a loopback.</p>
+ *
+ * <p>run with {@code ./gradlew benchmark --tests '*StorageTransferEngineBenchmarkTest'}</p>
+ */
+@Tag("benchmark")
+class StorageTransferEngineBenchmarkTest {
+
+    private static final String BUCKET = "bench";
+    private static final int OBJECT_SIZE = 64 * 1024 * 1024;
+    private static final long CONNECTION_BYTES_PER_SECOND = 64L * 1024 * 1024;
+    private static final long LATENCY_NANOS = 10_000_000L;
+    private static final int WARMUP = 1;
+    private static final int RUNS = 3;
+
+    @TempDir
+    static Path dir;
+
+    private static Path file;
+    private static byte[] digest;
+    private static FakeS3 s3;
+    private static S3Client client;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        byte[] content = new byte[OBJECT_SIZE];
+        new Random(42).nextBytes(content);
+        file = dir.resolve("object.bin");
+        Files.write(file, content);
+        digest = MessageDigest.getInstance("SHA-256").digest(content);
+
+        s3 = new FakeS3();
+        client = S3Client.builder()
+                .endpointOverride(URI.create("http://127.0.0.1:" + s3.port()))
+                .region(Region.US_EAST_1)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("bench", "bench")))
+                .serviceConfiguration(S3Configuration.builder()
+                        .pathStyleAccessEnabled(true)
+                        .checksumValidationEnabled(false)
+                        .build())
+                .build();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        client.close();
+        s3.stop();
+    }
+
+    @Test
+    void throughputOverConcurrency() throws Exception {
+        double mb = OBJECT_SIZE / (1024.0 * 1024);
+        // 1 core here, the stand-in paces the bytes, so the numbers are about overlapping requests
+        System.out.printf("object %.0f MB, %d cores, %d MB/s per connection, %d ms latency%n",
+                mb, Runtime.getRuntime().availableProcessors(), CONNECTION_BYTES_PER_SECOND >> 20, LATENCY_NANOS / 1_000_000);
+
+        double put = medianMillis(() -> client.putObject(b -> b.bucket(BUCKET).key("single"), RequestBody.fromFile(file)));
+        assertThat(s3.sha256("single")).isEqualTo(digest);
+        double get = medianMillis(() -> {
+            try (InputStream in = client.getObject(b -> b.bucket(BUCKET).key("single"))) {
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+        });
+        System.out.printf("single PUT: %.0f ms (%.1f MB/s), single GET: %.0f ms (%.1f MB/s)%n",
+                put, mb * 1000 / put, get, mb * 1000 / get);
+
+        for (int concurrency : List.of(1, 2, 4, 8)) {
+            StorageTransferEngine engine = new StorageTransferEngine(client, config(concurrency),
+                    new StorageMetrics(new SimpleMeterRegistry()));
+            engine.init();
+            try {
+                String key = "parts-" + concurrency;
+                double upload = medianMillis(() -> engine.upload(key, file, OBJECT_SIZE, "application/octet-stream"));
+                assertThat(s3.sha256(key)).isEqualTo(digest);
+
+                // same bytes in the same order whatever the concurrency
+                MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+                try (OutputStream out = new DigestOutputStream(OutputStream.nullOutputStream(), sha256)) {
+                    assertThat(engine.download(key, out).size()).isEqualTo(OBJECT_SIZE);
+                }
+                assertThat(sha256.digest()).isEqualTo(digest);
+                double download = medianMillis(() -> engine.download(key, OutputStream.nullOutputStream()));
+
+                System.out.printf("concurrency %d: upload %.0f ms (%.1f MB/s, %.2fx), download %.0f ms (%.1f MB/s, %.2fx)%n",
+                        concurrency, upload, mb * 1000 / upload, put / upload,
+                        download, mb * 1000 / download, get / download);
+            } finally {
+                engine.shutdown();
+            }
+        }
+        assertThat(s3.openUploads()).isZero();
+    }
+
+    private static StorageConfigProperties config(int concurrency) {
+        StorageConfigProperties config = new StorageConfigProperties();
+        config.setBucket(BUCKET);
+        config.getTransfer().setMultipartThreshold(DataSize.ofMegabytes(16));
+        config.getTransfer().setPartSize(DataSize.ofMegabytes(8));
+        config.getTransfer().setConcurrency(concurrency);
+        return config;
+    }
+
+    private static double medianMillis(Run run) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            run.run();
+        }
+        double[] millis = new double[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            run.run();
+            millis[i] = (System.nanoTime() - start) / 1e6;
+        }
+        Arrays.sort(millis);
+        return millis[RUNS / 2];
+    }
+
+    @FunctionalInterface
+    private interface Run {
+        void run() throws Exception;
+    }
+
+    /**
+     * the part of the S3 REST API the engine uses, path style, objects kept in memory
+     */
+    private static final class FakeS3 {
+        private final HttpServer server;
+        private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+        private final Map<String, String> eTags = new ConcurrentHashMap<>();
+        private final Map<String, ConcurrentSkipListMap<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+        private final AtomicLong ids = new AtomicLong();
+
+        FakeS3() throws IOException {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.createContext("/", exchange -> {
+                try (exchange) {
+                    handle(exchange);
+                } catch (Exception e) {
+                    exchange.sendResponseHeaders(500, -1);
+                }
+            });
+            server.start();
+        }
+
+        int port() {
+            return server.getAddress().getPort();
+        }
+
+        void stop() {
+            server.stop(0);
+        }
+
+        int openUploads() {
+            return uploads.size();
+        }
+
+        byte[] sha256(String key) throws Exception {
+            return MessageDigest.getInstance("SHA-256").digest(objects.get(key));
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            long start = System.nanoTime() + LATENCY_NANOS;
+            LockSupport.parkNanos(LATENCY_NANOS);
+            String key = exchange.getRequestURI().getPath().substring(BUCKET.length() + 2);
+            Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+            String method = exchange.getRequestMethod();
+
+            if (method.equals("POST") && query.containsKey("uploads")) {
+                String uploadId = "upload-" + ids.incrementAndGet();
+                uploads.put(uploadId, new ConcurrentSkipListMap<>());
+                xml(exchange, "<InitiateMultipartUploadResult><Bucket>" + BUCKET + "</Bucket><Key>" + key
+                        + "</Key><UploadId>" + uploadId + "</UploadId></InitiateMultipartUploadResult>");
+            } else if (method.equals("PUT") && query.containsKey("uploadId")) {
+                byte[] part = body(exchange, start);
+                uploads.get(query.get("uploadId")).put(Integer.parseInt(query.get("partNumber")), part);
+                eTag(exchange, "part-" + ids.incrementAndGet());
+            } else if (method.equals("POST") && query.containsKey("uploadId")) {
+                exchange.getRequestBody().transferTo(OutputStream.nullOutputStream());
+                ByteArrayOutputStream object = new ByteArrayOutputStream();
+                for (byte[] part : uploads.remove(query.get("uploadId")).values()) {
+                    object.write(part);
+                }
+                String eTag = store(key, object.toByteArray());
+                xml(exchange, "<CompleteMultipartUploadResult><Bucket>" + BUCKET + "</Bucket><Key>" + key
+                        + "</Key><ETag>\"" + eTag + "\"</ETag></CompleteMultipartUploadResult>");
+            } else if (method.equals("DELETE") && query.containsKey("uploadId")) {
+                uploads.remove(query.get("uploadId"));
+                exchange.sendResponseHeaders(204, -1);
+            } else if (method.equals("PUT")) {
+                eTag(exchange, store(key, body(exchange, start)));
+            } else if (method.equals("GET")) {
+                get(exchange, key, start);
+            } else {
+                exchange.sendResponseHeaders(405, -1);
+            }
+        }
+
+        private void get(HttpExchange exchange, String key, long start) throws IOException {
+            byte[] object = objects.get(key);
+            if (object == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            String eTag = "\"" + eTags.get(key) + "\"";
+            String ifMatch = exchange.getRequestHeaders().getFirst("If-Match");
+            if (ifMatch != null && !ifMatch.equals(eTag)) {
+                exchange.sendResponseHeaders(412, -1);
+                return;
+            }
+            int from = 0;
+            int to = object.length - 1;
+            int status = 200;
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            if (range != null) {
+                String[] bounds = range.substring("bytes=".length()).split("-");
+                from = Integer.parseInt(bounds[0]);
+                to = Math.min(to, Integer.parseInt(bounds[1]));
+                if (from >= object.length) {
+                    exchange.sendResponseHeaders(416, -1);
+                    return;
+                }
+                status = 206;
+                exchange.getResponseHeaders().set("Content-Range", "bytes " + from + "-" + to + "/" + object.length);
+            }
+            exchange.getResponseHeaders().set("ETag", eTag);
+            exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+            exchange.sendResponseHeaders(status, to - from + 1);
+            OutputStream out = exchange.getResponseBody();
+            for (int offset = from; offset <= to; offset += 64 * 1024) {
+                int length = Math.min(64 * 1024, to - offset + 1);
+                out.write(object, offset, length);
+                pace(offset - from + length, start);
+            }
+        }
+
+        private String store(String key, byte[] object) {
+            String eTag = "object-" + ids.incrementAndGet();
+            objects.put(key, object);
+            eTags.put(key, eTag);
+            return eTag;
+        }
+
+        /**
+         * request body, aws-chunked (signed chunks, sent over plain http) decoded
+         */
+        private static byte[] body(HttpExchange exchange, long start) throws IOException {
+            InputStream in = exchange.getRequestBody();
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[64 * 1024];
+            if (exchange.getRequestHeaders().containsKey("x-amz-decoded-content-length")) {
+                int size;
+                while ((size = Integer.parseInt(line(in).split(";")[0], 16)) > 0) {
+                    copy(in, body, size, buffer, start);
+                    line(in);
+                }
+                in.transferTo(OutputStream.nullOutputStream());
+            } else {
+                copy(in, body, Long.parseLong(exchange.getRequestHeaders().getFirst("Content-Length")), buffer, start);
+            }
+            return body.toByteArray();
+        }
+
+        private static void copy(InputStream in, ByteArrayOutputStream body, long size, byte[] buffer, long start)
+                throws IOException {
+            while (size > 0) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, size));
+                if (read < 0) {
+                    throw new IOException("request body ended early");
+                }
+                body.write(buffer, 0, read);
+                size -= read;
+                pace(body.size(), start);
+            }
+        }
+
+        private static String line(InputStream in) throws IOException {
+            StringBuilder line = new StringBuilder();
+            int c;
+            while ((c = in.read()) >= 0 && c != '\n') {
+                if (c != '\r') {
+                    line.append((char) c);
+                }
+            }
+            return line.toString();
+        }
+
+        /**
+         * hold the connection to its bandwidth
+         */
+        private static void pace(long bytes, long start) {
+            long wait = start + bytes * 1_000_000_000L / CONNECTION_BYTES_PER_SECOND - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+        }
+
+        private static void eTag(HttpExchange exchange, String eTag) throws IOException {
+            exchange.getResponseHeaders().set("ETag", "\"" + eTag + "\"");
+            exchange.sendResponseHeaders(200, -1);
+        }
+
+        private static void xml(HttpExchange exchange, String body) throws IOException {
+            byte[] bytes = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + body).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/xml");
+            exchange.sendResponseHeaders(200, bytes.length);
+            exchange.getResponseBody().write(bytes);
+        }
+
+        private static Map<String, String> query(String rawQuery) {
+            Map<String, String> query = new HashMap<>();
+            if (rawQuery != null) {
+                for (String pair : rawQuery.split("&")) {
+                    int eq = pair.indexOf('=');
+                    query.put(eq < 0 ? pair : pair.substring(0, eq), eq < 0 ? "" : pair.substring(eq + 1));
+                }
+            }
+            return query;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package interview.guide.infrastructure.file;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.UnaryOperator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * char-scanning {@link TextCleaningService} against the former regex pipeline
+ * ({@link TextCleaningServiceTest.RegexPipeline}) on a resume-sized and a document-sized corpus
+ *
+ * <p>run with {@code ./gradlew benchmark --tests '*TextCleaningServiceBenchmarkTest'}</p>
+ */
+@Tag("benchmark")
+class TextCleaningServiceBenchmarkTest {
+
+    private static final int WARMUP = 20;
+    private static final int RUNS = 50;
+
+    /**
+     * lines of extracted text as Tika gives them: content, blank runs, separators, image names,
+     * image links, temp file paths, control chars and CR line ends
+     */
+    private static final String[] LINES = {
+            "张三 | Java 后端开发 | 5 年经验",
+            "负责订单系统的分库分表与消息队列削峰，QPS 从 2k 提升到 15k   ",
+            "技能：Java, Spring Boot, Redis, Kafka, MySQL\t\t",
+            "Designed a distributed cache with consistent hashing and read-through loading.",
+            "",
+            "   ",
+            "---",
+            "  ***  ",
+            "image12.png",
+            "image3.jpeg  ",
+            "see https://\\S\\.png\\?\\S for the diagram",
+            "file:/tmp/tika-123/embedded.pdf",
+            "ctrl\u0007chars\u000Bin\u001Fline",
+            "Windows line\r",
+    };
+
+    private static final Map<String, String> corpus = new LinkedHashMap<>();
+    private static final Map<String, String> htmlCorpus = new LinkedHashMap<>();
+
+    private final TextCleaningService service = new TextCleaningService();
+
+    @BeforeAll
+    static void setUp() {
+        corpus.put("resume", text(new Random(1), 4 * 1024));
+        corpus.put("document", text(new Random(2), 1024 * 1024));
+        htmlCorpus.put("resume", html(corpus.get("resume")));
+        htmlCorpus.put("document", html(corpus.get("document")));
+    }
+
+    @Test
+    void charScanningAgainstRegexPipeline() throws Exception {
+        for (Map.Entry<String, String> fixture : corpus.entrySet()) {
+            String text = fixture.getValue();
+            compare("cleanText", fixture.getKey(), text,
+                    service::cleanText, TextCleaningServiceTest.RegexPipeline::cleanText);
+            compare("cleanToSingleLine", fixture.getKey(), text,
+                    service::cleanToSingleLine, TextCleaningServiceTest.RegexPipeline::cleanToSingleLine);
+            String html = htmlCorpus.get(fixture.getKey());
+            compare("stripHtml", fixture.getKey(), html,
+                    service::stripHtml, TextCleaningServiceTest.RegexPipeline::stripHtml);
+        }
+    }
+
+    private static void compare(String method, String fixture, String input,
+                                UnaryOperator<String> current, UnaryOperator<String> regex) throws Exception {
+        // same output either way, only the speed differs
+        assertThat(current.apply(input)).isEqualTo(regex.apply(input));
+
+        double regexMillis = medianMillis(() -> regex.apply(input));
+        double currentMillis = medianMillis(() -> current.apply(input));
+        double megabytes = input.length() / (1024.0 * 1024.0);
+        System.out.printf("%-17s %-8s %5d KB: regex %8.3f ms (%6.1f MB/s), scan %8.3f ms (%6.1f MB/s), %.2fx%n",
+                method, fixture, input.length() / 1024,
+                regexMillis, megabytes * 1000 / regexMillis, currentMillis, megabytes * 1000 / currentMillis,
+                regexMillis / currentMillis);
+    }
+
+    private static String text(Random random, int chars) {
+        StringBuilder text = new StringBuilder(chars + 128);
+        while (text.length() < chars) {
+            text.append(LINES[random.nextInt(LINES.length)]).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static String html(String text) {
+        StringBuilder html = new StringBuilder(text.length() * 2);
+        for (String line : text.split("\n")) {
+            html.append("<p class=\"line\">").append(line).append("&nbsp;&amp;</p>\n");
+        }
+        return html.toString();
+    }
+
+    private static double medianMillis(Run run) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            run.run();
+        }
+        double[] millis = new double[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            run.run();
+            millis[i] = (System.nanoTime() - start) / 1e6;
+        }
+        Arrays.sort(millis);
+        return millis[RUNS / 2];
+    }
+
+    @FunctionalInterface
+    private interface Run {
+        void run() throws Exception;
+    }
+}
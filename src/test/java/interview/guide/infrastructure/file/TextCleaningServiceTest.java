@@ -0,0 +1,151 @@
+package interview.guide.infrastructure.file;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * the char-scanning cleaner against the former regex pipeline, which defines the expected output
+ */
+class TextCleaningServiceTest {
+
+    private static final String[] TOKENS = {
+            "a", "b", "中文", " ", "  ", "\t", "\n", "\r", "\r\n", "\n\n\n", "\u000B", "\f",
+            "\u0000", "\u0007", "\u001F", "\u0085", "\u2028", "\u2029",
+            "---", "___", "***", "===", "--", "-=*_", " === ",
+            "image1.png", "image23.jpeg", "image4.jpg", "image5.gif/bmp", "image6.webp", "image.png", "Image7.png",
+            "http://\\S.png", "https://\\ss\\x.JPG", "HTTPS://\\S\\.webp\\?\\S", "http://\\S\\y.gif\\\\SS",
+            "http://example.com/a.png", "file:", "file:/tmp/a.pdf", "FILE://C:/x", "profile:x",
+            "\\", "?", ".", ":", "/", "\uD83D\uDE00"
+    };
+
+    private final TextCleaningService service = new TextCleaningService();
+
+    static Stream<String> samples() {
+        return Stream.of(
+                "",
+                "   ",
+                "plain text",
+                "line1\r\nline2\rline3\nline4",
+                "trailing spaces   \nand tabs\t\t\nend",
+                "a\n\n\n\n\nb",
+                "a\r\n\r\n\r\n\r\nb",
+                "title\n---\nbody",
+                "title\r\n===\r\nbody",
+                "  ***  \n___\n--",
+                "-\r===\nb",
+                "x\u0085---\u0085y",
+                "x\u2028image1.png\u2028y",
+                "image1.png\nimage2.jpg  \nimage3.gif/bmp\ntext image4.png",
+                "see http://\\S.png and https://\\S\\.jpeg\\?\\S end",
+                "file:/tmp/tika/123.pdf remains? file:x\ty",
+                "ctrl\u0000\u0001chars\u001Fhere\u000B\f",
+                "中文简历\n\n\n\n技能：Java\t \n项目经历"
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("samples")
+    void cleanTextMatchesRegexPipeline(String text) {
+        assertThat(service.cleanText(text)).isEqualTo(RegexPipeline.cleanText(text));
+    }
+
+    @ParameterizedTest
+    @MethodSource("samples")
+    void singleLineAndHtmlMatchRegexPipeline(String text) {
+        assertThat(service.cleanToSingleLine(text)).isEqualTo(RegexPipeline.cleanToSingleLine(text));
+        String html = "<p>" + text + "</p>&nbsp;&amp;&lt;b&gt;&quot;&apos;";
+        assertThat(service.stripHtml(html)).isEqualTo(RegexPipeline.stripHtml(html));
+    }
+
+    @Test
+    void randomTextsMatchRegexPipeline() {
+        Random random = new Random(42);
+        for (int n = 0; n < 20_000; n++) {
+            StringBuilder text = new StringBuilder();
+            for (int k = random.nextInt(40); k > 0; k--) {
+                text.append(TOKENS[random.nextInt(TOKENS.length)]);
+            }
+            String input = text.toString();
+            assertThat(service.cleanText(input)).as("input %s", escape(input)).isEqualTo(RegexPipeline.cleanText(input));
+        }
+    }
+
+    @Test
+    void cleanTextWithLimitTruncatesCleanedText() {
+        assertThat(service.cleanTextWithLimit("ab\n---\ncd", 5)).isEqualTo("ab\n\nc");
+    }
+
+    private static String escape(String text) {
+        StringBuilder out = new StringBuilder();
+        for (char c : text.toCharArray()) {
+            out.append(c < 0x20 || c > 0x7E ? String.format("\\u%04X", (int) c) : String.valueOf(c));
+        }
+        return out.toString();
+    }
+
+    /**
+     * TextCleaningService before the char-scanning rewrite, also the baseline of TextCleaningServiceBenchmarkTest
+     */
+    static final class RegexPipeline {
+        private static final Pattern IMAGE_FILENAME_LINE =
+                Pattern.compile("(?m)^image\\d+\\.(png|jpe?g|gif/bmp|webp)\\s*$");
+        private static final Pattern IMAGE_URL =
+                Pattern.compile("https?://\\\\S+?\\\\.(png|jpe?g|gif|bmp|webp)(\\\\?\\\\S*)?", Pattern.CASE_INSENSITIVE);
+        private static final Pattern FILE_URL =
+                Pattern.compile("file:(//)?\\S+", Pattern.CASE_INSENSITIVE);
+        private static final Pattern SEPARATOR_LINE =
+                Pattern.compile("(?m)^\\s*[-_*=]{3,}\\s*$");
+        private static final Pattern CONTROL_CHARS =
+                Pattern.compile("[\\u0000-\\u0008\\u000B\\u000C\\u000E-\\u001F]");
+        private static final Pattern HTML_TAGS =
+                Pattern.compile("<[^>]+>");
+
+        static String cleanText(String text) {
+            if (text == null || text.isBlank()) {
+                return "";
+            }
+            String t = text;
+            t = CONTROL_CHARS.matcher(t).replaceAll("");
+            t = IMAGE_FILENAME_LINE.matcher(t).replaceAll("");
+            t = IMAGE_URL.matcher(t).replaceAll("");
+            t = FILE_URL.matcher(t).replaceAll("");
+            t = SEPARATOR_LINE.matcher(t).replaceAll("");
+            t = t.replace("\r\n", "\n").replace("\r", "\n");
+            t = t.replaceAll("(?m)[ \t]+$", "");
+            t = t.replaceAll("\\n{3,}", "\n\n");
+            return t.strip();
+        }
+
+        static String cleanToSingleLine(String text) {
+            if (text == null || text.isBlank()) {
+                return "";
+            }
+            return text
+                    .replaceAll("[\\r\\n]+", " ")
+                    .replaceAll("\\s+", " ")
+                    .strip();
+        }
+
+        static String stripHtml(String text) {
+            if (text == null || text.isBlank()) {
+                return "";
+            }
+            return HTML_TAGS.matcher(text).replaceAll(" ")
+                    .replace("&nbsp;", " ")
+                    .replace("&amp;", "&")
+                    .replace("&lt;", "<")
+                    .replace("&gt;", ">")
+                    .replace("&quot;", "\"")
+                    .replace("&apos;", "'")
+                    .replaceAll("\\s+", " ")
+                    .strip();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package interview.guide.infrastructure.file;
+
+import interview.guide.common.config.ParseConfigProperties;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.tika.extractor.EmbeddedDocumentExtractor;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.parser.pdf.PDFParserConfig;
+import org.apache.tika.sax.BodyContentHandler;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * cold (parser, context and PDF config built per call, as DocumentParseService did before the
+ * engine) against warm (the shared {@link TikaParserEngine}) parse latency and throughput for
+ * PDF, DOCX and TXT
+ *
+ * <p>run with {@code ./gradlew benchmark --tests '*TikaParserEngineBenchmarkTest'}</p>
+ */
+@Tag("benchmark")
+class TikaParserEngineBenchmarkTest {
+
+    private static final int PARAGRAPHS = 300;
+    private static final String SENTENCE = " distributed systems, message queues and consistent hashing";
+    private static final int WARMUP = 5;
+    private static final int RUNS = 30;
+
+    @TempDir
+    static Path dir;
+
+    private static final Map<String, Path> fixtures = new LinkedHashMap<>();
+    private static TikaParserEngine engine;
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        fixtures.put("pdf", writePdf());
+        fixtures.put("docx", writeDocx());
+        fixtures.put("txt", writeTxt());
+
+        ParseConfigProperties config = new ParseConfigProperties();
+        config.setPoolSize(1);
+        engine = new TikaParserEngine(config);
+        engine.init();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    void warmEngineAgainstColdParser() throws Exception {
+        for (Map.Entry<String, Path> fixture : fixtures.entrySet()) {
+            Path file = fixture.getValue();
+            String cold = parseCold(file);
+            String warm = parseWarm(file);
+            // same text either way, only the setup differs
+            assertThat(warm).isEqualTo(cold).contains("paragraph " + PARAGRAPHS);
+
+            double coldMillis = medianMillis(() -> parseCold(file));
+            double warmMillis = medianMillis(() -> parseWarm(file));
+            System.out.printf("%-4s %6d KB: cold %7.2f ms (%6.1f docs/s), warm %7.2f ms (%6.1f docs/s), %.2fx%n",
+                    fixture.getKey(), Files.size(file) / 1024,
+                    coldMillis, 1000 / coldMillis, warmMillis, 1000 / warmMillis, coldMillis / warmMillis);
+        }
+    }
+
+    /**
+     * the former DocumentParseService.parseContent: everything built per call, on the caller thread
+     */
+    private static String parseCold(Path file) throws Exception {
+        AutoDetectParser parser = new AutoDetectParser();
+        PDFParserConfig pdfConfig = new PDFParserConfig();
+        pdfConfig.setExtractInlineImages(false);
+        pdfConfig.setSortByPosition(true);
+        ParseContext context = new ParseContext();
+        context.set(Parser.class, parser);
+        context.set(EmbeddedDocumentExtractor.class, new NoOpEmbeddedDocumentExtractor());
+        context.set(PDFParserConfig.class, pdfConfig);
+
+        BodyContentHandler handler = new BodyContentHandler(-1);
+        try (InputStream in = TikaInputStream.get(file)) {
+            parser.parse(in, handler, new Metadata(), context);
+        }
+        return handler.toString();
+    }
+
+    private static String parseWarm(Path file) throws Exception {
+        BodyContentHandler handler = new BodyContentHandler(-1);
+        try (InputStream in = TikaInputStream.get(file)) {
+            engine.parse(in, handler, new Metadata());
+        }
+        return handler.toString();
+    }
+
+    private static Path writePdf() throws IOException {
+        Path pdf = dir.resolve("resume.pdf");
+        int perPage = 45;
+        try (PDDocument document = new PDDocument()) {
+            for (int first = 1; first <= PARAGRAPHS; first += perPage) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 10);
+                    content.setLeading(14);
+                    content.newLineAtOffset(50, 750);
+                    for (int i = first; i < first + perPage && i <= PARAGRAPHS; i++) {
+                        content.showText("paragraph " + i + SENTENCE);
+                        content.newLine();
+                    }
+                    content.endText();
+                }
+            }
+            document.save(pdf.toFile());
+        }
+        return pdf;
+    }
+
+    private static Path writeDocx() throws IOException {
+        Path docx = dir.resolve("resume.docx");
+        try (XWPFDocument document = new XWPFDocument(); OutputStream out = Files.newOutputStream(docx)) {
+            for (int i = 1; i <= PARAGRAPHS; i++) {
+                document.createParagraph().createRun().setText("paragraph " + i + SENTENCE);
+            }
+            document.write(out);
+        }
+        return docx;
+    }
+
+    private static Path writeTxt() throws IOException {
+        Path txt = dir.resolve("resume.txt");
+        StringBuilder text = new StringBuilder();
+        for (int i = 1; i <= PARAGRAPHS; i++) {
+            text.append("paragraph ").append(i).append(SENTENCE).append('\n');
+        }
+        Files.writeString(txt, text, StandardCharsets.UTF_8);
+        return txt;
+    }
+
+    private static double medianMillis(Run run) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            run.run();
+        }
+        double[] millis = new double[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            run.run();
+            millis[i] = (System.nanoTime() - start) / 1e6;
+        }
+        Arrays.sort(millis);
+        return millis[RUNS / 2];
+    }
+
+    @FunctionalInterface
+    private interface Run {
+        void run() throws Exception;
+    }
+}
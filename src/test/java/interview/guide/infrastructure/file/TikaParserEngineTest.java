@@ -0,0 +1,107 @@
+package interview.guide.infrastructure.file;
+
+import interview.guide.common.config.ParseConfigProperties;
+import interview.guide.exception.BusinessException;
+import interview.guide.exception.QueueOverloadedException;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.sax.BodyContentHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TikaParserEngineTest {
+
+    private final CountDownLatch entered = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private TikaParserEngine engine;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        engine.shutdown();
+    }
+
+    @Test
+    void abandonedParseGetsAReplacementThread() throws Exception {
+        start(Duration.ofMillis(300));
+        assertThatThrownBy(() -> parse(stuck())).isInstanceOf(BusinessException.class).hasMessage("parsing timeout");
+
+        // the stuck parse still holds its thread, the next document is parsed anyway
+        assertThat(parse(text("next document"))).contains("next document");
+    }
+
+    @Test
+    void fullQueueIsOverloaded() throws Exception {
+        start(Duration.ofSeconds(30));
+        Thread running = Thread.ofPlatform().start(() -> parseQuietly(stuck()));
+        entered.await();
+        Thread queued = Thread.ofPlatform().start(() -> parseQuietly(stuck()));
+        try {
+            // accepted: the caller waits for its result
+            while (queued.getState() != Thread.State.TIMED_WAITING) {
+                Thread.sleep(10);
+            }
+            assertThatThrownBy(() -> parse(text("third"))).isInstanceOf(QueueOverloadedException.class);
+        } finally {
+            release.countDown();
+            running.join();
+            queued.join();
+        }
+    }
+
+    private void start(Duration timeout) {
+        ParseConfigProperties config = new ParseConfigProperties();
+        config.setPoolSize(1);
+        config.setQueueCapacity(1);
+        config.setTimeout(timeout);
+        config.setMaxAbandoned(1);
+        engine = new TikaParserEngine(config);
+        engine.init();
+    }
+
+    private String parse(InputStream in) throws Exception {
+        BodyContentHandler handler = new BodyContentHandler(-1);
+        engine.parse(in, handler, new Metadata());
+        return handler.toString();
+    }
+
+    private void parseQuietly(InputStream in) {
+        try {
+            parse(in);
+        } catch (Exception ignored) {
+            // timeouts are expected here
+        }
+    }
+
+    private static InputStream text(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * blocks like a parse that ignores the interrupt, until the test releases it
+     */
+    private InputStream stuck() {
+        return new InputStream() {
+            @Override
+            public int read() {
+                entered.countDown();
+                while (true) {
+                    try {
+                        release.await();
+                        return -1;
+                    } catch (InterruptedException ignored) {
+                        // Tika / PDFBox do not stop either
+                    }
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,136 @@
+package interview.guide.infrastructure.stream;
+
+import interview.guide.common.config.StreamConfigProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.redisson.api.stream.StreamMessageId;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JournalTaskQueueTest {
+
+    private static final String QUEUE = "test:stream";
+    private static final String GROUP = "test-group";
+
+    @TempDir
+    Path dir;
+
+    private StreamConfigProperties config;
+    private JournalTaskQueue queue;
+
+    @BeforeEach
+    void open() {
+        config = new StreamConfigProperties();
+        config.setType("journal");
+        config.getJournal().setDir(dir.toString());
+        config.getJournal().setSegmentSize(DataSize.ofKilobytes(64));
+        queue = new JournalTaskQueue(config);
+    }
+
+    @AfterEach
+    void close() {
+        queue.close();
+    }
+
+    @Test
+    void readAckAndStats() {
+        queue.createGroup(QUEUE, GROUP);
+        List<String> ids = queue.addAll(QUEUE, List.of(Map.of("n", "1"), Map.of("n", "2")), 0);
+        assertThat(ids).hasSize(2);
+
+        List<StreamMessageId> delivered = new ArrayList<>();
+        assertThat(queue.read(QUEUE, GROUP, "c1", 10, Duration.ZERO, (id, data) -> delivered.add(id))).isEqualTo(2);
+        assertThat(delivered).extracting(StreamMessageId::toString).containsExactlyElementsOf(ids);
+        assertThat(queue.groupStats(QUEUE, GROUP)).contains(new TaskQueue.GroupStats(0, 2, 2));
+
+        queue.ack(QUEUE, GROUP, delivered.toArray(StreamMessageId[]::new));
+        assertThat(queue.groupStats(QUEUE, GROUP)).contains(new TaskQueue.GroupStats(0, 0, 2));
+        assertThat(queue.groupStats(QUEUE, "missing")).isEmpty();
+    }
+
+    @Test
+    void ownPendingIsPagedFromAll() {
+        queue.createGroup(QUEUE, GROUP);
+        queue.addAll(QUEUE, List.of(Map.of("n", "1"), Map.of("n", "2"), Map.of("n", "3")), 0);
+        queue.read(QUEUE, GROUP, "c1", 10, Duration.ZERO, (id, data) -> {
+        });
+
+        List<String> replayed = new ArrayList<>();
+        StreamMessageId cursor = queue.readOwnPending(QUEUE, GROUP, "c1", StreamMessageId.ALL, 2,
+                (id, data) -> replayed.add(data.get("n")));
+        cursor = queue.readOwnPending(QUEUE, GROUP, "c1", cursor, 2, (id, data) -> replayed.add(data.get("n")));
+        assertThat(replayed).containsExactly("1", "2", "3");
+        assertThat(queue.readOwnPending(QUEUE, GROUP, "c1", cursor, 2, (id, data) -> replayed.add(data.get("n")))).isNull();
+    }
+
+    @Test
+    void dueRetriesArePromotedWithoutTheDueField() {
+        queue.createGroup(QUEUE, GROUP);
+        queue.schedule(QUEUE, Map.of("n", "now", "retryCount", "1"), Duration.ZERO);
+        queue.schedule(QUEUE, Map.of("n", "later"), Duration.ofHours(1));
+        assertThat(queue.countDelayed(QUEUE)).isEqualTo(2);
+
+        assertThat(queue.promoteDue(QUEUE, 0)).isEqualTo(1);
+        assertThat(queue.countDelayed(QUEUE)).isEqualTo(1);
+
+        List<Map<String, String>> read = new ArrayList<>();
+        queue.read(QUEUE, GROUP, "c1", 10, Duration.ZERO, (id, data) -> read.add(data));
+        assertThat(read).containsExactly(Map.of("n", "now", "retryCount", "1"));
+    }
+
+    @Test
+    void deadLettersSurviveARestartAndKeepTheirOrder() {
+        queue.addDeadLetter(QUEUE, Map.of("n", "1"), 0);
+        queue.addDeadLetter(QUEUE, Map.of("n", "2"), 0);
+        queue.addDeadLetter(QUEUE, Map.of("n", "3"), 0);
+        List<StreamMessageId> ids = List.copyOf(queue.deadLetters(QUEUE, 10).keySet());
+        assertThat(ids).hasSize(3);
+        assertThat(queue.deadLetters(QUEUE, 2).values()).containsExactly(Map.of("n", "1"), Map.of("n", "2"));
+
+        assertThat(queue.removeDeadLetters(QUEUE, ids.get(1), new StreamMessageId(1, 99))).isEqualTo(1);
+        assertThat(queue.deadLetters(QUEUE, ids.get(1), ids.get(2))).containsOnlyKeys(ids.get(2));
+        queue.close();
+
+        queue = new JournalTaskQueue(config);
+        assertThat(queue.countDeadLetters(QUEUE)).isEqualTo(2);
+        queue.addDeadLetter(QUEUE, Map.of("n", "4"), 2);
+        // ids keep growing after a restart, the oldest is dropped beyond maxLen
+        assertThat(queue.deadLetters(QUEUE, 10).values()).containsExactly(Map.of("n", "3"), Map.of("n", "4"));
+        assertThat(queue.clearDeadLetters(QUEUE)).isEqualTo(2);
+        assertThat(queue.countDeadLetters(QUEUE)).isZero();
+    }
+
+    @Test
+    void retriesIndexedBeforeARestartAreRecovered() throws Exception {
+        queue.createGroup(QUEUE, GROUP);
+        queue.schedule(QUEUE, Map.of("n", "retry"), Duration.ofMillis(200));
+        // read into the in-memory index (pending in the retry journal), not due yet
+        assertThat(queue.promoteDue(QUEUE, 0)).isZero();
+        queue.close();
+
+        queue = new JournalTaskQueue(config);
+        assertThat(queue.countDelayed(QUEUE)).isEqualTo(1);
+        Thread.sleep(250);
+        assertThat(queue.promoteDue(QUEUE, 0)).isEqualTo(1);
+        assertThat(queue.countDelayed(QUEUE)).isZero();
+
+        List<String> read = new ArrayList<>();
+        queue.read(QUEUE, GROUP, "c1", 10, Duration.ZERO, (id, data) -> read.add(data.get("n")));
+        assertThat(read).containsExactly("retry");
+
+        // promoted once: nothing left after another restart
+        queue.close();
+        queue = new JournalTaskQueue(config);
+        assertThat(queue.promoteDue(QUEUE, 0)).isZero();
+        assertThat(queue.countDelayed(QUEUE)).isZero();
+    }
+}
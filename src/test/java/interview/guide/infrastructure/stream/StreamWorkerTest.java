@@ -0,0 +1,155 @@
+package interview.guide.infrastructure.stream;
+
+import interview.guide.common.config.StreamConfigProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.net.SocketTimeoutException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamWorkerTest {
+
+    private static final String WORKER = "test";
+    private static final String QUEUE = "test:stream";
+    private static final String GROUP = "test-group";
+    private static final Duration CLAIM_IDLE = Duration.ofSeconds(3);
+
+    @TempDir
+    Path dir;
+
+    private JournalTaskQueue queue;
+    private final AtomicInteger handled = new AtomicInteger();
+
+    @BeforeEach
+    void open() {
+        StreamConfigProperties config = new StreamConfigProperties();
+        config.setType("journal");
+        config.getJournal().setDir(dir.toString());
+        config.getJournal().setSegmentSize(DataSize.ofKilobytes(64));
+        queue = new JournalTaskQueue(config);
+    }
+
+    @AfterEach
+    void close() {
+        queue.close();
+    }
+
+    @Test
+    void handledMessageIsNotClaimedWhileItsAckIsHeldBack() throws Exception {
+        long failUntil = System.currentTimeMillis() + CLAIM_IDLE.toMillis() * 2;
+        TestWorker first = new TestWorker("a", () -> System.currentTimeMillis() >= failUntil);
+        first.start();
+        queue.add(QUEUE, Map.of("n", "1"), 0);
+        await(() -> handled.get() == 1);
+
+        // a second consumer recovers idle messages of the group while the status flush keeps failing
+        TestWorker second = new TestWorker("b", () -> true);
+        second.start();
+        try {
+            await(() -> queue.groupStats(QUEUE, GROUP).orElseThrow().pending() == 0);
+            Thread.sleep(CLAIM_IDLE.toMillis());
+        } finally {
+            second.stop();
+            first.stop();
+        }
+        assertThat(handled).hasValue(1);
+    }
+
+    @Test
+    void overloadIsDetectedFromStatusCodesAndTypes() {
+        assertThat(StreamWorker.overloadReason(HttpClientErrorException.create(
+                HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests", null, null, null)))
+                .isEqualTo(AdaptiveConcurrencyLimit.Reason.RATE_LIMITED);
+        assertThat(StreamWorker.overloadReason(new RuntimeException("embedding failed", HttpServerErrorException.create(
+                HttpStatus.SERVICE_UNAVAILABLE, "Service Unavailable", null, null, null))))
+                .isEqualTo(AdaptiveConcurrencyLimit.Reason.RATE_LIMITED);
+        assertThat(StreamWorker.overloadReason(new NonTransientAiException("429 - {\"code\":\"Throttling\"}")))
+                .isEqualTo(AdaptiveConcurrencyLimit.Reason.RATE_LIMITED);
+        assertThat(StreamWorker.overloadReason(new ResourceAccessException("I/O error", new SocketTimeoutException())))
+                .isEqualTo(AdaptiveConcurrencyLimit.Reason.TIMEOUT);
+
+        // the status, not some number or word in the message
+        assertThat(StreamWorker.overloadReason(new TransientAiException("500 - retry after 429 ms, timeout"))).isNull();
+        assertThat(StreamWorker.overloadReason(new IllegalStateException("too many requests, 429"))).isNull();
+        assertThat(StreamWorker.overloadReason(HttpClientErrorException.create(
+                HttpStatus.BAD_REQUEST, "Bad Request", null, null, null))).isNull();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 20_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("condition not met in time");
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    private class TestWorker extends StreamWorker {
+
+        private final BooleanSupplier flushStatus;
+
+        TestWorker(String nodeId, BooleanSupplier flushStatus) {
+            super(WORKER, queue, new StreamRetryService(queue), new StreamMetrics(new SimpleMeterRegistry()),
+                    config(nodeId));
+            this.flushStatus = flushStatus;
+        }
+
+        private static StreamConfigProperties config(String nodeId) {
+            StreamConfigProperties config = new StreamConfigProperties();
+            config.setNodeId(nodeId);
+            StreamConfigProperties.Worker worker = new StreamConfigProperties.Worker();
+            worker.setClaimIdle(CLAIM_IDLE);
+            worker.setRecoveryInterval(Duration.ofMillis(100));
+            worker.setAckFlushInterval(Duration.ofMillis(50));
+            worker.setPollInterval(Duration.ofMillis(100));
+            config.getWorkers().put(WORKER, worker);
+            return config;
+        }
+
+        @Override
+        protected String streamKey() {
+            return QUEUE;
+        }
+
+        @Override
+        protected String groupName() {
+            return GROUP;
+        }
+
+        @Override
+        protected String consumerPrefix() {
+            return "consumer-";
+        }
+
+        @Override
+        protected void handle(StreamTask task) {
+            handled.incrementAndGet();
+        }
+
+        @Override
+        protected void onFailed(StreamTask task, String error) {
+        }
+
+        @Override
+        protected boolean flushStatus() {
+            return flushStatus.getAsBoolean();
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package interview.guide.infrastructure.stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.redisson.api.stream.StreamMessageId;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TaskJournalTest {
+
+    private static final String GROUP = "workers";
+    private static final int SEGMENT_SIZE = 64 * 1024;
+
+    @TempDir
+    Path dir;
+
+    private final List<TaskJournal> opened = new ArrayList<>();
+
+    @AfterEach
+    void closeAll() throws IOException {
+        for (TaskJournal journal : opened) {
+            journal.close();
+        }
+    }
+
+    @Test
+    void deliversInOrderOncePerGroup() throws Exception {
+        TaskJournal journal = open(SEGMENT_SIZE);
+        journal.createGroup(GROUP);
+        List<StreamMessageId> ids = journal.append(messages("a", "b", "c"));
+
+        assertThat(ids).extracting(StreamMessageId::getId1).containsExactly(1L, 2L, 3L);
+        assertThat(values(journal.read(GROUP, "c1", 2, 0))).containsExactly("a", "b");
+        assertThat(values(journal.read(GROUP, "c2", 10, 0))).containsExactly("c");
+        assertThat(journal.read(GROUP, "c1", 10, 0)).isEmpty();
+        assertThat(journal.stats(GROUP)).contains(new TaskQueue.GroupStats(0, 3, 3));
+    }
+
+    @Test
+    void blockedReadIsWokenByAppend() throws Exception {
+        TaskJournal journal = open(SEGMENT_SIZE);
+        journal.createGroup(GROUP);
+        Thread.ofVirtual().start(() -> {
+            try {
+                Thread.sleep(50);
+                journal.append(messages("late"));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        assertThat(values(journal.read(GROUP, "c1", 10, 5_000_000_000L))).containsExactly("late");
+    }
+
+    @Test
+    void tornTailIsDroppedOnRecovery() throws Exception {
+        TaskJournal journal = open(SEGMENT_SIZE);
+        journal.append(messages("first", "second", "third"));
+        journal.close();
+        opened.clear();
+
+        // a crash in the middle of the third record: payload half written, plus garbage after it
+        Path segment = segments().getFirst();
+        byte[] bytes = Files.readAllBytes(segment);
+        int third = indexOf(bytes, "third".getBytes(StandardCharsets.UTF_8));
+        bytes[third] = 'X';
+        int end = indexOf(bytes, "Xhird".getBytes(StandardCharsets.UTF_8)) + 5;
+        bytes[end] = 7;
+        Files.write(segment, bytes);
+
+        TaskJournal recovered = open(SEGMENT_SIZE);
+        recovered.createGroup(GROUP);
+        // the next append reuses the seq of the dropped record on zeroed bytes
+        assertThat(recovered.append(messages("fourth")).getFirst().getId1()).isEqualTo(3L);
+        assertThat(values(recovered.read(GROUP, "c1", 10, 0))).containsExactly("first", "second", "fourth");
+
+        recovered.close();
+        opened.clear();
+        TaskJournal again = open(SEGMENT_SIZE);
+        assertThat(values(again.readOwnPending(GROUP, "c1", 0, 10))).containsExactly("first", "second", "fourth");
+    }
+
+    @Test
+    void unackedMessagesAreReplayedAfterRestart() throws Exception {
+        TaskJournal journal = open(SEGMENT_SIZE);
+        journal.createGroup(GROUP);
+        journal.append(messages("m1", "m2", "m3", "m4", "m5"));
+        journal.read(GROUP, "c1", 4, 0);
+        journal.ack(GROUP, 1, 2);
+        journal.close();
+        opened.clear();
+
+        TaskJournal recovered = open(SEGMENT_SIZE);
+        // between the watermark and the last delivered seq, without owner: any consumer takes them
+        assertThat(values(recovered.readOwnPending(GROUP, "c2", 0, 10))).containsExactly("m3", "m4");
+        assertThat(recovered.readOwnPending(GROUP, "c1", 0, 10)).isEmpty();
+        // never delivered, read as new
+        assertThat(values(recovered.read(GROUP, "c1", 10, 0))).containsExactly("m5");
+        assertThat(recovered.stats(GROUP)).contains(new TaskQueue.GroupStats(0, 3, 5));
+    }
+
+    @Test
+    void outOfOrderAckKeepsTheWatermark() throws Exception {
+        TaskJournal journal = open(SEGMENT_SIZE);
+        journal.createGroup(GROUP);
+        journal.append(messages("m1", "m2", "m3"));
+        journal.read(GROUP, "c1", 3, 0);
+        journal.ack(GROUP, 2, 3);
+        assertThat(journal.stats(GROUP)).contains(new TaskQueue.GroupStats(0, 1, 3));
+        journal.close();
+        opened.clear();
+
+        // the watermark stayed before seq 1, so the acked 2 and 3 are delivered once more
+        TaskJournal recovered = open(SEGMENT_SIZE);
+        assertThat(values(recovered.readOwnPending(GROUP, "c1", 0, 10))).containsExactly("m1", "m2", "m3");
+        recovered.ack(GROUP, 3, 1, 2);
+        recovered.close();
+        opened.clear();
+
+        TaskJournal acked = open(SEGMENT_SIZE);
+        assertThat(acked.readOwnPending(GROUP, "c1", 0, 10)).isEmpty();
+        assertThat(acked.stats(GROUP)).contains(new TaskQueue.GroupStats(0, 0, 3));
+    }
+
+    @Test
+    void segmentsRollOverAndAreDeletedOnceEveryGroupAcked() throws Exception {
+        TaskJournal journal = open(256);
+        journal.createGroup(GROUP);
+        journal.createGroup("audit");
+        journal.append(IntStream.rangeClosed(1, 20).mapToObj(i -> Map.of("k", "value-" + i)).toList());
+        int written = segments().size();
+        assertThat(written).isGreaterThan(3);
+
+        long[] all = IntStream.rangeClosed(1, 20).asLongStream().toArray();
+        journal.read(GROUP, "c1", 20, 0);
+        journal.ack(GROUP, all);
+        // the other group still needs them
+        assertThat(segments()).hasSize(written);
+
+        journal.read("audit", "c1", 20, 0);
+        journal.ack("audit", all);
+        // the segment being written is kept
+        assertThat(segments()).hasSize(1);
+        journal.close();
+        opened.clear();
+
+        TaskJournal recovered = open(256);
+        assertThat(recovered.append(messages("next")).getFirst().getId1()).isEqualTo(21L);
+        assertThat(values(recovered.read(GROUP, "c1", 10, 0))).containsExactly("next");
+    }
+
+    @Test
+    void newGroupStartsAtTheOldestRetainedMessage() throws Exception {
+        TaskJournal journal = open(256);
+        journal.createGroup(GROUP);
+        journal.append(IntStream.rangeClosed(1, 20).mapToObj(i -> Map.of("k", "value-" + i)).toList());
+        journal.read(GROUP, "c1", 20, 0);
+        journal.ack(GROUP, IntStream.rangeClosed(1, 20).asLongStream().toArray());
+
+        journal.createGroup("late");
+        List<TaskJournal.Entry> entries = journal.read("late", "c1", 100, 0);
+        assertThat(entries).isNotEmpty();
+        assertThat(entries.getLast().id().getId1()).isEqualTo(20L);
+        assertThat(entries.getFirst().id().getId1()).isGreaterThan(1L);
+    }
+
+    @Test
+    void idleMessagesAreClaimedByOtherConsumers() throws Exception {
+        TaskJournal journal = open(SEGMENT_SIZE);
+        journal.createGroup(GROUP);
+        journal.append(messages("m1", "m2", "m3"));
+        journal.read(GROUP, "c1", 3, 0);
+
+        assertThat(journal.claimIdle(GROUP, "c2", 60_000, 0, 10).entries()).isEmpty();
+        // own messages are never claimed
+        assertThat(journal.claimIdle(GROUP, "c1", 0, 0, 10).entries()).isEmpty();
+
+        TaskJournal.Claimed first = journal.claimIdle(GROUP, "c2", 0, 0, 2);
+        assertThat(values(first.entries())).containsExactly("m1", "m2");
+        assertThat(first.next()).isEqualTo(3L);
+        TaskJournal.Claimed rest = journal.claimIdle(GROUP, "c2", 0, first.next(), 2);
+        assertThat(values(rest.entries())).containsExactly("m3");
+        assertThat(rest.next()).isZero();
+
+        assertThat(journal.readOwnPending(GROUP, "c1", 0, 10)).isEmpty();
+        assertThat(values(journal.readOwnPending(GROUP, "c2", 0, 10))).containsExactly("m1", "m2", "m3");
+    }
+
+    @Test
+    void rejectsMessagesLargerThanASegment() throws Exception {
+        TaskJournal journal = open(256);
+        assertThatThrownBy(() -> journal.append(List.of(Map.of("k", "x".repeat(300)))))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private TaskJournal open(int segmentSize) throws IOException {
+        TaskJournal journal = new TaskJournal("test", dir, segmentSize, false);
+        opened.add(journal);
+        return journal;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".log")).sorted().toList();
+        }
+    }
+
+    private static List<Map<String, String>> messages(String... values) {
+        return Stream.of(values).map(value -> Map.of("k", value)).toList();
+    }
+
+    private static List<String> values(List<TaskJournal.Entry> entries) {
+        return entries.stream().map(entry -> entry.data().get("k")).toList();
+    }
+
+    private static int indexOf(byte[] bytes, byte[] part) {
+        for (int i = 0; i <= bytes.length - part.length; i++) {
+            int j = 0;
+            while (j < part.length && bytes[i + j] == part[j]) {
+                j++;
+            }
+            if (j == part.length) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("not found");
+    }
+}
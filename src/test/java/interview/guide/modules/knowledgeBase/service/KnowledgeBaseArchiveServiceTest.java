@@ -0,0 +1,156 @@
+package interview.guide.modules.knowledgeBase.service;
+
+import interview.guide.common.config.UploadConfigProperties;
+import interview.guide.common.model.UploadTaskStage;
+import interview.guide.infrastructure.file.ContentTypeDetectionService;
+import interview.guide.infrastructure.file.FileHashService;
+import interview.guide.infrastructure.file.FileIngestionService;
+import interview.guide.infrastructure.file.FileStorageService;
+import interview.guide.infrastructure.redis.RedisService;
+import interview.guide.modules.knowledgeBase.listener.VectorizeStreamProducer;
+import interview.guide.modules.knowledgeBase.model.KnowledgeBaseEntity;
+import interview.guide.modules.knowledgeBase.repository.KnowledgeBaseRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class KnowledgeBaseArchiveServiceTest {
+
+    private static final int ENTRIES = 8;
+
+    private final Set<String> uploaded = ConcurrentHashMap.newKeySet();
+    private final Set<String> saved = ConcurrentHashMap.newKeySet();
+    private final Map<String, String> progress = new ConcurrentHashMap<>();
+
+    private KnowledgeBaseArchiveService service;
+
+    @BeforeEach
+    void setUp() {
+        FileStorageService storageService = mock(FileStorageService.class);
+        when(storageService.uploadKnowledgeBase(any())).thenAnswer(invocation -> {
+            String fileKey = "kb/" + UUID.randomUUID();
+            uploaded.add(fileKey);
+            return fileKey;
+        });
+        doAnswer(invocation -> uploaded.remove(invocation.<String>getArgument(0)))
+                .when(storageService).deleteKnowledgeBase(anyString());
+
+        KnowledgeBaseParserService parserService = mock(KnowledgeBaseParserService.class);
+        when(parserService.parseContent(any()))
+                .thenAnswer(invocation -> {
+                    // workers are still busy when the reader hits the truncation
+                    Thread.sleep(200);
+                    return "text";
+                });
+
+        KnowledgeBasePersistenceService persistenceService = mock(KnowledgeBasePersistenceService.class);
+        when(persistenceService.newKnowledgeBase(any(), any(), any(), anyString(), any())).thenAnswer(invocation -> {
+            KnowledgeBaseEntity entity = new KnowledgeBaseEntity();
+            entity.setStorageKey(invocation.getArgument(3));
+            return entity;
+        });
+        when(persistenceService.saveKnowledgeBases(anyList())).thenAnswer(invocation -> {
+            List<KnowledgeBaseEntity> entities = invocation.getArgument(0);
+            entities.forEach(entity -> saved.add(entity.getStorageKey()));
+            return entities;
+        });
+
+        RedisService redisService = mock(RedisService.class);
+        doAnswer(invocation -> {
+            progress.putAll(invocation.getArgument(1));
+            return null;
+        }).when(redisService).hSetAllStrings(anyString(), anyMap());
+        when(redisService.hGetAllStrings(anyString())).thenAnswer(invocation -> new HashMap<>(progress));
+
+        UploadConfigProperties uploadConfig = new UploadConfigProperties();
+        uploadConfig.getArchive().setWorkers(2);
+
+        service = new KnowledgeBaseArchiveService(
+                new FileIngestionService(new FileHashService(), new ContentTypeDetectionService()),
+                storageService,
+                mock(KnowledgeBaseUploadService.class),
+                parserService,
+                mock(KnowledgeBaseRepository.class),
+                persistenceService,
+                mock(VectorizeStreamProducer.class),
+                redisService,
+                uploadConfig);
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void truncatedArchiveLeavesNoOrphanedUploads() throws Exception {
+        byte[] zip = zip();
+        // cut inside the data of the 7th entry: that entry fails, then the next header can not be read
+        byte[] truncated = Arrays.copyOf(zip, localHeaderOffset(zip, 6) + 100);
+
+        Map<String, Object> submitted = service.submitArchive(
+                new MockMultipartFile("file", "docs.zip", "application/zip", truncated), "notes");
+        Map<String, Object> result = await((String) submitted.get("batchId"));
+
+        assertThat(result.get("stage")).isEqualTo(UploadTaskStage.FAILED.name());
+        assertThat((String) result.get("error")).startsWith("archive read failed");
+        // every file still in storage belongs to a saved row
+        assertThat(uploaded).isNotEmpty();
+        assertThat(saved).containsAll(uploaded);
+        assertThat(result.get("succeeded")).isEqualTo(saved.size());
+        assertThat(result.get("succeeded")).isEqualTo(6);
+    }
+
+    private Map<String, Object> await(String batchId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            Map<String, Object> result = service.getProgress(batchId);
+            Object stage = result.get("stage");
+            if (UploadTaskStage.FAILED.name().equals(stage) || UploadTaskStage.ENQUEUED.name().equals(stage)) {
+                return result;
+            }
+            Thread.sleep(20);
+        }
+        throw new AssertionError("archive import did not finish");
+    }
+
+    private static byte[] zip() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Random random = new Random(1);
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (int i = 0; i < ENTRIES; i++) {
+                zip.putNextEntry(new ZipEntry("docs/doc" + i + ".txt"));
+                StringBuilder text = new StringBuilder();
+                for (int k = 0; k < 3000; k++) {
+                    text.append((char) ('a' + random.nextInt(26)));
+                }
+                zip.write(text.toString().getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static int localHeaderOffset(byte[] zip, int index) {
+        for (int i = 0, found = 0; i + 3 < zip.length; i++) {
+            if (zip[i] == 'P' && zip[i + 1] == 'K' && zip[i + 2] == 3 && zip[i + 3] == 4 && found++ == index) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("no local header " + index);
+    }
+}